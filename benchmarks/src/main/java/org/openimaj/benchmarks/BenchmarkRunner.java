@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for running the benchmarks from the assembled jar. Accepts the
+ * normal JMH command-line options (e.g. a regular expression selecting
+ * benchmarks, {@code -p size=512} to restrict parameters, or {@code -rf} and
+ * {@code -rff} to change the result format and file); unless otherwise
+ * specified, all benchmarks in this package are run and the results are
+ * written in JSON format to {@value #DEFAULT_RESULT_FILE} so that runs can be
+ * compared over time.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BenchmarkRunner {
+	/**
+	 * The default file to which results are written
+	 */
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Run the benchmarks
+	 *
+	 * @param args
+	 *            JMH command-line options
+	 * @throws RunnerException
+	 *             if an error occurs running the benchmarks
+	 * @throws CommandLineOptionException
+	 *             if the options are invalid
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions cmd = new CommandLineOptions(args);
+
+		final ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+
+		if (cmd.getIncludes().isEmpty())
+			opts.include(BenchmarkRunner.class.getPackage().getName() + "\\..*");
+		if (!cmd.getResultFormat().hasValue())
+			opts.resultFormat(ResultFormatType.JSON);
+		if (!cmd.getResult().hasValue())
+			opts.result(DEFAULT_RESULT_FILE);
+
+		new Runner(opts.build()).run();
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openimaj.ml.clustering.ByteCentroidsResult;
+import org.openimaj.ml.clustering.kmeans.ByteKMeans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of exact {@link ByteKMeans} clustering of 128-dimensional
+ * (SIFT-like) vectors for a fixed number of iterations. The data is drawn
+ * around {@code 2K} underlying centres so that the assignments change between
+ * iterations as they would with real descriptors.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ByteKMeansBenchmark {
+	private static final int DIMS = 128;
+	private static final int NITERS = 5;
+
+	/**
+	 * The number of vectors to cluster
+	 */
+	@Param({ "10000", "50000" })
+	public int n;
+
+	/**
+	 * The number of clusters
+	 */
+	@Param({ "100", "1000" })
+	public int k;
+
+	private byte[][] data;
+	private ByteKMeans kmeans;
+
+	/**
+	 * Create the synthetic data and the clusterer
+	 */
+	@Setup
+	public void setup() {
+		data = SyntheticData.createClusteredBytes(n, DIMS, 2 * k, SyntheticData.SEED);
+		kmeans = ByteKMeans.createExact(k, NITERS);
+		kmeans.seed(SyntheticData.SEED);
+	}
+
+	/**
+	 * Cluster the data
+	 *
+	 * @return the centroids
+	 */
+	@Benchmark
+	public ByteCentroidsResult cluster() {
+		return kmeans.cluster(data);
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.image.processing.convolution.FImageConvolveSeparable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of separable convolution ({@link FImageConvolveSeparable}) with
+ * Gaussian kernels of differing widths. The processor works in-place, so each
+ * invocation convolves a fresh clone of the input; the cost of the clone alone
+ * is measured by {@link #cloneOnly()} so it can be subtracted.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConvolveSeparableBenchmark {
+	/**
+	 * The width and height of the (square) input image
+	 */
+	@Param({ "128", "512", "1024", "2048" })
+	public int size;
+
+	/**
+	 * The standard deviation of the Gaussian kernel
+	 */
+	@Param({ "1.0", "3.2" })
+	public float sigma;
+
+	private FImage image;
+	private FImageConvolveSeparable convolve;
+
+	/**
+	 * Create the synthetic input and kernel
+	 */
+	@Setup
+	public void setup() {
+		image = SyntheticData.createImage(size, size, SyntheticData.SEED);
+
+		final float[] kernel = FGaussianConvolve.makeKernel(sigma);
+		convolve = new FImageConvolveSeparable(kernel, kernel);
+	}
+
+	/**
+	 * Convolve a copy of the image
+	 *
+	 * @return the convolved image
+	 */
+	@Benchmark
+	public FImage convolve() {
+		final FImage copy = image.clone();
+		convolve.processImage(copy);
+		return copy;
+	}
+
+	/**
+	 * Copy the image without convolving
+	 *
+	 * @return the copy
+	 */
+	@Benchmark
+	public FImage cloneOnly() {
+		return image.clone();
+	}
+}
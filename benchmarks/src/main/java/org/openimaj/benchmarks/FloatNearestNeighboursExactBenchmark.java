@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of brute-force search with {@link FloatNearestNeighboursExact}.
+ * Each invocation searches a batch of queries against the indexed vectors.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FloatNearestNeighboursExactBenchmark {
+	private static final int NQUERIES = 100;
+
+	/**
+	 * The number of indexed vectors
+	 */
+	@Param({ "1000", "10000", "100000" })
+	public int n;
+
+	/**
+	 * The dimensionality of the vectors
+	 */
+	@Param({ "16", "128" })
+	public int dims;
+
+	/**
+	 * The number of neighbours to find
+	 */
+	@Param({ "1", "10" })
+	public int k;
+
+	private FloatNearestNeighboursExact nn;
+	private float[][] queries;
+	private int[][] indices;
+	private float[][] distances;
+
+	/**
+	 * Create the synthetic data and index
+	 */
+	@Setup
+	public void setup() {
+		nn = new FloatNearestNeighboursExact(SyntheticData.createFloats(n, dims, SyntheticData.SEED));
+		queries = SyntheticData.createFloats(NQUERIES, dims, SyntheticData.SEED + 1);
+		indices = new int[NQUERIES][k];
+		distances = new float[NQUERIES][k];
+	}
+
+	/**
+	 * Search for the neighbours of the query batch
+	 *
+	 * @return the neighbour indices
+	 */
+	@Benchmark
+	public int[][] searchKNN() {
+		nn.searchKNN(queries, k, indices, distances);
+		return indices;
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.benchmarks;
+
+import java.util.Random;
+
+import org.openimaj.image.FImage;
+
+/**
+ * Deterministic synthetic inputs for the benchmarks. All generators are
+ * seeded so that repeated runs (and runs on different machines) measure
+ * exactly the same work.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public final class SyntheticData {
+	/**
+	 * The default seed used by the benchmarks
+	 */
+	public static final long SEED = 42;
+
+	private SyntheticData() {
+	}
+
+	/**
+	 * Create an image consisting of randomly placed and sized Gaussian blobs
+	 * over a low-amplitude noise floor. Unlike pure noise, this gives
+	 * interest-point detectors a realistic amount of structure to find.
+	 *
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 * @param seed
+	 *            the random seed
+	 * @return the image, with pixels in the range 0..1
+	 */
+	public static FImage createImage(int width, int height, long seed) {
+		final Random rng = new Random(seed);
+		final FImage image = new FImage(width, height);
+		final float[][] pix = image.pixels;
+
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				pix[y][x] = 0.05f * rng.nextFloat();
+
+		final int nblobs = Math.max(1, (width * height) / 2048);
+		for (int i = 0; i < nblobs; i++) {
+			final float cx = rng.nextFloat() * width;
+			final float cy = rng.nextFloat() * height;
+			final float sigma = 1.5f + rng.nextFloat() * 6f;
+			final float amp = (rng.nextBoolean() ? 1 : -1) * (0.2f + 0.3f * rng.nextFloat());
+			final int r = (int) Math.ceil(3 * sigma);
+
+			final int x0 = Math.max(0, (int) cx - r), x1 = Math.min(width - 1, (int) cx + r);
+			final int y0 = Math.max(0, (int) cy - r), y1 = Math.min(height - 1, (int) cy + r);
+			final float norm = 1f / (2 * sigma * sigma);
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0; x <= x1; x++) {
+					final float dx = x - cx, dy = y - cy;
+					pix[y][x] += amp * (float) Math.exp(-(dx * dx + dy * dy) * norm);
+				}
+			}
+		}
+
+		return image.normalise();
+	}
+
+	/**
+	 * Create random byte vectors drawn around a fixed number of cluster
+	 * centres, so that clustering has genuine structure to find.
+	 *
+	 * @param n
+	 *            number of vectors
+	 * @param dims
+	 *            dimensionality
+	 * @param ncentres
+	 *            the number of underlying centres
+	 * @param seed
+	 *            the random seed
+	 * @return the data
+	 */
+	public static byte[][] createClusteredBytes(int n, int dims, int ncentres, long seed) {
+		final Random rng = new Random(seed);
+		final int[][] centres = new int[ncentres][dims];
+		for (int i = 0; i < ncentres; i++)
+			for (int j = 0; j < dims; j++)
+				centres[i][j] = rng.nextInt(256) - 128;
+
+		final byte[][] data = new byte[n][dims];
+		for (int i = 0; i < n; i++) {
+			final int[] c = centres[rng.nextInt(ncentres)];
+			for (int j = 0; j < dims; j++) {
+				final int v = c[j] + (int) Math.round(rng.nextGaussian() * 10);
+				data[i][j] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, v));
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Create uniformly distributed random float vectors in the range 0..1.
+	 *
+	 * @param n
+	 *            number of vectors
+	 * @param dims
+	 *            dimensionality
+	 * @param seed
+	 *            the random seed
+	 * @return the data
+	 */
+	public static float[][] createFloats(int n, int dims, long seed) {
+		final Random rng = new Random(seed);
+		final float[][] data = new float[n][dims];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < dims; j++)
+				data[i][j] = rng.nextFloat();
+		return data;
+	}
+}
@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.data.identity.Identifiable;
+
+/**
+ * A thread-safe wrapper for a feature extractor that caches the extracted
+ * features in memory, up to a maximum total weight. By default every feature
+ * has a weight of one, so the maximum weight is the maximum number of cached
+ * features; a {@link Weigher} can be provided to bound the cache by, for
+ * example, the approximate memory use of the features instead. When the
+ * maximum is exceeded the least recently used features are evicted.
+ * <p>
+ * If several threads request the feature of the same object at the same time,
+ * the feature is only extracted once and all the threads receive the same
+ * instance. Hit, miss and eviction counts are recorded.
+ * <p>
+ * Optionally, a spill directory can be given, in which case the features are
+ * extracted through a {@link DiskCachingFeatureExtractor} on that directory;
+ * features evicted from memory are then re-read from disk rather than being
+ * re-extracted.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ * @param <OBJECT>
+ *            Type of object
+ */
+public class BoundedCachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
+		implements
+		FeatureExtractor<FEATURE, OBJECT>
+{
+	/**
+	 * Interface for objects that compute the weight of a cached feature.
+	 *
+	 * @param <FEATURE>
+	 *            Type of feature
+	 */
+	public static interface Weigher<FEATURE> {
+		/**
+		 * Compute the weight of the given feature.
+		 *
+		 * @param feature
+		 *            the feature
+		 * @return the weight; must not be negative
+		 */
+		public long weigh(FEATURE feature);
+	}
+
+	private static class Entry<FEATURE> {
+		final FEATURE feature;
+		final long weight;
+
+		Entry(FEATURE feature, long weight) {
+			this.feature = feature;
+			this.weight = weight;
+		}
+	}
+
+	private final FeatureExtractor<FEATURE, OBJECT> extractor;
+	private final Weigher<? super FEATURE> weigher;
+	private final long maximumWeight;
+
+	// access-ordered, so iteration starts at the least recently used entry;
+	// all access is synchronized on the map
+	private final LinkedHashMap<String, Entry<FEATURE>> cache = new LinkedHashMap<String, Entry<FEATURE>>(16, 0.75f,
+			true);
+	private long weight;
+
+	private final ConcurrentHashMap<String, FutureTask<FEATURE>> pending = new ConcurrentHashMap<String, FutureTask<FEATURE>>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Construct the cache with the given maximum number of features. The given
+	 * extractor will be used to generate the features.
+	 *
+	 * @param extractor
+	 *            the feature extractor
+	 * @param maximumSize
+	 *            the maximum number of features to hold in memory
+	 */
+	public BoundedCachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, long maximumSize) {
+		this(extractor, maximumSize, null, null);
+	}
+
+	/**
+	 * Construct the cache with the given maximum total weight. The given
+	 * extractor will be used to generate the features.
+	 *
+	 * @param extractor
+	 *            the feature extractor
+	 * @param maximumWeight
+	 *            the maximum total weight of the features held in memory
+	 * @param weigher
+	 *            the weigher used to compute the weight of each feature; if
+	 *            null every feature has a weight of one
+	 */
+	public BoundedCachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, long maximumWeight,
+			Weigher<? super FEATURE> weigher)
+	{
+		this(extractor, maximumWeight, weigher, null);
+	}
+
+	/**
+	 * Construct the cache with the given maximum total weight, spilling to the
+	 * given directory. The given extractor will be used to generate the
+	 * features.
+	 *
+	 * @param extractor
+	 *            the feature extractor
+	 * @param maximumWeight
+	 *            the maximum total weight of the features held in memory
+	 * @param weigher
+	 *            the weigher used to compute the weight of each feature; if
+	 *            null every feature has a weight of one
+	 * @param spillDir
+	 *            the directory of the {@link DiskCachingFeatureExtractor} used
+	 *            to back the in-memory cache; if null features evicted from
+	 *            memory will be re-extracted
+	 */
+	public BoundedCachingFeatureExtractor(FeatureExtractor<FEATURE, OBJECT> extractor, long maximumWeight,
+			Weigher<? super FEATURE> weigher, File spillDir)
+	{
+		if (maximumWeight < 0)
+			throw new IllegalArgumentException("Maximum weight must not be negative");
+
+		this.extractor = spillDir == null ? extractor : new DiskCachingFeatureExtractor<FEATURE, OBJECT>(spillDir,
+				extractor);
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+	}
+
+	@Override
+	public FEATURE extractFeature(final OBJECT object) {
+		final String id = object.getID();
+
+		FEATURE feature = lookup(id);
+		if (feature != null) {
+			hits.incrementAndGet();
+			return feature;
+		}
+
+		final FutureTask<FEATURE> task = new FutureTask<FEATURE>(new Callable<FEATURE>() {
+			@Override
+			public FEATURE call() throws Exception {
+				return extractor.extractFeature(object);
+			}
+		});
+
+		final FutureTask<FEATURE> existing = pending.putIfAbsent(id, task);
+		if (existing != null) {
+			// another thread is already extracting this feature
+			hits.incrementAndGet();
+			return await(existing);
+		}
+
+		try {
+			// the feature might have been stored between the lookup and
+			// registering the task
+			feature = lookup(id);
+			if (feature != null) {
+				hits.incrementAndGet();
+				return feature;
+			}
+
+			misses.incrementAndGet();
+			task.run();
+			feature = await(task);
+
+			if (feature != null)
+				store(id, feature);
+
+			return feature;
+		} finally {
+			pending.remove(id, task);
+		}
+	}
+
+	private FEATURE lookup(String id) {
+		synchronized (cache) {
+			final Entry<FEATURE> entry = cache.get(id);
+
+			return entry == null ? null : entry.feature;
+		}
+	}
+
+	private void store(String id, FEATURE feature) {
+		final long w = weigher == null ? 1 : weigher.weigh(feature);
+
+		synchronized (cache) {
+			final Entry<FEATURE> old = cache.put(id, new Entry<FEATURE>(feature, w));
+			if (old != null)
+				weight -= old.weight;
+			weight += w;
+
+			final Iterator<Map.Entry<String, Entry<FEATURE>>> iter = cache.entrySet().iterator();
+			while (weight > maximumWeight && iter.hasNext()) {
+				weight -= iter.next().getValue().weight;
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private static <FEATURE> FEATURE await(FutureTask<FEATURE> task) {
+		try {
+			return task.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Remove the feature of the object with the given identifier from the
+	 * in-memory cache.
+	 *
+	 * @param id
+	 *            the identifier
+	 */
+	public void invalidate(String id) {
+		synchronized (cache) {
+			final Entry<FEATURE> old = cache.remove(id);
+
+			if (old != null)
+				weight -= old.weight;
+		}
+	}
+
+	/**
+	 * Remove all the features from the in-memory cache.
+	 */
+	public void invalidateAll() {
+		synchronized (cache) {
+			cache.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Get the number of features currently held in memory.
+	 *
+	 * @return the number of features
+	 */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Get the total weight of the features currently held in memory.
+	 *
+	 * @return the total weight
+	 */
+	public long weight() {
+		synchronized (cache) {
+			return weight;
+		}
+	}
+
+	/**
+	 * Get the number of requests that were answered from memory, including
+	 * those that waited for a concurrent extraction of the same feature.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of requests that required a feature to be extracted (or
+	 * read from the spill directory).
+	 *
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Get the number of features that have been evicted from memory.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Get the proportion of requests that were hits.
+	 *
+	 * @return the hit rate; 1 if there have been no requests
+	 */
+	public double getHitRate() {
+		final long h = hits.get();
+		final long total = h + misses.get();
+
+		return total == 0 ? 1 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return this.extractor.toString();
+	}
+}
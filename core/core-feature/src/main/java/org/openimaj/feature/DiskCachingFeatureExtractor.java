@@ -40,7 +40,9 @@ import org.openimaj.io.WriteableBinary;
 /**
  * A simple wrapper for a feature extractor that caches the extracted feature to
  * disk. If a feature has already been generated for a given object, it will be
- * re-read from disk rather than being re-generated.
+ * re-read from disk rather than being re-generated. Features are written to a
+ * temporary file and then renamed, so the cache can safely be shared by
+ * concurrent extractions.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -118,10 +120,23 @@ public class DiskCachingFeatureExtractor<FEATURE, OBJECT extends Identifiable>
 	}
 
 	private FEATURE write(FEATURE feature, File cachedFeature) throws IOException {
-		if (feature instanceof WriteableBinary) {
-			IOUtils.writeBinaryFull(cachedFeature, (WriteableBinary) feature);
-		} else {
-			IOUtils.writeToFile(feature, cachedFeature);
+		// write to a temporary file first and then move it into place, so that
+		// concurrent readers never see a partially written feature
+		final File tmp = new File(cachedFeature.getParentFile(), cachedFeature.getName() + "."
+				+ Thread.currentThread().getId() + ".tmp");
+
+		try {
+			if (feature instanceof WriteableBinary) {
+				IOUtils.writeBinaryFull(tmp, (WriteableBinary) feature);
+			} else {
+				IOUtils.writeToFile(feature, tmp);
+			}
+
+			if (!tmp.renameTo(cachedFeature))
+				tmp.delete();
+		} catch (final IOException e) {
+			tmp.delete();
+			throw e;
 		}
 
 		return feature;
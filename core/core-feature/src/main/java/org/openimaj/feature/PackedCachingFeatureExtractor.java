@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.io.ReadWriteableBinary;
+
+/**
+ * A wrapper for a feature extractor that caches the extracted features in a
+ * {@link PackedFeatureStore}. If a feature has already been generated for a
+ * given object, it will be read from the store rather than being
+ * re-generated. This is a replacement for the
+ * {@link DiskCachingFeatureExtractor} that doesn't create a file per object,
+ * and is safe to use from multiple threads.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <FEATURE>
+ *            Type of feature
+ * @param <OBJECT>
+ *            Type of object
+ */
+public class PackedCachingFeatureExtractor<FEATURE extends ReadWriteableBinary, OBJECT extends Identifiable>
+		implements
+		FeatureExtractor<FEATURE, OBJECT>
+{
+	private static Logger logger = Logger.getLogger(PackedCachingFeatureExtractor.class);
+
+	private PackedFeatureStore store;
+	private Class<FEATURE> featureClass;
+	private FeatureExtractor<FEATURE, OBJECT> extractor;
+	private boolean force;
+
+	/**
+	 * Construct the cache in the given directory, opening a
+	 * {@link PackedFeatureStore} in it. The given extractor will be used to
+	 * generate the features.
+	 *
+	 * @param cacheDir
+	 *            the location of the cache
+	 * @param featureClass
+	 *            the class of the features
+	 * @param extractor
+	 *            the feature extractor
+	 * @throws IOException
+	 *             if the store cannot be opened
+	 */
+	public PackedCachingFeatureExtractor(File cacheDir, Class<FEATURE> featureClass,
+			FeatureExtractor<FEATURE, OBJECT> extractor) throws IOException
+	{
+		this(new PackedFeatureStore(cacheDir), featureClass, extractor, false);
+	}
+
+	/**
+	 * Construct the cache with the given store. The given extractor will be
+	 * used to generate the features.
+	 *
+	 * @param store
+	 *            the store
+	 * @param featureClass
+	 *            the class of the features
+	 * @param extractor
+	 *            the feature extractor
+	 */
+	public PackedCachingFeatureExtractor(PackedFeatureStore store, Class<FEATURE> featureClass,
+			FeatureExtractor<FEATURE, OBJECT> extractor)
+	{
+		this(store, featureClass, extractor, false);
+	}
+
+	/**
+	 * Construct the cache with the given store. The given extractor will be
+	 * used to generate the features. Optionally, all features can be
+	 * regenerated.
+	 *
+	 * @param store
+	 *            the store
+	 * @param featureClass
+	 *            the class of the features
+	 * @param extractor
+	 *            the feature extractor
+	 * @param force
+	 *            if true, then all features will be regenerated and saved,
+	 *            rather than being loaded.
+	 */
+	public PackedCachingFeatureExtractor(PackedFeatureStore store, Class<FEATURE> featureClass,
+			FeatureExtractor<FEATURE, OBJECT> extractor, boolean force)
+	{
+		this.store = store;
+		this.featureClass = featureClass;
+		this.extractor = extractor;
+		this.force = force;
+	}
+
+	@Override
+	public FEATURE extractFeature(OBJECT object) {
+		final String id = object.getID();
+
+		if (!force) {
+			try {
+				final FEATURE feature = store.get(id, featureClass);
+
+				if (feature != null)
+					return feature;
+			} catch (final IOException e) {
+				logger.warn("Error reading from cache. Feature will be regenerated.", e);
+			}
+		}
+
+		final FEATURE feature = extractor.extractFeature(object);
+
+		if (feature != null) {
+			try {
+				store.put(id, feature);
+			} catch (final IOException e) {
+				logger.warn("Caching of the feature for the " + id + " object was disabled", e);
+			}
+		}
+
+		return feature;
+	}
+
+	/**
+	 * @return the underlying store
+	 */
+	public PackedFeatureStore getStore() {
+		return store;
+	}
+
+	@Override
+	public String toString() {
+		return this.extractor.toString();
+	}
+}
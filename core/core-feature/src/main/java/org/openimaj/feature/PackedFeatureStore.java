@@ -0,0 +1,751 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openimaj.io.IOUtils;
+import org.openimaj.io.ReadableBinary;
+import org.openimaj.io.WriteableBinary;
+
+/**
+ * A store of binary serialised features, keyed by an identifier string, that
+ * packs all the features into a small number of large segment files rather
+ * than using a file per feature.
+ * <p>
+ * Features are appended to the current segment file, and a new segment is
+ * started when the current one would grow past the maximum segment size. The
+ * offset and length of every feature are recorded in an append-only index file
+ * which is read back into memory when the store is opened; if a feature is
+ * stored more than once, the latest copy wins. Features in completed segments
+ * are read through memory-mapping. Space taken by overwritten or removed
+ * features can be reclaimed with {@link #compact()}, or by running this class
+ * from the command line with the store directory as its argument.
+ * <p>
+ * The store is safe for use by multiple threads, but a directory can only be
+ * opened by one store at a time (this is enforced with a file lock). Features
+ * are stored without their binary headers, so they must be read back with the
+ * class they were written as.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedFeatureStore implements Closeable {
+	/**
+	 * The default maximum segment size (1GB)
+	 */
+	public static final long DEFAULT_MAX_SEGMENT_SIZE = 1L << 30;
+
+	private static final byte[] INDEX_HEADER = "PFSIDX01".getBytes();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String INDEX_NAME = "index";
+	private static final String LOCK_NAME = "lock";
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+
+	private static class Segment {
+		final int number;
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		long size;
+		volatile MappedByteBuffer map;
+
+		Segment(File dir, int number) throws IOException {
+			this.number = number;
+			this.file = new File(dir, String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+			this.raf = new RandomAccessFile(file, "rw");
+			this.channel = raf.getChannel();
+			this.size = channel.size();
+		}
+
+		void map() throws IOException {
+			if (size > 0)
+				map = channel.map(MapMode.READ_ONLY, 0, size);
+		}
+
+		void append(byte[] data) throws IOException {
+			final ByteBuffer buf = ByteBuffer.wrap(data);
+			long pos = size;
+			while (buf.hasRemaining())
+				pos += channel.write(buf, pos);
+			size = pos;
+		}
+
+		byte[] read(long offset, int length) throws IOException {
+			final byte[] data = new byte[length];
+			final MappedByteBuffer m = map;
+
+			if (m != null && offset + length <= m.capacity()) {
+				final ByteBuffer buf = m.duplicate();
+				buf.position((int) offset);
+				buf.get(data);
+			} else {
+				// the record is beyond the mapped region of the segment that
+				// is currently being written
+				final ByteBuffer buf = ByteBuffer.wrap(data);
+				long pos = offset;
+				while (buf.hasRemaining()) {
+					final int n = channel.read(buf, pos);
+					if (n < 0)
+						throw new EOFException("Unexpected end of segment " + file);
+					pos += n;
+				}
+			}
+
+			return data;
+		}
+
+		void close() throws IOException {
+			map = null;
+			raf.close();
+		}
+	}
+
+	private static class Location {
+		final Segment segment;
+		final long offset;
+		final int length;
+
+		Location(Segment segment, long offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final File dir;
+	private final long maxSegmentSize;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final RandomAccessFile lockFile;
+	private final FileLock fileLock;
+
+	private Map<String, Location> index = new HashMap<String, Location>();
+	private TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+	private Segment current;
+	private DataOutputStream indexStream;
+	private long garbage;
+	private boolean closed;
+
+	/**
+	 * Open (or create) the store in the given directory with the default
+	 * maximum segment size.
+	 *
+	 * @param dir
+	 *            the directory
+	 * @throws IOException
+	 *             if the store cannot be opened
+	 */
+	public PackedFeatureStore(File dir) throws IOException {
+		this(dir, DEFAULT_MAX_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open (or create) the store in the given directory.
+	 *
+	 * @param dir
+	 *            the directory
+	 * @param maxSegmentSize
+	 *            the maximum size of a segment file in bytes. A feature larger
+	 *            than this is stored in a segment on its own. Must be no more
+	 *            than {@link Integer#MAX_VALUE} so segments can be mapped.
+	 * @throws IOException
+	 *             if the store cannot be opened
+	 */
+	public PackedFeatureStore(File dir, long maxSegmentSize) throws IOException {
+		if (maxSegmentSize <= 0 || maxSegmentSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Maximum segment size must be between 1 and Integer.MAX_VALUE");
+
+		this.dir = dir;
+		this.maxSegmentSize = maxSegmentSize;
+
+		dir.mkdirs();
+		if (!dir.isDirectory())
+			throw new IOException("Unable to create store directory " + dir);
+
+		lockFile = new RandomAccessFile(new File(dir, LOCK_NAME), "rw");
+		FileLock fl;
+		try {
+			fl = lockFile.getChannel().tryLock();
+		} catch (final OverlappingFileLockException e) {
+			// already open in this JVM
+			fl = null;
+		} catch (final IOException e) {
+			lockFile.close();
+			throw e;
+		}
+		if (fl == null) {
+			lockFile.close();
+			throw new IOException("The store in " + dir + " is already open");
+		}
+		fileLock = fl;
+
+		try {
+			open();
+		} catch (final IOException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	private void open() throws IOException {
+		final File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+			}
+		});
+
+		for (final File f : files) {
+			final String name = f.getName();
+			final int number;
+			try {
+				number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+						name.length() - SEGMENT_SUFFIX.length()));
+			} catch (final NumberFormatException e) {
+				continue;
+			}
+			segments.put(number, new Segment(dir, number));
+		}
+
+		final File indexFile = new File(dir, INDEX_NAME);
+		final long validLength = readIndex(indexFile);
+
+		if (validLength < 0) {
+			writeIndex(indexFile, index);
+		} else if (validLength < indexFile.length()) {
+			// discard a partially written record left by a crash
+			final RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+			try {
+				raf.setLength(validLength);
+			} finally {
+				raf.close();
+			}
+		}
+		indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+
+		for (final Segment s : segments.values())
+			s.map();
+
+		if (segments.isEmpty())
+			addSegment(0);
+		else
+			current = segments.lastEntry().getValue();
+	}
+
+	/**
+	 * Read the index, returning the length of the valid part of the index
+	 * file, or -1 if it doesn't exist
+	 */
+	private long readIndex(File indexFile) throws IOException {
+		if (!indexFile.exists())
+			return -1;
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			final byte[] header = new byte[INDEX_HEADER.length];
+			try {
+				in.readFully(header);
+			} catch (final EOFException e) {
+				return -1;
+			}
+			for (int i = 0; i < header.length; i++)
+				if (header[i] != INDEX_HEADER[i])
+					throw new IOException(indexFile + " is not a feature store index");
+
+			long valid = header.length;
+			while (true) {
+				final String id;
+				final int segment;
+				final long offset;
+				final int length;
+				try {
+					final byte[] idb = new byte[in.readInt()];
+					in.readFully(idb);
+					id = new String(idb, UTF8);
+					segment = in.readInt();
+					offset = in.readLong();
+					length = in.readInt();
+					valid += 4 + idb.length + 16;
+				} catch (final EOFException e) {
+					return valid;
+				}
+
+				final Location old;
+				if (length < 0) {
+					old = index.remove(id);
+				} else {
+					final Segment s = segments.get(segment);
+
+					// ignore records whose data didn't make it to disk
+					if (s == null || offset + length > s.size)
+						continue;
+
+					old = index.put(id, new Location(s, offset, length));
+				}
+
+				if (old != null)
+					garbage += old.length;
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void writeIndexRecord(DataOutputStream out, String id, int segment, long offset, int length)
+			throws IOException
+	{
+		final byte[] idb = id.getBytes(UTF8);
+		out.writeInt(idb.length);
+		out.write(idb);
+		out.writeInt(segment);
+		out.writeLong(offset);
+		out.writeInt(length);
+	}
+
+	/**
+	 * Atomically replace the index file with the given index
+	 */
+	private void writeIndex(File indexFile, Map<String, Location> idx) throws IOException {
+		final File tmp = new File(dir, INDEX_NAME + ".tmp");
+		final FileOutputStream fos = new FileOutputStream(tmp);
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+			out.write(INDEX_HEADER);
+			for (final Map.Entry<String, Location> e : idx.entrySet()) {
+				final Location loc = e.getValue();
+				writeIndexRecord(out, e.getKey(), loc.segment.number, loc.offset, loc.length);
+			}
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+
+		Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private Segment addSegment(int number) throws IOException {
+		final Segment s = new Segment(dir, number);
+		segments.put(number, s);
+		current = s;
+		return s;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed)
+			throw new IOException("The feature store has been closed");
+	}
+
+	/**
+	 * Store a feature. If a feature with the same identifier already exists it
+	 * is replaced. The feature is serialised before any locks are taken, so
+	 * many threads can store features concurrently.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @param feature
+	 *            the feature
+	 * @throws IOException
+	 *             if an error occurs writing the feature
+	 */
+	public void put(String id, WriteableBinary feature) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+		feature.writeBinary(dos);
+		dos.flush();
+
+		put(id, baos.toByteArray());
+	}
+
+	private void put(String id, byte[] data) throws IOException {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+
+			if (current.size > 0 && current.size + data.length > maxSegmentSize) {
+				// seal the current segment so it can be read through a mapping
+				current.channel.force(false);
+				current.map();
+				addSegment(current.number + 1);
+			}
+
+			final long offset = current.size;
+			current.append(data);
+
+			writeIndexRecord(indexStream, id, current.number, offset, data.length);
+			indexStream.flush();
+
+			final Location old = index.put(id, new Location(current, offset, data.length));
+			if (old != null)
+				garbage += old.length;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Read the feature with the given identifier.
+	 *
+	 * @param <T>
+	 *            the type of feature
+	 * @param id
+	 *            the identifier
+	 * @param cls
+	 *            the class of the feature; must have a no-args constructor
+	 * @return the feature, or null if the store doesn't contain the identifier
+	 * @throws IOException
+	 *             if an error occurs reading the feature
+	 */
+	public <T extends ReadableBinary> T get(String id, Class<T> cls) throws IOException {
+		final byte[] data = getBytes(id);
+
+		if (data == null)
+			return null;
+
+		final T feature = IOUtils.newInstance(cls);
+		feature.readBinary(new DataInputStream(new ByteArrayInputStream(data)));
+		return feature;
+	}
+
+	/**
+	 * Get the serialised form of the feature with the given identifier.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return the serialised feature, or null if the store doesn't contain the
+	 *         identifier
+	 * @throws IOException
+	 *             if an error occurs reading the feature
+	 */
+	public byte[] getBytes(String id) throws IOException {
+		lock.readLock().lock();
+		try {
+			checkOpen();
+
+			final Location loc = index.get(id);
+			if (loc == null)
+				return null;
+
+			return loc.segment.read(loc.offset, loc.length);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Test whether the store contains a feature with the given identifier.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return true if the feature is stored; false otherwise
+	 */
+	public boolean contains(String id) {
+		lock.readLock().lock();
+		try {
+			return index.containsKey(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the feature with the given identifier. The space it occupied is
+	 * reclaimed by the next {@link #compact()}.
+	 *
+	 * @param id
+	 *            the identifier
+	 * @return true if the feature was stored; false otherwise
+	 * @throws IOException
+	 *             if an error occurs updating the index
+	 */
+	public boolean remove(String id) throws IOException {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+
+			final Location old = index.remove(id);
+			if (old == null)
+				return false;
+
+			writeIndexRecord(indexStream, id, -1, 0, -1);
+			indexStream.flush();
+			garbage += old.length;
+
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the identifiers of all the stored features.
+	 *
+	 * @return a copy of the identifiers
+	 */
+	public List<String> ids() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<String>(index.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of stored features
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the number of bytes in the segment files that are taken by features
+	 * which have been overwritten or removed.
+	 *
+	 * @return the number of bytes that would be reclaimed by
+	 *         {@link #compact()}
+	 */
+	public long getGarbageSize() {
+		lock.readLock().lock();
+		try {
+			return garbage;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrite the live features into new segment files and delete the old
+	 * ones, reclaiming the space taken by overwritten or removed features.
+	 * Other threads are blocked while the store is being compacted. If the
+	 * process fails part-way through, the store is left in its original state
+	 * (apart from some unused segment files that are removed by the next
+	 * compaction).
+	 *
+	 * @return the number of bytes reclaimed
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public long compact() throws IOException {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+
+			final long before = totalSize();
+			final TreeMap<Integer, Segment> oldSegments = segments;
+			final Map<String, Location> newIndex = new HashMap<String, Location>(index.size() * 2);
+
+			segments = new TreeMap<Integer, Segment>();
+			final Segment oldCurrent = current;
+			try {
+				addSegment(oldSegments.lastKey() + 1);
+
+				for (final Map.Entry<String, Location> e : index.entrySet()) {
+					final Location loc = e.getValue();
+
+					if (current.size > 0 && current.size + loc.length > maxSegmentSize) {
+						current.channel.force(false);
+						addSegment(current.number + 1);
+					}
+
+					final long offset = current.size;
+					current.append(loc.segment.read(loc.offset, loc.length));
+					newIndex.put(e.getKey(), new Location(current, offset, loc.length));
+				}
+				current.channel.force(false);
+
+				indexStream.close();
+				writeIndex(new File(dir, INDEX_NAME), newIndex);
+			} catch (final IOException ex) {
+				for (final Segment s : segments.values()) {
+					s.close();
+					s.file.delete();
+				}
+				segments = oldSegments;
+				current = oldCurrent;
+				indexStream.close();
+				indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir,
+						INDEX_NAME), true)));
+				throw ex;
+			}
+
+			indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					new File(dir, INDEX_NAME), true)));
+			index = newIndex;
+			garbage = 0;
+
+			for (final Segment s : oldSegments.values()) {
+				s.close();
+				s.file.delete();
+			}
+			for (final Segment s : segments.values())
+				s.map();
+
+			return before - totalSize();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private long totalSize() {
+		long total = 0;
+		for (final Segment s : segments.values())
+			total += s.size;
+		return total;
+	}
+
+	/**
+	 * Flush all written data to the storage device.
+	 *
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public void flush() throws IOException {
+		lock.writeLock().lock();
+		try {
+			checkOpen();
+
+			indexStream.flush();
+			for (final Segment s : segments.values())
+				s.channel.force(false);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (closed)
+				return;
+
+			flush();
+			closeQuietly();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void closeQuietly() {
+		closed = true;
+
+		if (indexStream != null) {
+			try {
+				indexStream.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+
+		for (final Segment s : segments.values()) {
+			try {
+				s.close();
+			} catch (final IOException e) {
+				// ignore
+			}
+		}
+
+		try {
+			fileLock.release();
+		} catch (final IOException e) {
+			// ignore
+		}
+		try {
+			lockFile.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PackedFeatureStore[" + dir + "]";
+	}
+
+	/**
+	 * Compact the store in the directory given as the first argument.
+	 *
+	 * @param args
+	 *            the command-line arguments
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java " + PackedFeatureStore.class.getName() + " <store-directory>");
+			return;
+		}
+
+		final PackedFeatureStore store = new PackedFeatureStore(new File(args[0]));
+		try {
+			final long reclaimed = store.compact();
+			System.out.println("Compacted " + store.size() + " features; reclaimed " + reclaimed + " bytes");
+		} finally {
+			store.close();
+		}
+	}
+}
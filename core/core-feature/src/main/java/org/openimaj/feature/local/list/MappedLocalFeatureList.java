@@ -0,0 +1,501 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature.local.list;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.openimaj.data.RandomData;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.io.IOUtils;
+
+/**
+ * A {@link LocalFeatureList} backed by a memory-mapped binary file. Unlike
+ * {@link FileLocalFeatureList}, which opens the file and reads through a
+ * stream for every access, records are decoded directly from the mapped
+ * region at computed offsets, so {@link #get(int)} is constant time and the
+ * list can safely be read from multiple threads.
+ * <p>
+ * If the feature vector is a primitive array stored at the end of each record
+ * (as is the case for {@link LocalFeature}s such as SIFT keypoints),
+ * {@link #asDataArray(Object[])} copies the vectors straight out of the
+ * mapped region without decoding the features. Only the binary format is
+ * supported, as ASCII records are not of fixed length.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            the type of local feature
+ */
+public class MappedLocalFeatureList<T extends LocalFeature<?, ?>> extends AbstractList<T>
+		implements
+		LocalFeatureList<T>,
+		RandomAccess
+{
+	private final Class<T> clz;
+	private final int veclen;
+	private final int recordLength;
+	private final int recordsPerBuffer;
+	private final ByteBuffer[] buffers;
+	private final long start;
+	private final int size;
+
+	// the primitive type of the feature vector and its offset within a
+	// record if it can be copied directly; null if not
+	private final Class<?> vectorType;
+	private final int vectorOffset;
+
+	private MappedLocalFeatureList(Class<T> clz, int veclen, int recordLength, int recordsPerBuffer,
+			ByteBuffer[] buffers, long start, int size, Class<?> vectorType, int vectorOffset)
+	{
+		this.clz = clz;
+		this.veclen = veclen;
+		this.recordLength = recordLength;
+		this.recordsPerBuffer = recordsPerBuffer;
+		this.buffers = buffers;
+		this.start = start;
+		this.size = size;
+		this.vectorType = vectorType;
+		this.vectorOffset = vectorOffset;
+	}
+
+	/**
+	 * Memory-map a binary file containing a set of local features of type
+	 * clz. It is assumed that clz can instantiate itself either given a vec
+	 * length or no parameters and furthermore, that this instantiated instance
+	 * can write itself, even when filled with no other data.
+	 *
+	 * @param <T>
+	 *            the local feature class
+	 * @param keypointFile
+	 *            the file
+	 * @param clz
+	 *            the local feature class
+	 * @return a list of local feature backed by the mapped file
+	 * @throws IOException
+	 *             if a problem occurs reading or mapping the file, or the file
+	 *             isn't in the binary format
+	 */
+	public static <T extends LocalFeature<?, ?>> MappedLocalFeatureList<T> read(File keypointFile, Class<T> clz)
+			throws IOException
+	{
+		if (!IOUtils.isBinary(keypointFile, LocalFeatureList.BINARY_HEADER))
+			throw new IOException("Only binary local feature files can be memory-mapped");
+
+		final int[] header = LocalFeatureListUtils.readHeader(keypointFile, true);
+		final int size = header[0];
+		final int veclen = header[1];
+		final int headerLength = header[2];
+
+		final T instance = LocalFeatureListUtils.newInstance(clz, veclen);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		instance.writeBinary(new DataOutputStream(buffer));
+		final int recordLength = buffer.size();
+
+		if (recordLength == 0)
+			throw new IOException("Local features of type " + clz.getName() + " have no binary representation");
+
+		// map in chunks of whole records so that no record spans two buffers
+		final int recordsPerBuffer = Integer.MAX_VALUE / recordLength;
+		final int nbuffers = size == 0 ? 0 : (size + recordsPerBuffer - 1) / recordsPerBuffer;
+		final ByteBuffer[] buffers = new ByteBuffer[nbuffers];
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(keypointFile, "r");
+			final FileChannel channel = raf.getChannel();
+
+			if (channel.size() < headerLength + (long) size * recordLength)
+				throw new EOFException("File " + keypointFile + " is too short for " + size + " features");
+
+			for (int i = 0; i < nbuffers; i++) {
+				final long offset = headerLength + (long) i * recordsPerBuffer * recordLength;
+				final int n = Math.min(recordsPerBuffer, size - i * recordsPerBuffer);
+
+				buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) n * recordLength);
+			}
+		} finally {
+			if (raf != null)
+				try {
+					raf.close();
+				} catch (final IOException e) {
+				}
+		}
+
+		final Object[] layout = vectorLayout(clz, veclen, recordLength);
+
+		return new MappedLocalFeatureList<T>(clz, veclen, recordLength, recordsPerBuffer, buffers, 0, size,
+				(Class<?>) layout[0], (Integer) layout[1]);
+	}
+
+	/**
+	 * Work out whether the feature vector of the given type of feature is a
+	 * primitive array written at the end of each record, by writing a
+	 * prototype filled with a known pattern and checking the tail of the
+	 * record.
+	 *
+	 * @return the primitive type and the offset of the vector in the record,
+	 *         or <code>{null, -1}</code>
+	 */
+	private static <T extends LocalFeature<?, ?>> Object[] vectorLayout(Class<T> clz, int veclen, int recordLength) {
+		final Object[] none = { null, -1 };
+
+		try {
+			final T prototype = LocalFeatureListUtils.newInstance(clz, veclen);
+			final Object vector = prototype.getFeatureVector().getVector();
+
+			if (vector == null || !vector.getClass().isArray() || Array.getLength(vector) != veclen)
+				return none;
+
+			final Class<?> type = vector.getClass().getComponentType();
+			final int bytes = elementSize(type);
+			if (bytes < 0 || veclen * bytes > recordLength)
+				return none;
+
+			for (int i = 0; i < veclen; i++)
+				Array.set(vector, i, pattern(type, i));
+
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			prototype.writeBinary(new DataOutputStream(baos));
+			final byte[] record = baos.toByteArray();
+
+			if (record.length != recordLength)
+				return none;
+
+			final ByteBuffer tail = ByteBuffer.wrap(record, recordLength - veclen * bytes, veclen * bytes);
+			for (int i = 0; i < veclen; i++) {
+				if (!readElement(tail, type).equals(pattern(type, i)))
+					return none;
+			}
+
+			return new Object[] { type, recordLength - veclen * bytes };
+		} catch (final Exception e) {
+			return none;
+		}
+	}
+
+	private static int elementSize(Class<?> type) {
+		if (type == byte.class)
+			return 1;
+		if (type == short.class)
+			return 2;
+		if (type == int.class || type == float.class)
+			return 4;
+		if (type == long.class || type == double.class)
+			return 8;
+		return -1;
+	}
+
+	private static Object pattern(Class<?> type, int i) {
+		final int v = i * 31 + 7;
+
+		if (type == byte.class)
+			return (byte) v;
+		if (type == short.class)
+			return (short) v;
+		if (type == int.class)
+			return v;
+		if (type == long.class)
+			return (long) v;
+		if (type == float.class)
+			return v + 0.5f;
+		return v + 0.5;
+	}
+
+	private static Object readElement(ByteBuffer buffer, Class<?> type) {
+		if (type == byte.class)
+			return buffer.get();
+		if (type == short.class)
+			return buffer.getShort();
+		if (type == int.class)
+			return buffer.getInt();
+		if (type == long.class)
+			return buffer.getLong();
+		if (type == float.class)
+			return buffer.getFloat();
+		return buffer.getDouble();
+	}
+
+	/**
+	 * Get a private view of the buffer containing the given record, positioned
+	 * at the start of the record.
+	 */
+	private ByteBuffer recordBuffer(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		final long record = start + index;
+		final ByteBuffer buffer = buffers[(int) (record / recordsPerBuffer)].duplicate();
+		buffer.position((int) (record % recordsPerBuffer) * recordLength);
+
+		return buffer;
+	}
+
+	@Override
+	public T get(int index) {
+		final T feature = LocalFeatureListUtils.newInstance(clz, veclen);
+
+		try {
+			feature.readBinary(new ByteBufferDataInput(recordBuffer(index)));
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		return feature;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int vecLength() {
+		return veclen;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Q> Q[] asDataArray(Q[] a) {
+		if (a.length < size) {
+			a = (Q[]) Array.newInstance(a.getClass().getComponentType(), size);
+		}
+
+		if (vectorType == null) {
+			for (int i = 0; i < size; i++)
+				a[i] = (Q) get(i).getFeatureVector().getVector();
+
+			return a;
+		}
+
+		for (int i = 0; i < size; i++) {
+			final ByteBuffer buffer = recordBuffer(i);
+			buffer.position(buffer.position() + vectorOffset);
+
+			a[i] = (Q) copyVector(buffer);
+		}
+
+		return a;
+	}
+
+	private Object copyVector(ByteBuffer buffer) {
+		if (vectorType == byte.class) {
+			final byte[] v = new byte[veclen];
+			buffer.get(v);
+			return v;
+		} else if (vectorType == short.class) {
+			final short[] v = new short[veclen];
+			buffer.asShortBuffer().get(v);
+			return v;
+		} else if (vectorType == int.class) {
+			final int[] v = new int[veclen];
+			buffer.asIntBuffer().get(v);
+			return v;
+		} else if (vectorType == long.class) {
+			final long[] v = new long[veclen];
+			buffer.asLongBuffer().get(v);
+			return v;
+		} else if (vectorType == float.class) {
+			final float[] v = new float[veclen];
+			buffer.asFloatBuffer().get(v);
+			return v;
+		} else {
+			final double[] v = new double[veclen];
+			buffer.asDoubleBuffer().get(v);
+			return v;
+		}
+	}
+
+	@Override
+	public MappedLocalFeatureList<T> subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "), Size: " + size);
+
+		return new MappedLocalFeatureList<T>(clz, veclen, recordLength, recordsPerBuffer, buffers, start + fromIndex,
+				toIndex - fromIndex, vectorType, vectorOffset);
+	}
+
+	@Override
+	public MemoryLocalFeatureList<T> randomSubList(int nelem) {
+		final int[] rnds = RandomData.getUniqueRandomInts(Math.min(nelem, size), 0, size);
+
+		final MemoryLocalFeatureList<T> list = new MemoryLocalFeatureList<T>(veclen, rnds.length);
+		for (final int idx : rnds)
+			list.add(get(idx));
+
+		return list;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		LocalFeatureListUtils.writeBinary(out, this);
+	}
+
+	@Override
+	public void writeASCII(PrintWriter out) throws IOException {
+		LocalFeatureListUtils.writeASCII(out, this);
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return LocalFeatureList.BINARY_HEADER;
+	}
+
+	@Override
+	public String asciiHeader() {
+		return "";
+	}
+
+	/**
+	 * A {@link DataInput} that reads from a {@link ByteBuffer}. Both use
+	 * big-endian byte order, so records written with a {@link DataOutput} can
+	 * be decoded directly.
+	 */
+	private static class ByteBufferDataInput implements DataInput {
+		private final ByteBuffer buffer;
+
+		ByteBufferDataInput(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void readFully(byte[] b) throws IOException {
+			readFully(b, 0, b.length);
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			if (buffer.remaining() < len)
+				throw new EOFException();
+			buffer.get(b, off, len);
+		}
+
+		@Override
+		public int skipBytes(int n) throws IOException {
+			final int skip = Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + skip);
+			return skip;
+		}
+
+		@Override
+		public boolean readBoolean() throws IOException {
+			return readByte() != 0;
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			if (!buffer.hasRemaining())
+				throw new EOFException();
+			return buffer.get();
+		}
+
+		@Override
+		public int readUnsignedByte() throws IOException {
+			return readByte() & 0xff;
+		}
+
+		@Override
+		public short readShort() throws IOException {
+			if (buffer.remaining() < 2)
+				throw new EOFException();
+			return buffer.getShort();
+		}
+
+		@Override
+		public int readUnsignedShort() throws IOException {
+			return readShort() & 0xffff;
+		}
+
+		@Override
+		public char readChar() throws IOException {
+			if (buffer.remaining() < 2)
+				throw new EOFException();
+			return buffer.getChar();
+		}
+
+		@Override
+		public int readInt() throws IOException {
+			if (buffer.remaining() < 4)
+				throw new EOFException();
+			return buffer.getInt();
+		}
+
+		@Override
+		public long readLong() throws IOException {
+			if (buffer.remaining() < 8)
+				throw new EOFException();
+			return buffer.getLong();
+		}
+
+		@Override
+		public float readFloat() throws IOException {
+			if (buffer.remaining() < 4)
+				throw new EOFException();
+			return buffer.getFloat();
+		}
+
+		@Override
+		public double readDouble() throws IOException {
+			if (buffer.remaining() < 8)
+				throw new EOFException();
+			return buffer.getDouble();
+		}
+
+		@Override
+		public String readLine() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String readUTF() throws IOException {
+			final int len = readUnsignedShort();
+			final byte[] bytes = new byte[len + 2];
+			bytes[0] = (byte) (len >>> 8);
+			bytes[1] = (byte) len;
+			readFully(bytes, 2, len);
+
+			return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+		}
+	}
+}
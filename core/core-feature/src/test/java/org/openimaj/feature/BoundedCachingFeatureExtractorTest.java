@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.openimaj.data.identity.Identifiable;
+
+/**
+ * Tests for the {@link BoundedCachingFeatureExtractor}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class BoundedCachingFeatureExtractorTest {
+	static class Item implements Identifiable {
+		String id;
+
+		Item(String id) {
+			this.id = id;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+	}
+
+	static class CountingExtractor implements FeatureExtractor<double[], Item> {
+		AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public double[] extractFeature(Item object) {
+			count.incrementAndGet();
+			return new double[object.getID().length()];
+		}
+	}
+
+	/**
+	 * Test that the least recently used features are evicted
+	 */
+	@Test
+	public void testEviction() {
+		final CountingExtractor fe = new CountingExtractor();
+		final BoundedCachingFeatureExtractor<double[], Item> cache = new BoundedCachingFeatureExtractor<double[], Item>(
+				fe, 2);
+
+		final Item a = new Item("a");
+		final Item b = new Item("b");
+		final Item c = new Item("c");
+
+		final double[] fa = cache.extractFeature(a);
+		cache.extractFeature(b);
+		assertSame(fa, cache.extractFeature(a));
+		cache.extractFeature(c);
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(3, fe.count.get());
+
+		// b was least recently used, so should have been evicted
+		assertSame(fa, cache.extractFeature(a));
+		cache.extractFeature(b);
+		assertEquals(4, fe.count.get());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+	}
+
+	/**
+	 * Test that the cache is bounded by weight
+	 */
+	@Test
+	public void testWeight() {
+		final CountingExtractor fe = new CountingExtractor();
+		final BoundedCachingFeatureExtractor<double[], Item> cache = new BoundedCachingFeatureExtractor<double[], Item>(
+				fe, 5, new BoundedCachingFeatureExtractor.Weigher<double[]>() {
+					@Override
+					public long weigh(double[] feature) {
+						return feature.length;
+					}
+				});
+
+		cache.extractFeature(new Item("aaa"));
+		cache.extractFeature(new Item("bb"));
+		assertEquals(5, cache.weight());
+		assertEquals(2, cache.size());
+
+		cache.extractFeature(new Item("c"));
+		assertEquals(3, cache.weight());
+		assertEquals(2, cache.size());
+
+		cache.invalidateAll();
+		assertEquals(0, cache.weight());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Test that concurrent requests for the same object only extract the
+	 * feature once
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSingleFlight() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger count = new AtomicInteger();
+
+		final BoundedCachingFeatureExtractor<double[], Item> cache = new BoundedCachingFeatureExtractor<double[], Item>(
+				new FeatureExtractor<double[], Item>() {
+					@Override
+					public double[] extractFeature(Item object) {
+						count.incrementAndGet();
+						started.countDown();
+						try {
+							release.await();
+						} catch (final InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						return new double[1];
+					}
+				}, 10);
+
+		final int nThreads = 4;
+		final ExecutorService exec = Executors.newFixedThreadPool(nThreads);
+		try {
+			final List<Future<double[]>> results = new ArrayList<Future<double[]>>();
+			for (int i = 0; i < nThreads; i++) {
+				results.add(exec.submit(new Callable<double[]>() {
+					@Override
+					public double[] call() throws Exception {
+						return cache.extractFeature(new Item("x"));
+					}
+				}));
+			}
+
+			started.await();
+			Thread.sleep(100);
+			release.countDown();
+
+			final double[] first = results.get(0).get();
+			for (final Future<double[]> f : results)
+				assertSame(first, f.get());
+
+			assertEquals(1, count.get());
+			assertEquals(1, cache.getMissCount());
+			assertEquals(nThreads - 1, cache.getHitCount());
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+}
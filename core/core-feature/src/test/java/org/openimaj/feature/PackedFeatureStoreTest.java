@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.feature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link PackedFeatureStore}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class PackedFeatureStoreTest {
+	/**
+	 * Temporary folder for the stores
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static DoubleFV fv(int id) {
+		final DoubleFV fv = new DoubleFV(10);
+		for (int i = 0; i < fv.values.length; i++)
+			fv.values[i] = id * 100 + i;
+		return fv;
+	}
+
+	private static void check(PackedFeatureStore store, int id) throws IOException {
+		assertArrayEquals(fv(id).values, store.get("f" + id, DoubleFV.class).values, 0);
+	}
+
+	/**
+	 * Test storing, replacing, removing and re-opening
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testStore() throws IOException {
+		final File dir = folder.newFolder();
+
+		PackedFeatureStore store = new PackedFeatureStore(dir, 1000);
+		for (int i = 0; i < 100; i++)
+			store.put("f" + i, fv(i));
+
+		// each feature is 84 bytes, so there should be several segments
+		assertTrue(dir.list().length > 5);
+
+		for (int i = 0; i < 100; i++)
+			check(store, i);
+
+		store.put("f0", fv(1));
+		assertTrue(store.remove("f2"));
+		assertFalse(store.remove("f2"));
+		assertNull(store.get("f2", DoubleFV.class));
+		assertEquals(99, store.size());
+		store.close();
+
+		store = new PackedFeatureStore(dir, 1000);
+		assertEquals(99, store.size());
+		assertArrayEquals(fv(1).values, store.get("f0", DoubleFV.class).values, 0);
+		assertNull(store.get("f2", DoubleFV.class));
+		for (int i = 3; i < 100; i++)
+			check(store, i);
+		store.close();
+	}
+
+	/**
+	 * Test that a directory can only be opened once
+	 *
+	 * @throws IOException
+	 */
+	@Test(expected = IOException.class)
+	public void testLocked() throws IOException {
+		final File dir = folder.newFolder();
+
+		final PackedFeatureStore store = new PackedFeatureStore(dir);
+		try {
+			new PackedFeatureStore(dir);
+		} finally {
+			store.close();
+		}
+	}
+
+	/**
+	 * Test compaction
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCompact() throws IOException {
+		final File dir = folder.newFolder();
+
+		PackedFeatureStore store = new PackedFeatureStore(dir, 1000);
+		for (int i = 0; i < 50; i++)
+			store.put("f" + i, fv(i));
+		for (int i = 0; i < 50; i += 2)
+			store.remove("f" + i);
+		for (int i = 1; i < 10; i += 2)
+			store.put("f" + i, fv(i));
+
+		final long garbage = store.getGarbageSize();
+		assertEquals(30 * 84, garbage);
+		assertEquals(garbage, store.compact());
+		assertEquals(0, store.getGarbageSize());
+
+		for (int i = 1; i < 50; i += 2)
+			check(store, i);
+		store.put("f0", fv(0));
+		store.close();
+
+		store = new PackedFeatureStore(dir, 1000);
+		assertEquals(26, store.size());
+		check(store, 0);
+		for (int i = 1; i < 50; i += 2)
+			check(store, i);
+		store.close();
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.util.Arrays;
+
+/**
+ * Class representing a single-band 8-bit image; that is an image where each
+ * pixel is an unsigned byte in the range 0 to {@link #MAX_VALUE}.
+ * <p>
+ * The pixels are stored in a single flat array in row-major order (the pixel
+ * at <code>(x, y)</code> is at index <code>y * width + x</code>), which allows
+ * a {@link ByteImage} to share its data with a greyscale
+ * {@link java.awt.image.BufferedImage} without copying (see
+ * {@link ImageUtilities#createByteImage(java.awt.image.BufferedImage)}), and
+ * means that it uses a quarter of the memory of an equivalent {@link FImage}.
+ * <p>
+ * Pixel values correspond to those of an {@link FImage} scaled by
+ * {@link #MAX_VALUE}; {@link #toFImage()} and {@link #ByteImage(FImage)}
+ * convert between the two. The pixel operations are those of
+ * {@link UnsignedIntegerImage}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ByteImage extends UnsignedIntegerImage<ByteImage> {
+	private static final long serialVersionUID = 1L;
+
+	/** The maximum value a pixel can take */
+	public static final int MAX_VALUE = 255;
+
+	/** The underlying pixels in row-major order */
+	public byte[] pixels;
+
+	/**
+	 * Create an empty {@link ByteImage} of the given size.
+	 * 
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 */
+	public ByteImage(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		this.pixels = new byte[width * height];
+	}
+
+	/**
+	 * Create a {@link ByteImage} backed by the given array of pixels in
+	 * row-major order. The array is used directly and is not copied.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 * @throws IllegalArgumentException
+	 *             if the length of the array is not the width multiplied by
+	 *             the height
+	 */
+	public ByteImage(final byte[] pixels, final int width, final int height) {
+		if (pixels.length != width * height)
+			throw new IllegalArgumentException("The length of the array must be width * height");
+
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Create a {@link ByteImage} from an array of packed ARGB integers. The
+	 * pixels are converted to grey-levels in the same way as
+	 * {@link FImage#FImage(int[], int, int)}.
+	 * 
+	 * @param data
+	 *            array of packed ARGB pixels
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 */
+	public ByteImage(final int[] data, final int width, final int height) {
+		this(width, height);
+		this.internalAssign(data, width, height);
+	}
+
+	/**
+	 * Create a {@link ByteImage} from an {@link FImage} with values in the
+	 * range 0..1. Values are scaled by {@link #MAX_VALUE}, truncated and
+	 * clipped in the same way as {@link FImage#toByteImage()}.
+	 * 
+	 * @param image
+	 *            the image to convert
+	 */
+	public ByteImage(final FImage image) {
+		this(image.width, image.height);
+		this.assign(image);
+	}
+
+	@Override
+	public int getMaxValue() {
+		return MAX_VALUE;
+	}
+
+	@Override
+	protected int get(final int index) {
+		return pixels[index] & 0xff;
+	}
+
+	@Override
+	protected void set(final int index, final int value) {
+		pixels[index] = (byte) value;
+	}
+
+	@Override
+	protected void copy(final int srcPos, final ByteImage dest, final int destPos, final int length) {
+		System.arraycopy(pixels, srcPos, dest.pixels, destPos, length);
+	}
+
+	@Override
+	protected void fill(final int fromIndex, final int toIndex, final int value) {
+		Arrays.fill(pixels, fromIndex, toIndex, (byte) value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.SingleBandImage#clone()
+	 */
+	@Override
+	public ByteImage clone() {
+		return new ByteImage(pixels.clone(), width, height);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#internalAssign(org.openimaj.image.Image)
+	 */
+	@Override
+	public ByteImage internalAssign(final ByteImage im) {
+		this.pixels = im.pixels;
+		this.width = im.width;
+		this.height = im.height;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#newInstance(int, int)
+	 */
+	@Override
+	public ByteImage newInstance(final int width, final int height) {
+		return new ByteImage(width, height);
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof ByteImage))
+			return false;
+
+		final ByteImage that = (ByteImage) o;
+		return that.width == width && that.height == height && Arrays.equals(that.pixels, pixels);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * width + height) + Arrays.hashCode(pixels);
+	}
+}
@@ -30,6 +30,9 @@
 package org.openimaj.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -42,6 +45,7 @@ import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.spi.IIORegistry;
 import javax.imageio.stream.ImageInputStream;
 import javax.media.jai.JAI;
@@ -238,6 +242,233 @@ class ExtendedImageIO {
 		return read(istream);
 	}
 
+	/**
+	 * Decode a reduced-resolution version of the image in the given file. See
+	 * {@link #read(InputStream, int, boolean)} for details.
+	 *
+	 * @param input
+	 *            a <code>File</code> to read from.
+	 * @param maxSize
+	 *            the target size of the longest side of the image
+	 * @param grey
+	 *            if true, ask the decoder for greyscale output
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input, or <code>null</code>.
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(File input, int maxSize, boolean grey) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+		if (!input.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(input);
+			return read(stream, maxSize, grey);
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Decode a reduced-resolution version of the image in the given stream.
+	 * The image is decoded with the largest integral source subsampling factor
+	 * that keeps its longest side at least <code>maxSize</code> pixels (unless
+	 * it is smaller than that to begin with), so the longest side of the
+	 * result is less than twice <code>maxSize</code>. Subsampling takes place
+	 * in the decoder, so the full-resolution image is never held in memory.
+	 * Subsampling is by point sampling, so the result should be resampled
+	 * with a proper filter if the exact target size is required.
+	 * <p>
+	 * If <code>grey</code> is true and the decoder is known to produce the
+	 * luminance directly (as is the case for the JDK's own JPEG decoder, which
+	 * just skips the chroma components), the returned image will be of type
+	 * {@link BufferedImage#TYPE_BYTE_GRAY}. Otherwise the image is decoded in
+	 * colour, and must be converted by the caller.
+	 * <p>
+	 * If none of the registered readers can decode the stream, the image is
+	 * decoded at full resolution as by {@link #read(InputStream)} and then
+	 * subsampled in the same way.
+	 *
+	 * @param input
+	 *            an <code>InputStream</code> to read from.
+	 * @param maxSize
+	 *            the target size of the longest side of the image
+	 * @param grey
+	 *            if true, ask the decoder for greyscale output
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input, or <code>null</code>.
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(InputStream input, int maxSize, boolean grey) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+
+		final NonClosableInputStream buffer = new NonClosableInputStream(input);
+		buffer.mark(100 * 1024 * 1024); // 100mb is big enough?
+
+		BufferedImage bi;
+		try {
+			bi = readSubsampled(buffer, maxSize, grey);
+		} catch (final Exception ex) {
+			bi = null;
+		}
+
+		if (bi == null) {
+			buffer.reset();
+			bi = read(buffer);
+
+			if (bi != null)
+				bi = subsample(bi, getSubsampling(bi.getWidth(), bi.getHeight(), maxSize));
+		}
+
+		return bi;
+	}
+
+	/**
+	 * Decode a reduced-resolution version of the image at the given URL. See
+	 * {@link #read(InputStream, int, boolean)} for details.
+	 *
+	 * @param input
+	 *            a <code>URL</code> to read from.
+	 * @param maxSize
+	 *            the target size of the longest side of the image
+	 * @param grey
+	 *            if true, ask the decoder for greyscale output
+	 * @return a <code>BufferedImage</code> containing the decoded contents of
+	 *         the input, or <code>null</code>.
+	 * @exception IOException
+	 *                if an error occurs during reading.
+	 */
+	public static BufferedImage read(URL input, int maxSize, boolean grey) throws IOException {
+		if (input == null) {
+			throw new IllegalArgumentException("input == null!");
+		}
+
+		InputStream istream = null;
+		try {
+			istream = input.openStream();
+		} catch (final IOException e) {
+			throw new IIOException("Can't get input stream from URL!", e);
+		}
+
+		return read(istream, maxSize, grey);
+	}
+
+	/**
+	 * Get the subsampling factor for an image of the given size
+	 */
+	static int getSubsampling(int width, int height, int maxSize) {
+		return Math.max(1, Math.max(width, height) / maxSize);
+	}
+
+	/**
+	 * Readers that are known to return the luminance samples when they are
+	 * asked for {@link BufferedImage#TYPE_BYTE_GRAY} output. Other readers
+	 * (for example the TwelveMonkeys JPEG reader) may offer that type but
+	 * convert the colour image in some other way, so their output is decoded
+	 * in colour and converted afterwards.
+	 */
+	private static final String[] LUMINANCE_READERS = {
+			"com.sun.imageio.plugins.jpeg.JPEGImageReader"
+	};
+
+	private static boolean decodesLuminance(ImageReader reader) {
+		final String name = reader.getClass().getName();
+
+		for (final String r : LUMINANCE_READERS)
+			if (r.equals(name))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Try each of the registered readers for the stream in turn, asking them
+	 * to subsample during decoding. Returns null if there are no readers for
+	 * the stream.
+	 */
+	private static BufferedImage readSubsampled(BufferedInputStream binput, int maxSize, boolean grey)
+			throws IOException
+	{
+		ImageInputStream stream = ImageIO.createImageInputStream(binput);
+		final Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+
+		IOException error = null;
+		while (readers.hasNext()) {
+			final ImageReader reader = readers.next();
+
+			try {
+				if (stream == null) {
+					binput.reset();
+					stream = ImageIO.createImageInputStream(binput);
+				}
+				reader.setInput(stream, true, true);
+
+				final ImageReadParam param = reader.getDefaultReadParam();
+				final int s = getSubsampling(reader.getWidth(0), reader.getHeight(0), maxSize);
+				param.setSourceSubsampling(s, s, 0, 0);
+
+				if (grey && decodesLuminance(reader)) {
+					final Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+					while (types.hasNext()) {
+						final ImageTypeSpecifier type = types.next();
+
+						if (type.getBufferedImageType() == BufferedImage.TYPE_BYTE_GRAY) {
+							param.setDestinationType(type);
+							break;
+						}
+					}
+				}
+
+				return reader.read(0, param);
+			} catch (final IOException e) {
+				error = e;
+				stream = null;
+			} finally {
+				reader.dispose();
+			}
+		}
+
+		if (error != null)
+			throw error;
+
+		return null;
+	}
+
+	/**
+	 * Point-sample every s-th pixel of every s-th row of the image, in the
+	 * same way as {@link ImageReadParam#setSourceSubsampling}.
+	 */
+	private static BufferedImage subsample(BufferedImage image, int s) {
+		if (s == 1)
+			return image;
+
+		final int width = (image.getWidth() + s - 1) / s;
+		final int height = (image.getHeight() + s - 1) / s;
+		final ColorModel cm = image.getColorModel();
+		final Raster in = image.getRaster();
+		final WritableRaster out = cm.createCompatibleWritableRaster(width, height);
+
+		Object pixel = null;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				pixel = in.getDataElements(x * s, y * s, pixel);
+				out.setDataElements(x, y, pixel);
+			}
+		}
+
+		return new BufferedImage(cm, out, image.isAlphaPremultiplied(), null);
+	}
+
 	/**
 	 * Returns a <code>BufferedImage</code> as the result of decoding a supplied
 	 * <code>ImageInputStream</code> with an <code>ImageReader</code> chosen
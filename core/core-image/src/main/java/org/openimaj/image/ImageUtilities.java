@@ -30,9 +30,16 @@
 package org.openimaj.image;
 
 import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -303,6 +310,238 @@ public class ImageUtilities {
 		return new MBFImage(data, bimg.getWidth(), bimg.getHeight(), alpha);
 	}
 
+	/**
+	 * Create a {@link ByteImage} from a buffered image. If the buffered image
+	 * is of type {@link BufferedImage#TYPE_BYTE_GRAY} and its raster is stored
+	 * contiguously (as is the case for images created with the
+	 * {@link BufferedImage} constructor or read by {@link ImageIO}), then the
+	 * returned image shares the data array of the raster and no copy is made;
+	 * changes to either image will be visible in the other. Other greyscale
+	 * rasters are copied a row at a time, and images of any other type are
+	 * converted to grey-levels in the same way as
+	 * {@link #createFImage(BufferedImage)}.
+	 * 
+	 * @param image
+	 *            the image
+	 * @return a {@link ByteImage} representation of the input image
+	 */
+	public static ByteImage createByteImage(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+
+		if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			final WritableRaster raster = image.getRaster();
+			final int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+			final int offset = getDataOffset(raster);
+			final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+			if (offset == 0 && stride == width && data.length == width * height)
+				return new ByteImage(data, width, height);
+
+			final ByteImage out = new ByteImage(width, height);
+			for (int y = 0; y < height; y++)
+				System.arraycopy(data, offset + y * stride, out.pixels, y * width, width);
+
+			return out;
+		}
+
+		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
+		final int[] data = bimg.getRGB(0, 0, width, height, null, 0, width);
+
+		return new ByteImage(data, width, height);
+	}
+
+	/**
+	 * Create a {@link ShortImage} from a buffered image. If the buffered image
+	 * is of type {@link BufferedImage#TYPE_USHORT_GRAY} and its raster is
+	 * stored contiguously, then the returned image shares the data array of
+	 * the raster and no copy is made; changes to either image will be visible
+	 * in the other. Other 16-bit greyscale rasters are copied a row at a time,
+	 * and images of any other type are converted to grey-levels in the same way
+	 * as {@link #createFImage(BufferedImage)} and scaled to the 16-bit range.
+	 * 
+	 * @param image
+	 *            the image
+	 * @return a {@link ShortImage} representation of the input image
+	 */
+	public static ShortImage createShortImage(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+
+		if (image.getType() == BufferedImage.TYPE_USHORT_GRAY) {
+			final WritableRaster raster = image.getRaster();
+			final int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+			final int offset = getDataOffset(raster);
+			final short[] data = ((DataBufferUShort) raster.getDataBuffer()).getData();
+
+			if (offset == 0 && stride == width && data.length == width * height)
+				return new ShortImage(data, width, height);
+
+			final ShortImage out = new ShortImage(width, height);
+			for (int y = 0; y < height; y++)
+				System.arraycopy(data, offset + y * stride, out.pixels, y * width, width);
+
+			return out;
+		}
+
+		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
+		final int[] data = bimg.getRGB(0, 0, width, height, null, 0, width);
+
+		return new ShortImage(data, width, height);
+	}
+
+	/**
+	 * Create an {@link MBByteImage} from a buffered image. Images of type
+	 * {@link BufferedImage#TYPE_3BYTE_BGR} and
+	 * {@link BufferedImage#TYPE_4BYTE_ABGR} (the types produced by decoding
+	 * most JPEG and PNG files) are de-interleaved directly from their rasters
+	 * in a single pass; images of any other type are converted through an ARGB
+	 * working image in the same way as
+	 * {@link #createMBFImage(BufferedImage, boolean)}.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param alpha
+	 *            should the resultant image have an alpha channel
+	 * @return an {@link MBByteImage} representation of the input image
+	 */
+	public static MBByteImage createMBByteImage(final BufferedImage image, final boolean alpha) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int type = image.getType();
+
+		if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+			final MBByteImage out = new MBByteImage(width, height, alpha ? ColourSpace.RGBA : ColourSpace.RGB);
+			final WritableRaster raster = image.getRaster();
+			final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+			final int stride = sm.getScanlineStride();
+			final int pixelStride = sm.getPixelStride();
+			final int offset = getDataOffset(raster);
+			final int[] bandOffsets = sm.getBandOffsets();
+			final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+			// the raster bands are ordered R, G, B(, A)
+			final int nbands = Math.min(out.numBands(), raster.getNumBands());
+			for (int b = 0; b < nbands; b++) {
+				final byte[] band = out.getBand(b).pixels;
+
+				for (int y = 0, i = 0; y < height; y++) {
+					for (int x = 0, j = offset + y * stride + bandOffsets[b]; x < width; x++, i++, j += pixelStride)
+						band[i] = data[j];
+				}
+			}
+
+			if (nbands < out.numBands())
+				out.getBand(3).fill(ByteImage.MAX_VALUE);
+
+			return out;
+		}
+
+		final BufferedImage bimg = ImageUtilities.createWorkingImage(image);
+		final int[] data = bimg.getRGB(0, 0, width, height, null, 0, width);
+
+		return new MBByteImage(data, width, height, alpha);
+	}
+
+	/**
+	 * Get the index in the data array of the first sample of the top-left
+	 * pixel of a raster with a {@link ComponentSampleModel}, taking into
+	 * account any translation of the raster within its data buffer (as is the
+	 * case for sub-images).
+	 */
+	private static int getDataOffset(final Raster raster) {
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+
+		return raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * sm.getScanlineStride()
+				- raster.getSampleModelTranslateX() * sm.getPixelStride();
+	}
+
+	/**
+	 * Create an {@link FImage} from a decoded image, reading the samples of
+	 * {@link BufferedImage#TYPE_BYTE_GRAY} images directly from the raster.
+	 * Other types are converted with {@link #createFImage(BufferedImage)}.
+	 */
+	private static FImage createFImageFromRaster(final BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_BYTE_GRAY)
+			return createFImage(image);
+
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final WritableRaster raster = image.getRaster();
+		final int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+		final int offset = getDataOffset(raster);
+		final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+		final FImage out = new FImage(width, height);
+		for (int y = 0; y < height; y++) {
+			final float[] row = out.pixels[y];
+
+			for (int x = 0, j = offset + y * stride; x < width; x++, j++)
+				row[x] = BYTE_TO_FLOAT_LUT[data[j] & 0xff];
+		}
+
+		return out;
+	}
+
+	/**
+	 * Create an RGB(A) {@link MBFImage} from a decoded image, de-interleaving
+	 * the samples of {@link BufferedImage#TYPE_3BYTE_BGR} and
+	 * {@link BufferedImage#TYPE_4BYTE_ABGR} images directly from the raster.
+	 * Other types are converted with
+	 * {@link #createMBFImage(BufferedImage, boolean)}.
+	 */
+	private static MBFImage createMBFImageFromRaster(final BufferedImage image, final boolean alpha) {
+		final int type = image.getType();
+		if (type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR)
+			return createMBFImage(image, alpha);
+
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final MBFImage out = new MBFImage(width, height, alpha ? ColourSpace.RGBA : ColourSpace.RGB);
+		final WritableRaster raster = image.getRaster();
+		final ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		final int stride = sm.getScanlineStride();
+		final int pixelStride = sm.getPixelStride();
+		final int offset = getDataOffset(raster);
+		final int[] bandOffsets = sm.getBandOffsets();
+		final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+
+		// the raster bands are ordered R, G, B(, A)
+		final int nbands = Math.min(out.numBands(), raster.getNumBands());
+		for (int b = 0; b < nbands; b++) {
+			final float[][] band = out.getBand(b).pixels;
+
+			for (int y = 0; y < height; y++) {
+				final float[] row = band[y];
+
+				for (int x = 0, j = offset + y * stride + bandOffsets[b]; x < width; x++, j += pixelStride)
+					row[x] = BYTE_TO_FLOAT_LUT[data[j] & 0xff];
+			}
+		}
+
+		if (nbands < out.numBands())
+			out.getBand(3).fill(1f);
+
+		return out;
+	}
+
+	private static MBFImage createMBFImageFromRaster(final BufferedImage image, final ColourSpace colourSpace) {
+		if (colourSpace == ColourSpace.LUMINANCE_NTSC)
+			return new MBFImage(colourSpace, createFImageFromRaster(image));
+
+		if (colourSpace == ColourSpace.RGBA)
+			return createMBFImageFromRaster(image, true);
+
+		final MBFImage rgb = createMBFImageFromRaster(image, false);
+
+		return colourSpace == ColourSpace.RGB ? rgb : ColourSpace.convert(rgb, colourSpace);
+	}
+
+	private static void checkMaxSize(final int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("The maximum size must be positive");
+	}
+
 	/**
 	 * Reads an {@link FImage} from the given file.
 	 * 
@@ -423,6 +662,156 @@ public class ImageUtilities {
 		return ImageUtilities.createMBFImage(ExtendedImageIO.read(input), true);
 	}
 
+	/**
+	 * Reads a reduced-resolution {@link FImage} from the given file. The
+	 * decoder subsamples the image by the largest integral factor that keeps
+	 * its longest side at least <code>maxSize</code> pixels (so the longest
+	 * side of the result is less than twice <code>maxSize</code>), and the
+	 * full-resolution image is never decoded into memory. Where the decoder is
+	 * known to support it (as the JDK's JPEG decoder does), the image is
+	 * decoded directly to grey-levels, which are the luminance samples of the
+	 * image; the pixel values are then copied straight from the decoded raster
+	 * rather than through an ARGB working image.
+	 * <p>
+	 * Subsampling is by point sampling, so if an image of a specific size is
+	 * required, the result should be resampled (e.g. with a
+	 * <code>ResizeProcessor</code>) to that size.
+	 * 
+	 * @param input
+	 *            The file to read the {@link FImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static FImage readF(final File input, final int maxSize) throws IOException {
+		checkMaxSize(maxSize);
+
+		return createFImageFromRaster(ExtendedImageIO.read(input, maxSize, true));
+	}
+
+	/**
+	 * Reads a reduced-resolution {@link FImage} from the given input stream. See
+	 * {@link #readF(File, int)} for details.
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link FImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static FImage readF(final InputStream input, final int maxSize) throws IOException {
+		checkMaxSize(maxSize);
+
+		return createFImageFromRaster(ExtendedImageIO.read(input, maxSize, true));
+	}
+
+	/**
+	 * Reads a reduced-resolution {@link FImage} from the given URL. See
+	 * {@link #readF(File, int)} for details.
+	 * 
+	 * @param input
+	 *            The URL to read the {@link FImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @return An {@link FImage}
+	 * @throws IOException
+	 *             if the URL stream cannot be read
+	 */
+	public static FImage readF(final URL input, final int maxSize) throws IOException {
+		checkMaxSize(maxSize);
+
+		return createFImageFromRaster(ExtendedImageIO.read(input, maxSize, true));
+	}
+
+	/**
+	 * Reads a reduced-resolution {@link MBFImage} in the given colour space
+	 * from the given file. The decoder subsamples the image by the largest
+	 * integral factor that keeps its longest side at least
+	 * <code>maxSize</code> pixels (so the longest side of the result is less
+	 * than twice <code>maxSize</code>), and the full-resolution image is never
+	 * decoded into memory. The bands of the decoded raster are copied straight
+	 * into the image rather than through an ARGB working image. For the
+	 * {@link ColourSpace#LUMINANCE_NTSC} colour space, the image is decoded
+	 * directly to grey-levels where the decoder is known to support it (as
+	 * the JDK's JPEG decoder does); colour spaces other than {@link ColourSpace#RGB},
+	 * {@link ColourSpace#RGBA} and {@link ColourSpace#LUMINANCE_NTSC} are
+	 * converted from RGB.
+	 * <p>
+	 * Subsampling is by point sampling, so if an image of a specific size is
+	 * required, the result should be resampled (e.g. with a
+	 * <code>ResizeProcessor</code>) to that size.
+	 * 
+	 * @param input
+	 *            The file to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @param colourSpace
+	 *            The colour space of the resultant image.
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static MBFImage readMBF(final File input, final int maxSize, final ColourSpace colourSpace)
+			throws IOException
+	{
+		checkMaxSize(maxSize);
+
+		final boolean grey = colourSpace == ColourSpace.LUMINANCE_NTSC;
+		return createMBFImageFromRaster(ExtendedImageIO.read(input, maxSize, grey), colourSpace);
+	}
+
+	/**
+	 * Reads a reduced-resolution {@link MBFImage} in the given colour space
+	 * from the given input stream. See {@link #readMBF(File, int, ColourSpace)} for
+	 * details.
+	 * 
+	 * @param input
+	 *            The input stream to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @param colourSpace
+	 *            The colour space of the resultant image.
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static MBFImage readMBF(final InputStream input, final int maxSize, final ColourSpace colourSpace)
+			throws IOException
+	{
+		checkMaxSize(maxSize);
+
+		final boolean grey = colourSpace == ColourSpace.LUMINANCE_NTSC;
+		return createMBFImageFromRaster(ExtendedImageIO.read(input, maxSize, grey), colourSpace);
+	}
+
+	/**
+	 * Reads a reduced-resolution {@link MBFImage} in the given colour space
+	 * from the given URL. See {@link #readMBF(File, int, ColourSpace)} for
+	 * details.
+	 * 
+	 * @param input
+	 *            The URL to read the {@link MBFImage} from.
+	 * @param maxSize
+	 *            The target size of the longest side of the image.
+	 * @param colourSpace
+	 *            The colour space of the resultant image.
+	 * @return An {@link MBFImage}
+	 * @throws IOException
+	 *             if the URL stream cannot be read
+	 */
+	public static MBFImage readMBF(final URL input, final int maxSize, final ColourSpace colourSpace)
+			throws IOException
+	{
+		checkMaxSize(maxSize);
+
+		final boolean grey = colourSpace == ColourSpace.LUMINANCE_NTSC;
+		return createMBFImageFromRaster(ExtendedImageIO.read(input, maxSize, grey), colourSpace);
+	}
+
 	/**
 	 * Checks whether the width and height of all the given images match.
 	 * 
@@ -645,6 +1034,10 @@ public class ImageUtilities {
 			return ImageUtilities.createBufferedImageForDisplay((MBFImage) img);
 		else if (img instanceof FImage)
 			return ImageUtilities.createBufferedImage((FImage) img);
+		else if (img instanceof ByteImage)
+			return ImageUtilities.createBufferedImage((ByteImage) img);
+		else if (img instanceof ShortImage)
+			return ImageUtilities.createBufferedImage((ShortImage) img);
 		return ImageUtilities.createBufferedImage(img);
 	}
 
@@ -662,6 +1055,10 @@ public class ImageUtilities {
 			return ImageUtilities.createBufferedImageForDisplay((MBFImage) img, bimg);
 		else if (img instanceof FImage)
 			return ImageUtilities.createBufferedImage((FImage) img, bimg);
+		else if (img instanceof ByteImage)
+			return ImageUtilities.createBufferedImage((ByteImage) img);
+		else if (img instanceof ShortImage)
+			return ImageUtilities.createBufferedImage((ShortImage) img);
 		return ImageUtilities.createBufferedImage(img, bimg);
 	}
 
@@ -777,6 +1174,44 @@ public class ImageUtilities {
 		return ret;
 	}
 
+	/**
+	 * Create a TYPE_BYTE_GRAY {@link BufferedImage} that shares the pixel data
+	 * of the given image; no copy is made, and changes to either image will be
+	 * visible in the other.
+	 * 
+	 * @param img
+	 *            the image to convert
+	 * @return the converted image
+	 */
+	public static BufferedImage createBufferedImage(final ByteImage img) {
+		final DataBufferByte db = new DataBufferByte(img.pixels, img.pixels.length);
+		final WritableRaster raster = Raster.createInterleavedRaster(db, img.width, img.height, img.width, 1,
+				new int[] { 0 }, null);
+		final ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+				new int[] { 8 }, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+		return new BufferedImage(cm, raster, false, null);
+	}
+
+	/**
+	 * Create a TYPE_USHORT_GRAY {@link BufferedImage} that shares the pixel
+	 * data of the given image; no copy is made, and changes to either image
+	 * will be visible in the other.
+	 * 
+	 * @param img
+	 *            the image to convert
+	 * @return the converted image
+	 */
+	public static BufferedImage createBufferedImage(final ShortImage img) {
+		final DataBufferUShort db = new DataBufferUShort(img.pixels, img.pixels.length);
+		final WritableRaster raster = Raster.createInterleavedRaster(db, img.width, img.height, img.width, 1,
+				new int[] { 0 }, null);
+		final ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+				new int[] { 16 }, false, false, Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+
+		return new BufferedImage(cm, raster, false, null);
+	}
+
 	/**
 	 * Write an image to a {@link DataOutput}.
 	 * 
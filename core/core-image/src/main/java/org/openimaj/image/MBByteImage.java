@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.util.Comparator;
+
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.renderer.MBByteImageRenderer;
+import org.openimaj.image.renderer.RenderHints;
+
+/**
+ * A multiband 8-bit image. Each band is a {@link ByteImage}, and pixel values
+ * correspond to those of an {@link MBFImage} scaled by
+ * {@link ByteImage#MAX_VALUE}; {@link #toMBFImage()} and
+ * {@link #MBByteImage(MBFImage)} convert between the two.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MBByteImage extends MultiBandImage<Integer, MBByteImage, ByteImage> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construct an empty MBByteImage with a the default RGB colourspace
+	 */
+	public MBByteImage() {
+		super(ColourSpace.RGB);
+	}
+
+	/**
+	 * Construct an MBByteImage from single band images. The given images are
+	 * used directly as the bands and are not cloned.
+	 * 
+	 * @param colourSpace
+	 *            the colourspace
+	 * @param images
+	 *            the bands
+	 */
+	public MBByteImage(final ColourSpace colourSpace, final ByteImage... images) {
+		super(colourSpace, images);
+	}
+
+	/**
+	 * Construct an MBByteImage from single band images with the default RGB
+	 * colourspace if there are three images, RGBA if there are 4 images, or
+	 * CUSTOM otherwise. The given images are used directly as the bands and
+	 * are not cloned.
+	 * 
+	 * @param images
+	 *            the bands
+	 */
+	public MBByteImage(final ByteImage... images) {
+		super(images.length == 3 ? ColourSpace.RGB : images.length == 4 ? ColourSpace.RGBA : ColourSpace.CUSTOM,
+				images);
+	}
+
+	/**
+	 * Construct an empty RGB image (3 bands)
+	 * 
+	 * @param width
+	 *            Width of image
+	 * @param height
+	 *            Height of image
+	 */
+	public MBByteImage(final int width, final int height) {
+		this(width, height, ColourSpace.RGB);
+	}
+
+	/**
+	 * Construct an empty image
+	 * 
+	 * @param width
+	 *            Width of image
+	 * @param height
+	 *            Height of image
+	 * @param colourSpace
+	 *            the colourspace
+	 */
+	public MBByteImage(final int width, final int height, final ColourSpace colourSpace) {
+		this.colourSpace = colourSpace;
+
+		for (int i = 0; i < colourSpace.getNumBands(); i++) {
+			this.bands.add(new ByteImage(width, height));
+		}
+	}
+
+	/**
+	 * Construct an empty image. If the number of bands is 3, RGB is assumed,
+	 * if the number is 4, then RGBA is assumed, otherwise the colourspace is
+	 * set to CUSTOM.
+	 * 
+	 * @param width
+	 *            Width of image
+	 * @param height
+	 *            Height of image
+	 * @param nbands
+	 *            number of bands
+	 */
+	public MBByteImage(final int width, final int height, final int nbands) {
+		if (nbands == 3)
+			this.colourSpace = ColourSpace.RGB;
+		else if (nbands == 4)
+			this.colourSpace = ColourSpace.RGBA;
+
+		for (int i = 0; i < nbands; i++) {
+			this.bands.add(new ByteImage(width, height));
+		}
+	}
+
+	/**
+	 * Create an image from an array of packed ARGB integers. If alpha is true,
+	 * bands will be RGBA, otherwise RGB.
+	 * 
+	 * @param data
+	 *            array of packed ARGB pixels
+	 * @param width
+	 *            the image width
+	 * @param height
+	 *            the image height
+	 * @param alpha
+	 *            should we load the alpha channel
+	 */
+	public MBByteImage(final int[] data, final int width, final int height, final boolean alpha) {
+		this(width, height, alpha ? 4 : 3);
+		this.internalAssign(data, width, height);
+	}
+
+	/**
+	 * Create an MBByteImage from an {@link MBFImage} with values in the range
+	 * 0..1. Each band is converted with {@link ByteImage#ByteImage(FImage)}.
+	 * 
+	 * @param image
+	 *            the image to convert
+	 */
+	public MBByteImage(final MBFImage image) {
+		super(image.colourSpace);
+
+		for (final FImage band : image.bands)
+			this.bands.add(new ByteImage(band));
+	}
+
+	/**
+	 * Convert this image to an {@link MBFImage} with values in the range 0..1.
+	 * 
+	 * @return a new {@link MBFImage}
+	 */
+	public MBFImage toMBFImage() {
+		final MBFImage image = new MBFImage(this.colourSpace);
+
+		for (final ByteImage band : this.bands)
+			image.bands.add(band.toFImage());
+
+		return image;
+	}
+
+	@Override
+	public ByteImage flatten() {
+		final int nb = this.numBands();
+		final ByteImage out = new ByteImage(this.getWidth(), this.getHeight());
+		final byte[] outp = out.pixels;
+
+		for (int i = 0; i < outp.length; i++) {
+			int sum = 0;
+
+			for (int b = 0; b < nb; b++)
+				sum += this.bands.get(b).pixels[i] & 0xff;
+
+			outp[i] = (byte) ((sum + nb / 2) / nb);
+		}
+
+		return out;
+	}
+
+	@Override
+	public ByteImage flattenMax() {
+		final int nb = this.numBands();
+		final ByteImage out = this.bands.get(0).clone();
+		final byte[] outp = out.pixels;
+
+		for (int b = 1; b < nb; b++) {
+			final byte[] bnd = this.bands.get(b).pixels;
+
+			for (int i = 0; i < outp.length; i++)
+				if ((bnd[i] & 0xff) > (outp[i] & 0xff))
+					outp[i] = bnd[i];
+		}
+
+		return out;
+	}
+
+	@Override
+	public Integer[] getPixel(final int x, final int y) {
+		final Integer[] pixels = new Integer[this.bands.size()];
+
+		for (int i = 0; i < this.bands.size(); i++) {
+			pixels[i] = this.bands.get(i).getPixel(x, y);
+		}
+
+		return pixels;
+	}
+
+	@Override
+	public Comparator<? super Integer[]> getPixelComparator() {
+		return new Comparator<Integer[]>() {
+			@Override
+			public int compare(final Integer[] o1, final Integer[] o2) {
+				int sumDiff = 0;
+
+				for (int i = 0; i < o1.length; i++)
+					sumDiff += o1[i] - o2[i];
+
+				return sumDiff > 0 ? 1 : sumDiff < 0 ? -1 : 0;
+			}
+		};
+	}
+
+	@Override
+	public Integer[] getPixelInterp(final double x, final double y) {
+		final Integer[] result = new Integer[this.bands.size()];
+
+		for (int i = 0; i < this.bands.size(); i++) {
+			result[i] = this.bands.get(i).getPixelInterp(x, y);
+		}
+
+		return result;
+	}
+
+	@Override
+	public Integer[] getPixelInterp(final double x, final double y, final Integer[] b) {
+		final Integer[] result = new Integer[this.bands.size()];
+
+		for (int i = 0; i < this.bands.size(); i++) {
+			result[i] = this.bands.get(i).getPixelInterp(x, y, b[i]);
+		}
+
+		return result;
+	}
+
+	@Override
+	public MBByteImage internalAssign(final int[] data, final int width, final int height) {
+		if (this.getWidth() != width || this.getHeight() != height)
+			this.internalAssign(this.newInstance(width, height));
+
+		final byte[] br = this.bands.get(0).pixels;
+		final byte[] bg = this.bands.get(1).pixels;
+		final byte[] bb = this.bands.get(2).pixels;
+		byte[] ba = null;
+
+		if (this.colourSpace == ColourSpace.RGBA)
+			ba = this.bands.get(3).pixels;
+
+		for (int i = 0; i < br.length; i++) {
+			final int rgb = data[i];
+			br[i] = (byte) (rgb >> 16);
+			bg[i] = (byte) (rgb >> 8);
+			bb[i] = (byte) rgb;
+
+			if (ba != null)
+				ba[i] = (byte) (rgb >> 24);
+		}
+
+		return this;
+	}
+
+	@Override
+	protected Integer intToT(final int n) {
+		return n;
+	}
+
+	@Override
+	protected Integer[] createPixelArray(final int n) {
+		return new Integer[n];
+	}
+
+	@Override
+	public ByteImage newBandInstance(final int width, final int height) {
+		return new ByteImage(width, height);
+	}
+
+	@Override
+	public MBByteImage newInstance() {
+		return new MBByteImage();
+	}
+
+	@Override
+	public MBByteImage newInstance(final int width, final int height) {
+		final MBByteImage ret = new MBByteImage(width, height, this.bands.size());
+
+		ret.colourSpace = this.colourSpace;
+
+		return ret;
+	}
+
+	@Override
+	public MBByteImageRenderer createRenderer() {
+		return new MBByteImageRenderer(this);
+	}
+
+	@Override
+	public MBByteImageRenderer createRenderer(final RenderHints options) {
+		return new MBByteImageRenderer(this, options);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This method assumes the last band in the multiband image is the alpha
+	 * channel, in the same way as
+	 * {@link MBFImage#overlayInplace(MBFImage, int, int)}.
+	 * 
+	 * @see org.openimaj.image.Image#overlayInplace(org.openimaj.image.Image,
+	 *      int, int)
+	 */
+	@Override
+	public MBByteImage overlayInplace(final MBByteImage image, final int x, final int y) {
+		final ByteImage alpha = image.getBand(image.numBands() - 1);
+		final int width = this.getWidth();
+		final int height = this.getHeight();
+		final int iwidth = image.getWidth();
+
+		final int sx = Math.max(x, 0);
+		final int sy = Math.max(y, 0);
+		final int ex = Math.min(width, x + iwidth);
+		final int ey = Math.min(height, y + image.getHeight());
+
+		for (int b = 0; b < this.numBands(); b++) {
+			final byte[] dst = this.bands.get(b).pixels;
+			final byte[] src = image.bands.get(b).pixels;
+
+			for (int yc = sy; yc < ey; yc++) {
+				for (int xc = sx; xc < ex; xc++) {
+					final int si = (yc - y) * iwidth + xc - x;
+					final int di = yc * width + xc;
+					final int a = alpha.pixels[si] & 0xff;
+
+					dst[di] = (byte) ((a * (src[si] & 0xff) + (ByteImage.MAX_VALUE - a) * (dst[di] & 0xff)
+							+ ByteImage.MAX_VALUE / 2) / ByteImage.MAX_VALUE);
+				}
+			}
+		}
+
+		return this;
+	}
+}
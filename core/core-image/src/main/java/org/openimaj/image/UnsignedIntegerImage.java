@@ -0,0 +1,997 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.util.Comparator;
+
+import org.openimaj.image.renderer.RenderHints;
+import org.openimaj.image.renderer.UnsignedIntegerImageRenderer;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.math.util.Interpolation;
+
+/**
+ * Abstract base class for single-band images whose pixels are unsigned
+ * integers in the range 0 to {@link #getMaxValue()}, stored in a single flat
+ * array in row-major order (the pixel at <code>(x, y)</code> is at index
+ * <code>y * width + x</code>).
+ * <p>
+ * All the pixel operations are implemented here in terms of the unsigned
+ * value of the pixel at a given index ({@link #get(int)} and
+ * {@link #set(int, int)}), and of bulk copies and fills of the underlying
+ * array; subclasses just provide the storage. Pixel values correspond to those
+ * of an {@link FImage} scaled by {@link #getMaxValue()}; {@link #toFImage()}
+ * converts between the two. Arithmetic saturates at 0 and
+ * {@link #getMaxValue()}. Scalar operations work on the raw pixel values,
+ * whilst the pixel-wise multiplication and division of two images treats the
+ * values as being normalised (so, for example, multiplying by a mask with
+ * values of 0 and {@link #getMaxValue()} behaves as it would with an
+ * {@link FImage}).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <I>
+ *            the concrete subclass type
+ */
+public abstract class UnsignedIntegerImage<I extends UnsignedIntegerImage<I>> extends SingleBandImage<Integer, I> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Get the maximum value a pixel can take.
+	 * 
+	 * @return the maximum pixel value
+	 */
+	public abstract int getMaxValue();
+
+	/**
+	 * Get the unsigned value of the pixel at the given index of the underlying
+	 * array.
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the pixel value
+	 */
+	protected abstract int get(int index);
+
+	/**
+	 * Set the pixel at the given index of the underlying array. The value is
+	 * not clipped, so must be in the range 0 to {@link #getMaxValue()}.
+	 * 
+	 * @param index
+	 *            the index
+	 * @param value
+	 *            the pixel value
+	 */
+	protected abstract void set(int index, int value);
+
+	/**
+	 * Copy a run of pixels from this image into another image of the same type.
+	 * 
+	 * @param srcPos
+	 *            the index of the first pixel to copy from this image
+	 * @param dest
+	 *            the destination image
+	 * @param destPos
+	 *            the index of the first pixel to write in the destination
+	 * @param length
+	 *            the number of pixels to copy
+	 */
+	protected abstract void copy(int srcPos, I dest, int destPos, int length);
+
+	/**
+	 * Set a run of pixels to the given value. The value is not clipped, so
+	 * must be in the range 0 to {@link #getMaxValue()}.
+	 * 
+	 * @param fromIndex
+	 *            the index of the first pixel (inclusive)
+	 * @param toIndex
+	 *            the index of the last pixel (exclusive)
+	 * @param value
+	 *            the pixel value
+	 */
+	protected abstract void fill(int fromIndex, int toIndex, int value);
+
+	/**
+	 * Set the pixels of this image from an {@link FImage} of the same size
+	 * with values in the range 0..1. Values are scaled by
+	 * {@link #getMaxValue()}, truncated and clipped in the same way as
+	 * {@link FImage#toByteImage()}.
+	 * 
+	 * @param image
+	 *            the image to convert
+	 */
+	protected void assign(final FImage image) {
+		final int max = getMaxValue();
+
+		for (int y = 0, i = 0; y < height; y++) {
+			final float[] row = image.pixels[y];
+
+			for (int x = 0; x < width; x++, i++)
+				set(i, clamp((int) (max * row[x]), max));
+		}
+	}
+
+	/**
+	 * Convert this image to an {@link FImage} with values in the range 0..1.
+	 * 
+	 * @return a new {@link FImage}
+	 */
+	public FImage toFImage() {
+		final FImage image = new FImage(width, height);
+		final float max = getMaxValue();
+
+		for (int y = 0, i = 0; y < height; y++) {
+			final float[] row = image.pixels[y];
+
+			for (int x = 0; x < width; x++, i++)
+				row[x] = get(i) / max;
+		}
+
+		return image;
+	}
+
+	private static int clamp(final long value, final int max) {
+		if (value < 0)
+			return 0;
+		if (value > max)
+			return max;
+		return (int) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private I self() {
+		return (I) this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private I sameType(final Image<?, ?> im) {
+		if (im == null || im.getClass() != this.getClass())
+			throw new UnsupportedOperationException("Unsupported Type");
+
+		return (I) im;
+	}
+
+	/**
+	 * {@inheritDoc} As the pixels are unsigned this has no effect.
+	 * 
+	 * @see org.openimaj.image.Image#abs()
+	 */
+	@Override
+	public I abs() {
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#addInplace(org.openimaj.image.Image)
+	 * @exception UnsupportedOperationException
+	 *                if an unsupported type is added
+	 */
+	@Override
+	public I addInplace(final Image<?, ?> im) {
+		return this.addInplace(sameType(im));
+	}
+
+	/**
+	 * Add the pixels of the given image to this one, saturating at
+	 * {@link #getMaxValue()}. Side-affects this image.
+	 * 
+	 * @param im
+	 *            the image to add
+	 * @return a reference to this image
+	 */
+	public I addInplace(final I im) {
+		final int max = getMaxValue();
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(get(i) + im.get(i), max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#addInplace(java.lang.Object)
+	 */
+	@Override
+	public I addInplace(final Integer num) {
+		final int max = getMaxValue();
+		final int v = num;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(get(i) + v, max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#clip(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public I clip(final Integer min, final Integer max) {
+		final int imin = min;
+		final int imax = max;
+
+		for (int i = 0, n = width * height; i < n; i++) {
+			final int v = get(i);
+
+			if (v < imin)
+				set(i, imin);
+			else if (v > imax)
+				set(i, imax);
+		}
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#clipMax(java.lang.Object)
+	 */
+	@Override
+	public I clipMax(final Integer thresh) {
+		final int t = thresh;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			if (get(i) > t)
+				set(i, t);
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#clipMin(java.lang.Object)
+	 */
+	@Override
+	public I clipMin(final Integer thresh) {
+		final int t = thresh;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			if (get(i) < t)
+				set(i, t);
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#createRenderer()
+	 */
+	@Override
+	public UnsignedIntegerImageRenderer<I> createRenderer() {
+		return new UnsignedIntegerImageRenderer<I>(self());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#createRenderer(org.openimaj.image.renderer.RenderHints)
+	 */
+	@Override
+	public UnsignedIntegerImageRenderer<I> createRenderer(final RenderHints options) {
+		return new UnsignedIntegerImageRenderer<I>(self(), options);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#divideInplace(org.openimaj.image.Image)
+	 * @exception UnsupportedOperationException
+	 *                if an unsupported type is given
+	 */
+	@Override
+	public I divideInplace(final Image<?, ?> im) {
+		return this.divideInplace(sameType(im));
+	}
+
+	/**
+	 * Divide the pixels of this image by the pixels of the given image,
+	 * treating both as normalised values. The result is rounded to the nearest
+	 * value and saturates at {@link #getMaxValue()}. Side-affects this image.
+	 * 
+	 * @param im
+	 *            the image to divide by
+	 * @return a reference to this image
+	 */
+	public I divideInplace(final I im) {
+		final int max = getMaxValue();
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(Math.round((double) get(i) * max / im.get(i)), max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc} The result is rounded to the nearest value.
+	 * 
+	 * @see org.openimaj.image.Image#divideInplace(java.lang.Object)
+	 */
+	@Override
+	public I divideInplace(final Integer val) {
+		final int max = getMaxValue();
+		final double v = val;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(Math.round(get(i) / v), max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#extractROI(int, int,
+	 *      org.openimaj.image.Image)
+	 */
+	@Override
+	public I extractROI(final int x, final int y, final I out) {
+		final int x0 = Math.max(0, x);
+		final int x1 = Math.min(width, x + out.width);
+
+		for (int rr = 0, r = y; rr < out.height; rr++, r++) {
+			final int offset = rr * out.width;
+
+			if (r < 0 || r >= height || x0 >= x1) {
+				out.fill(offset, offset + out.width, 0);
+			} else {
+				out.fill(offset, offset + x0 - x, 0);
+				copy(r * width + x0, out, offset + x0 - x, x1 - x0);
+				out.fill(offset + x1 - x, offset + out.width, 0);
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#extractROI(int, int, int, int)
+	 */
+	@Override
+	public I extractROI(final int x, final int y, final int w, final int h) {
+		return extractROI(x, y, newInstance(w, h));
+	}
+
+	/**
+	 * {@inheritDoc} The colour is clipped to the range 0 to
+	 * {@link #getMaxValue()}.
+	 * 
+	 * @see org.openimaj.image.SingleBandImage#fill(java.lang.Comparable)
+	 */
+	@Override
+	public I fill(final Integer colour) {
+		fill(0, width * height, clamp(colour, getMaxValue()));
+		return self();
+	}
+
+	@Override
+	public I flipX() {
+		final int hwidth = width / 2;
+
+		for (int y = 0; y < height; y++) {
+			final int offset = y * width;
+
+			for (int x = 0; x < hwidth; x++) {
+				final int xx = width - x - 1;
+
+				final int tmp = get(offset + x);
+				set(offset + x, get(offset + xx));
+				set(offset + xx, tmp);
+			}
+		}
+
+		return self();
+	}
+
+	@Override
+	public I flipY() {
+		final int hheight = height / 2;
+		final I tmp = newInstance(width, 1);
+
+		for (int y = 0; y < hheight; y++) {
+			final int yy = height - y - 1;
+
+			copy(y * width, tmp, 0, width);
+			copy(yy * width, self(), y * width, width);
+			tmp.copy(0, self(), yy * width, width);
+		}
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#getContentArea()
+	 */
+	@Override
+	public Rectangle getContentArea() {
+		int minc = width, maxc = 0, minr = height, maxr = 0;
+
+		for (int r = 0, i = 0; r < height; r++) {
+			for (int c = 0; c < width; c++, i++) {
+				if (get(i) != 0) {
+					if (c < minc)
+						minc = c;
+					if (c > maxc)
+						maxc = c;
+					if (r < minr)
+						minr = r;
+					if (r > maxr)
+						maxr = r;
+				}
+			}
+		}
+
+		return new Rectangle(minc, minr, maxc - minc + 1, maxr - minr + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#getField(org.openimaj.image.Image.Field)
+	 */
+	@Override
+	public I getField(final Field f) {
+		final I img = newInstance(width, height / 2);
+
+		final int init = (f.equals(Field.ODD) ? 1 : 0);
+		for (int r = init, r2 = 0; r < height && r2 < height / 2; r += 2, r2++)
+			copy(r * width, img, r2 * width, width);
+
+		return img;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#getFieldCopy(org.openimaj.image.Image.Field)
+	 */
+	@Override
+	public I getFieldCopy(final Field f) {
+		final I img = newInstance(width, height);
+
+		for (int r = 0; r + 1 < height; r += 2) {
+			final int src = (f.equals(Field.EVEN) ? r : r + 1) * width;
+
+			copy(src, img, r * width, width);
+			copy(src, img, (r + 1) * width, width);
+		}
+
+		return img;
+	}
+
+	/**
+	 * {@inheritDoc} Interpolated values are rounded to the nearest value.
+	 * 
+	 * @see org.openimaj.image.Image#getFieldInterpolate(org.openimaj.image.Image.Field)
+	 */
+	@Override
+	public I getFieldInterpolate(final Field f) {
+		final I img = newInstance(width, height);
+
+		for (int r = 0; r + 1 < height; r += 2) {
+			final int o0 = r * width;
+			final int o1 = o0 + width;
+
+			if (f.equals(Field.EVEN)) {
+				copy(o0, img, o0, width);
+
+				if (r + 2 >= height) {
+					copy(o0, img, o1, width);
+				} else {
+					final int o2 = o1 + width;
+					for (int c = 0; c < width; c++)
+						img.set(o1 + c, (get(o0 + c) + get(o2 + c) + 1) >> 1);
+				}
+			} else {
+				copy(o1, img, o1, width);
+
+				if (r == 0) {
+					copy(o1, img, o0, width);
+				} else {
+					final int om = o0 - width;
+					for (int c = 0; c < width; c++)
+						img.set(o0 + c, (get(om + c) + get(o1 + c) + 1) >> 1);
+				}
+			}
+		}
+
+		return img;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#getPixel(int, int)
+	 */
+	@Override
+	public Integer getPixel(final int x, final int y) {
+		return get(y * width + x);
+	}
+
+	/**
+	 * Get the value of the pixel at coordinate <code>(x, y)</code>.
+	 * 
+	 * @param x
+	 *            The x-coordinate to get
+	 * @param y
+	 *            The y-coordinate to get
+	 * 
+	 * @return The pixel value at (x, y)
+	 */
+	public int getPixelNative(final int x, final int y) {
+		return get(y * width + x);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#getPixelComparator()
+	 */
+	@Override
+	public Comparator<? super Integer> getPixelComparator() {
+		return new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer o1, final Integer o2) {
+				return o1.compareTo(o2);
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc} The interpolated value is rounded to the nearest value.
+	 * 
+	 * @see org.openimaj.image.Image#getPixelInterp(double, double)
+	 * @see Interpolation#bilerp(double, double, double, double, double, double)
+	 */
+	@Override
+	public Integer getPixelInterp(final double x, final double y) {
+		int x0 = (int) Math.floor(x);
+		int y0 = (int) Math.floor(y);
+		final int x1 = Math.max(0, Math.min(width - 1, x0 + 1));
+		final int y1 = Math.max(0, Math.min(height - 1, y0 + 1));
+		x0 = Math.max(0, Math.min(width - 1, x0));
+		y0 = Math.max(0, Math.min(height - 1, y0));
+
+		double dx = x - x0;
+		double dy = y - y0;
+		if (dx < 0)
+			dx = 1 + dx;
+		if (dy < 0)
+			dy = 1 + dy;
+
+		return (int) Math.round(Interpolation.bilerp(dx, dy,
+				get(y0 * width + x0), get(y1 * width + x0),
+				get(y0 * width + x1), get(y1 * width + x1)));
+	}
+
+	/**
+	 * {@inheritDoc} The interpolated value is rounded to the nearest value.
+	 * 
+	 * @see org.openimaj.image.Image#getPixelInterp(double, double,
+	 *      java.lang.Object)
+	 * @see Interpolation#bilerp(double, double, double, double, double, double)
+	 */
+	@Override
+	public Integer getPixelInterp(final double x, final double y, final Integer background) {
+		final int x0 = (int) Math.floor(x);
+		final int x1 = x0 + 1;
+		final int y0 = (int) Math.floor(y);
+		final int y1 = y0 + 1;
+
+		final boolean tx0 = x0 >= 0 && x0 < width;
+		final boolean tx1 = x1 >= 0 && x1 < width;
+		final boolean ty0 = y0 >= 0 && y0 < height;
+		final boolean ty1 = y1 >= 0 && y1 < height;
+
+		final int bg = background;
+		final int f00 = ty0 && tx0 ? get(y0 * width + x0) : bg;
+		final int f01 = ty1 && tx0 ? get(y1 * width + x0) : bg;
+		final int f10 = ty0 && tx1 ? get(y0 * width + x1) : bg;
+		final int f11 = ty1 && tx1 ? get(y1 * width + x1) : bg;
+
+		return (int) Math.round(Interpolation.bilerp(x - x0, y - y0, f00, f01, f10, f11));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#internalCopy(org.openimaj.image.Image)
+	 */
+	@Override
+	public I internalCopy(final I im) {
+		im.copy(0, self(), 0, im.width * im.height);
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc} The pixels are converted to grey-levels with the same
+	 * weighting of the red, green and blue components as
+	 * {@link FImage#internalAssign(int[], int, int)}.
+	 * 
+	 * @see org.openimaj.image.Image#internalAssign(int[], int, int)
+	 */
+	@Override
+	public I internalAssign(final int[] data, final int width, final int height) {
+		if (this.width != width || this.height != height)
+			internalAssign(newInstance(width, height));
+
+		final int scale = getMaxValue() / 255;
+		for (int i = 0, n = width * height; i < n; i++) {
+			final int rgb = data[i];
+
+			final int red = ((rgb >> 16) & 0xff);
+			final int green = ((rgb >> 8) & 0xff);
+			final int blue = ((rgb) & 0xff);
+
+			final float grey = 0.299f * red + 0.587f * green + 0.114f * blue;
+
+			set(i, ((int) grey) * scale);
+		}
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#inverse()
+	 */
+	@Override
+	public I inverse() {
+		final int max = this.max();
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, max - get(i));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#max()
+	 */
+	@Override
+	public Integer max() {
+		int max = 0;
+
+		for (int i = 0, n = width * height; i < n; i++) {
+			final int v = get(i);
+			if (v > max)
+				max = v;
+		}
+
+		return max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#min()
+	 */
+	@Override
+	public Integer min() {
+		int min = getMaxValue();
+
+		for (int i = 0, n = width * height; i < n; i++) {
+			final int v = get(i);
+			if (v < min)
+				min = v;
+		}
+
+		return min;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#multiplyInplace(org.openimaj.image.Image)
+	 * @exception UnsupportedOperationException
+	 *                if an unsupported type is given
+	 */
+	@Override
+	public I multiplyInplace(final Image<?, ?> im) {
+		return this.multiplyInplace(sameType(im));
+	}
+
+	/**
+	 * Multiply the pixels of this image by the pixels of the given image,
+	 * treating both as normalised values. The result is rounded to the nearest
+	 * value. Side-affects this image.
+	 * 
+	 * @param im
+	 *            the image to multiply by
+	 * @return a reference to this image
+	 */
+	public I multiplyInplace(final I im) {
+		final int max = getMaxValue();
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(Math.round((double) get(i) * im.get(i) / max), max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#multiplyInplace(java.lang.Object)
+	 */
+	@Override
+	public I multiplyInplace(final Integer num) {
+		final int max = getMaxValue();
+		final long v = num;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(get(i) * v, max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc} The pixel values are stretched to fill the range 0 to
+	 * {@link #getMaxValue()}.
+	 * 
+	 * @see org.openimaj.image.Image#normalise()
+	 */
+	@Override
+	public I normalise() {
+		final int min = this.min();
+		final int max = this.max();
+
+		if (max == min)
+			return self();
+
+		final long scale = getMaxValue();
+		final long range = max - min;
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, (int) (((get(i) - min) * scale + range / 2) / range));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc} Values are clipped to the range 0 to
+	 * {@link #getMaxValue()}.
+	 * 
+	 * @see org.openimaj.image.Image#setPixel(int, int, java.lang.Object)
+	 */
+	@Override
+	public void setPixel(final int x, final int y, final Integer val) {
+		if (x >= 0 && x < width && y >= 0 && y < height)
+			set(y * width + x, clamp(val, getMaxValue()));
+	}
+
+	/**
+	 * Sets the pixel at <code>(x,y)</code> to the given value. The value is
+	 * not clipped, so must be in the range 0 to {@link #getMaxValue()}.
+	 * Side-affects this image.
+	 * 
+	 * @param x
+	 *            The x-coordinate of the pixel to set
+	 * @param y
+	 *            The y-coordinate of the pixel to set
+	 * @param val
+	 *            The value to set the pixel to.
+	 */
+	public void setPixelNative(final int x, final int y, final int val) {
+		set(y * width + x, val);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#subtractInplace(org.openimaj.image.Image)
+	 * @exception UnsupportedOperationException
+	 *                if an unsupported type is given
+	 */
+	@Override
+	public I subtractInplace(final Image<?, ?> im) {
+		return this.subtractInplace(sameType(im));
+	}
+
+	/**
+	 * Subtract the pixels of the given image from this one, saturating at 0.
+	 * Side-affects this image.
+	 * 
+	 * @param im
+	 *            the image to subtract
+	 * @return a reference to this image
+	 */
+	public I subtractInplace(final I im) {
+		final int max = getMaxValue();
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(get(i) - im.get(i), max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#subtractInplace(java.lang.Object)
+	 */
+	@Override
+	public I subtractInplace(final Integer num) {
+		final int max = getMaxValue();
+		final int v = num;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, clamp(get(i) - v, max));
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc} Pixels above the threshold are set to
+	 * {@link #getMaxValue()}.
+	 * 
+	 * @see org.openimaj.image.Image#threshold(java.lang.Object)
+	 */
+	@Override
+	public I threshold(final Integer thresh) {
+		final int max = getMaxValue();
+		final int t = thresh;
+
+		for (int i = 0, n = width * height; i < n; i++)
+			set(i, get(i) <= t ? 0 : max);
+
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#toByteImage()
+	 */
+	@Override
+	public byte[] toByteImage() {
+		final int max = getMaxValue();
+		final byte[] pgmData = new byte[width * height];
+
+		for (int i = 0; i < pgmData.length; i++)
+			pgmData[i] = (byte) (get(i) * 255 / max);
+
+		return pgmData;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#toPackedARGBPixels()
+	 */
+	@Override
+	public int[] toPackedARGBPixels() {
+		final int max = getMaxValue();
+		final int[] bimg = new int[width * height];
+
+		for (int i = 0; i < bimg.length; i++) {
+			final int v = get(i) * 255 / max;
+
+			bimg[i] = 0xff << 24 | v << 16 | v << 8 | v;
+		}
+
+		return bimg;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.openimaj.image.Image#zero()
+	 */
+	@Override
+	public I zero() {
+		fill(0, width * height, 0);
+		return self();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This method will overlay the given image at the given location with full
+	 * opacity.
+	 * 
+	 * @see org.openimaj.image.Image#overlayInplace(org.openimaj.image.Image,
+	 *      int, int)
+	 */
+	@Override
+	public I overlayInplace(final I image, final int x, final int y) {
+		final int sx = Math.max(x, 0);
+		final int sy = Math.max(y, 0);
+		final int ex = Math.min(width, x + image.width);
+		final int ey = Math.min(height, y + image.height);
+
+		for (int yc = sy; yc < ey && sx < ex; yc++)
+			image.copy((yc - y) * image.width + sx - x, self(), yc * width + sx, ex - sx);
+
+		return self();
+	}
+
+	@Override
+	public I replace(final Integer target, final Integer replacement) {
+		final int t = target;
+		final int r = clamp(replacement, getMaxValue());
+
+		for (int i = 0, n = width * height; i < n; i++)
+			if (get(i) == t)
+				set(i, r);
+
+		return self();
+	}
+
+	@Override
+	public I extractCentreSubPix(final float cx, final float cy, final I out) {
+		final Integer background = 0;
+
+		for (int y = 0, i = 0; y < out.height; y++) {
+			for (int x = 0; x < out.width; x++, i++) {
+				final float ix = (float) (x + cx - (out.width - 1) * 0.5);
+				final float iy = (float) (y + cy - (out.height - 1) * 0.5);
+				out.set(i, this.getPixelInterp(ix, iy, background));
+			}
+		}
+
+		return out;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				sb.append(get(y * width + x)).append(' ');
+				if (x == 16 && width - 16 > x) {
+					sb.append("... ");
+					x = width - 16;
+				}
+			}
+			sb.append('\n');
+			if (y == 16 && height - 16 > y) {
+				sb.append("... \n");
+				y = height - 16;
+			}
+		}
+
+		return sb.toString();
+	}
+}
@@ -221,6 +221,19 @@ public class ConnectedComponent extends PixelSet {
 		super(pixels);
 	}
 
+	/**
+	 * Construct a connected component on top of the given run-length encoded
+	 * pixels. The pixels are not copied. If the pixels do not form a connected
+	 * component then some methods in this class may not return expected
+	 * results.
+	 *
+	 * @param pixels
+	 *            the run-length encoded pixels.
+	 */
+	public ConnectedComponent(RunLengthEncodedPixels pixels) {
+		super(pixels);
+	}
+
 	/**
 	 * Estimates how many vertices are required to encode the boundary with the
 	 * given smoothness and window width. Basically it determines how many
@@ -959,6 +972,12 @@ public class ConnectedComponent extends PixelSet {
 		ConnectedComponent tmp;
 		try {
 			tmp = (ConnectedComponent) super.clone();
+
+			if (pixels instanceof RunLengthEncodedPixels) {
+				tmp.pixels = new RunLengthEncodedPixels(pixels);
+				return tmp;
+			}
+
 			tmp.pixels = new HashSet<Pixel>();
 
 			for (final Pixel p : pixels)
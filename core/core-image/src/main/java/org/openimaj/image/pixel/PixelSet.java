@@ -139,6 +139,19 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		this.pixels.addAll(pixels);
 	}
 
+	/**
+	 * Construct a PixelSet on top of the given run-length encoded pixels. The
+	 * pixels are not copied; the {@link RunLengthEncodedPixels} becomes the
+	 * backing set of this PixelSet, which allows many of the operations of
+	 * this class to work a run at a time.
+	 * 
+	 * @param pixels
+	 *            the run-length encoded pixels.
+	 */
+	public PixelSet(RunLengthEncodedPixels pixels) {
+		this.pixels = pixels;
+	}
+
 	protected void fromShape(Shape shape) {
 		final int minx = (int) Math.round(shape.minX());
 		final int maxx = (int) Math.round(shape.maxX());
@@ -229,6 +242,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 *         otherwise
 	 */
 	public boolean find(int x, int y) {
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).contains(x, y);
+
 		return find(new Pixel(x, y));
 	}
 
@@ -262,6 +278,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		if (p == 0 && q == 0)
 			return calculateArea();
 
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).calculateMoment(p, q, xc, yc);
+
 		double mpq = 0;
 		for (final Pixel pix : pixels) {
 			mpq += Math.pow(pix.x - xc, p) * Math.pow(pix.y - yc, q);
@@ -285,6 +304,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 
 		final double[] centroid = calculateCentroid();
 
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).calculateMoment(p, q, centroid[0], centroid[1]);
+
 		double mpq = 0;
 		for (final Pixel pix : pixels) {
 			mpq += Math.pow(pix.x - centroid[0], p) * Math.pow(pix.y - centroid[1], q);
@@ -429,6 +451,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return an {@link Rectangle} describing the bounds
 	 */
 	public Rectangle calculateRegularBoundingBox() {
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).calculateRegularBoundingBox();
+
 		int xmin = Integer.MAX_VALUE, xmax = 0, ymin = Integer.MAX_VALUE, ymax = 0;
 
 		for (final Pixel p : pixels) {
@@ -455,6 +480,11 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 *            The offset in the vertical direction.
 	 */
 	public void translate(int x, int y) {
+		if (pixels instanceof RunLengthEncodedPixels) {
+			((RunLengthEncodedPixels) pixels).translate(x, y);
+			return;
+		}
+
 		// Note: changing the position changes the hashcode, so you need to
 		// rehash the set!
 		final Set<Pixel> newPixels = new HashSet<Pixel>();
@@ -474,6 +504,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return the top-left most pixel within the connected component.
 	 */
 	public Pixel topLeftMostPixel() {
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).topLeftMostPixel();
+
 		int top = Integer.MAX_VALUE;
 		Pixel pix = null;
 		for (final Pixel p : pixels) {
@@ -499,6 +532,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return the bottom-right most pixel in the connected component.
 	 */
 	public Pixel bottomRightMostPixel() {
+		if (pixels instanceof RunLengthEncodedPixels)
+			return ((RunLengthEncodedPixels) pixels).bottomRightMostPixel();
+
 		int bottom = Integer.MIN_VALUE;
 		Pixel pix = null;
 		for (final Pixel p : pixels) {
@@ -719,6 +755,11 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	public void transform(Matrix transform) {
 		final Matrix p1 = new Matrix(3, 1);
 
+		// the pixels of a run-length encoded set are created on demand, so
+		// the transformed pixels have to be collected into a new set
+		final RunLengthEncodedPixels rle = pixels instanceof RunLengthEncodedPixels ? new RunLengthEncodedPixels()
+				: null;
+
 		for (final Pixel p : pixels) {
 			p1.set(0, 0, p.getX());
 			p1.set(1, 0, p.getY());
@@ -728,7 +769,13 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 
 			p.x = (int) Math.rint(p2_est.get(0, 0));
 			p.y = (int) Math.rint(p2_est.get(1, 0));
+
+			if (rle != null)
+				rle.add(p);
 		}
+
+		if (rle != null)
+			pixels = rle;
 	}
 
 	/**
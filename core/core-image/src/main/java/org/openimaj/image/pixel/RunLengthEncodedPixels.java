@@ -0,0 +1,750 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openimaj.image.FImage;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * A {@link java.util.Set} of {@link Pixel}s that is stored as a sorted list of
+ * horizontal runs. Each run is stored as three integers (the row, and the
+ * start and end columns), rather than as a boxed object per pixel, so regions
+ * use a fraction of the memory of a {@link java.util.HashSet}, and operations
+ * such as union, intersection, bounds and moments work a run at a time.
+ * <p>
+ * The runs are kept sorted by row and then column, and adjacent or overlapping
+ * runs on the same row are always merged. Lookups are performed by binary
+ * search. Adding pixels in raster order is a constant time operation; adding
+ * them in an arbitrary order requires the runs after the insertion point to be
+ * shifted.
+ * <p>
+ * Note that {@link Pixel} objects returned by the iterator are created on
+ * demand; modifying them does not modify the set. Any subclass of
+ * {@link Pixel} added to the set is only stored as its coordinates.
+ * <p>
+ * {@link PixelSet}s and {@link ConnectedComponent}s can be constructed on top
+ * of a {@link RunLengthEncodedPixels}, in which case many of their operations
+ * use the runs directly.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RunLengthEncodedPixels extends AbstractSet<Pixel> {
+	private int[] rows;
+	private int[] starts;
+	private int[] ends; // exclusive
+	private int numRuns;
+	private int size;
+	private int modCount;
+
+	/**
+	 * Construct an empty set
+	 */
+	public RunLengthEncodedPixels() {
+		this(16);
+	}
+
+	/**
+	 * Construct an empty set with space for the given number of runs
+	 *
+	 * @param initialRuns
+	 *            the initial capacity in runs
+	 */
+	public RunLengthEncodedPixels(int initialRuns) {
+		initialRuns = Math.max(1, initialRuns);
+		rows = new int[initialRuns];
+		starts = new int[initialRuns];
+		ends = new int[initialRuns];
+	}
+
+	/**
+	 * Construct a set containing the given pixels
+	 *
+	 * @param pixels
+	 *            the pixels
+	 */
+	public RunLengthEncodedPixels(Collection<? extends Pixel> pixels) {
+		this(8);
+
+		if (pixels instanceof RunLengthEncodedPixels) {
+			copyFrom((RunLengthEncodedPixels) pixels);
+		} else {
+			// sort the pixels in raster order so they can be appended
+			final long[] keys = new long[pixels.size()];
+			int i = 0;
+			for (final Pixel p : pixels)
+				keys[i++] = ((long) p.y << 32) | (p.x & 0xFFFFFFFFL);
+			Arrays.sort(keys, 0, i);
+
+			for (int j = 0; j < i; j++)
+				addRun((int) keys[j], (int) (keys[j] >> 32), 1);
+		}
+	}
+
+	/**
+	 * Construct a set from the pixels in a mask image that have a value
+	 * greater than or equal to the threshold.
+	 *
+	 * @param mask
+	 *            the mask image
+	 * @param thresh
+	 *            the threshold
+	 */
+	public RunLengthEncodedPixels(FImage mask, float thresh) {
+		this(mask.height);
+
+		for (int y = 0; y < mask.height; y++) {
+			final float[] row = mask.pixels[y];
+
+			int x = 0;
+			while (x < mask.width) {
+				if (row[x] >= thresh) {
+					final int start = x;
+					while (x < mask.width && row[x] >= thresh)
+						x++;
+					appendRun(y, start, x);
+				} else {
+					x++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a set for each of the labels in a label image in a single pass.
+	 * The labels are given in row-major order (the label of (x, y) is at index
+	 * <code>y * width + x</code>), 0 represents the background and the other
+	 * labels must be in the range <code>1..numLabels</code>.
+	 *
+	 * @param labels
+	 *            the labels
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param numLabels
+	 *            the number of labels
+	 * @return an array of sets indexed by label; element 0 (the background) is
+	 *         null.
+	 */
+	public static RunLengthEncodedPixels[] fromLabels(int[] labels, int width, int height, int numLabels) {
+		final RunLengthEncodedPixels[] sets = new RunLengthEncodedPixels[numLabels + 1];
+		for (int i = 1; i <= numLabels; i++)
+			sets[i] = new RunLengthEncodedPixels(4);
+
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+
+			int x = 0;
+			while (x < width) {
+				final int l = labels[row + x];
+				final int start = x;
+				while (x < width && labels[row + x] == l)
+					x++;
+
+				if (l != 0)
+					sets[l].appendRun(y, start, x);
+			}
+		}
+
+		return sets;
+	}
+
+	private void copyFrom(RunLengthEncodedPixels other) {
+		rows = Arrays.copyOf(other.rows, Math.max(1, other.numRuns));
+		starts = Arrays.copyOf(other.starts, Math.max(1, other.numRuns));
+		ends = Arrays.copyOf(other.ends, Math.max(1, other.numRuns));
+		numRuns = other.numRuns;
+		size = other.size;
+		modCount++;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > rows.length) {
+			final int newCapacity = Math.max(capacity, rows.length + (rows.length >> 1) + 1);
+			rows = Arrays.copyOf(rows, newCapacity);
+			starts = Arrays.copyOf(starts, newCapacity);
+			ends = Arrays.copyOf(ends, newCapacity);
+		}
+	}
+
+	/**
+	 * Replace the runs [from, to) with space for count runs, shifting the
+	 * following runs as required.
+	 */
+	private void replaceRuns(int from, int to, int count) {
+		final int delta = count - (to - from);
+
+		if (delta != 0) {
+			ensureCapacity(numRuns + delta);
+
+			final int tail = numRuns - to;
+			System.arraycopy(rows, to, rows, to + delta, tail);
+			System.arraycopy(starts, to, starts, to + delta, tail);
+			System.arraycopy(ends, to, ends, to + delta, tail);
+			numRuns += delta;
+		}
+	}
+
+	/**
+	 * Append a run which is known to be after all the existing runs.
+	 */
+	private void appendRun(int y, int start, int end) {
+		final int last = numRuns - 1;
+
+		if (last >= 0 && rows[last] == y && ends[last] == start) {
+			ends[last] = end;
+		} else {
+			ensureCapacity(numRuns + 1);
+			rows[numRuns] = y;
+			starts[numRuns] = start;
+			ends[numRuns] = end;
+			numRuns++;
+		}
+
+		size += end - start;
+		modCount++;
+	}
+
+	/**
+	 * Find the index of the first run that is either on a later row than y,
+	 * or is on row y and ends after x.
+	 */
+	private int lowerBound(int y, int x) {
+		int lo = 0;
+		int hi = numRuns;
+
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+
+			if (rows[mid] < y || (rows[mid] == y && ends[mid] <= x))
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	/**
+	 * Add a horizontal run of pixels to the set.
+	 *
+	 * @param x
+	 *            the x-ordinate of the first pixel
+	 * @param y
+	 *            the y-ordinate of the run
+	 * @param length
+	 *            the number of pixels in the run
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean addRun(int x, int y, int length) {
+		if (length <= 0)
+			return false;
+
+		final int end = x + length;
+
+		// fast path for adding in raster order
+		final int last = numRuns - 1;
+		if (last < 0 || rows[last] < y || (rows[last] == y && ends[last] <= x)) {
+			appendRun(y, x, end);
+			return true;
+		}
+
+		// find all the runs on this row that overlap or touch the new one
+		final int from = lowerBound(y, x - 1);
+		int to = from;
+		int newStart = x;
+		int newEnd = end;
+		int removed = 0;
+
+		while (to < numRuns && rows[to] == y && starts[to] <= end) {
+			newStart = Math.min(newStart, starts[to]);
+			newEnd = Math.max(newEnd, ends[to]);
+			removed += ends[to] - starts[to];
+			to++;
+		}
+
+		final int added = (newEnd - newStart) - removed;
+		if (added == 0)
+			return false;
+
+		replaceRuns(from, to, 1);
+		rows[from] = y;
+		starts[from] = newStart;
+		ends[from] = newEnd;
+
+		size += added;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Remove a horizontal run of pixels from the set.
+	 *
+	 * @param x
+	 *            the x-ordinate of the first pixel
+	 * @param y
+	 *            the y-ordinate of the run
+	 * @param length
+	 *            the number of pixels in the run
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean removeRun(int x, int y, int length) {
+		if (length <= 0)
+			return false;
+
+		final int end = x + length;
+		final int from = lowerBound(y, x);
+		int to = from;
+		while (to < numRuns && rows[to] == y && starts[to] < end)
+			to++;
+
+		if (from == to)
+			return false;
+
+		// the parts of the first and last overlapping runs that remain
+		final int headStart = starts[from];
+		final int tailEnd = ends[to - 1];
+		int removed = 0;
+		for (int i = from; i < to; i++)
+			removed += Math.min(ends[i], end) - Math.max(starts[i], x);
+
+		final boolean head = headStart < x;
+		final boolean tail = tailEnd > end;
+
+		replaceRuns(from, to, (head ? 1 : 0) + (tail ? 1 : 0));
+
+		int i = from;
+		if (head) {
+			rows[i] = y;
+			starts[i] = headStart;
+			ends[i] = x;
+			i++;
+		}
+		if (tail) {
+			rows[i] = y;
+			starts[i] = end;
+			ends[i] = tailEnd;
+		}
+
+		size -= removed;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean add(Pixel p) {
+		return addRun(p.x, p.y, 1);
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Pixel> c) {
+		if (c instanceof RunLengthEncodedPixels) {
+			final RunLengthEncodedPixels other = (RunLengthEncodedPixels) c;
+			if (other.size == 0)
+				return false;
+
+			final int oldSize = size;
+			copyFrom(union(other));
+			return size != oldSize;
+		}
+
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Pixel))
+			return false;
+
+		final Pixel p = (Pixel) o;
+		return contains(p.x, p.y);
+	}
+
+	/**
+	 * Test whether the given coordinates are in the set
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the pixel at (x, y) is in the set
+	 */
+	public boolean contains(int x, int y) {
+		final int i = lowerBound(y, x);
+		return i < numRuns && rows[i] == y && starts[i] <= x;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Pixel))
+			return false;
+
+		final Pixel p = (Pixel) o;
+		return removeRun(p.x, p.y, 1);
+	}
+
+	@Override
+	public void clear() {
+		numRuns = 0;
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of runs
+	 */
+	public int numRuns() {
+		return numRuns;
+	}
+
+	/**
+	 * Get the row of the given run
+	 *
+	 * @param run
+	 *            the run index
+	 * @return the y-ordinate of the run
+	 */
+	public int getRunY(int run) {
+		return rows[run];
+	}
+
+	/**
+	 * Get the first column of the given run
+	 *
+	 * @param run
+	 *            the run index
+	 * @return the x-ordinate of the first pixel in the run
+	 */
+	public int getRunStart(int run) {
+		return starts[run];
+	}
+
+	/**
+	 * Get the length of the given run
+	 *
+	 * @param run
+	 *            the run index
+	 * @return the number of pixels in the run
+	 */
+	public int getRunLength(int run) {
+		return ends[run] - starts[run];
+	}
+
+	@Override
+	public Iterator<Pixel> iterator() {
+		return new Iterator<Pixel>() {
+			int run = 0;
+			int x = numRuns > 0 ? starts[0] : 0;
+			int lastX;
+			int lastY;
+			boolean canRemove = false;
+			int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return run < numRuns;
+			}
+
+			@Override
+			public Pixel next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (run >= numRuns)
+					throw new NoSuchElementException();
+
+				lastX = x;
+				lastY = rows[run];
+				canRemove = true;
+
+				x++;
+				if (x == ends[run]) {
+					run++;
+					if (run < numRuns)
+						x = starts[run];
+				}
+
+				return new Pixel(lastX, lastY);
+			}
+
+			@Override
+			public void remove() {
+				if (!canRemove)
+					throw new IllegalStateException();
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+
+				final boolean more = run < numRuns;
+				final int nextY = more ? rows[run] : 0;
+
+				removeRun(lastX, lastY, 1);
+
+				// relocate the next pixel, as the runs may have moved
+				if (more)
+					run = lowerBound(nextY, x);
+				else
+					run = numRuns;
+
+				canRemove = false;
+				expectedModCount = modCount;
+			}
+		};
+	}
+
+	/**
+	 * Compute the union of this set and another
+	 *
+	 * @param other
+	 *            the other set
+	 * @return a new set containing the pixels in either set
+	 */
+	public RunLengthEncodedPixels union(RunLengthEncodedPixels other) {
+		final RunLengthEncodedPixels result = new RunLengthEncodedPixels(numRuns + other.numRuns);
+
+		int i = 0, j = 0;
+		while (i < numRuns || j < other.numRuns) {
+			final boolean takeThis;
+			if (j >= other.numRuns)
+				takeThis = true;
+			else if (i >= numRuns)
+				takeThis = false;
+			else
+				takeThis = rows[i] < other.rows[j] || (rows[i] == other.rows[j] && starts[i] <= other.starts[j]);
+
+			final int y, s, e;
+			if (takeThis) {
+				y = rows[i];
+				s = starts[i];
+				e = ends[i];
+				i++;
+			} else {
+				y = other.rows[j];
+				s = other.starts[j];
+				e = other.ends[j];
+				j++;
+			}
+
+			// runs arrive in order of their starts, so can only extend the
+			// last run of the result
+			final int last = result.numRuns - 1;
+			if (last >= 0 && result.rows[last] == y && result.ends[last] >= s) {
+				if (e > result.ends[last]) {
+					result.size += e - result.ends[last];
+					result.ends[last] = e;
+				}
+			} else {
+				result.appendRun(y, s, e);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Compute the intersection of this set and another
+	 *
+	 * @param other
+	 *            the other set
+	 * @return a new set containing the pixels in both sets
+	 */
+	public RunLengthEncodedPixels intersection(RunLengthEncodedPixels other) {
+		final RunLengthEncodedPixels result = new RunLengthEncodedPixels(Math.min(numRuns, other.numRuns));
+
+		int i = 0, j = 0;
+		while (i < numRuns && j < other.numRuns) {
+			if (rows[i] < other.rows[j]) {
+				i++;
+			} else if (rows[i] > other.rows[j]) {
+				j++;
+			} else {
+				final int s = Math.max(starts[i], other.starts[j]);
+				final int e = Math.min(ends[i], other.ends[j]);
+
+				if (s < e)
+					result.appendRun(rows[i], s, e);
+
+				if (ends[i] < other.ends[j])
+					i++;
+				else
+					j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Translate all the pixels in the set
+	 *
+	 * @param dx
+	 *            the offset in the horizontal direction
+	 * @param dy
+	 *            the offset in the vertical direction
+	 */
+	public void translate(int dx, int dy) {
+		for (int i = 0; i < numRuns; i++) {
+			rows[i] += dy;
+			starts[i] += dx;
+			ends[i] += dx;
+		}
+		modCount++;
+	}
+
+	/**
+	 * Calculate the bounding box of the set. For consistency with
+	 * {@link PixelSet#calculateRegularBoundingBox()}, the width and height are
+	 * the differences between the maximum and minimum ordinates.
+	 *
+	 * @return the bounding box
+	 */
+	public Rectangle calculateRegularBoundingBox() {
+		if (numRuns == 0)
+			return new Rectangle(Integer.MAX_VALUE, Integer.MAX_VALUE, -Integer.MAX_VALUE, -Integer.MAX_VALUE);
+
+		int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+		for (int i = 0; i < numRuns; i++) {
+			if (starts[i] < xmin)
+				xmin = starts[i];
+			if (ends[i] - 1 > xmax)
+				xmax = ends[i] - 1;
+		}
+
+		final int ymin = rows[0];
+		final int ymax = rows[numRuns - 1];
+
+		return new Rectangle(xmin, ymin, xmax - xmin, ymax - ymin);
+	}
+
+	/**
+	 * Calculate the pq moment about the point (xc, yc); see
+	 * {@link PixelSet#calculateMoment(int, int, double, double)}. The sums over
+	 * each run are computed in closed form for p &lt;= 2.
+	 *
+	 * @param p
+	 *            The P moment to calculate
+	 * @param q
+	 *            The Q moment to calculate
+	 * @param xc
+	 *            x-coordinate of the centre
+	 * @param yc
+	 *            y-coordinate of the centre
+	 * @return the moment
+	 */
+	public double calculateMoment(int p, int q, double xc, double yc) {
+		if (p == 0 && q == 0)
+			return size;
+
+		double mpq = 0;
+		for (int i = 0; i < numRuns; i++) {
+			// sums of (x - xc)^p = (s + k)^p for k in [0, n)
+			final double s = starts[i] - xc;
+			final double n = ends[i] - starts[i];
+
+			double sx;
+			switch (p) {
+			case 0:
+				sx = n;
+				break;
+			case 1:
+				sx = n * s + n * (n - 1) / 2;
+				break;
+			case 2:
+				sx = n * s * s + s * n * (n - 1) + (n - 1) * n * (2 * n - 1) / 6;
+				break;
+			default:
+				sx = 0;
+				for (int x = starts[i]; x < ends[i]; x++)
+					sx += Math.pow(x - xc, p);
+			}
+
+			final double dy = rows[i] - yc;
+			final double sy = q == 0 ? 1 : (q == 1 ? dy : (q == 2 ? dy * dy : Math.pow(dy, q)));
+
+			mpq += sx * sy;
+		}
+
+		return mpq;
+	}
+
+	/**
+	 * @return the first pixel in raster order, or null if the set is empty
+	 */
+	public Pixel topLeftMostPixel() {
+		return numRuns == 0 ? null : new Pixel(starts[0], rows[0]);
+	}
+
+	/**
+	 * @return the last pixel in raster order, or null if the set is empty
+	 */
+	public Pixel bottomRightMostPixel() {
+		return numRuns == 0 ? null : new Pixel(ends[numRuns - 1] - 1, rows[numRuns - 1]);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof RunLengthEncodedPixels) {
+			final RunLengthEncodedPixels other = (RunLengthEncodedPixels) o;
+			if (other.size != size || other.numRuns != numRuns)
+				return false;
+
+			for (int i = 0; i < numRuns; i++) {
+				if (rows[i] != other.rows[i] || starts[i] != other.starts[i] || ends[i] != other.ends[i])
+					return false;
+			}
+			return true;
+		}
+
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		// must be consistent with the hashCode of the equivalent Set<Pixel>
+		int hash = 0;
+		for (int i = 0; i < numRuns; i++) {
+			final int base = 31 * (31 * 17 + starts[i]) + rows[i];
+			final int n = ends[i] - starts[i];
+			// sum over x of 31 * (31 * 17 + x) + y = n * base + 31 * sum(0..n-1)
+			hash += n * base + 31 * (int) ((long) n * (n - 1) / 2);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.renderer;
+
+import java.util.Arrays;
+
+import org.openimaj.image.ByteImage;
+import org.openimaj.image.MBByteImage;
+
+/**
+ * {@link ImageRenderer} for {@link MBByteImage}s. Drawing is delegated to an
+ * {@link UnsignedIntegerImageRenderer} on each band.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MBByteImageRenderer extends MultiBandRenderer<Integer, MBByteImage, ByteImage> {
+	/**
+	 * Construct with given target image.
+	 * 
+	 * @param targetImage
+	 *            the target image.
+	 */
+	public MBByteImageRenderer(final MBByteImage targetImage) {
+		super(targetImage);
+	}
+
+	/**
+	 * Construct with given target image and rendering hints.
+	 * 
+	 * @param targetImage
+	 *            the target image.
+	 * @param hints
+	 *            the render hints
+	 */
+	public MBByteImageRenderer(final MBByteImage targetImage, final RenderHints hints) {
+		super(targetImage, hints);
+	}
+
+	@Override
+	public Integer[] defaultBackgroundColour() {
+		final Integer[] c = new Integer[this.targetImage.numBands()];
+		Arrays.fill(c, 0);
+		return c;
+	}
+
+	@Override
+	public Integer[] defaultForegroundColour() {
+		final Integer[] c = new Integer[this.targetImage.numBands()];
+		Arrays.fill(c, ByteImage.MAX_VALUE);
+		return c;
+	}
+
+	@Override
+	protected void drawHorizLine(final int x1, final int x2, final int y, Integer[] col) {
+		col = this.sanitise(col);
+
+		final int nbands = Math.min(col.length, this.targetImage.numBands());
+		for (int b = 0; b < nbands; b++)
+			this.targetImage.getBand(b).createRenderer(this.hints).drawHorizLine(x1, x2, y, col[b]);
+	}
+
+	/**
+	 * {@inheritDoc} In the same way as
+	 * {@link org.openimaj.image.colour.ColourSpace#sanitise(Float[])}, a
+	 * single value is used for every band, and missing bands are set to
+	 * {@link ByteImage#MAX_VALUE}.
+	 */
+	@Override
+	protected Integer[] sanitise(final Integer[] colour) {
+		final int nbands = this.targetImage.numBands();
+
+		if (colour.length >= nbands)
+			return colour;
+
+		final Integer[] newColour = new Integer[nbands];
+		if (colour.length == 1) {
+			Arrays.fill(newColour, colour[0]);
+		} else {
+			Arrays.fill(newColour, ByteImage.MAX_VALUE);
+			System.arraycopy(colour, 0, newColour, 0, colour.length);
+		}
+
+		return newColour;
+	}
+}
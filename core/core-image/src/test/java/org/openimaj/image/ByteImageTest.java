@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.renderer.RenderHints;
+import org.openimaj.math.geometry.point.Point2dImpl;
+import org.openimaj.math.geometry.shape.Circle;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link ByteImage} and {@link MBByteImage}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ByteImageTest {
+	private static ByteImage randomImage(Random rng, int width, int height) {
+		final ByteImage image = new ByteImage(width, height);
+		rng.nextBytes(image.pixels);
+		return image;
+	}
+
+	/**
+	 * Test conversion to and from {@link FImage}s
+	 */
+	@Test
+	public void testFImageConversion() {
+		final ByteImage image = randomImage(new Random(1), 31, 17);
+		final FImage fimage = image.toFImage();
+
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				assertEquals(image.getPixelNative(x, y) / 255f, fimage.pixels[y][x], 0f);
+
+		assertArrayEquals(image.pixels, new ByteImage(fimage).pixels);
+		assertArrayEquals(fimage.toByteImage(), image.toByteImage());
+	}
+
+	/**
+	 * Test that arithmetic saturates rather than wrapping
+	 */
+	@Test
+	public void testSaturation() {
+		final ByteImage image = new ByteImage(new byte[] { 0, 100, (byte) 200, (byte) 255 }, 4, 1);
+
+		assertArrayEquals(new byte[] { 100, (byte) 200, (byte) 255, (byte) 255 }, image.add(100).pixels);
+		assertArrayEquals(new byte[] { 0, 0, 100, (byte) 155 }, image.subtract(100).pixels);
+		assertArrayEquals(new byte[] { (byte) 255, (byte) 155, 55, 0 }, image.inverse().pixels);
+	}
+
+	/**
+	 * Test that gray {@link BufferedImage}s are wrapped without copying, and
+	 * converted to and from without loss
+	 */
+	@Test
+	public void testBufferedImage() {
+		final ByteImage image = randomImage(new Random(2), 23, 19);
+
+		final BufferedImage bimg = ImageUtilities.createBufferedImage(image);
+		assertEquals(BufferedImage.TYPE_BYTE_GRAY, bimg.getType());
+		assertSame(image.pixels, ((DataBufferByte) bimg.getRaster().getDataBuffer()).getData());
+
+		final ByteImage wrapped = ImageUtilities.createByteImage(bimg);
+		assertSame(image.pixels, wrapped.pixels);
+
+		final ByteImage sub = ImageUtilities.createByteImage(bimg.getSubimage(3, 5, 10, 7));
+		assertEquals(image.extractROI(3, 5, 10, 7), sub);
+	}
+
+	/**
+	 * Test conversion of colour {@link BufferedImage}s to {@link MBByteImage}s
+	 */
+	@Test
+	public void testMBByteImage() {
+		final MBByteImage image = new MBByteImage(randomImage(new Random(3), 13, 11),
+				randomImage(new Random(4), 13, 11), randomImage(new Random(5), 13, 11));
+
+		final BufferedImage bimg = new BufferedImage(13, 11, BufferedImage.TYPE_3BYTE_BGR);
+		bimg.setRGB(0, 0, 13, 11, image.toPackedARGBPixels(), 0, 13);
+
+		final MBByteImage converted = ImageUtilities.createMBByteImage(bimg, false);
+		for (int b = 0; b < 3; b++)
+			assertEquals(image.getBand(b), converted.getBand(b));
+	}
+
+	/**
+	 * Test that drawing on a {@link ByteImage} gives the same result as
+	 * drawing on an {@link FImage}
+	 */
+	@Test
+	public void testRenderer() {
+		final FImage fimage = new FImage(64, 48);
+		final ByteImage image = new ByteImage(64, 48);
+
+		assertEquals(ByteImage.MAX_VALUE, (int) image.createRenderer().defaultForegroundColour());
+		assertEquals(0, (int) image.createRenderer().defaultBackgroundColour());
+
+		fimage.drawLine(3, 4, 60, 40, 3, 1f);
+		fimage.drawShapeFilled(new Rectangle(10, 20, 15, 10), 153 / 255f);
+		fimage.drawShapeFilled(new Circle(40, 15, 8), 51 / 255f);
+		fimage.drawPoint(new Point2dImpl(50, 30), 1f, 5);
+
+		image.drawLine(3, 4, 60, 40, 3, 255);
+		image.drawShapeFilled(new Rectangle(10, 20, 15, 10), 153);
+		image.drawShapeFilled(new Circle(40, 15, 8), 51);
+		image.drawPoint(new Point2dImpl(50, 30), 1000, 5);
+
+		for (int y = 0; y < 48; y++)
+			for (int x = 0; x < 64; x++)
+				assertEquals(fimage.pixels[y][x] * 255, image.getPixelNative(x, y), 0.001);
+
+		final FImage aafimage = new FImage(32, 32);
+		final ByteImage aaimage = new ByteImage(32, 32);
+		aafimage.createRenderer(RenderHints.ANTI_ALIASED).drawLine(1, 2, 30, 17, 1, 1f);
+		aaimage.createRenderer(RenderHints.ANTI_ALIASED).drawLine(1, 2, 30, 17, 1, 255);
+
+		for (int y = 0; y < 32; y++)
+			for (int x = 0; x < 32; x++)
+				assertEquals(aafimage.pixels[y][x] * 255, aaimage.getPixelNative(x, y), 0.5);
+	}
+
+	/**
+	 * Test drawing on an {@link MBByteImage} and a {@link ShortImage}
+	 */
+	@Test
+	public void testMultibandAndShortRenderer() {
+		final MBByteImage image = new MBByteImage(20, 10);
+		image.drawShapeFilled(new Rectangle(2, 2, 5, 5), new Integer[] { 255, 0, 128 });
+		image.drawLine(0, 9, 19, 9, 1, new Integer[] { 64 });
+
+		for (int b = 0; b < 3; b++) {
+			assertEquals(new int[] { 255, 0, 128 }[b], (int) image.getBand(b).getPixel(4, 4));
+			assertEquals(0, (int) image.getBand(b).getPixel(10, 4));
+			assertEquals(64, (int) image.getBand(b).getPixel(10, 9));
+		}
+
+		final ShortImage simage = new ShortImage(20, 10);
+		simage.drawShapeFilled(new Rectangle(2, 2, 5, 5), simage.createRenderer().defaultForegroundColour());
+		assertEquals(ShortImage.MAX_VALUE, (int) simage.getPixel(4, 4));
+		assertEquals(0, (int) simage.getPixel(10, 4));
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.openimaj.image.colour.ColourSpace;
+
+/**
+ * Tests for the reduced-resolution reading methods of {@link ImageUtilities}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ImageUtilitiesTest {
+	private static byte[] encode(String format, int width, int height) throws IOException {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.setRGB(x, y, (x % 256) << 16 | (y % 256) << 8 | ((x + y) / 2 % 256));
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageIO.write(image, format, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Test that images are subsampled to at least the target size, but less
+	 * than twice it
+	 * 
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Test
+	public void testReducedSize() throws IOException {
+		final byte[] jpeg = encode("jpg", 601, 300);
+
+		for (final int maxSize : new int[] { 50, 150, 200, 300, 601, 1000 }) {
+			final FImage image = ImageUtilities.readF(new ByteArrayInputStream(jpeg), maxSize);
+			final int s = Math.max(1, 601 / maxSize);
+
+			assertEquals((601 + s - 1) / s, image.width);
+			assertEquals((300 + s - 1) / s, image.height);
+			assertTrue(image.width >= Math.min(maxSize, 601));
+			assertTrue(image.width < 2 * maxSize);
+		}
+	}
+
+	/**
+	 * Test that the subsampled images are point samples of the full-resolution
+	 * images, and that the colour modes give the expected bands
+	 * 
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Test
+	public void testPixels() throws IOException {
+		final byte[] png = encode("png", 320, 240);
+		final FImage full = ImageUtilities.readF(new ByteArrayInputStream(png));
+		final MBFImage fullColour = ImageUtilities.readMBF(new ByteArrayInputStream(png));
+
+		final FImage grey = ImageUtilities.readF(new ByteArrayInputStream(png), 100);
+		final MBFImage rgb = ImageUtilities.readMBF(new ByteArrayInputStream(png), 100, ColourSpace.RGB);
+		final MBFImage rgba = ImageUtilities.readMBF(new ByteArrayInputStream(png), 100, ColourSpace.RGBA);
+		final MBFImage hsv = ImageUtilities.readMBF(new ByteArrayInputStream(png), 100, ColourSpace.HSV);
+
+		assertEquals(ColourSpace.RGB, rgb.colourSpace);
+		assertEquals(ColourSpace.RGBA, rgba.colourSpace);
+		assertEquals(ColourSpace.HSV, hsv.colourSpace);
+
+		for (int y = 0; y < grey.height; y++) {
+			for (int x = 0; x < grey.width; x++) {
+				assertEquals(full.pixels[y * 3][x * 3], grey.pixels[y][x], 0f);
+
+				for (int b = 0; b < 3; b++) {
+					assertEquals(fullColour.getBand(b).pixels[y * 3][x * 3], rgb.getBand(b).pixels[y][x], 0f);
+					assertEquals(fullColour.getBand(b).pixels[y * 3][x * 3], rgba.getBand(b).pixels[y][x], 0f);
+				}
+				assertEquals(1f, rgba.getBand(3).pixels[y][x], 0f);
+			}
+		}
+	}
+
+	/**
+	 * Test that JPEG images decoded directly to grey-levels are close to the
+	 * luminance of the colour images
+	 * 
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Test
+	public void testDirectGrey() throws IOException {
+		final byte[] jpeg = encode("jpg", 320, 240);
+		final FImage full = ImageUtilities.readF(new ByteArrayInputStream(jpeg));
+		final FImage grey = ImageUtilities.readF(new ByteArrayInputStream(jpeg), 160);
+		final MBFImage lum = ImageUtilities.readMBF(new ByteArrayInputStream(jpeg), 160, ColourSpace.LUMINANCE_NTSC);
+
+		assertEquals(1, lum.numBands());
+
+		double error = 0;
+		for (int y = 0; y < grey.height; y++) {
+			for (int x = 0; x < grey.width; x++) {
+				error += Math.abs(full.pixels[y * 2][x * 2] - grey.pixels[y][x]);
+				assertEquals(grey.pixels[y][x], lum.getBand(0).pixels[y][x], 0f);
+			}
+		}
+
+		assertTrue(error / (grey.width * grey.height) < 2 / 255.0);
+	}
+
+	/**
+	 * Test that the target size must be positive
+	 * 
+	 * @throws IOException
+	 *             if an error occurs
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() throws IOException {
+		ImageUtilities.readF(new ByteArrayInputStream(encode("png", 10, 10)), 0);
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+
+/**
+ * Tests for {@link RunLengthEncodedPixels}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class RunLengthEncodedPixelsTest {
+	private Set<Pixel> randomPixels(Random rng, int n) {
+		final Set<Pixel> pixels = new HashSet<Pixel>();
+		for (int i = 0; i < n; i++)
+			pixels.add(new Pixel(rng.nextInt(30), rng.nextInt(10)));
+		return pixels;
+	}
+
+	/**
+	 * Test that adding and removing pixels in an arbitrary order behaves like
+	 * a {@link HashSet}
+	 */
+	@Test
+	public void testAddRemove() {
+		final Random rng = new Random(1);
+		final RunLengthEncodedPixels rle = new RunLengthEncodedPixels();
+		final Set<Pixel> expected = new HashSet<Pixel>();
+
+		for (int i = 0; i < 2000; i++) {
+			final Pixel p = new Pixel(rng.nextInt(30), rng.nextInt(10));
+
+			if (rng.nextInt(3) == 0)
+				assertEquals(expected.remove(p), rle.remove(p));
+			else
+				assertEquals(expected.add(p), rle.add(p));
+
+			assertEquals(expected.size(), rle.size());
+		}
+
+		assertEquals(expected, rle);
+		assertEquals(rle, expected);
+		assertEquals(expected.hashCode(), rle.hashCode());
+
+		final Iterator<Pixel> iterator = rle.iterator();
+		while (iterator.hasNext()) {
+			final Pixel p = iterator.next();
+			if (p.x % 2 == 0) {
+				iterator.remove();
+				expected.remove(p);
+			}
+		}
+		assertEquals(expected, rle);
+	}
+
+	/**
+	 * Test adding and removing runs
+	 */
+	@Test
+	public void testRuns() {
+		final RunLengthEncodedPixels rle = new RunLengthEncodedPixels();
+
+		assertTrue(rle.addRun(0, 0, 5));
+		assertTrue(rle.addRun(10, 0, 5));
+		assertTrue(rle.addRun(5, 0, 5));
+		assertEquals(1, rle.numRuns());
+		assertEquals(15, rle.size());
+		assertFalse(rle.addRun(3, 0, 4));
+
+		assertTrue(rle.removeRun(4, 0, 2));
+		assertEquals(2, rle.numRuns());
+		assertEquals(13, rle.size());
+		assertFalse(rle.contains(5, 0));
+		assertTrue(rle.contains(6, 0));
+	}
+
+	/**
+	 * Test union and intersection
+	 */
+	@Test
+	public void testSetOperations() {
+		final Random rng = new Random(2);
+
+		for (int i = 0; i < 50; i++) {
+			final Set<Pixel> a = randomPixels(rng, 100);
+			final Set<Pixel> b = randomPixels(rng, 100);
+
+			final Set<Pixel> union = new HashSet<Pixel>(a);
+			union.addAll(b);
+			final Set<Pixel> intersection = new HashSet<Pixel>(a);
+			intersection.retainAll(b);
+
+			final RunLengthEncodedPixels ra = new RunLengthEncodedPixels(a);
+			final RunLengthEncodedPixels rb = new RunLengthEncodedPixels(b);
+
+			assertEquals(union, ra.union(rb));
+			assertEquals(intersection, ra.intersection(rb));
+
+			ra.addAll(rb);
+			assertEquals(union, ra);
+		}
+	}
+
+	/**
+	 * Test that the {@link ConnectedComponent} methods give the same results
+	 * on top of run-length encoded pixels as on a {@link HashSet}
+	 */
+	@Test
+	public void testConnectedComponent() {
+		// an ellipse (with a few holes) of zeros on a background of ones
+		final FImage image = new FImage(40, 30);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				if ((x - 20) * (x - 20) + 2 * (y - 15) * (y - 15) >= 150 || (x % 5 == 0 && y % 4 == 0))
+					image.pixels[y][x] = 1;
+
+		final ConnectedComponent expected = ConnectedComponent.floodFill(image, new Pixel(21, 15));
+		final ConnectedComponent actual = new ConnectedComponent(new RunLengthEncodedPixels(expected.pixels));
+
+		assertEquals(expected.calculateArea(), actual.calculateArea());
+		assertEquals(expected.calculateRegularBoundingBox(), actual.calculateRegularBoundingBox());
+		assertEquals(expected.topLeftMostPixel(), actual.topLeftMostPixel());
+		assertEquals(expected.bottomRightMostPixel(), actual.bottomRightMostPixel());
+		assertEquals(expected.getInnerBoundary(ConnectMode.CONNECT_8), actual.getInnerBoundary(ConnectMode.CONNECT_8));
+
+		for (int p = 0; p < 4; p++) {
+			for (int q = 0; q < 4; q++) {
+				assertEquals(expected.calculateMoment(p, q), actual.calculateMoment(p, q), 1e-6);
+			}
+		}
+
+		final ConnectedComponent clone = actual.clone();
+		clone.translate(3, 4);
+		expected.translate(3, 4);
+		assertEquals(expected.pixels, clone.pixels);
+		assertEquals(actual.topLeftMostPixel().y + 4, clone.topLeftMostPixel().y);
+	}
+
+	/**
+	 * Test creating sets from a label image
+	 */
+	@Test
+	public void testFromLabels() {
+		final Random rng = new Random(3);
+		final int width = 20, height = 15;
+		final int[] labels = new int[width * height];
+		for (int i = 0; i < labels.length; i++)
+			labels[i] = rng.nextInt(4);
+
+		final RunLengthEncodedPixels[] sets = RunLengthEncodedPixels.fromLabels(labels, width, height, 3);
+
+		for (int l = 1; l <= 3; l++) {
+			final Set<Pixel> expected = new HashSet<Pixel>();
+			for (int i = 0; i < labels.length; i++)
+				if (labels[i] == l)
+					expected.add(new Pixel(i % width, i / width));
+
+			assertEquals(expected, sets[l]);
+		}
+	}
+}
@@ -111,21 +111,7 @@ public class DiagonalMultivariateGaussian extends AbstractMultivariateGaussian {
 
 	@Override
 	public double estimateLogProbability(double[] sample) {
-		final int N = this.variance.length;
-		final double[] meanvector = mean.getArray()[0];
-
-		double det = variance[0];
-		for (int i = 1; i < N; i++)
-			det *= variance[i];
-		final double pdf_const_factor = 1.0 / Math.sqrt((Math.pow((2 * Math.PI), N) * det));
-
-		double v = 0;
-		for (int i = 0; i < N; i++) {
-			final double diff = sample[i] - meanvector[i];
-			v += diff * diff / variance[i];
-		}
-
-		return Math.log(pdf_const_factor) + (-0.5 * v);
+		return estimateLogProbability(new double[][] { sample })[0];
 	}
 
 	@Override
@@ -133,19 +119,27 @@ public class DiagonalMultivariateGaussian extends AbstractMultivariateGaussian {
 		final int N = this.variance.length;
 		final double[] meanvector = mean.getArray()[0];
 
-		double det = variance[0];
-		for (int i = 1; i < N; i++)
-			det *= variance[i];
-		final double pdf_const_factor = 1.0 / Math.sqrt((Math.pow((2 * Math.PI), N) * det));
+		// work in the log domain to avoid the determinant under- or
+		// overflowing in high dimensions, and multiply by the inverse
+		// variances rather than dividing in the inner loop
+		final double[] invVariance = new double[N];
+		double logDet = 0;
+		for (int i = 0; i < N; i++) {
+			invVariance[i] = 1.0 / variance[i];
+			logDet += Math.log(variance[i]);
+		}
+		final double logConst = -0.5 * (N * Math.log(2 * Math.PI) + logDet);
 
 		final double[] lp = new double[samples.length];
 		for (int j = 0; j < samples.length; j++) {
+			final double[] sample = samples[j];
+
 			double v = 0;
 			for (int i = 0; i < N; i++) {
-				final double diff = samples[j][i] - meanvector[i];
-				v += diff * diff / variance[i];
+				final double diff = sample[i] - meanvector[i];
+				v += diff * diff * invVariance[i];
 			}
-			lp[j] = Math.log(pdf_const_factor) + (-0.5 * v);
+			lp[j] = logConst - 0.5 * v;
 		}
 
 		return lp;
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.benchmark;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openimaj.data.RandomData;
+import org.openimaj.knn.ByteNearestNeighbours;
+import org.openimaj.knn.ByteNearestNeighboursExact;
+import org.openimaj.ml.clustering.kmeans.ByteKMeans;
+import org.openimaj.ml.clustering.kmeans.KMeansConfiguration;
+import org.openimaj.time.Timer;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * Benchmark showing how the time per iteration of {@link ByteKMeans} scales
+ * with the number of threads, for both the shared (locked) and per-thread
+ * centroid accumulation strategies. Uses a synthetic dataset of 128
+ * dimensional byte vectors.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ByteKMeansScalingBenchmark {
+	private static final int N = 200000;
+	private static final int D = 128;
+	private static final int K = 1000;
+	private static final int NITERS = 3;
+	private static final int BLOCK_SIZE = 1000;
+
+	public static void main(String[] args) throws Exception {
+		final byte[][] data = RandomData.getRandomByteArray(N, D, (byte) -128, (byte) 127, 42);
+		final byte[][] init = RandomData.getRandomByteArray(K, D, (byte) -128, (byte) 127, 43);
+
+		System.out.println("threads\tshared (ms/iter)\tper-thread (ms/iter)");
+		for (int nThreads = 1; nThreads <= 64; nThreads *= 2) {
+			final ExecutorService pool = Executors.newFixedThreadPool(nThreads, new DaemonThreadFactory());
+
+			final double shared = timeIteration(data, init, pool, false);
+			final double perThread = timeIteration(data, init, pool, true);
+
+			System.out.format("%d\t%.1f\t%.1f\n", nThreads, shared, perThread);
+
+			pool.shutdown();
+		}
+	}
+
+	private static double timeIteration(byte[][] data, byte[][] init, ExecutorService pool, boolean perThread)
+			throws InterruptedException
+	{
+		final KMeansConfiguration<ByteNearestNeighbours, byte[]> conf = new KMeansConfiguration<ByteNearestNeighbours, byte[]>(
+				K, new ByteNearestNeighboursExact.Factory(), NITERS, BLOCK_SIZE, pool);
+		conf.setPerThreadAccumulation(perThread);
+
+		final ByteKMeans kmeans = new ByteKMeans(conf);
+		final ByteKMeans.Result result = new ByteKMeans.Result();
+		result.centroids = new byte[K][];
+		for (int i = 0; i < K; i++)
+			result.centroids[i] = init[i].clone();
+
+		final Timer t = Timer.timer();
+		kmeans.cluster(data, result);
+		t.stop();
+
+		return (double) t.duration() / result.numIterations();
+	}
+}
@@ -46,6 +46,7 @@ import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.image.FImage;
 import org.openimaj.image.objectdetection.filtering.DetectionFilter;
 import org.openimaj.image.objectdetection.filtering.OpenCVGrouping;
+import org.openimaj.image.objectdetection.haar.CompiledCascade;
 import org.openimaj.image.objectdetection.haar.Detector;
 import org.openimaj.image.objectdetection.haar.OCVHaarLoader;
 import org.openimaj.image.objectdetection.haar.StageTreeClassifier;
@@ -58,6 +59,11 @@ import org.openimaj.util.pair.ObjectIntPair;
 /**
  * A face detector based on a Haar cascade. The cascades provided by
  * {@link BuiltInCascade} are the same as those available in OpenCV.
+ * <p>
+ * Detection uses an immutable {@link CompiledCascade}, so a single detector
+ * can be used to find faces in multiple images concurrently, provided its
+ * parameters are not changed at the same time. Note that if histogram
+ * equalisation is enabled the input image is modified in-place.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -208,6 +214,18 @@ public class HaarCascadeDetector implements FaceDetector<DetectedFace, FImage> {
 		groupingFilter = new OpenCVGrouping();
 	}
 
+	/**
+	 * Construct with the given compiled cascade. The compiled cascade can be
+	 * shared with other detectors.
+	 * 
+	 * @param cascade
+	 *            The compiled cascade.
+	 */
+	public HaarCascadeDetector(CompiledCascade cascade) {
+		setCascade(cascade);
+		groupingFilter = new OpenCVGrouping();
+	}
+
 	/**
 	 * Construct with the {@link BuiltInCascade#frontalface_default} cascade.
 	 */
@@ -355,6 +373,21 @@ public class HaarCascadeDetector implements FaceDetector<DetectedFace, FImage> {
 		}
 	}
 
+	/**
+	 * Set the compiled cascade classifier for this detector. The compiled
+	 * cascade can be shared with other detectors.
+	 * 
+	 * @param cascade
+	 *            The compiled cascade.
+	 */
+	public void setCascade(CompiledCascade cascade) {
+		if (this.detector == null)
+			this.detector = new Detector(cascade);
+		else
+			this.detector = new Detector(cascade, this.detector.getScaleFactor(), Detector.DEFAULT_SMALL_STEP,
+					Detector.DEFAULT_BIG_STEP);
+	}
+
 	/**
 	 * Set the detector scale factor
 	 * 
@@ -399,7 +432,7 @@ public class HaarCascadeDetector implements FaceDetector<DetectedFace, FImage> {
 
 		hashCode = HashCodeUtil.hash(hashCode, this.detector.getMinimumDetectionSize());
 		hashCode = HashCodeUtil.hash(hashCode, this.detector.getScaleFactor());
-		hashCode = HashCodeUtil.hash(hashCode, this.detector.getClassifier().getName());
+		hashCode = HashCodeUtil.hash(hashCode, this.detector.getCompiledCascade().getName());
 		hashCode = HashCodeUtil.hash(hashCode, this.groupingFilter);
 		hashCode = HashCodeUtil.hash(hashCode, this.histogramEqualize);
 
@@ -429,7 +462,7 @@ public class HaarCascadeDetector implements FaceDetector<DetectedFace, FImage> {
 
 	@Override
 	public String toString() {
-		return "HaarCascadeDetector[cascade=" + detector.getClassifier().getName() + "]";
+		return "HaarCascadeDetector[cascade=" + detector.getCompiledCascade().getName() + "]";
 	}
 
 	/**
@@ -207,6 +207,23 @@ public class ConnectedComponentLabeler implements ImageAnalyser<FImage> {
 				}
 			}
 		},
+		/**
+		 * The two-pass union-find algorithm implemented by
+		 * {@link UnionFindConnectedComponentLabeler}. This is much faster and
+		 * uses much less memory than the other algorithms; the components are
+		 * backed by run-length encoded pixels, and are returned in the raster
+		 * order of their top-left-most pixel.
+		 *
+		 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+		 */
+		UNION_FIND {
+			@Override
+			public List<ConnectedComponent> findComponents(FImage image, float bgThreshold, ConnectMode mode) {
+				final LabelImage labels = UnionFindConnectedComponentLabeler.label(image, bgThreshold, mode, 1, null);
+
+				return labels.createComponents();
+			}
+		},
 		/**
 		 * The flood-fill algorithm
 		 *
@@ -0,0 +1,404 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.RunLengthEncodedPixels;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * The result of labelling the connected components of an image with a
+ * {@link UnionFindConnectedComponentLabeler}. The labels are held in a flat,
+ * row-major <code>int</code> array the same size as the image, where 0
+ * indicates the background and the components are numbered from 1 in the
+ * (raster) order of their top-left-most pixel. Basic statistics (area, bounds,
+ * centroid and second order moments) for every label are computed during
+ * labelling and are held in flat arrays.
+ * <p>
+ * {@link ConnectedComponent} objects are only created when they are requested
+ * through {@link #getComponent(int)} or {@link #getComponents()}, and are
+ * cached once created. The components are backed by
+ * {@link RunLengthEncodedPixels}. This class is not thread-safe.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class LabelImage {
+	private final int width;
+	private final int height;
+	private final int[] labels;
+	private final int numComponents;
+
+	// per-label statistics; index 0 (the background) is unused
+	private final int[] area;
+	private final int[] minX;
+	private final int[] minY;
+	private final int[] maxX;
+	private final int[] maxY;
+	private final double[] sumX;
+	private final double[] sumY;
+	private final double[] sumXX;
+	private final double[] sumXY;
+	private final double[] sumYY;
+
+	private ConnectedComponent[] components;
+
+	/**
+	 * Construct from a label array, computing the statistics for each label.
+	 * The labels must be numbered consecutively from 1; 0 represents the
+	 * background. The array is not copied.
+	 *
+	 * @param labels
+	 *            the labels in row-major order
+	 * @param width
+	 *            the width of the image
+	 * @param height
+	 *            the height of the image
+	 * @param numComponents
+	 *            the number of labels (excluding the background)
+	 */
+	public LabelImage(int[] labels, int width, int height, int numComponents) {
+		if (labels.length != width * height)
+			throw new IllegalArgumentException("Label array size doesn't match the image size");
+
+		this.labels = labels;
+		this.width = width;
+		this.height = height;
+		this.numComponents = numComponents;
+
+		final int n = numComponents + 1;
+		area = new int[n];
+		minX = new int[n];
+		minY = new int[n];
+		maxX = new int[n];
+		maxY = new int[n];
+		sumX = new double[n];
+		sumY = new double[n];
+		sumXX = new double[n];
+		sumXY = new double[n];
+		sumYY = new double[n];
+
+		Arrays.fill(minX, Integer.MAX_VALUE);
+		Arrays.fill(minY, Integer.MAX_VALUE);
+
+		computeStatistics();
+	}
+
+	/**
+	 * Accumulate the statistics one run of equally labelled pixels at a time
+	 */
+	private void computeStatistics() {
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+
+			int x = 0;
+			while (x < width) {
+				final int l = labels[row + x];
+				final int x0 = x;
+				while (x < width && labels[row + x] == l)
+					x++;
+
+				if (l == 0)
+					continue;
+
+				if (l < 0 || l > numComponents)
+					throw new IllegalArgumentException("Invalid label " + l + " at (" + x0 + ", " + y + ")");
+
+				final int x1 = x - 1;
+				final long n = x - x0;
+				// sums of x and x^2 over [x0, x1]
+				final double sx = (x0 + x1) * n / 2.0;
+				final double sxx = sumOfSquares(x1) - sumOfSquares(x0 - 1);
+
+				area[l] += n;
+				sumX[l] += sx;
+				sumY[l] += n * (double) y;
+				sumXX[l] += sxx;
+				sumXY[l] += sx * y;
+				sumYY[l] += n * (double) y * y;
+
+				if (x0 < minX[l])
+					minX[l] = x0;
+				if (x1 > maxX[l])
+					maxX[l] = x1;
+				if (y < minY[l])
+					minY[l] = y;
+				if (y > maxY[l])
+					maxY[l] = y;
+			}
+		}
+	}
+
+	private static double sumOfSquares(long x) {
+		if (x <= 0)
+			return 0;
+		return x * (x + 1) * (2 * x + 1) / 6.0;
+	}
+
+	/**
+	 * @return the width of the labelled image
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the labelled image
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the underlying label array. The labels are stored in row-major order,
+	 * so the label of (x, y) is at index <code>y * width + x</code>. The array
+	 * should not be modified.
+	 *
+	 * @return the label array
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Get the label of the given pixel
+	 *
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return the label, or 0 if the pixel is background
+	 */
+	public int getLabel(int x, int y) {
+		return labels[y * width + x];
+	}
+
+	/**
+	 * @return the number of connected components (not including the
+	 *         background)
+	 */
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	private void checkLabel(int label) {
+		if (label < 1 || label > numComponents)
+			throw new IndexOutOfBoundsException("Label " + label + " is not in the range 1.." + numComponents);
+	}
+
+	/**
+	 * Get the number of pixels with the given label
+	 *
+	 * @param label
+	 *            the label
+	 * @return the area in pixels
+	 */
+	public int getArea(int label) {
+		checkLabel(label);
+		return area[label];
+	}
+
+	/**
+	 * Get the bounding box of the given label. For consistency with
+	 * {@link ConnectedComponent#calculateRegularBoundingBox()}, the width and
+	 * height are the differences between the maximum and minimum ordinates.
+	 *
+	 * @param label
+	 *            the label
+	 * @return the bounding box
+	 */
+	public Rectangle getBounds(int label) {
+		checkLabel(label);
+		return new Rectangle(minX[label], minY[label], maxX[label] - minX[label], maxY[label] - minY[label]);
+	}
+
+	/**
+	 * Get the centroid of the given label
+	 *
+	 * @param label
+	 *            the label
+	 * @return the centroid (x then y)
+	 */
+	public double[] getCentroid(int label) {
+		checkLabel(label);
+		return new double[] { sumX[label] / area[label], sumY[label] / area[label] };
+	}
+
+	/**
+	 * Calculate the pq central moment, μ<sub>pq</sub> of the given label (see
+	 * {@link ConnectedComponent#calculateMoment(int, int)}). Moments up to the
+	 * second order are computed from the statistics gathered during labelling;
+	 * higher order moments require a scan over the label's bounding box.
+	 *
+	 * @param label
+	 *            the label
+	 * @param p
+	 *            The P moment to calculate
+	 * @param q
+	 *            The Q moment to calculate
+	 * @return the central moment
+	 */
+	public double getMoment(int label, int p, int q) {
+		checkLabel(label);
+
+		final double n = area[label];
+		if (p == 0 && q == 0)
+			return n;
+		if (p + q == 1)
+			return 0;
+		if (p == 2 && q == 0)
+			return sumXX[label] - sumX[label] * sumX[label] / n;
+		if (p == 1 && q == 1)
+			return sumXY[label] - sumX[label] * sumY[label] / n;
+		if (p == 0 && q == 2)
+			return sumYY[label] - sumY[label] * sumY[label] / n;
+
+		final double xc = sumX[label] / n;
+		final double yc = sumY[label] / n;
+		double mpq = 0;
+		for (int y = minY[label]; y <= maxY[label]; y++) {
+			final int row = y * width;
+			for (int x = minX[label]; x <= maxX[label]; x++) {
+				if (labels[row + x] == label)
+					mpq += Math.pow(x - xc, p) * Math.pow(y - yc, q);
+			}
+		}
+		return mpq;
+	}
+
+	/**
+	 * Calculate the principal direction of the given label (see
+	 * {@link ConnectedComponent#calculateDirection()}).
+	 *
+	 * @param label
+	 *            the label
+	 * @return The principal direction (-PI/2 to +PI/2 radians)
+	 */
+	public double getDirection(int label) {
+		final double u11 = getMoment(label, 1, 1);
+		final double u20 = getMoment(label, 2, 0);
+		final double u02 = getMoment(label, 0, 2);
+
+		return 0.5 * Math.atan2((2 * u11), (u20 - u02));
+	}
+
+	/**
+	 * Get the {@link ConnectedComponent} with the given label. The component is
+	 * created the first time it is requested.
+	 *
+	 * @param label
+	 *            the label
+	 * @return the connected component
+	 */
+	public ConnectedComponent getComponent(int label) {
+		checkLabel(label);
+
+		if (components == null)
+			components = new ConnectedComponent[numComponents + 1];
+
+		ConnectedComponent cc = components[label];
+		if (cc == null) {
+			final RunLengthEncodedPixels pixels = new RunLengthEncodedPixels(maxY[label] - minY[label] + 1);
+
+			for (int y = minY[label]; y <= maxY[label]; y++) {
+				final int row = y * width;
+
+				int x = minX[label];
+				while (x <= maxX[label]) {
+					if (labels[row + x] == label) {
+						final int start = x;
+						while (x <= maxX[label] && labels[row + x] == label)
+							x++;
+						pixels.addRun(start, y, x - start);
+					} else {
+						x++;
+					}
+				}
+			}
+
+			components[label] = cc = new ConnectedComponent(pixels);
+		}
+
+		return cc;
+	}
+
+	/**
+	 * Create all the {@link ConnectedComponent}s in a single pass over the
+	 * labels. This is more efficient than calling {@link #getComponent(int)}
+	 * for every label when the bounding boxes of the components overlap
+	 * heavily.
+	 *
+	 * @return the list of components, ordered by label
+	 */
+	public List<ConnectedComponent> createComponents() {
+		if (components == null)
+			components = new ConnectedComponent[numComponents + 1];
+
+		final RunLengthEncodedPixels[] pixels = RunLengthEncodedPixels.fromLabels(labels, width, height,
+				numComponents);
+
+		final List<ConnectedComponent> list = new ArrayList<ConnectedComponent>(numComponents);
+		for (int l = 1; l <= numComponents; l++) {
+			if (components[l] == null)
+				components[l] = new ConnectedComponent(pixels[l]);
+
+			list.add(components[l]);
+		}
+
+		return list;
+	}
+
+	/**
+	 * Get a list view of all the components, ordered by label. The components
+	 * are only created when they are accessed.
+	 *
+	 * @return the list of components
+	 */
+	public List<ConnectedComponent> getComponents() {
+		return new AbstractList<ConnectedComponent>() {
+			@Override
+			public ConnectedComponent get(int index) {
+				if (index < 0 || index >= numComponents)
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numComponents);
+
+				return getComponent(index + 1);
+			}
+
+			@Override
+			public int size() {
+				return numComponents;
+			}
+		};
+	}
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.analyser.ImageAnalyser;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * A connected component labeler that uses the two-pass union-find algorithm
+ * to produce a {@link LabelImage}. Unlike the {@link ConnectedComponentLabeler}
+ * algorithms, no per-pixel objects are created; the provisional labels are
+ * written into a flat <code>int</code> array, the equivalences between them
+ * are resolved with a union-find structure, and {@link ConnectedComponent}s are
+ * only created on demand.
+ * <p>
+ * If a thread pool is provided, the image is divided into horizontal strips
+ * which are labelled in parallel; the labels are then merged across the strip
+ * boundaries. The result is the same irrespective of the number of strips;
+ * components are always numbered in the raster order of their first pixel.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindConnectedComponentLabeler implements ImageAnalyser<FImage> {
+	/**
+	 * The minimum number of rows in a strip when labelling in parallel
+	 */
+	private static final int MIN_STRIP_HEIGHT = 16;
+
+	protected float bgThreshold = 0;
+	protected ConnectMode mode;
+	protected ThreadPoolExecutor threadPool;
+	protected LabelImage labels;
+
+	/**
+	 * Construct with background pixels having a value of 0 or less, and the
+	 * given {@link ConnectMode}.
+	 *
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindConnectedComponentLabeler(ConnectMode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct with the given background pixel threshold and
+	 * {@link ConnectMode}.
+	 *
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower values are considered to
+	 *            be the background
+	 * @param mode
+	 *            the connection mode.
+	 */
+	public UnionFindConnectedComponentLabeler(float bgThreshold, ConnectMode mode) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+	}
+
+	/**
+	 * Construct with the given background pixel threshold and
+	 * {@link ConnectMode}. Labelling will be performed in parallel strips using
+	 * the given thread pool.
+	 *
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower values are considered to
+	 *            be the background
+	 * @param mode
+	 *            the connection mode.
+	 * @param threadPool
+	 *            the thread pool; if null labelling is performed in the
+	 *            calling thread.
+	 */
+	public UnionFindConnectedComponentLabeler(float bgThreshold, ConnectMode mode, ThreadPoolExecutor threadPool) {
+		this.bgThreshold = bgThreshold;
+		this.mode = mode;
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Syntactic sugar for calling {@link #analyseImage(FImage)} followed by
+	 * {@link #getLabelImage()}.
+	 *
+	 * @param image
+	 *            the image to label
+	 * @return the labelled image
+	 */
+	public LabelImage label(FImage image) {
+		analyseImage(image);
+		return labels;
+	}
+
+	/**
+	 * Syntactic sugar for calling {@link #analyseImage(FImage)} followed by
+	 * {@link #getComponents()};
+	 *
+	 * @param image
+	 *            the image to extract components from
+	 * @return the extracted components.
+	 */
+	public List<ConnectedComponent> findComponents(FImage image) {
+		analyseImage(image);
+		return labels.getComponents();
+	}
+
+	@Override
+	public void analyseImage(FImage image) {
+		final int nstrips;
+		if (threadPool == null)
+			nstrips = 1;
+		else
+			nstrips = Math.max(1, Math.min(threadPool.getMaximumPoolSize(), image.height / MIN_STRIP_HEIGHT));
+
+		labels = label(image, bgThreshold, mode, nstrips, threadPool);
+	}
+
+	/**
+	 * @return the labels found in the last call to
+	 *         {@link #analyseImage(FImage)}.
+	 */
+	public LabelImage getLabelImage() {
+		return labels;
+	}
+
+	/**
+	 * @return a lazily created list of the components found in the last call
+	 *         to {@link #analyseImage(FImage)}.
+	 */
+	public List<ConnectedComponent> getComponents() {
+		return labels.getComponents();
+	}
+
+	/**
+	 * The provisional labels and their equivalences for a strip of rows
+	 */
+	private static class Strip {
+		final int y0;
+		final int y1;
+		int[] parent = new int[64];
+		int count;
+		int offset;
+
+		Strip(int y0, int y1) {
+			this.y0 = y0;
+			this.y1 = y1;
+		}
+
+		int newLabel() {
+			count++;
+			if (count == parent.length) {
+				final int[] tmp = new int[parent.length * 2];
+				System.arraycopy(parent, 0, tmp, 0, parent.length);
+				parent = tmp;
+			}
+			parent[count] = count;
+			return count;
+		}
+	}
+
+	/**
+	 * Find the root of a label, halving the path as we go.
+	 */
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+
+	/**
+	 * Merge the sets containing the two labels. The root of a set is always its
+	 * smallest label.
+	 */
+	private static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+
+		if (a < b)
+			parent[b] = a;
+		else if (b < a)
+			parent[a] = b;
+	}
+
+	/**
+	 * First pass: assign provisional labels to the rows of a strip, recording
+	 * the equivalences. The row above the strip is not examined.
+	 */
+	private static void labelStrip(FImage image, float bgThreshold, boolean connect8, int[] out, Strip strip) {
+		final int width = image.width;
+
+		for (int y = strip.y0; y < strip.y1; y++) {
+			final float[] row = image.pixels[y];
+			final int r = y * width;
+			final int n = r - width;
+			final boolean north = y > strip.y0;
+
+			for (int x = 0; x < width; x++) {
+				if (!(row[x] > bgThreshold)) {
+					out[r + x] = 0;
+					continue;
+				}
+
+				int label = x > 0 ? out[r + x - 1] : 0;
+
+				if (north) {
+					label = join(strip.parent, label, out[n + x]);
+
+					if (connect8) {
+						if (x > 0)
+							label = join(strip.parent, label, out[n + x - 1]);
+						if (x < width - 1)
+							label = join(strip.parent, label, out[n + x + 1]);
+					}
+				}
+
+				out[r + x] = label == 0 ? strip.newLabel() : label;
+			}
+		}
+	}
+
+	private static int join(int[] parent, int label, int neighbour) {
+		if (neighbour == 0)
+			return label;
+		if (label != 0 && label != neighbour)
+			union(parent, label, neighbour);
+		return label == 0 ? neighbour : label;
+	}
+
+	/**
+	 * Label the connected components of the image.
+	 *
+	 * @param image
+	 *            the image
+	 * @param bgThreshold
+	 *            threshold at which pixels with lower values are considered to
+	 *            be the background
+	 * @param mode
+	 *            the connection mode
+	 * @param nstrips
+	 *            the number of horizontal strips to divide the image into
+	 * @param threadPool
+	 *            the thread pool used to process the strips; if null, the
+	 *            strips are processed in the calling thread
+	 * @return the labelled image
+	 */
+	public static LabelImage label(final FImage image, final float bgThreshold, ConnectMode mode, int nstrips,
+			ThreadPoolExecutor threadPool)
+	{
+		final int width = image.width;
+		final int height = image.height;
+		final boolean connect8 = mode == ConnectMode.CONNECT_8;
+		final int[] out = new int[width * height];
+
+		nstrips = Math.max(1, Math.min(nstrips, height));
+		final Strip[] strips = new Strip[nstrips];
+		for (int i = 0; i < nstrips; i++)
+			strips[i] = new Strip((int) ((long) height * i / nstrips), (int) ((long) height * (i + 1) / nstrips));
+
+		// first pass over each strip
+		forEachStrip(strips, threadPool, new Operation<Strip>() {
+			@Override
+			public void perform(Strip strip) {
+				labelStrip(image, bgThreshold, connect8, out, strip);
+			}
+		});
+
+		// combine the equivalences of all the strips into a single structure
+		int total = 0;
+		for (final Strip s : strips) {
+			s.offset = total;
+			total += s.count;
+		}
+
+		final int[] parent = new int[total + 1];
+		for (final Strip s : strips) {
+			for (int l = 1; l <= s.count; l++)
+				parent[l + s.offset] = s.parent[l] + s.offset;
+			s.parent = null;
+		}
+
+		// merge the labels across the strip boundaries
+		for (int i = 1; i < nstrips; i++) {
+			final Strip s = strips[i];
+			final int above = strips[i - 1].offset;
+			final int r = s.y0 * width;
+			final int n = r - width;
+
+			for (int x = 0; x < width; x++) {
+				if (out[r + x] == 0)
+					continue;
+
+				final int label = out[r + x] + s.offset;
+
+				if (out[n + x] != 0)
+					union(parent, label, out[n + x] + above);
+
+				if (connect8) {
+					if (x > 0 && out[n + x - 1] != 0)
+						union(parent, label, out[n + x - 1] + above);
+					if (x < width - 1 && out[n + x + 1] != 0)
+						union(parent, label, out[n + x + 1] + above);
+				}
+			}
+		}
+
+		// number the sets consecutively; provisional labels were allocated in
+		// raster order, and the root of each set is its smallest label, so
+		// the roots are visited in the raster order of the components
+		final int[] finalLabels = new int[total + 1];
+		int ncomponents = 0;
+		for (int l = 1; l <= total; l++) {
+			final int root = find(parent, l);
+			finalLabels[l] = root == l ? ++ncomponents : finalLabels[root];
+		}
+
+		// second pass: write the final labels
+		forEachStrip(strips, threadPool, new Operation<Strip>() {
+			@Override
+			public void perform(Strip strip) {
+				final int end = strip.y1 * width;
+				for (int i = strip.y0 * width; i < end; i++) {
+					if (out[i] != 0)
+						out[i] = finalLabels[out[i] + strip.offset];
+				}
+			}
+		});
+
+		return new LabelImage(out, width, height, ncomponents);
+	}
+
+	private static void forEachStrip(final Strip[] strips, ThreadPoolExecutor threadPool, final Operation<Strip> op) {
+		if (threadPool == null || strips.length == 1) {
+			for (final Strip s : strips)
+				op.perform(s);
+		} else {
+			Parallel.forIndex(0, strips.length, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					op.perform(strips[i]);
+				}
+			}, threadPool);
+		}
+	}
+}
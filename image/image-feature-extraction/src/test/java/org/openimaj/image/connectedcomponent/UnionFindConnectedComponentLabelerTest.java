@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+
+/**
+ * Tests for the {@link UnionFindConnectedComponentLabeler}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class UnionFindConnectedComponentLabelerTest {
+	final FImage img = new FImage(new float[][] {
+			new float[] { 1, 1, 0, 0, 1, 0 },
+			new float[] { 0, 1, 0, 1, 1, 0 },
+			new float[] { 0, 0, 1, 0, 0, 0 },
+			new float[] { 1, 0, 0, 0, 1, 1 },
+			new float[] { 1, 1, 0, 1, 0, 1 },
+	});
+
+	/**
+	 * Test 4-connected labelling
+	 */
+	@Test
+	public void testConnect4() {
+		final LabelImage labels = new UnionFindConnectedComponentLabeler(ConnectMode.CONNECT_4).label(img);
+
+		assertEquals(6, labels.getNumComponents());
+		assertArrayEquals(new int[] {
+				1, 1, 0, 0, 2, 0,
+				0, 1, 0, 2, 2, 0,
+				0, 0, 3, 0, 0, 0,
+				4, 0, 0, 0, 5, 5,
+				4, 4, 0, 6, 0, 5,
+		}, labels.getLabels());
+
+		assertEquals(3, labels.getArea(1));
+		assertEquals(3, labels.getArea(5));
+		assertArrayEquals(new double[] { 11.0 / 3, 2.0 / 3 }, labels.getCentroid(2), 1e-10);
+	}
+
+	/**
+	 * Test 8-connected labelling
+	 */
+	@Test
+	public void testConnect8() {
+		final LabelImage labels = new UnionFindConnectedComponentLabeler(ConnectMode.CONNECT_8).label(img);
+
+		assertEquals(3, labels.getNumComponents());
+		assertArrayEquals(new int[] {
+				1, 1, 0, 0, 1, 0,
+				0, 1, 0, 1, 1, 0,
+				0, 0, 1, 0, 0, 0,
+				2, 0, 0, 0, 3, 3,
+				2, 2, 0, 3, 0, 3,
+		}, labels.getLabels());
+	}
+
+	/**
+	 * Test that the lazily created components agree with those found by the
+	 * (4-connected) flood-fill algorithm, and that the statistics agree with
+	 * those computed from the components
+	 */
+	@Test
+	public void testComponents() {
+		final FImage image = randomImage(new Random(1), 60, 50, 0.5f);
+		final List<ConnectedComponent> expected = ConnectedComponentLabeler.Algorithm.FLOOD_FILL
+				.findComponents(image, 0, ConnectMode.CONNECT_4);
+
+		for (final ConnectMode mode : ConnectMode.values()) {
+			final LabelImage labels = new UnionFindConnectedComponentLabeler(mode).label(image);
+
+			if (mode == ConnectMode.CONNECT_4) {
+				assertEquals(expected.size(), labels.getNumComponents());
+
+				final Set<Set<Pixel>> expectedSets = new HashSet<Set<Pixel>>();
+				for (final ConnectedComponent cc : expected)
+					expectedSets.add(cc.pixels);
+
+				final Set<Set<Pixel>> actualSets = new HashSet<Set<Pixel>>();
+				for (final ConnectedComponent cc : labels.getComponents())
+					actualSets.add(cc.pixels);
+
+				assertEquals(expectedSets, actualSets);
+			}
+
+			for (int l = 1; l <= labels.getNumComponents(); l++) {
+				final ConnectedComponent cc = labels.getComponent(l);
+
+				assertEquals(cc.calculateArea(), labels.getArea(l));
+				assertEquals(cc.calculateRegularBoundingBox(), labels.getBounds(l));
+				assertArrayEquals(cc.calculateCentroid(), labels.getCentroid(l), 1e-8);
+				assertEquals(cc.calculateMoment(2, 0), labels.getMoment(l, 2, 0), 1e-6);
+				assertEquals(cc.calculateMoment(1, 1), labels.getMoment(l, 1, 1), 1e-6);
+				assertEquals(cc.calculateMoment(0, 2), labels.getMoment(l, 0, 2), 1e-6);
+				assertEquals(cc.calculateMoment(3, 1), labels.getMoment(l, 3, 1), 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Test that labelling in parallel strips gives the same result as
+	 * labelling in a single pass
+	 */
+	@Test
+	public void testParallel() {
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+		final Random rng = new Random(2);
+
+		try {
+			for (int i = 0; i < 20; i++) {
+				final FImage image = randomImage(rng, 1 + rng.nextInt(100), 1 + rng.nextInt(100), rng.nextFloat());
+
+				for (final ConnectMode mode : ConnectMode.values()) {
+					final LabelImage expected = UnionFindConnectedComponentLabeler.label(image, 0, mode, 1, null);
+
+					for (final int nstrips : new int[] { 2, 3, 7, image.height }) {
+						final LabelImage actual = UnionFindConnectedComponentLabeler.label(image, 0, mode, nstrips, pool);
+
+						assertEquals(expected.getNumComponents(), actual.getNumComponents());
+						assertArrayEquals(expected.getLabels(), actual.getLabels());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private FImage randomImage(Random rng, int width, int height, float density) {
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat() < density ? 1 : 0;
+
+		return image;
+	}
+}
@@ -0,0 +1,671 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openimaj.feature.SparseIntFV;
+import org.openimaj.util.array.SparseIntArray;
+import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.queue.BoundedPriorityQueue;
+
+/**
+ * A disk-backed inverted index over bag-of-visual-words histograms. Each
+ * visual word has a posting list of the documents that contain it, together
+ * with the number of occurrences.
+ * <p>
+ * Newly added documents are held in compact in-memory buffers, in which the
+ * gaps between document ids and the term frequencies are stored as
+ * variable-length integers. When the buffers grow beyond a threshold they are
+ * written to an immutable segment file in the index directory, which is then
+ * memory-mapped for searching; segment posting lists are divided into blocks
+ * with a skip table (see {@link PostingsSegment}). The per-document lengths
+ * and norms are appended to a separate file at the same time. As only the
+ * per-document statistics, document frequencies and unflushed postings are
+ * held on the heap, the index can hold many millions of images. Opening an
+ * existing directory re-loads the index.
+ * <p>
+ * Searching is performed term-at-a-time into an array of score accumulators
+ * (one array is kept per searching thread). The query words are processed in
+ * order of decreasing maximum possible contribution. Once the best
+ * <code>k</code> documents can no longer be overtaken by any other document
+ * given the maximum possible contribution of the remaining words, the search
+ * stops accumulating new documents, and the scores of the current top
+ * <code>k</code> are completed by skipping directly to them in the remaining
+ * posting lists. The results are therefore exact.
+ * <p>
+ * The index can be searched concurrently by multiple threads. Additions are
+ * serialised and exclude searches whilst they are in progress.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class InvertedIndex implements Closeable {
+	/**
+	 * The default number of bytes of postings buffered in memory before a
+	 * segment is written
+	 */
+	public static final long DEFAULT_MAX_BUFFER_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * The default number of postings per block in a segment
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 128;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".postings";
+	private static final String DOCUMENTS_FILE = "documents.dat";
+
+	private static final Comparator<IntFloatPair> SCORE_DESCENDING = new Comparator<IntFloatPair>() {
+		@Override
+		public int compare(IntFloatPair o1, IntFloatPair o2) {
+			if (o1.second > o2.second)
+				return -1;
+			if (o1.second < o2.second)
+				return 1;
+			// ties are broken by document id so results are deterministic
+			if (o1.first < o2.first)
+				return -1;
+			if (o1.first > o2.first)
+				return 1;
+			return 0;
+		}
+	};
+
+	private final File directory;
+	private final int numWords;
+	private final TermWeighting weighting;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<PostingsSegment> segments = new ArrayList<PostingsSegment>();
+	private final int[] df;
+	private final TIntArrayList docLengths = new TIntArrayList();
+	private final TFloatArrayList docNorms = new TFloatArrayList();
+	private long totalLength;
+	private int numDocs;
+
+	private PostingBuffer[] buffers;
+	private int bufferFirstDoc;
+	private int statsWritten;
+	private long bufferedBytes;
+	private long maxBufferBytes = DEFAULT_MAX_BUFFER_BYTES;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	private final ThreadLocal<Accumulators> accumulators = new ThreadLocal<Accumulators>() {
+		@Override
+		protected Accumulators initialValue() {
+			return new Accumulators();
+		}
+	};
+
+	private static class Accumulators {
+		float[] scores = new float[0];
+		TIntArrayList touched = new TIntArrayList();
+	}
+
+	private static class QueryTerm {
+		int word;
+		float weight;
+		float bound;
+	}
+
+	/**
+	 * Open the index in the given directory using tf-idf weighting, creating
+	 * it if it doesn't exist.
+	 * 
+	 * @param directory
+	 *            the index directory
+	 * @param numWords
+	 *            the number of visual words (the length of the histograms)
+	 * @throws IOException
+	 *             if an error occurs reading an existing index, or the
+	 *             existing index has a different number of words
+	 */
+	public InvertedIndex(File directory, int numWords) throws IOException {
+		this(directory, numWords, new TermWeighting.TFIDF());
+	}
+
+	/**
+	 * Open the index in the given directory, creating it if it doesn't exist.
+	 * 
+	 * @param directory
+	 *            the index directory
+	 * @param numWords
+	 *            the number of visual words (the length of the histograms)
+	 * @param weighting
+	 *            the weighting scheme used for scoring
+	 * @throws IOException
+	 *             if an error occurs reading an existing index, or the
+	 *             existing index has a different number of words
+	 */
+	public InvertedIndex(File directory, int numWords, TermWeighting weighting) throws IOException {
+		if (numWords <= 0)
+			throw new IllegalArgumentException("numWords must be positive");
+
+		this.directory = directory;
+		this.numWords = numWords;
+		this.weighting = weighting;
+		this.df = new int[numWords];
+		this.buffers = new PostingBuffer[numWords];
+
+		if (!directory.exists() && !directory.mkdirs())
+			throw new IOException("Unable to create " + directory);
+
+		load();
+	}
+
+	private void load() throws IOException {
+		final File[] files = directory.listFiles();
+		final List<File> segmentFiles = new ArrayList<File>();
+		for (final File f : files) {
+			if (f.getName().startsWith(SEGMENT_PREFIX) && f.getName().endsWith(SEGMENT_SUFFIX))
+				segmentFiles.add(f);
+		}
+		Collections.sort(segmentFiles);
+
+		int expectedFirst = 0;
+		for (final File f : segmentFiles) {
+			final PostingsSegment segment = new PostingsSegment(f);
+			segments.add(segment);
+
+			if (segment.numWords() != numWords) {
+				close();
+				throw new IOException("Segment " + f + " has " + segment.numWords() + " words; expected " + numWords);
+			}
+			if (segment.firstDoc() != expectedFirst) {
+				close();
+				throw new IOException("Segment " + f + " does not follow the previous segment");
+			}
+			expectedFirst += segment.numDocs();
+
+			for (int w = 0; w < numWords; w++)
+				df[w] += segment.count(w);
+		}
+
+		final File docsFile = new File(directory, DOCUMENTS_FILE);
+		final long docsLength = 8L * expectedFirst;
+		if (docsFile.length() < docsLength) {
+			close();
+			throw new IOException("Document statistics are missing from " + directory);
+		}
+
+		if (docsFile.length() > docsLength) {
+			// discard the statistics of documents whose segment was never
+			// completed
+			final RandomAccessFile raf = new RandomAccessFile(docsFile, "rw");
+			try {
+				raf.setLength(docsLength);
+			} finally {
+				raf.close();
+			}
+		}
+
+		if (expectedFirst > 0) {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(docsFile)));
+			try {
+				for (int i = 0; i < expectedFirst; i++) {
+					final int length = in.readInt();
+					docLengths.add(length);
+					docNorms.add(in.readFloat());
+					totalLength += length;
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		numDocs = expectedFirst;
+		bufferFirstDoc = numDocs;
+		statsWritten = numDocs;
+	}
+
+	/**
+	 * Add a document to the index. Entries of the histogram that are not
+	 * positive are ignored.
+	 * 
+	 * @param histogram
+	 *            the visual word histogram of the document
+	 * @return the id assigned to the document
+	 * @throws IOException
+	 *             if an error occurs writing a segment
+	 */
+	public int add(SparseIntFV histogram) throws IOException {
+		final SparseIntArray values = histogram.values;
+
+		for (final SparseIntArray.Entry e : values.entries()) {
+			if (e.value > 0 && (e.index < 0 || e.index >= numWords))
+				throw new IllegalArgumentException("Visual word " + e.index + " is out of range");
+		}
+
+		lock.writeLock().lock();
+		try {
+			final int doc = numDocs;
+			int length = 0;
+			double sumsq = 0;
+
+			for (final SparseIntArray.Entry e : values.entries()) {
+				if (e.value <= 0)
+					continue;
+
+				PostingBuffer pb = buffers[e.index];
+				if (pb == null)
+					pb = buffers[e.index] = new PostingBuffer();
+
+				bufferedBytes += pb.add(doc, e.value);
+				df[e.index]++;
+				length += e.value;
+				sumsq += (double) e.value * e.value;
+			}
+
+			docLengths.add(length);
+			docNorms.add((float) Math.sqrt(sumsq));
+			totalLength += length;
+			numDocs++;
+
+			if (bufferedBytes >= maxBufferBytes)
+				flush();
+
+			return doc;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Write any buffered postings to a new segment, and append the statistics
+	 * of the buffered documents to the document file. Does nothing if there
+	 * are no buffered documents.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs writing the files
+	 */
+	public void flush() throws IOException {
+		lock.writeLock().lock();
+		try {
+			final int count = numDocs - bufferFirstDoc;
+			if (count == 0)
+				return;
+
+			if (statsWritten < numDocs) {
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+						new File(directory, DOCUMENTS_FILE), true)));
+				try {
+					for (int i = statsWritten; i < numDocs; i++) {
+						out.writeInt(docLengths.getQuick(i));
+						out.writeFloat(docNorms.getQuick(i));
+					}
+				} finally {
+					out.close();
+				}
+				statsWritten = numDocs;
+			}
+
+			final File file = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, bufferFirstDoc,
+					SEGMENT_SUFFIX));
+			final File tmp = new File(directory, file.getName() + ".tmp");
+
+			// the segment only becomes visible once it is complete
+			PostingsSegment.write(tmp, buffers, bufferFirstDoc, count, blockSize);
+			if (!tmp.renameTo(file))
+				throw new IOException("Unable to rename " + tmp + " to " + file);
+
+			segments.add(new PostingsSegment(file));
+
+			buffers = new PostingBuffer[numWords];
+			bufferedBytes = 0;
+			bufferFirstDoc = numDocs;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Search the index for the documents most similar to the query.
+	 * 
+	 * @param query
+	 *            the visual word histogram of the query
+	 * @param k
+	 *            the maximum number of results
+	 * @return the ids and scores of the best matching documents, in order of
+	 *         decreasing score
+	 */
+	public List<IntFloatPair> search(SparseIntFV query, int k) {
+		if (k <= 0)
+			throw new IllegalArgumentException("k must be positive");
+
+		lock.readLock().lock();
+		try {
+			if (numDocs == 0)
+				return new ArrayList<IntFloatPair>(0);
+
+			final QueryTerm[] terms = prepareQuery(query);
+			final float avgDocLength = (float) ((double) totalLength / numDocs);
+
+			final Accumulators acc = accumulators.get();
+			if (acc.scores.length < numDocs)
+				acc.scores = new float[Math.max(numDocs, acc.scores.length + (acc.scores.length >> 1))];
+			final float[] scores = acc.scores;
+			final TIntArrayList touched = acc.touched;
+
+			try {
+				float remaining = 0;
+				for (final QueryTerm t : terms)
+					remaining += t.bound;
+
+				float maxScore = 0;
+				int[] candidates = null;
+
+				for (final QueryTerm term : terms) {
+					remaining -= term.bound;
+
+					for (final PostingCursor cursor : cursors(term.word)) {
+						if (candidates == null) {
+							// accumulate every posting
+							while (cursor.next() != PostingCursor.NO_MORE_DOCS) {
+								final int d = cursor.doc();
+								final float s = scores[d];
+								if (s == 0)
+									touched.add(d);
+
+								final float ns = s + term.weight * docWeight(d, cursor.tf(), avgDocLength);
+								scores[d] = ns;
+								if (ns > maxScore)
+									maxScore = ns;
+							}
+						} else {
+							// only complete the scores of the candidates
+							for (final int d : candidates) {
+								if (cursor.advance(d) == PostingCursor.NO_MORE_DOCS)
+									break;
+								if (cursor.doc() == d)
+									scores[d] += term.weight * docWeight(d, cursor.tf(), avgDocLength);
+							}
+						}
+					}
+
+					if (candidates == null && touched.size() > k && remaining < maxScore)
+						candidates = tryPrune(scores, touched, k, remaining);
+				}
+
+				return selectTopK(scores, candidates != null ? new TIntArrayList(candidates) : touched, k);
+			} finally {
+				for (int i = 0; i < touched.size(); i++)
+					scores[touched.getQuick(i)] = 0;
+				touched.resetQuick();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private float docWeight(int doc, int tf, float avgDocLength) {
+		return weighting.documentWeight(tf, docLengths.getQuick(doc), docNorms.getQuick(doc), avgDocLength);
+	}
+
+	/**
+	 * Convert the query histogram into weighted terms, sorted by decreasing
+	 * maximum contribution to a document's score. Words that do not occur in
+	 * the index, or which have no weight, are dropped.
+	 */
+	private QueryTerm[] prepareQuery(SparseIntFV query) {
+		final List<QueryTerm> terms = new ArrayList<QueryTerm>();
+		final float maxDocWeight = weighting.maxDocumentWeight();
+
+		for (final SparseIntArray.Entry e : query.values.entries()) {
+			if (e.value <= 0 || e.index < 0 || e.index >= numWords || df[e.index] == 0)
+				continue;
+
+			final float weight = weighting.queryWeight(e.value, weighting.idf(df[e.index], numDocs));
+			if (weight <= 0)
+				continue;
+
+			final QueryTerm term = new QueryTerm();
+			term.word = e.index;
+			term.weight = weight;
+			term.bound = weight * maxDocWeight;
+			terms.add(term);
+		}
+
+		final QueryTerm[] arr = terms.toArray(new QueryTerm[terms.size()]);
+		Arrays.sort(arr, new Comparator<QueryTerm>() {
+			@Override
+			public int compare(QueryTerm o1, QueryTerm o2) {
+				if (o1.bound > o2.bound)
+					return -1;
+				if (o1.bound < o2.bound)
+					return 1;
+				return o1.word < o2.word ? -1 : (o1.word == o2.word ? 0 : 1);
+			}
+		});
+
+		return arr;
+	}
+
+	private List<PostingCursor> cursors(int word) {
+		final List<PostingCursor> cursors = new ArrayList<PostingCursor>(segments.size() + 1);
+
+		for (final PostingsSegment segment : segments) {
+			final PostingCursor c = segment.cursor(word);
+			if (c != null)
+				cursors.add(c);
+		}
+
+		if (buffers[word] != null)
+			cursors.add(buffers[word].cursor());
+
+		return cursors;
+	}
+
+	/**
+	 * Test whether the current top-k documents are guaranteed to be the final
+	 * top-k; that is, whether the (k+1)th best document plus the maximum
+	 * remaining contribution is strictly less than the kth best document.
+	 * 
+	 * @return the sorted ids of the top-k documents if so; null otherwise
+	 */
+	private int[] tryPrune(float[] scores, TIntArrayList touched, int k, float remaining) {
+		final BoundedPriorityQueue<IntFloatPair> queue = fillQueue(scores, touched, k + 1);
+
+		final float kp1th = queue.pollTail().second;
+		final float kth = queue.peekTail().second;
+
+		if (kp1th + remaining >= kth)
+			return null;
+
+		final int[] candidates = new int[queue.size()];
+		int i = 0;
+		for (final IntFloatPair p : queue)
+			candidates[i++] = p.first;
+		Arrays.sort(candidates);
+
+		return candidates;
+	}
+
+	private List<IntFloatPair> selectTopK(float[] scores, TIntArrayList docs, int k) {
+		return fillQueue(scores, docs, k).toOrderedListDestructive();
+	}
+
+	private BoundedPriorityQueue<IntFloatPair> fillQueue(float[] scores, TIntArrayList docs, int size) {
+		final BoundedPriorityQueue<IntFloatPair> queue = new BoundedPriorityQueue<IntFloatPair>(size,
+				SCORE_DESCENDING);
+
+		IntFloatPair wp = new IntFloatPair();
+		for (int i = 0; i < docs.size(); i++) {
+			wp.first = docs.getQuick(i);
+			wp.second = scores[wp.first];
+			wp = queue.offerItem(wp);
+
+			if (wp == null)
+				wp = new IntFloatPair();
+		}
+
+		return queue;
+	}
+
+	/**
+	 * @return the number of documents in the index
+	 */
+	public int numDocuments() {
+		lock.readLock().lock();
+		try {
+			return numDocs;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of visual words
+	 */
+	public int numWords() {
+		return numWords;
+	}
+
+	/**
+	 * Get the number of documents containing the given word
+	 * 
+	 * @param word
+	 *            the word
+	 * @return the document frequency
+	 */
+	public int documentFrequency(int word) {
+		lock.readLock().lock();
+		try {
+			return df[word];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of segments written to disk
+	 */
+	public int numSegments() {
+		lock.readLock().lock();
+		try {
+			return segments.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the weighting scheme used for scoring
+	 */
+	public TermWeighting getWeighting() {
+		return weighting;
+	}
+
+	/**
+	 * @return the number of bytes of postings buffered in memory before a
+	 *         segment is written
+	 */
+	public long getMaxBufferBytes() {
+		return maxBufferBytes;
+	}
+
+	/**
+	 * Set the number of bytes of postings buffered in memory before a segment
+	 * is written. Each segment must be smaller than 2GB.
+	 * 
+	 * @param maxBufferBytes
+	 *            the maximum number of buffered bytes
+	 */
+	public void setMaxBufferBytes(long maxBufferBytes) {
+		if (maxBufferBytes <= 0 || maxBufferBytes > Integer.MAX_VALUE / 2)
+			throw new IllegalArgumentException("Invalid buffer size");
+
+		this.maxBufferBytes = maxBufferBytes;
+	}
+
+	/**
+	 * @return the number of postings per block in newly written segments
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Set the number of postings per block in newly written segments. Smaller
+	 * blocks allow finer skipping at the cost of a larger skip table.
+	 * 
+	 * @param blockSize
+	 *            the block size
+	 */
+	public void setBlockSize(int blockSize) {
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive");
+
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @return the index directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Flush any buffered documents and close the segments. The index must not
+	 * be used after closing.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (numDocs > bufferFirstDoc)
+				flush();
+
+			for (final PostingsSegment segment : segments)
+				segment.close();
+			segments.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
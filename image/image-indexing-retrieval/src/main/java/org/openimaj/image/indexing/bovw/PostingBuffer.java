@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory posting list that is being built. Each posting is stored as a
+ * pair of variable-length integers: the gap from the previous document id,
+ * followed by the term frequency. Postings must be added in order of
+ * increasing document id.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class PostingBuffer {
+	byte[] data = new byte[8];
+	int length;
+	int count;
+	int lastDoc = -1;
+
+	/**
+	 * Append a posting
+	 * 
+	 * @param doc
+	 *            the document id; must be greater than any previously added
+	 * @param tf
+	 *            the term frequency
+	 * @return the number of bytes used to encode the posting
+	 */
+	int add(int doc, int tf) {
+		final int start = length;
+
+		ensureCapacity(length + 10);
+		length = writeVarInt(data, length, doc - lastDoc);
+		length = writeVarInt(data, length, tf);
+
+		lastDoc = doc;
+		count++;
+
+		return length - start;
+	}
+
+	private void ensureCapacity(int required) {
+		if (required > data.length)
+			data = Arrays.copyOf(data, Math.max(required, data.length + (data.length >> 1)));
+	}
+
+	/**
+	 * @return a cursor over the postings added so far
+	 */
+	PostingCursor cursor() {
+		final byte[] data = this.data;
+		final int length = this.length;
+
+		return new PostingCursor() {
+			int pos = 0;
+
+			@Override
+			int next() {
+				if (pos >= length)
+					return doc = NO_MORE_DOCS;
+
+				int v = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = data[pos++];
+					v |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				doc += v;
+
+				v = 0;
+				shift = 0;
+				do {
+					b = data[pos++];
+					v |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				tf = v;
+
+				return doc;
+			}
+		};
+	}
+
+	/**
+	 * Write a non-negative integer into the array as a variable-length
+	 * integer with seven bits per byte, least significant group first. The
+	 * array must have space for five bytes.
+	 * 
+	 * @param buffer
+	 *            the array
+	 * @param pos
+	 *            the position to write at
+	 * @param value
+	 *            the value
+	 * @return the position after the written bytes
+	 */
+	static int writeVarInt(byte[] buffer, int pos, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+
+		return pos;
+	}
+}
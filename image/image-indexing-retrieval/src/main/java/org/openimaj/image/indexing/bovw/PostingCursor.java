@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+/**
+ * A forward-only cursor over a posting list. Postings are visited in order of
+ * increasing document id. The cursor starts before the first posting, so
+ * {@link #next()} or {@link #advance(int)} must be called before
+ * {@link #doc()} is valid.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+abstract class PostingCursor {
+	/**
+	 * Document id returned once the postings are exhausted
+	 */
+	static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	protected int doc = -1;
+	protected int tf;
+
+	/**
+	 * Move to the next posting
+	 * 
+	 * @return the document id of the next posting, or {@link #NO_MORE_DOCS}
+	 */
+	abstract int next();
+
+	/**
+	 * Move to the first posting with a document id greater than or equal to
+	 * the target. The default implementation steps through the postings in
+	 * turn; implementations with skip information should override this.
+	 * 
+	 * @param target
+	 *            the target document id
+	 * @return the document id of the posting, or {@link #NO_MORE_DOCS}
+	 */
+	int advance(int target) {
+		while (doc < target)
+			next();
+
+		return doc;
+	}
+
+	/**
+	 * @return the document id of the current posting
+	 */
+	final int doc() {
+		return doc;
+	}
+
+	/**
+	 * @return the term frequency of the current posting
+	 */
+	final int tf() {
+		return tf;
+	}
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * An immutable, memory-mapped segment of an {@link InvertedIndex}. A segment
+ * holds the posting lists of every visual word for a contiguous range of
+ * document ids.
+ * <p>
+ * The file starts with a header (magic number, number of words, first
+ * document id and number of documents), followed by a table of the byte
+ * offsets of each word's posting list, relative to the end of the table. Each
+ * posting list is stored as the number of postings and the number of blocks
+ * (as variable-length integers), followed by a skip table with the first
+ * document id and relative byte offset of each block (as fixed-width
+ * integers), followed by the blocks themselves. Within a block, each posting
+ * is stored as the gap from the previous document id (the first gap being
+ * from the block's first document id) and the term frequency, both as
+ * variable-length integers. The skip table allows a cursor to jump directly to
+ * the block that might contain a given document.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+final class PostingsSegment implements Closeable {
+	private static final int MAGIC = 0x42575053; // "BWPS"
+	private static final int HEADER_LENGTH = 16;
+
+	private final File file;
+	private final int numWords;
+	private final int firstDoc;
+	private final int numDocs;
+	private final int dataStart;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer buffer;
+
+	/**
+	 * Open an existing segment
+	 * 
+	 * @param file
+	 *            the segment file
+	 * @throws IOException
+	 *             if an error occurs reading the file, or it is not a segment
+	 */
+	PostingsSegment(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+
+		final FileChannel channel = raf.getChannel();
+		if (channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE) {
+			raf.close();
+			throw new IOException(file + " is not a valid postings segment");
+		}
+
+		this.buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+
+		if (buffer.getInt(0) != MAGIC) {
+			raf.close();
+			throw new IOException(file + " is not a postings segment");
+		}
+
+		this.numWords = buffer.getInt(4);
+		this.firstDoc = buffer.getInt(8);
+		this.numDocs = buffer.getInt(12);
+		this.dataStart = HEADER_LENGTH + 4 * (numWords + 1);
+	}
+
+	/**
+	 * Write the contents of the given buffers to a new segment file
+	 * 
+	 * @param file
+	 *            the file to write
+	 * @param buffers
+	 *            the posting buffers, indexed by word; null entries are empty
+	 *            lists
+	 * @param firstDoc
+	 *            the first document id covered by the segment
+	 * @param numDocs
+	 *            the number of documents covered by the segment
+	 * @param blockSize
+	 *            the number of postings per block
+	 * @throws IOException
+	 *             if an error occurs writing the file
+	 */
+	static void write(File file, PostingBuffer[] buffers, int firstDoc, int numDocs, int blockSize)
+			throws IOException
+	{
+		final int numWords = buffers.length;
+		final int[] offsets = new int[numWords + 1];
+		final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+		final byte[] tmp = new byte[10];
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			// reserve space for the header and offset table
+			for (int i = 0; i < HEADER_LENGTH + 4 * (numWords + 1); i++)
+				out.write(0);
+
+			long position = 0;
+			for (int w = 0; w < numWords; w++) {
+				offsets[w] = (int) position;
+
+				final PostingBuffer pb = buffers[w];
+				if (pb == null || pb.count == 0)
+					continue;
+
+				final int nblocks = (pb.count + blockSize - 1) / blockSize;
+				final int[] blockFirstDocs = new int[nblocks];
+				final int[] blockOffsets = new int[nblocks];
+
+				blocks.reset();
+				final PostingCursor cursor = pb.cursor();
+				int prev = 0;
+				for (int i = 0; i < pb.count; i++) {
+					final int doc = cursor.next();
+
+					if (i % blockSize == 0) {
+						blockFirstDocs[i / blockSize] = doc;
+						blockOffsets[i / blockSize] = blocks.size();
+						prev = doc;
+					}
+
+					int len = PostingBuffer.writeVarInt(tmp, 0, doc - prev);
+					len = PostingBuffer.writeVarInt(tmp, len, cursor.tf());
+					blocks.write(tmp, 0, len);
+					prev = doc;
+				}
+
+				int len = PostingBuffer.writeVarInt(tmp, 0, pb.count);
+				len = PostingBuffer.writeVarInt(tmp, len, nblocks);
+				out.write(tmp, 0, len);
+				for (int b = 0; b < nblocks; b++) {
+					out.writeInt(blockFirstDocs[b]);
+					out.writeInt(blockOffsets[b]);
+				}
+				blocks.writeTo(out);
+
+				position += len + 8L * nblocks + blocks.size();
+				if (HEADER_LENGTH + 4L * (numWords + 1) + position > Integer.MAX_VALUE)
+					throw new IOException("Segment is too large; reduce the buffer size of the index");
+			}
+			offsets[numWords] = (int) position;
+		} finally {
+			out.close();
+		}
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + 4 * (numWords + 1));
+			header.putInt(MAGIC);
+			header.putInt(numWords);
+			header.putInt(firstDoc);
+			header.putInt(numDocs);
+			for (final int offset : offsets)
+				header.putInt(offset);
+			header.flip();
+
+			raf.getChannel().write(header, 0);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the number of words
+	 */
+	int numWords() {
+		return numWords;
+	}
+
+	/**
+	 * @return the first document id covered by this segment
+	 */
+	int firstDoc() {
+		return firstDoc;
+	}
+
+	/**
+	 * @return the number of documents covered by this segment
+	 */
+	int numDocs() {
+		return numDocs;
+	}
+
+	/**
+	 * @return the segment file
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the number of postings for the given word
+	 * 
+	 * @param word
+	 *            the word
+	 * @return the number of postings
+	 */
+	int count(int word) {
+		final int start = dataStart + buffer.getInt(HEADER_LENGTH + 4 * word);
+		final int end = dataStart + buffer.getInt(HEADER_LENGTH + 4 * (word + 1));
+
+		if (start == end)
+			return 0;
+
+		int v = 0;
+		int shift = 0;
+		int pos = start;
+		byte b;
+		do {
+			b = buffer.get(pos++);
+			v |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return v;
+	}
+
+	/**
+	 * Get a cursor over the postings of the given word
+	 * 
+	 * @param word
+	 *            the word
+	 * @return the cursor, or null if the word has no postings
+	 */
+	PostingCursor cursor(int word) {
+		final int start = dataStart + buffer.getInt(HEADER_LENGTH + 4 * word);
+		final int end = dataStart + buffer.getInt(HEADER_LENGTH + 4 * (word + 1));
+
+		if (start == end)
+			return null;
+
+		return new SegmentCursor(start, end);
+	}
+
+	/**
+	 * Cursor that decodes directly from the mapped buffer using absolute
+	 * reads, so any number of cursors can be used concurrently.
+	 */
+	private final class SegmentCursor extends PostingCursor {
+		private final int end;
+		private final int nblocks;
+		private final int skipStart;
+		private final int blocksStart;
+		private int pos;
+		private int block = -1;
+		private int blockEnd;
+
+		SegmentCursor(int start, int end) {
+			this.end = end;
+			this.pos = start;
+
+			readVarInt(); // count
+			this.nblocks = readVarInt();
+			this.skipStart = pos;
+			this.blocksStart = skipStart + 8 * nblocks;
+			this.pos = blocksStart;
+		}
+
+		private int readVarInt() {
+			int v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get(pos++);
+				v |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			return v;
+		}
+
+		private int blockFirstDoc(int b) {
+			return buffer.getInt(skipStart + 8 * b);
+		}
+
+		private void enterBlock(int b) {
+			block = b;
+			pos = blocksStart + buffer.getInt(skipStart + 8 * b + 4);
+			blockEnd = b + 1 < nblocks ? blocksStart + buffer.getInt(skipStart + 8 * (b + 1) + 4) : end;
+			doc = blockFirstDoc(b);
+		}
+
+		@Override
+		int next() {
+			if (block < 0 || pos >= blockEnd) {
+				if (block + 1 >= nblocks)
+					return doc = NO_MORE_DOCS;
+
+				enterBlock(block + 1);
+			}
+
+			doc += readVarInt();
+			tf = readVarInt();
+
+			return doc;
+		}
+
+		@Override
+		int advance(int target) {
+			if (doc >= target)
+				return doc;
+
+			// binary search for the last block starting at or before the target
+			int lo = Math.max(block, 0);
+			int hi = nblocks - 1;
+			while (lo < hi) {
+				final int mid = (lo + hi + 1) >>> 1;
+				if (blockFirstDoc(mid) <= target)
+					lo = mid;
+				else
+					hi = mid - 1;
+			}
+
+			if (lo > block) {
+				// jump to the block; its first posting has a gap of zero
+				enterBlock(lo);
+				doc += readVarInt();
+				tf = readVarInt();
+			}
+
+			while (doc < target)
+				next();
+
+			return doc;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		raf.close();
+	}
+}
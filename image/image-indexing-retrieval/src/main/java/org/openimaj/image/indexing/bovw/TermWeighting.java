@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+
+/**
+ * A weighting scheme for scoring documents in an {@link InvertedIndex}. The
+ * score of a document is the sum over the words it shares with the query of
+ * the product of the query weight and the document weight of each word.
+ * <p>
+ * In order to allow searches to terminate early, the document weight must be
+ * bounded above by {@link #maxDocumentWeight()}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public interface TermWeighting {
+	/**
+	 * Compute the inverse document frequency of a word
+	 * 
+	 * @param df
+	 *            the number of documents containing the word
+	 * @param numDocs
+	 *            the total number of documents
+	 * @return the inverse document frequency
+	 */
+	public float idf(int df, int numDocs);
+
+	/**
+	 * Compute the weight of a word in the query
+	 * 
+	 * @param tf
+	 *            the number of occurrences of the word in the query
+	 * @param idf
+	 *            the inverse document frequency of the word
+	 * @return the weight
+	 */
+	public float queryWeight(int tf, float idf);
+
+	/**
+	 * Compute the weight of a word in a document
+	 * 
+	 * @param tf
+	 *            the number of occurrences of the word in the document
+	 * @param docLength
+	 *            the total number of words in the document
+	 * @param docNorm
+	 *            the L2 norm of the document's word histogram
+	 * @param avgDocLength
+	 *            the average number of words in a document
+	 * @return the weight
+	 */
+	public float documentWeight(int tf, int docLength, float docNorm, float avgDocLength);
+
+	/**
+	 * @return an upper bound on {@link #documentWeight(int, int, float, float)}
+	 */
+	public float maxDocumentWeight();
+
+	/**
+	 * Standard tf-idf weighting, giving the cosine similarity between the
+	 * idf-weighted query histogram and the L2-normalised document histogram.
+	 * The query normalisation is omitted as it does not affect the ranking.
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	@Reference(
+			type = ReferenceType.Inproceedings,
+			author = { "Sivic, J.", "Zisserman, A." },
+			title = "Video Google: A Text Retrieval Approach to Object Matching in Videos",
+			year = "2003",
+			booktitle = "Proceedings of the Ninth IEEE International Conference on Computer Vision",
+			pages = { "1470", "1477" })
+	public static class TFIDF implements TermWeighting {
+		@Override
+		public float idf(int df, int numDocs) {
+			return (float) Math.log((double) numDocs / df);
+		}
+
+		@Override
+		public float queryWeight(int tf, float idf) {
+			return tf * idf * idf;
+		}
+
+		@Override
+		public float documentWeight(int tf, int docLength, float docNorm, float avgDocLength) {
+			return tf / docNorm;
+		}
+
+		@Override
+		public float maxDocumentWeight() {
+			return 1;
+		}
+	}
+
+	/**
+	 * Okapi BM25 weighting
+	 * 
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	@Reference(
+			type = ReferenceType.Inproceedings,
+			author = { "Robertson, S. E.", "Walker, S.", "Jones, S.", "Hancock-Beaulieu, M. M.", "Gatford, M." },
+			title = "Okapi at TREC-3",
+			year = "1994",
+			booktitle = "Proceedings of the Third Text REtrieval Conference (TREC-3)",
+			pages = { "109", "126" })
+	public static class BM25 implements TermWeighting {
+		/** The default term frequency saturation parameter */
+		public static final float DEFAULT_K1 = 1.2f;
+
+		/** The default document length normalisation parameter */
+		public static final float DEFAULT_B = 0.75f;
+
+		protected float k1;
+		protected float b;
+
+		/**
+		 * Construct with the default parameters
+		 */
+		public BM25() {
+			this(DEFAULT_K1, DEFAULT_B);
+		}
+
+		/**
+		 * Construct with the given parameters
+		 * 
+		 * @param k1
+		 *            the term frequency saturation parameter
+		 * @param b
+		 *            the document length normalisation parameter
+		 */
+		public BM25(float k1, float b) {
+			this.k1 = k1;
+			this.b = b;
+		}
+
+		@Override
+		public float idf(int df, int numDocs) {
+			return (float) Math.log(1 + (numDocs - df + 0.5) / (df + 0.5));
+		}
+
+		@Override
+		public float queryWeight(int tf, float idf) {
+			return tf * idf;
+		}
+
+		@Override
+		public float documentWeight(int tf, int docLength, float docNorm, float avgDocLength) {
+			return tf * (k1 + 1) / (tf + k1 * (1 - b + b * docLength / avgDocLength));
+		}
+
+		@Override
+		public float maxDocumentWeight() {
+			return k1 + 1;
+		}
+	}
+}
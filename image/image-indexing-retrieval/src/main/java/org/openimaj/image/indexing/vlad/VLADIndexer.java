@@ -29,8 +29,16 @@
  */
 package org.openimaj.image.indexing.vlad;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.openimaj.data.identity.Identifiable;
 import org.openimaj.image.ImageProvider;
@@ -38,8 +46,9 @@ import org.openimaj.image.MBFImage;
 import org.openimaj.image.indexing.IncrementalIndexer;
 import org.openimaj.image.searching.ImageSearchResult;
 import org.openimaj.image.searching.IncrementalMetaIndex;
-import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
+import org.openimaj.knn.IncrementalNearestNeighbours;
 import org.openimaj.util.pair.IntFloatPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 public class VLADIndexer<DATA extends ImageProvider<MBFImage>, METADATA extends Identifiable>
 		implements
@@ -48,31 +57,166 @@ public class VLADIndexer<DATA extends ImageProvider<MBFImage>, METADATA extends
 	private static final int DEFAULT_MAX_RESULTS = 5000;
 
 	private VLADIndexerData indexerData;
-	private IncrementalFloatADCNearestNeighbours nn;
+	private IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn;
 	private IncrementalMetaIndex<DATA, METADATA> metaStore;
 
+	// guards nn and metaStore, which are not thread-safe themselves
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
 	public VLADIndexer(VLADIndexerData indexerData, IncrementalMetaIndex<DATA, METADATA> metaStore) {
 		this.indexerData = indexerData;
 		this.nn = indexerData.createIncrementalIndex();
 		this.metaStore = metaStore;
 	}
 
+	public VLADIndexer(VLADIndexerData indexerData, IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn,
+			IncrementalMetaIndex<DATA, METADATA> metaStore)
+	{
+		this.indexerData = indexerData;
+		this.nn = nn;
+		this.metaStore = metaStore;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Images from which no local features could be extracted have no PCA-VLAD
+	 * feature, and are skipped without being assigned an identifier.
+	 */
 	@Override
 	public void indexImage(DATA image) {
-		final int id = indexerData.index(image.getImage(), nn);
-		metaStore.put(id, image);
+		final float[] vector = indexerData.extractPcaVlad(image.getImage());
+
+		if (vector != null)
+			append(vector, image);
+	}
+
+	private int append(float[] vector, DATA image) {
+		lock.writeLock().lock();
+		try {
+			final int id = nn.add(vector);
+			metaStore.put(id, image);
+			return id;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Index all the given images using the global thread pool. See
+	 * {@link #indexImages(Iterable, ThreadPoolExecutor, int)} for details.
+	 * 
+	 * @param images
+	 *            the images to index
+	 * @return the number of images that were indexed
+	 */
+	public int indexImages(Iterable<? extends DATA> images) {
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+
+		return indexImages(images, pool, 2 * pool.getMaximumPoolSize());
+	}
+
+	/**
+	 * Index all the given images. The images are decoded, and their PCA-VLAD
+	 * features extracted, by tasks running on the given pool. The features are
+	 * then added to the index by the calling thread, in the order the images
+	 * were given. Images from which no local features could be extracted are
+	 * skipped, exactly as by {@link #indexImage(ImageProvider)}, so (in the
+	 * absence of other concurrent indexing) the assigned identifiers are the
+	 * same as those that would be assigned by calling
+	 * {@link #indexImage(ImageProvider)} on each image in turn. At most
+	 * <code>maxInFlight</code> images are being processed at any one time;
+	 * once this limit is reached no more images are read from the input until
+	 * the oldest has been added to the index, so memory use is bounded however
+	 * many images are given.
+	 * <p>
+	 * The feature extractor of the {@link VLADIndexerData} must be thread
+	 * safe. Other threads may index or search concurrently. If the extraction
+	 * of any image fails, the exception is rethrown, the images before it
+	 * remain indexed, and the extraction of the images after it is cancelled.
+	 * 
+	 * @param images
+	 *            the images to index
+	 * @param pool
+	 *            the thread pool used for feature extraction
+	 * @param maxInFlight
+	 *            the maximum number of images being processed at once
+	 * @return the number of images that were indexed
+	 */
+	public int indexImages(Iterable<? extends DATA> images, ThreadPoolExecutor pool, int maxInFlight) {
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be at least 1");
+
+		final ArrayDeque<Future<float[]>> vectors = new ArrayDeque<Future<float[]>>(maxInFlight);
+		final ArrayDeque<DATA> pending = new ArrayDeque<DATA>(maxInFlight);
+		final Iterator<? extends DATA> iter = images.iterator();
+		int count = 0;
+
+		try {
+			while (iter.hasNext() || !vectors.isEmpty()) {
+				while (vectors.size() < maxInFlight && iter.hasNext()) {
+					final DATA image = iter.next();
+
+					vectors.add(pool.submit(new Callable<float[]>() {
+						@Override
+						public float[] call() throws Exception {
+							return indexerData.extractPcaVlad(image.getImage());
+						}
+					}));
+					pending.add(image);
+				}
+
+				final float[] vector = get(vectors.poll());
+				final DATA image = pending.poll();
+
+				if (vector != null) {
+					append(vector, image);
+					count++;
+				}
+			}
+		} finally {
+			// stop any outstanding work if we failed
+			for (final Future<float[]> f : vectors)
+				f.cancel(true);
+		}
+
+		return count;
+	}
+
+	private static float[] get(Future<float[]> future) {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
 	}
 
 	@Override
 	public List<ImageSearchResult<METADATA>> search(ImageProvider<MBFImage> query) {
-		final List<IntFloatPair> res = nn.searchKNN(indexerData.extractPcaVlad(query.getImage()), DEFAULT_MAX_RESULTS);
+		final float[] vector = indexerData.extractPcaVlad(query.getImage());
 
-		final List<ImageSearchResult<METADATA>> results = new ArrayList<ImageSearchResult<METADATA>>(res.size());
-		for (int i = 0; i < res.size(); i++) {
-			final IntFloatPair r = res.get(i);
-			results.add(new ImageSearchResult<METADATA>(metaStore.get(r.first), r.second));
-		}
+		lock.readLock().lock();
+		try {
+			final List<IntFloatPair> res = nn.searchKNN(vector, DEFAULT_MAX_RESULTS);
+
+			final List<ImageSearchResult<METADATA>> results = new ArrayList<ImageSearchResult<METADATA>>(res.size());
+			for (int i = 0; i < res.size(); i++) {
+				final IntFloatPair r = res.get(i);
+				results.add(new ImageSearchResult<METADATA>(metaStore.get(r.first), r.second));
+			}
 
-		return results;
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 }
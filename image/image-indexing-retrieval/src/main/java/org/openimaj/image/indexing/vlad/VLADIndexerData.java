@@ -45,11 +45,15 @@ import org.openimaj.feature.local.LocalFeatureExtractor;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.feature.local.aggregate.VLAD;
 import org.openimaj.io.IOUtils;
+import org.openimaj.knn.IncrementalNearestNeighbours;
+import org.openimaj.knn.pq.FloatIVFADCNearestNeighbours;
 import org.openimaj.knn.pq.FloatProductQuantiser;
 import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
+import org.openimaj.knn.pq.MappedFloatADCNearestNeighbours;
 import org.openimaj.ml.pca.FeatureVectorPCA;
 import org.openimaj.util.array.ArrayUtils;
 import org.openimaj.util.function.Function;
+import org.openimaj.util.pair.IntFloatPair;
 
 /**
  * Class representing the data required to build a VLAD + PCA +
@@ -64,6 +68,8 @@ public class VLADIndexerData {
 	private FloatProductQuantiser pq;
 	private LocalFeatureExtractor<LocalFeature<?, ?>, MBFImage> extractor;
 	private Function<List<? extends LocalFeature<?, ?>>, List<FloatLocalFeatureAdaptor<?>>> postProcess;
+	private float[][] coarseCentroids;
+	private FloatProductQuantiser residualPq;
 
 	/**
 	 * Construct with the given data
@@ -91,6 +97,39 @@ public class VLADIndexerData {
 		this.postProcess = postProcess;
 	}
 
+	/**
+	 * Construct with the given data, including the coarse quantiser and
+	 * residual product quantiser required to build an inverted-file (IVFADC)
+	 * index.
+	 * 
+	 * @param vlad
+	 *            the VLAD extractor
+	 * @param pca
+	 *            the PCA basis
+	 * @param pq
+	 *            the product quantiser
+	 * @param extractor
+	 *            the raw local feature extractor
+	 * @param postProcess
+	 *            the process to apply to the raw features before VLAD
+	 *            aggregation
+	 * @param coarseCentroids
+	 *            the centroids of the coarse quantiser
+	 * @param residualPq
+	 *            the product quantiser for the residuals from the coarse
+	 *            centroids
+	 */
+	public VLADIndexerData(VLAD<float[]> vlad, FeatureVectorPCA pca, FloatProductQuantiser pq,
+			LocalFeatureExtractor<LocalFeature<?, ?>, MBFImage> extractor,
+			Function<List<? extends LocalFeature<?, ?>>, List<FloatLocalFeatureAdaptor<?>>> postProcess,
+			float[][] coarseCentroids, FloatProductQuantiser residualPq)
+	{
+		this(vlad, pca, pq, extractor, postProcess);
+
+		this.coarseCentroids = coarseCentroids;
+		this.residualPq = residualPq;
+	}
+
 	/**
 	 * Extract the PCA-projected VLAD feature from the given raw local features.
 	 * The local features will be post-processed before being aggregated using
@@ -167,15 +206,74 @@ public class VLADIndexerData {
 	}
 
 	/**
-	 * Create an {@link IncrementalFloatADCNearestNeighbours} pre-prepared to
-	 * index data
+	 * Get the centroids of the coarse quantiser used for building inverted-file
+	 * indexes.
+	 * 
+	 * @return the coarse centroids, or null if not available
+	 */
+	public float[][] getCoarseCentroids() {
+		return coarseCentroids;
+	}
+
+	/**
+	 * Get the product quantiser for residuals from the coarse centroids used
+	 * for building inverted-file indexes.
 	 * 
-	 * @return a new {@link IncrementalFloatADCNearestNeighbours}
+	 * @return the residual product quantiser, or null if not available
 	 */
-	public IncrementalFloatADCNearestNeighbours createIncrementalIndex() {
+	public FloatProductQuantiser getResidualProductQuantiser() {
+		return residualPq;
+	}
+
+	/**
+	 * Create an incremental nearest-neighbours object pre-prepared to index
+	 * data. If this {@link VLADIndexerData} has a coarse quantiser and residual
+	 * product quantiser, a {@link FloatIVFADCNearestNeighbours} is created
+	 * using the default number of probes; otherwise an exhaustive
+	 * {@link IncrementalFloatADCNearestNeighbours} is created.
+	 * 
+	 * @return a new {@link FloatIVFADCNearestNeighbours} or
+	 *         {@link IncrementalFloatADCNearestNeighbours}
+	 */
+	public IncrementalNearestNeighbours<float[], float[], IntFloatPair> createIncrementalIndex() {
+		if (coarseCentroids != null && residualPq != null)
+			return createIncrementalIVFIndex(FloatIVFADCNearestNeighbours.DEFAULT_NUM_PROBES);
+
 		return new IncrementalFloatADCNearestNeighbours(pq, pca.getMean().length);
 	}
 
+	/**
+	 * Create a {@link MappedFloatADCNearestNeighbours} which holds the product
+	 * quantised data in the given file. If the file already exists, the
+	 * previously indexed data in it is immediately available for search, and
+	 * new data will be appended.
+	 * 
+	 * @param file
+	 *            the file holding the product-quantised data
+	 * @return a new {@link MappedFloatADCNearestNeighbours}
+	 * @throws IOException
+	 *             if an error occurs opening the file
+	 */
+	public MappedFloatADCNearestNeighbours createIncrementalIndex(File file) throws IOException {
+		return new MappedFloatADCNearestNeighbours(pq, pca.getMean().length, file);
+	}
+
+	/**
+	 * Create an {@link FloatIVFADCNearestNeighbours} pre-prepared to index
+	 * data. This {@link VLADIndexerData} must have been constructed with a
+	 * coarse quantiser and residual product quantiser.
+	 * 
+	 * @param numProbes
+	 *            the number of inverted lists to visit per query (nprobe)
+	 * @return a new {@link FloatIVFADCNearestNeighbours}
+	 */
+	public FloatIVFADCNearestNeighbours createIncrementalIVFIndex(int numProbes) {
+		if (coarseCentroids == null || residualPq == null)
+			throw new IllegalStateException("No coarse quantiser is available for building an IVFADC index");
+
+		return new FloatIVFADCNearestNeighbours(coarseCentroids, residualPq, numProbes);
+	}
+
 	/**
 	 * Index the given features into the given nearest neighbours object by
 	 * converting them to the PCA-VLAD representation and then
@@ -188,7 +286,7 @@ public class VLADIndexerData {
 	 * @return the index at which the features were added in the nearest
 	 *         neighbours object
 	 */
-	public int index(List<? extends LocalFeature<?, ?>> features, IncrementalFloatADCNearestNeighbours nn) {
+	public int index(List<? extends LocalFeature<?, ?>> features, IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn) {
 		return nn.add(extractPcaVlad(features));
 	}
 
@@ -203,7 +301,7 @@ public class VLADIndexerData {
 	 * @return the index at which the features were added in the nearest
 	 *         neighbours object
 	 */
-	public int index(MBFImage image, IncrementalFloatADCNearestNeighbours nn) {
+	public int index(MBFImage image, IncrementalNearestNeighbours<float[], float[], IntFloatPair> nn) {
 		return nn.add(extractPcaVlad(image));
 	}
 
@@ -45,6 +45,7 @@ import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.feature.normalisation.HellingerNormaliser;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.feature.local.aggregate.VLAD;
+import org.openimaj.knn.pq.FloatIVFADCUtilities;
 import org.openimaj.knn.pq.FloatProductQuantiser;
 import org.openimaj.knn.pq.FloatProductQuantiserUtilities;
 import org.openimaj.math.matrix.algorithm.pca.ThinSvdPrincipalComponentAnalysis;
@@ -115,6 +116,7 @@ public class VLADIndexerDataBuilder {
 	private int numPqAssigners = 16;
 	private float sampleProp = 0.1f;
 	private float pcaSampleProp;
+	private int numCoarseCentroids = 0;
 	private Function<List<? extends LocalFeature<?, ?>>, List<FloatLocalFeatureAdaptor<?>>> postProcess = StandardPostProcesses.NONE;
 
 	/**
@@ -168,6 +170,56 @@ public class VLADIndexerDataBuilder {
 		this.postProcess = postProcess == null ? StandardPostProcesses.NONE : postProcess;
 	}
 
+	/**
+	 * Construct a {@link VLADIndexerDataBuilder} with the given parameters. In
+	 * addition to the standard product quantiser, a coarse quantiser and a
+	 * product quantiser for the residuals from the coarse centroids will be
+	 * learned so that the resultant {@link VLADIndexerData} can create
+	 * inverted-file (IVFADC) indexes.
+	 * 
+	 * @param extractor
+	 *            the local feature extractor used to generate the input
+	 *            features
+	 * @param localFeatures
+	 *            a list of file locations of the files containing the input
+	 *            local features (one per image)
+	 * @param normalise
+	 *            should the resultant VLAD features be l2 normalised?
+	 * @param numVladCentroids
+	 *            the number of centroids for VLAD (~64)
+	 * @param numIterations
+	 *            the number of clustering iterations (~100)
+	 * @param numPcaDims
+	 *            the number of dimensions to project down to using PCA (~128
+	 *            for normal SIFT)
+	 * @param numPqIterations
+	 *            the number of iterations for clustering the product quantisers
+	 *            (~100)
+	 * @param numPqAssigners
+	 *            the number of product quantiser assigners (~16)
+	 * @param sampleProp
+	 *            the proportion of features to sample for the clustering the
+	 *            VLAD centroids
+	 * @param pcaSampleProp
+	 *            the proportion of images to sample for computing the PCA basis
+	 * @param postProcess
+	 *            the post-processing to apply to the raw features before input
+	 *            to VLAD
+	 * @param numCoarseCentroids
+	 *            the number of coarse centroids (inverted lists) to learn; if
+	 *            zero no coarse quantiser will be learned.
+	 */
+	public VLADIndexerDataBuilder(LocalFeatureExtractor<LocalFeature<?, ?>, MBFImage> extractor,
+			List<File> localFeatures, boolean normalise, int numVladCentroids, int numIterations, int numPcaDims,
+			int numPqIterations, int numPqAssigners, float sampleProp, float pcaSampleProp,
+			Function<List<? extends LocalFeature<?, ?>>, List<FloatLocalFeatureAdaptor<?>>> postProcess,
+			int numCoarseCentroids)
+	{
+		this(extractor, localFeatures, normalise, numVladCentroids, numIterations, numPcaDims, numPqIterations,
+				numPqAssigners, sampleProp, pcaSampleProp, postProcess);
+		this.numCoarseCentroids = numCoarseCentroids;
+	}
+
 	/**
 	 * Build the {@link VLADIndexerData} using the information provided at
 	 * construction time. The following steps are taken:
@@ -180,6 +232,8 @@ public class VLADIndexerDataBuilder {
 	 * <li>Whitening is applied to the PCA basis
 	 * <li>The VLAD features are projected by the basis
 	 * <li>Product quantisers are learned
+	 * <li>If requested, a coarse quantiser and residual product quantisers are
+	 * learned
 	 * <li>The final {@link VLADIndexerData} object is created
 	 * </ol>
 	 * 
@@ -209,7 +263,20 @@ public class VLADIndexerDataBuilder {
 		System.out.println("Learning Product Quantiser Parameters");
 		final FloatProductQuantiser pq = FloatProductQuantiserUtilities.train(pcaVlads, numPqAssigners, numPqIterations);
 
-		return new VLADIndexerData(vlad, pca, pq, extractor, postProcess);
+		if (numCoarseCentroids <= 0)
+			return new VLADIndexerData(vlad, pca, pq, extractor, postProcess);
+
+		// learn coarse quantiser and residual PQs
+		System.out.println("Learning Coarse Quantiser");
+		final float[][] coarseCentroids = FloatIVFADCUtilities.trainCoarseQuantiser(pcaVlads, numCoarseCentroids,
+				numPqIterations);
+
+		System.out.println("Learning Residual Product Quantiser Parameters");
+		final float[][] residuals = FloatIVFADCUtilities.computeResiduals(pcaVlads, coarseCentroids);
+		final FloatProductQuantiser residualPq = FloatProductQuantiserUtilities.train(residuals, numPqAssigners,
+				numPqIterations);
+
+		return new VLADIndexerData(vlad, pca, pq, extractor, postProcess, coarseCentroids, residualPq);
 	}
 
 	/**
@@ -0,0 +1,465 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.searching;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.feature.local.matcher.quantised.BasicQuantisedKeypointMatcher;
+import org.openimaj.image.feature.local.keypoints.quantised.QuantisedKeypoint;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Re-ranks a shortlist of search results by spatial verification against the
+ * query.
+ * <p>
+ * Rather than matching descriptors, tentative correspondences are formed from
+ * {@link QuantisedKeypoint}s that share a visual word (in the same way as a
+ * {@link BasicQuantisedKeypointMatcher}). As each keypoint has a position,
+ * scale and orientation, a single correspondence is enough to hypothesise a
+ * similarity transform from the query to the candidate. Hypotheses are
+ * generated from (up to a maximum number of) the correspondences in turn and
+ * the one with the most inliers is kept. Because the hypotheses need no
+ * random sampling or matrix decomposition, each candidate can be checked in a
+ * fraction of a millisecond. Checking a candidate stops as soon as a
+ * hypothesis with a sufficient number of inliers is found. The coordinates of
+ * the correspondences are held in a workspace of flat arrays that is reused by
+ * each thread.
+ * <p>
+ * Candidates are checked concurrently, in order of their original rank. If a
+ * time budget is set, candidates that have not been started when it expires
+ * are left unverified. The output consists of the verified candidates with at
+ * least the minimum number of inliers in order of decreasing inliers, followed
+ * by the unverified candidates and then the rejected candidates, each in their
+ * original order. The score of every result is its number of inliers (or
+ * {@link VerifiedSearchResult#UNVERIFIED}); the original scores are kept
+ * separately (see {@link VerifiedSearchResult#getOriginalScore()}).
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <METADATA>
+ *            type of metadata of the search results
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Philbin, J.", "Chum, O.", "Isard, M.", "Sivic, J.", "Zisserman, A." },
+		title = "Object retrieval with large vocabularies and fast spatial matching",
+		year = "2007",
+		booktitle = "IEEE Conference on Computer Vision and Pattern Recognition",
+		pages = { "1", "8" })
+public class GeometricReranker<METADATA extends Identifiable> {
+	/** The default maximum reprojection error of an inlier, in pixels */
+	public static final float DEFAULT_ERROR_THRESHOLD = 20;
+
+	/** The default minimum number of inliers for a candidate to be accepted */
+	public static final int DEFAULT_MIN_INLIERS = 6;
+
+	/** The default number of inliers after which checking a candidate stops */
+	public static final int DEFAULT_SUFFICIENT_INLIERS = 50;
+
+	/** The default maximum number of hypotheses tested per candidate */
+	public static final int DEFAULT_MAX_HYPOTHESES = 250;
+
+	protected FeatureExtractor<? extends List<QuantisedKeypoint>, METADATA> keypointProvider;
+	protected ThreadPoolExecutor pool;
+	protected float errorThreshold = DEFAULT_ERROR_THRESHOLD;
+	protected int minInliers = DEFAULT_MIN_INLIERS;
+	protected int sufficientInliers = DEFAULT_SUFFICIENT_INLIERS;
+	protected int maxHypotheses = DEFAULT_MAX_HYPOTHESES;
+	protected boolean allowMultiple = false;
+	protected long timeBudget = 0;
+
+	private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	/**
+	 * The query keypoints, indexed by visual word
+	 */
+	private static class Query {
+		final float[] x, y, scale, ori;
+		final TIntObjectHashMap<TIntArrayList> words = new TIntObjectHashMap<TIntArrayList>();
+
+		Query(List<QuantisedKeypoint> keypoints) {
+			final int n = keypoints.size();
+			x = new float[n];
+			y = new float[n];
+			scale = new float[n];
+			ori = new float[n];
+
+			for (int i = 0; i < n; i++) {
+				final QuantisedKeypoint k = keypoints.get(i);
+				x[i] = k.location.x;
+				y[i] = k.location.y;
+				scale[i] = k.location.scale;
+				ori[i] = k.location.orientation;
+
+				TIntArrayList list = words.get(k.id);
+				if (list == null)
+					words.put(k.id, list = new TIntArrayList(1));
+				list.add(i);
+			}
+		}
+	}
+
+	/**
+	 * Per-thread storage for the tentative correspondences of a candidate
+	 */
+	private static class Workspace {
+		int n;
+		int[] query = new int[256];
+		float[] x = new float[256];
+		float[] y = new float[256];
+		float[] scale = new float[256];
+		float[] ori = new float[256];
+		final TIntIntHashMap counts = new TIntIntHashMap();
+
+		void add(int q, float cx, float cy, float cscale, float cori) {
+			if (n == query.length) {
+				final int len = n * 2;
+				query = Arrays.copyOf(query, len);
+				x = Arrays.copyOf(x, len);
+				y = Arrays.copyOf(y, len);
+				scale = Arrays.copyOf(scale, len);
+				ori = Arrays.copyOf(ori, len);
+			}
+
+			query[n] = q;
+			x[n] = cx;
+			y[n] = cy;
+			scale[n] = cscale;
+			ori[n] = cori;
+			n++;
+		}
+	}
+
+	/**
+	 * Construct the reranker using the global thread pool.
+	 * 
+	 * @param keypointProvider
+	 *            the provider of quantised keypoints for each candidate
+	 */
+	public GeometricReranker(FeatureExtractor<? extends List<QuantisedKeypoint>, METADATA> keypointProvider) {
+		this(keypointProvider, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct the reranker using the given thread pool.
+	 * 
+	 * @param keypointProvider
+	 *            the provider of quantised keypoints for each candidate
+	 * @param pool
+	 *            the thread pool
+	 */
+	public GeometricReranker(FeatureExtractor<? extends List<QuantisedKeypoint>, METADATA> keypointProvider,
+			ThreadPoolExecutor pool)
+	{
+		this.keypointProvider = keypointProvider;
+		this.pool = pool;
+	}
+
+	/**
+	 * Re-rank the candidates by spatial verification against the query.
+	 * 
+	 * @param query
+	 *            the quantised keypoints of the query
+	 * @param candidates
+	 *            the candidates, in their original order
+	 * @return the re-ranked results
+	 */
+	public List<VerifiedSearchResult<METADATA>> rerank(List<QuantisedKeypoint> query,
+			final List<? extends ImageSearchResult<METADATA>> candidates)
+	{
+		final long deadline = timeBudget > 0 ? System.nanoTime() + timeBudget * 1000000L : Long.MAX_VALUE;
+		final int ncandidates = candidates.size();
+		final int[] inliers = new int[ncandidates];
+		final boolean[] verified = new boolean[ncandidates];
+
+		if (ncandidates > 0) {
+			final Query q = new Query(query);
+			final AtomicInteger next = new AtomicInteger();
+			final int nworkers = Math.min(pool.getMaximumPoolSize(), ncandidates);
+
+			Parallel.forRange(0, nworkers, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange workers) {
+					final Workspace ws = workspace.get();
+
+					int i;
+					while ((i = next.getAndIncrement()) < ncandidates && System.nanoTime() < deadline) {
+						final List<QuantisedKeypoint> keypoints = keypointProvider.extractFeature(candidates.get(i)
+								.getMetadata());
+
+						inliers[i] = verify(q, keypoints, ws);
+						verified[i] = true;
+					}
+				}
+			}, pool);
+		}
+
+		return order(candidates, inliers, verified);
+	}
+
+	private List<VerifiedSearchResult<METADATA>> order(List<? extends ImageSearchResult<METADATA>> candidates,
+			final int[] inliers, boolean[] verified)
+	{
+		final int n = candidates.size();
+		final List<Integer> accepted = new ArrayList<Integer>();
+		final List<VerifiedSearchResult<METADATA>> unverified = new ArrayList<VerifiedSearchResult<METADATA>>();
+		final List<VerifiedSearchResult<METADATA>> rejected = new ArrayList<VerifiedSearchResult<METADATA>>();
+
+		for (int i = 0; i < n; i++) {
+			if (!verified[i])
+				unverified.add(new VerifiedSearchResult<METADATA>(candidates.get(i)));
+			else if (inliers[i] >= minInliers)
+				accepted.add(i);
+			else
+				rejected.add(new VerifiedSearchResult<METADATA>(candidates.get(i), inliers[i]));
+		}
+
+		// stable sort, so equal inliers keep their original order
+		final Integer[] order = accepted.toArray(new Integer[accepted.size()]);
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return inliers[o2] < inliers[o1] ? -1 : (inliers[o2] == inliers[o1] ? 0 : 1);
+			}
+		});
+
+		final List<VerifiedSearchResult<METADATA>> results = new ArrayList<VerifiedSearchResult<METADATA>>(n);
+		for (final int i : order)
+			results.add(new VerifiedSearchResult<METADATA>(candidates.get(i), inliers[i]));
+		results.addAll(unverified);
+		results.addAll(rejected);
+
+		return results;
+	}
+
+	/**
+	 * Count the inliers of the best similarity transform between the query and
+	 * candidate.
+	 */
+	private int verify(Query query, List<QuantisedKeypoint> keypoints, Workspace ws) {
+		ws.n = 0;
+
+		if (!allowMultiple) {
+			ws.counts.clear();
+			for (int j = 0; j < keypoints.size(); j++)
+				ws.counts.adjustOrPutValue(keypoints.get(j).id, 1, 1);
+		}
+
+		for (int j = 0; j < keypoints.size(); j++) {
+			final QuantisedKeypoint k = keypoints.get(j);
+			final TIntArrayList matches = query.words.get(k.id);
+
+			if (matches == null)
+				continue;
+			if (!allowMultiple && (matches.size() != 1 || ws.counts.get(k.id) != 1))
+				continue;
+
+			for (int m = 0; m < matches.size(); m++)
+				ws.add(matches.getQuick(m), k.location.x, k.location.y, k.location.scale, k.location.orientation);
+		}
+
+		final int n = ws.n;
+		if (n < minInliers)
+			return 0;
+
+		final float thresh2 = errorThreshold * errorThreshold;
+		final int step = Math.max(1, n / maxHypotheses);
+		int best = 0;
+
+		for (int h = 0; h < n && best < sufficientInliers; h += step) {
+			final int qh = ws.query[h];
+			if (query.scale[qh] <= 0)
+				continue;
+
+			// the similarity transform taking the query keypoint onto the
+			// candidate keypoint
+			final float s = ws.scale[h] / query.scale[qh];
+			final double theta = ws.ori[h] - query.ori[qh];
+			final float a = (float) (s * Math.cos(theta));
+			final float b = (float) (s * Math.sin(theta));
+			final float tx = ws.x[h] - (a * query.x[qh] - b * query.y[qh]);
+			final float ty = ws.y[h] - (b * query.x[qh] + a * query.y[qh]);
+
+			int count = 0;
+			for (int i = 0; i < n; i++) {
+				final int qi = ws.query[i];
+				final float dx = a * query.x[qi] - b * query.y[qi] + tx - ws.x[i];
+				final float dy = b * query.x[qi] + a * query.y[qi] + ty - ws.y[i];
+
+				if (dx * dx + dy * dy <= thresh2)
+					count++;
+				else if (count + n - i - 1 <= best)
+					break; // can't beat the best hypothesis
+			}
+
+			if (count > best)
+				best = count;
+		}
+
+		return best >= minInliers ? best : 0;
+	}
+
+	/**
+	 * @return the maximum reprojection error of an inlier, in pixels
+	 */
+	public float getErrorThreshold() {
+		return errorThreshold;
+	}
+
+	/**
+	 * Set the maximum reprojection error of an inlier, in pixels of the
+	 * candidate image
+	 * 
+	 * @param errorThreshold
+	 *            the error threshold
+	 */
+	public void setErrorThreshold(float errorThreshold) {
+		this.errorThreshold = errorThreshold;
+	}
+
+	/**
+	 * @return the minimum number of inliers for a candidate to be accepted
+	 */
+	public int getMinInliers() {
+		return minInliers;
+	}
+
+	/**
+	 * Set the minimum number of inliers for a candidate to be accepted
+	 * 
+	 * @param minInliers
+	 *            the minimum number of inliers
+	 */
+	public void setMinInliers(int minInliers) {
+		this.minInliers = minInliers;
+	}
+
+	/**
+	 * @return the number of inliers after which checking a candidate stops
+	 */
+	public int getSufficientInliers() {
+		return sufficientInliers;
+	}
+
+	/**
+	 * Set the number of inliers after which checking a candidate stops. The
+	 * inlier counts of candidates that reach this number are not comparable
+	 * beyond it.
+	 * 
+	 * @param sufficientInliers
+	 *            the number of inliers
+	 */
+	public void setSufficientInliers(int sufficientInliers) {
+		this.sufficientInliers = sufficientInliers;
+	}
+
+	/**
+	 * @return the maximum number of hypotheses tested per candidate
+	 */
+	public int getMaxHypotheses() {
+		return maxHypotheses;
+	}
+
+	/**
+	 * Set the maximum number of hypotheses tested per candidate. If there are
+	 * more correspondences than this, hypotheses are generated from evenly
+	 * spaced correspondences.
+	 * 
+	 * @param maxHypotheses
+	 *            the maximum number of hypotheses
+	 */
+	public void setMaxHypotheses(int maxHypotheses) {
+		if (maxHypotheses < 1)
+			throw new IllegalArgumentException("maxHypotheses must be positive");
+
+		this.maxHypotheses = maxHypotheses;
+	}
+
+	/**
+	 * @return true if visual words occurring more than once in either image
+	 *         form correspondences
+	 */
+	public boolean isAllowMultiple() {
+		return allowMultiple;
+	}
+
+	/**
+	 * Set whether visual words occurring more than once in either image form
+	 * correspondences (all pairs are used). If false (the default), only words
+	 * that are unique in both images are used.
+	 * 
+	 * @param allowMultiple
+	 *            true to allow multiple matches per word
+	 */
+	public void setAllowMultiple(boolean allowMultiple) {
+		this.allowMultiple = allowMultiple;
+	}
+
+	/**
+	 * @return the time budget for a call to {@link #rerank(List, List)} in
+	 *         milliseconds, or 0 if unlimited
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Set the time budget for a call to {@link #rerank(List, List)} in
+	 * milliseconds. Candidates that have not been started when the budget
+	 * expires are left unverified. A value of 0 (the default) means no limit.
+	 * 
+	 * @param timeBudget
+	 *            the time budget in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+}
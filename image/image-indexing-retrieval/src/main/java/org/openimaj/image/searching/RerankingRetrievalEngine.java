@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.searching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.experiment.evaluation.retrieval.RetrievalEngine;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.image.ImageProvider;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.feature.local.keypoints.quantised.QuantisedKeypoint;
+
+/**
+ * A {@link RetrievalEngine} that spatially verifies the top results of another
+ * engine (for example a {@link org.openimaj.image.indexing.vlad.VLADIndexer})
+ * with a {@link GeometricReranker}. Results beyond the shortlist are appended
+ * in their original order after the re-ranked shortlist, as unverified
+ * {@link VerifiedSearchResult}s, so that the score of every result has the
+ * same meaning.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <METADATA>
+ *            type of metadata of the search results
+ */
+public class RerankingRetrievalEngine<METADATA extends Identifiable>
+		implements
+		RetrievalEngine<ImageSearchResult<METADATA>, ImageProvider<MBFImage>>
+{
+	/** The default number of results that are re-ranked */
+	public static final int DEFAULT_SHORTLIST_SIZE = 1000;
+
+	private RetrievalEngine<ImageSearchResult<METADATA>, ImageProvider<MBFImage>> engine;
+	private FeatureExtractor<? extends List<QuantisedKeypoint>, MBFImage> queryExtractor;
+	private GeometricReranker<METADATA> reranker;
+	private int shortlistSize = DEFAULT_SHORTLIST_SIZE;
+
+	/**
+	 * Construct with the given engine, query keypoint extractor and reranker.
+	 * 
+	 * @param engine
+	 *            the engine producing the initial results
+	 * @param queryExtractor
+	 *            the extractor for the quantised keypoints of the query; this
+	 *            must use the same vocabulary as the reranker's keypoint
+	 *            provider
+	 * @param reranker
+	 *            the reranker
+	 */
+	public RerankingRetrievalEngine(RetrievalEngine<ImageSearchResult<METADATA>, ImageProvider<MBFImage>> engine,
+			FeatureExtractor<? extends List<QuantisedKeypoint>, MBFImage> queryExtractor,
+			GeometricReranker<METADATA> reranker)
+	{
+		this.engine = engine;
+		this.queryExtractor = queryExtractor;
+		this.reranker = reranker;
+	}
+
+	@Override
+	public List<ImageSearchResult<METADATA>> search(ImageProvider<MBFImage> query) {
+		final List<ImageSearchResult<METADATA>> initial = engine.search(query);
+		final int n = Math.min(shortlistSize, initial.size());
+
+		final List<QuantisedKeypoint> keypoints = queryExtractor.extractFeature(query.getImage());
+		final List<VerifiedSearchResult<METADATA>> reranked = reranker.rerank(keypoints, initial.subList(0, n));
+
+		final List<ImageSearchResult<METADATA>> results = new ArrayList<ImageSearchResult<METADATA>>(initial.size());
+		results.addAll(reranked);
+		for (int i = n; i < initial.size(); i++)
+			results.add(new VerifiedSearchResult<METADATA>(initial.get(i)));
+
+		return results;
+	}
+
+	/**
+	 * @return the number of results that are re-ranked
+	 */
+	public int getShortlistSize() {
+		return shortlistSize;
+	}
+
+	/**
+	 * Set the number of results that are re-ranked
+	 * 
+	 * @param shortlistSize
+	 *            the shortlist size
+	 */
+	public void setShortlistSize(int shortlistSize) {
+		this.shortlistSize = shortlistSize;
+	}
+
+	/**
+	 * @return the reranker
+	 */
+	public GeometricReranker<METADATA> getReranker() {
+		return reranker;
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.searching;
+
+import org.openimaj.data.identity.Identifiable;
+
+/**
+ * An {@link ImageSearchResult} produced by a {@link GeometricReranker}. The
+ * score is always the number of geometrically consistent visual word matches
+ * (the inliers), or {@link #UNVERIFIED} if the result was not checked (because
+ * the time budget ran out first, or it was beyond the re-ranked shortlist).
+ * The score assigned by the original search, which may have a quite different
+ * scale and meaning (for example a distance), is available from
+ * {@link #getOriginalScore()}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ * @param <METADATA>
+ *            type of metadata
+ */
+public class VerifiedSearchResult<METADATA extends Identifiable> extends ImageSearchResult<METADATA> {
+	/** The score and inlier count of a result that was not verified */
+	public static final int UNVERIFIED = -1;
+
+	boolean verified;
+	int inliers;
+	double originalScore;
+
+	/**
+	 * Construct a verified result
+	 * 
+	 * @param original
+	 *            the original result
+	 * @param inliers
+	 *            the number of inliers
+	 */
+	public VerifiedSearchResult(ImageSearchResult<METADATA> original, int inliers) {
+		super(original.getMetadata(), inliers);
+		this.verified = true;
+		this.inliers = inliers;
+		this.originalScore = original.getScore();
+	}
+
+	/**
+	 * Construct an unverified result
+	 * 
+	 * @param original
+	 *            the original result
+	 */
+	public VerifiedSearchResult(ImageSearchResult<METADATA> original) {
+		super(original.getMetadata(), UNVERIFIED);
+		this.verified = false;
+		this.inliers = UNVERIFIED;
+		this.originalScore = original.getScore();
+	}
+
+	/**
+	 * @return true if the result was checked; false if the time budget ran out
+	 *         first
+	 */
+	public boolean isVerified() {
+		return verified;
+	}
+
+	/**
+	 * @return the number of inliers, or {@link #UNVERIFIED} if the result was
+	 *         not verified
+	 */
+	public int getInliers() {
+		return inliers;
+	}
+
+	/**
+	 * @return the score assigned by the original search
+	 */
+	public double getOriginalScore() {
+		return originalScore;
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.bovw;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.feature.SparseIntFV;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for {@link InvertedIndex}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class InvertedIndexTest {
+	private static final int NUM_WORDS = 200;
+	private static final int NUM_DOCS = 500;
+
+	/**
+	 * Temporary folder for the index
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<int[]> docs;
+
+	/**
+	 * Create some random sparse histograms with a skewed word distribution
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(1);
+
+		docs = new ArrayList<int[]>();
+		for (int i = 0; i < NUM_DOCS; i++) {
+			final int[] hist = new int[NUM_WORDS];
+			final int n = 5 + rng.nextInt(40);
+
+			for (int j = 0; j < n; j++) {
+				final double u = rng.nextDouble();
+				hist[(int) (u * u * NUM_WORDS)]++;
+			}
+
+			docs.add(hist);
+		}
+	}
+
+	private List<IntFloatPair> bruteForce(int[] query, TermWeighting weighting, int k) {
+		final int[] df = new int[NUM_WORDS];
+		long total = 0;
+		for (final int[] d : docs) {
+			for (int w = 0; w < NUM_WORDS; w++) {
+				if (d[w] > 0)
+					df[w]++;
+				total += d[w];
+			}
+		}
+		final float avg = (float) ((double) total / docs.size());
+
+		final List<IntFloatPair> results = new ArrayList<IntFloatPair>();
+		for (int i = 0; i < docs.size(); i++) {
+			final int[] d = docs.get(i);
+
+			int length = 0;
+			double sumsq = 0;
+			for (int w = 0; w < NUM_WORDS; w++) {
+				length += d[w];
+				sumsq += d[w] * d[w];
+			}
+			final float norm = (float) Math.sqrt(sumsq);
+
+			float score = 0;
+			boolean match = false;
+			for (int w = 0; w < NUM_WORDS; w++) {
+				if (query[w] > 0 && d[w] > 0) {
+					final float qw = weighting.queryWeight(query[w], weighting.idf(df[w], docs.size()));
+					if (qw > 0) {
+						score += qw * weighting.documentWeight(d[w], length, norm, avg);
+						match = true;
+					}
+				}
+			}
+
+			if (match)
+				results.add(new IntFloatPair(i, score));
+		}
+
+		Collections.sort(results, IntFloatPair.SECOND_ITEM_DESCENDING_COMPARATOR);
+		return results.subList(0, Math.min(k, results.size()));
+	}
+
+	private InvertedIndex buildIndex(File dir, TermWeighting weighting) throws IOException {
+		final InvertedIndex index = new InvertedIndex(dir, NUM_WORDS, weighting);
+		index.setBlockSize(4);
+		index.setMaxBufferBytes(2000);
+
+		for (int i = 0; i < NUM_DOCS; i++)
+			assertEquals(i, index.add(new SparseIntFV(docs.get(i))));
+
+		return index;
+	}
+
+	private void checkSearch(InvertedIndex index, TermWeighting weighting) {
+		for (int q = 0; q < NUM_DOCS; q += 37) {
+			for (final int k : new int[] { 1, 5, 50 }) {
+				final List<IntFloatPair> expected = bruteForce(docs.get(q), weighting, k);
+				final List<IntFloatPair> actual = index.search(new SparseIntFV(docs.get(q)), k);
+
+				assertEquals(expected.size(), actual.size());
+				for (int i = 0; i < expected.size(); i++) {
+					final float score = expected.get(i).second;
+					assertEquals(score, actual.get(i).second, 1e-4 * Math.max(1, score));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that tf-idf search over multiple segments and the in-memory buffer
+	 * matches brute-force scoring
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testTFIDF() throws IOException {
+		final TermWeighting weighting = new TermWeighting.TFIDF();
+		final InvertedIndex index = buildIndex(folder.newFolder("tfidf"), weighting);
+
+		assertEquals(NUM_DOCS, index.numDocuments());
+		checkSearch(index, weighting);
+		index.close();
+	}
+
+	/**
+	 * Test that BM25 search matches brute-force scoring
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testBM25() throws IOException {
+		final TermWeighting weighting = new TermWeighting.BM25();
+		final InvertedIndex index = buildIndex(folder.newFolder("bm25"), weighting);
+
+		checkSearch(index, weighting);
+		index.close();
+	}
+
+	/**
+	 * Test that a closed index can be re-opened
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReopen() throws IOException {
+		final TermWeighting weighting = new TermWeighting.TFIDF();
+		final File dir = folder.newFolder("reopen");
+		buildIndex(dir, weighting).close();
+
+		final InvertedIndex index = new InvertedIndex(dir, NUM_WORDS, weighting);
+		assertEquals(NUM_DOCS, index.numDocuments());
+		for (int w = 0; w < NUM_WORDS; w += 17) {
+			int df = 0;
+			for (final int[] d : docs)
+				if (d[w] > 0)
+					df++;
+			assertEquals(df, index.documentFrequency(w));
+		}
+
+		checkSearch(index, weighting);
+		index.close();
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.indexing.vlad;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.image.ImageProvider;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.searching.IncrementalMetaIndex;
+import org.openimaj.knn.FloatNearestNeighbours;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.knn.pq.FloatProductQuantiser;
+import org.openimaj.knn.pq.IncrementalFloatADCNearestNeighbours;
+
+/**
+ * Tests for the concurrent ingestion of {@link VLADIndexer}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class VLADIndexerTest {
+	private static final int NUM_IMAGES = 100;
+
+	/**
+	 * An image whose "feature" is just its index. Images can be made to have
+	 * no feature, or to fail or block during extraction.
+	 */
+	static class Item implements ImageProvider<MBFImage>, Identifiable {
+		final int index;
+		volatile boolean empty;
+		volatile boolean fail;
+		volatile CountDownLatch block;
+
+		Item(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public MBFImage getImage() {
+			final MBFImage image = new MBFImage(1, 1, ColourSpace.RGB);
+			image.getBand(0).pixels[0][0] = index;
+			return image;
+		}
+
+		@Override
+		public String getID() {
+			return "image" + index;
+		}
+	}
+
+	/**
+	 * Meta index that records the order in which the images are added
+	 */
+	static class RecordingMetaIndex implements IncrementalMetaIndex<Item, Item> {
+		final List<Item> items = new ArrayList<Item>();
+
+		@Override
+		public synchronized void put(int id, Item data) {
+			assertEquals(items.size(), id);
+			items.add(data);
+		}
+
+		@Override
+		public synchronized Item get(int id) {
+			return items.get(id);
+		}
+
+		synchronized int size() {
+			return items.size();
+		}
+	}
+
+	/**
+	 * Indexer data that extracts the feature from an {@link Item} without
+	 * computing any local features.
+	 */
+	class TestIndexerData extends VLADIndexerData {
+		final List<Item> items;
+
+		TestIndexerData(List<Item> items) {
+			super(null, null, null, null, null);
+			this.items = items;
+		}
+
+		@Override
+		public float[] extractPcaVlad(MBFImage image) {
+			final Item item = items.get((int) image.getBand(0).pixels[0][0]);
+
+			if (item.fail)
+				throw new IllegalStateException("extraction failed");
+
+			if (item.block != null) {
+				started.incrementAndGet();
+				try {
+					item.block.await();
+				} catch (final InterruptedException e) {
+					interrupted.incrementAndGet();
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			if (item.empty)
+				return null;
+
+			return new float[] { item.index };
+		}
+	}
+
+	private List<Item> items;
+	private ThreadPoolExecutor pool;
+	private final AtomicInteger started = new AtomicInteger();
+	private final AtomicInteger interrupted = new AtomicInteger();
+
+	/**
+	 * Create the images and thread pool
+	 */
+	@Before
+	public void setup() {
+		items = new ArrayList<Item>();
+		for (int i = 0; i < NUM_IMAGES; i++) {
+			final Item item = new Item(i);
+			item.empty = i % 7 == 3;
+			items.add(item);
+		}
+
+		pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the pool
+	 */
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	private VLADIndexer<Item, Item> createIndexer(RecordingMetaIndex meta) {
+		final float[][] centroids = new float[NUM_IMAGES][];
+		for (int i = 0; i < NUM_IMAGES; i++)
+			centroids[i] = new float[] { i };
+
+		final FloatProductQuantiser pq = new FloatProductQuantiser(
+				new FloatNearestNeighbours[] { new FloatNearestNeighboursExact(centroids) });
+
+		return new VLADIndexer<Item, Item>(new TestIndexerData(items), new IncrementalFloatADCNearestNeighbours(pq, 1),
+				meta);
+	}
+
+	/**
+	 * Test that concurrent indexing assigns the same identifiers and metadata
+	 * as serial indexing, and skips the same images
+	 */
+	@Test
+	public void testMatchesSerial() {
+		final RecordingMetaIndex serialMeta = new RecordingMetaIndex();
+		final VLADIndexer<Item, Item> serial = createIndexer(serialMeta);
+		for (final Item item : items)
+			serial.indexImage(item);
+
+		final RecordingMetaIndex concurrentMeta = new RecordingMetaIndex();
+		final VLADIndexer<Item, Item> concurrent = createIndexer(concurrentMeta);
+		final int count = concurrent.indexImages(items, pool, 5);
+
+		assertEquals(NUM_IMAGES - NUM_IMAGES / 7, count);
+		assertEquals(serialMeta.size(), count);
+		assertEquals(serialMeta.items, concurrentMeta.items);
+
+		for (int i = 0; i < NUM_IMAGES; i += 11) {
+			final Item query = items.get(i);
+			if (query.empty)
+				continue;
+
+			assertEquals(serial.search(query).get(0).getMetadata(), concurrent.search(query).get(0).getMetadata());
+		}
+	}
+
+	/**
+	 * Test that no more than <code>maxInFlight</code> images are read from the
+	 * input before they have been indexed
+	 */
+	@Test
+	public void testBackpressure() {
+		final int maxInFlight = 3;
+		final RecordingMetaIndex meta = new RecordingMetaIndex();
+		final VLADIndexer<Item, Item> indexer = createIndexer(meta);
+		final int[] maxOutstanding = new int[1];
+
+		// every image is indexed, so those read but not yet in the index are
+		// still being processed
+		for (final Item item : items)
+			item.empty = false;
+
+		final Iterable<Item> input = new Iterable<Item>() {
+			@Override
+			public Iterator<Item> iterator() {
+				final Iterator<Item> inner = items.iterator();
+
+				return new Iterator<Item>() {
+					int read = 0;
+
+					@Override
+					public boolean hasNext() {
+						return inner.hasNext();
+					}
+
+					@Override
+					public Item next() {
+						read++;
+						maxOutstanding[0] = Math.max(maxOutstanding[0], read - meta.size());
+
+						return inner.next();
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+
+		assertEquals(NUM_IMAGES, indexer.indexImages(input, pool, maxInFlight));
+		assertEquals(maxInFlight, maxOutstanding[0]);
+	}
+
+	/**
+	 * Test that a failed extraction is rethrown, that the images before it
+	 * stay indexed, and that the outstanding extractions are cancelled
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testFailure() throws InterruptedException {
+		final CountDownLatch never = new CountDownLatch(1);
+		items.get(10).fail = true;
+		for (int i = 11; i < NUM_IMAGES; i++)
+			items.get(i).block = never;
+
+		final RecordingMetaIndex meta = new RecordingMetaIndex();
+		final VLADIndexer<Item, Item> indexer = createIndexer(meta);
+
+		try {
+			indexer.indexImages(items, pool, 4);
+			fail("expected an exception");
+		} catch (final IllegalStateException e) {
+			assertEquals("extraction failed", e.getMessage());
+		}
+
+		// images 0 to 9, less the one without a feature
+		assertEquals(9, meta.size());
+
+		// every blocked extraction must have been interrupted, otherwise the
+		// pool would never become idle
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(started.get(), interrupted.get());
+	}
+}
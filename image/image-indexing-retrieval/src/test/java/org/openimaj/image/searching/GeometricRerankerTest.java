@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.searching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.image.feature.local.keypoints.KeypointLocation;
+import org.openimaj.image.feature.local.keypoints.quantised.QuantisedKeypoint;
+
+/**
+ * Tests for {@link GeometricReranker}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class GeometricRerankerTest {
+	static class Doc implements Identifiable {
+		String id;
+		List<QuantisedKeypoint> keypoints;
+
+		Doc(String id, List<QuantisedKeypoint> keypoints) {
+			this.id = id;
+			this.keypoints = keypoints;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+	}
+
+	private List<QuantisedKeypoint> query;
+	private List<ImageSearchResult<Doc>> candidates;
+	private GeometricReranker<Doc> reranker;
+
+	/**
+	 * Create a query and three candidates: one unrelated, one sharing the
+	 * query's words but with random geometry, and one that is a rotated,
+	 * scaled and translated copy of the query.
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		query = new ArrayList<QuantisedKeypoint>();
+		for (int i = 0; i < 100; i++) {
+			query.add(new QuantisedKeypoint(new KeypointLocation(rng.nextFloat() * 640, rng.nextFloat() * 480,
+					(float) (rng.nextFloat() * 2 * Math.PI - Math.PI), 1 + rng.nextFloat() * 5), i));
+		}
+
+		final float s = 0.7f;
+		final double theta = 0.4;
+		final List<QuantisedKeypoint> transformed = new ArrayList<QuantisedKeypoint>();
+		final List<QuantisedKeypoint> shuffled = new ArrayList<QuantisedKeypoint>();
+		final List<QuantisedKeypoint> unrelated = new ArrayList<QuantisedKeypoint>();
+		for (final QuantisedKeypoint q : query) {
+			final float x = (float) (s * (Math.cos(theta) * q.location.x - Math.sin(theta) * q.location.y)) + 50;
+			final float y = (float) (s * (Math.sin(theta) * q.location.x + Math.cos(theta) * q.location.y)) + 20;
+
+			// only keep some of the points
+			if (rng.nextFloat() < 0.6)
+				transformed.add(new QuantisedKeypoint(new KeypointLocation(x, y, q.location.orientation
+						+ (float) theta, q.location.scale * s), q.id));
+
+			shuffled.add(new QuantisedKeypoint(new KeypointLocation(rng.nextFloat() * 640, rng.nextFloat() * 480,
+					q.location.orientation, q.location.scale), q.id));
+
+			unrelated.add(new QuantisedKeypoint(new KeypointLocation(q.location.x, q.location.y,
+					q.location.orientation, q.location.scale), q.id + 1000));
+		}
+
+		candidates = new ArrayList<ImageSearchResult<Doc>>();
+		candidates.add(new ImageSearchResult<Doc>(new Doc("unrelated", unrelated), 3));
+		candidates.add(new ImageSearchResult<Doc>(new Doc("shuffled", shuffled), 2));
+		candidates.add(new ImageSearchResult<Doc>(new Doc("transformed", transformed), 1));
+
+		reranker = new GeometricReranker<Doc>(new FeatureExtractor<List<QuantisedKeypoint>, Doc>() {
+			@Override
+			public List<QuantisedKeypoint> extractFeature(Doc object) {
+				return object.keypoints;
+			}
+		});
+	}
+
+	/**
+	 * Test that the geometrically consistent candidate is moved to the top
+	 */
+	@Test
+	public void testRerank() {
+		reranker.setSufficientInliers(1000);
+		final List<VerifiedSearchResult<Doc>> results = reranker.rerank(query, candidates);
+
+		assertEquals(3, results.size());
+		assertEquals("transformed", results.get(0).getID());
+		assertTrue(results.get(0).isVerified());
+		assertTrue(results.get(0).getInliers() > 50);
+		assertEquals(1, results.get(0).getOriginalScore(), 0);
+
+		// the others are rejected, and keep their original order
+		assertEquals("unrelated", results.get(1).getID());
+		assertEquals(0, results.get(1).getInliers());
+		assertEquals("shuffled", results.get(2).getID());
+		assertEquals(0, results.get(2).getInliers());
+
+		// the score is always the inlier count
+		for (final VerifiedSearchResult<Doc> r : results)
+			assertEquals(r.getInliers(), r.getScore(), 0);
+	}
+
+	/**
+	 * Test that checking stops once enough inliers are found
+	 */
+	@Test
+	public void testSufficientInliers() {
+		reranker.setSufficientInliers(10);
+		final List<VerifiedSearchResult<Doc>> results = reranker.rerank(query, candidates);
+
+		assertEquals("transformed", results.get(0).getID());
+		assertTrue(results.get(0).getInliers() >= 10);
+	}
+
+	/**
+	 * Test that candidates are left unverified when there is no time
+	 */
+	@Test
+	public void testBudget() {
+		final FeatureExtractor<List<QuantisedKeypoint>, Doc> slow = new FeatureExtractor<List<QuantisedKeypoint>, Doc>() {
+			@Override
+			public List<QuantisedKeypoint> extractFeature(Doc object) {
+				try {
+					Thread.sleep(50);
+				} catch (final InterruptedException e) {
+				}
+				return object.keypoints;
+			}
+		};
+		final GeometricReranker<Doc> slowReranker = new GeometricReranker<Doc>(slow, reranker.pool);
+		slowReranker.setTimeBudget(1);
+
+		final List<ImageSearchResult<Doc>> many = new ArrayList<ImageSearchResult<Doc>>();
+		for (int i = 0; i < 10 * reranker.pool.getMaximumPoolSize(); i++)
+			many.addAll(candidates);
+
+		final List<VerifiedSearchResult<Doc>> results = slowReranker.rerank(query, many);
+		assertEquals(many.size(), results.size());
+
+		int unverified = 0;
+		for (final VerifiedSearchResult<Doc> r : results) {
+			if (!r.isVerified()) {
+				unverified++;
+				assertEquals(VerifiedSearchResult.UNVERIFIED, r.getInliers());
+				assertTrue(r.getOriginalScore() > 0);
+			}
+			assertEquals(r.getInliers(), r.getScore(), 0);
+		}
+		assertTrue(unverified > 0);
+	}
+}
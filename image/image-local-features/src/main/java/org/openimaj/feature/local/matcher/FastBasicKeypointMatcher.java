@@ -35,6 +35,7 @@ import java.util.List;
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.citation.annotation.References;
+import org.openimaj.image.feature.local.keypoints.CompactKeypointList;
 import org.openimaj.image.feature.local.keypoints.Keypoint;
 import org.openimaj.knn.approximate.ByteNearestNeighboursKDTree;
 import org.openimaj.util.pair.Pair;
@@ -103,9 +104,7 @@ public class FastBasicKeypointMatcher<T extends Keypoint> extends BasicMatcher<T
 	{
 		matches = new ArrayList<Pair<T>>();
 
-		final byte[][] data = new byte[keys1.size()][];
-		for (int i = 0; i < keys1.size(); i++)
-			data[i] = keys1.get(i).ivec;
+		final byte[][] data = descriptors(keys1);
 
 		final int[][] argmins = new int[keys1.size()][2];
 		final float[][] mins = new float[keys1.size()][2];
@@ -127,10 +126,24 @@ public class FastBasicKeypointMatcher<T extends Keypoint> extends BasicMatcher<T
 	public void setModelFeatures(List<T> modelkeys) {
 		modelKeypoints = modelkeys;
 
-		final byte[][] data = new byte[modelkeys.size()][];
-		for (int i = 0; i < modelkeys.size(); i++)
-			data[i] = modelkeys.get(i).ivec;
+		final byte[][] data = descriptors(modelkeys);
 
 		modelKeypointsKNN = new ByteNearestNeighboursKDTree(data, 1, 100);
 	}
+
+	/**
+	 * Get the descriptors of the given keypoints. The descriptors of a
+	 * {@link CompactKeypointList} are copied straight out of its backing array
+	 * rather than through intermediate {@link Keypoint} objects.
+	 */
+	private static byte[][] descriptors(List<? extends Keypoint> keys) {
+		if (keys instanceof CompactKeypointList)
+			return ((CompactKeypointList) keys).getDescriptors();
+
+		final byte[][] data = new byte[keys.size()][];
+		for (int i = 0; i < keys.size(); i++)
+			data[i] = keys.get(i).ivec;
+
+		return data;
+	}
 }
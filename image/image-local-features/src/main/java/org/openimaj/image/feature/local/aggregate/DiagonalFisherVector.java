@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.feature.ArrayFeatureVector;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * A faster implementation of the {@link FisherVector} encoding scheme for
+ * mixtures of gaussians with diagonal (or spherical) covariance. The means,
+ * inverse standard deviations and log-normalisation constants of the mixture
+ * are computed once at construction and held in flat arrays, the posteriors
+ * are computed directly from these rather than through
+ * {@link MixtureOfGaussians#scoreSamples(double[][])}, and the descriptors are
+ * read in blocks without being converted to intermediate
+ * <code>double[]</code>s. The work can optionally be split over a thread pool.
+ * <p>
+ * The output is the same as {@link FisherVector} (up to floating point
+ * rounding) for mixtures of {@link CovarianceType#Diagonal} or
+ * {@link CovarianceType#Spherical} gaussians. For gaussians with full
+ * covariance the off-diagonal terms are ignored when computing the posteriors,
+ * as well as in the encoding itself.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ * @param <T>
+ *            Primitive array type of the {@link ArrayFeatureVector}s used by
+ *            the {@link LocalFeature}s that will be processed.
+ */
+public class DiagonalFisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>, FloatFV> {
+	/**
+	 * The default number of descriptors read and processed together
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+
+	private static final double LOG_2PI = Math.log(2 * Math.PI);
+
+	private final int K;
+	private final int D;
+	private final float[] means;
+	private final float[] invStd;
+	private final float[] logNorm;
+	private final double[] wt1;
+	private final double[] wt2;
+
+	private boolean hellinger;
+	private boolean l2normalise;
+	private ThreadPoolExecutor pool;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+
+	/**
+	 * Construct with the given mixture of Gaussians and optional improvement
+	 * steps. The covariance matrices of the gaussians are all assumed to be
+	 * diagonal, and will be treated as such; any non-zero off-diagonal values
+	 * will be completely ignored.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param hellinger
+	 *            if true then use Hellinger's kernel rather than the linear one
+	 *            by signed square rooting the values in the final vector
+	 * @param l2normalise
+	 *            if true then apply l2 normalisation to the final vector. This
+	 *            occurs after the Hellinger step if it is used.
+	 * @param pool
+	 *            the thread pool to split the encoding over; if
+	 *            <code>null</code> the encoding is performed in the calling
+	 *            thread
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm, boolean hellinger, boolean l2normalise, ThreadPoolExecutor pool)
+	{
+		this.hellinger = hellinger;
+		this.l2normalise = l2normalise;
+		this.pool = pool;
+
+		final MultivariateGaussian[] gaussians = gmm.gaussians;
+		this.K = gaussians.length;
+		this.D = gaussians[0].getMean().getColumnDimension();
+
+		this.means = new float[K * D];
+		this.invStd = new float[K * D];
+		this.logNorm = new float[K];
+		this.wt1 = new double[K];
+		this.wt2 = new double[K];
+
+		for (int k = 0; k < K; k++) {
+			final double[] mean = gaussians[k].getMean().getArray()[0];
+
+			double logDet = 0;
+			for (int j = 0; j < D; j++) {
+				final double var = gaussians[k].getCovariance(j, j);
+
+				means[k * D + j] = (float) mean[j];
+				invStd[k * D + j] = (float) (1.0 / Math.sqrt(var));
+				logDet += Math.log(var);
+			}
+
+			logNorm[k] = (float) (Math.log(gmm.weights[k]) - 0.5 * (D * LOG_2PI + logDet));
+			wt1[k] = 1.0 / Math.sqrt(gmm.weights[k]);
+			wt2[k] = 1.0 / Math.sqrt(2 * gmm.weights[k]);
+		}
+	}
+
+	/**
+	 * Construct with the given mixture of Gaussians and optional improvement
+	 * steps. The encoding is performed in the calling thread.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param hellinger
+	 *            if true then use Hellinger's kernel rather than the linear one
+	 *            by signed square rooting the values in the final vector
+	 * @param l2normalise
+	 *            if true then apply l2 normalisation to the final vector. This
+	 *            occurs after the Hellinger step if it is used.
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm, boolean hellinger, boolean l2normalise) {
+		this(gmm, hellinger, l2normalise, null);
+	}
+
+	/**
+	 * Construct the Fisher Vector encoder with the given mixture of Gaussians
+	 * and the optional improvement steps (in the sense of the VLFeat
+	 * documentation). For the improved version, the final vector is projected
+	 * into Hellinger's kernel and then l2 normalised.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 * @param improved
+	 *            if true then Hellinger's kernel is used, and the vector is l2
+	 *            normalised.
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm, boolean improved) {
+		this(gmm, improved, improved);
+	}
+
+	/**
+	 * Construct the standard Fisher Vector encoder with the given mixture of
+	 * Gaussians.
+	 *
+	 * @param gmm
+	 *            the mixture of gaussians
+	 */
+	public DiagonalFisherVector(MixtureOfGaussians gmm) {
+		this(gmm, false);
+	}
+
+	/**
+	 * Get the thread pool used to split the encoding.
+	 *
+	 * @return the thread pool; <code>null</code> if the encoding is performed
+	 *         in the calling thread
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return pool;
+	}
+
+	/**
+	 * Set the thread pool used to split the encoding.
+	 *
+	 * @param pool
+	 *            the thread pool; <code>null</code> to perform the encoding in
+	 *            the calling thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Get the number of descriptors that are read and processed together.
+	 *
+	 * @return the block size
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Set the number of descriptors that are read and processed together.
+	 *
+	 * @param blockSize
+	 *            the block size
+	 */
+	public void setBlockSize(int blockSize) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("Block size must be positive");
+
+		this.blockSize = blockSize;
+	}
+
+	@Override
+	public FloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features) {
+		if (features == null || features.size() <= 0)
+			return null;
+
+		final ArrayFeatureVector<?>[] X = new ArrayFeatureVector<?>[features.size()];
+		for (int i = 0; i < X.length; i++)
+			X[i] = features.get(i).getFeatureVector();
+
+		return computeFisherVector(X);
+	}
+
+	@Override
+	public FloatFV aggregateVectors(List<? extends ArrayFeatureVector<T>> features) {
+		if (features == null || features.size() <= 0)
+			return null;
+
+		return computeFisherVector(features.toArray(new ArrayFeatureVector<?>[features.size()]));
+	}
+
+	private FloatFV computeFisherVector(final ArrayFeatureVector<?>[] X) {
+		if (X[0].length() != D) {
+			throw new IllegalArgumentException(
+					"The number of dimensions of the given data is not compatible with the model");
+		}
+
+		final int nFeatures = X.length;
+		final int nchunks = pool == null ? 1 :
+				Math.max(1, Math.min(pool.getMaximumPoolSize(), (nFeatures + blockSize - 1) / blockSize));
+
+		// each chunk of descriptors has its own accumulator, and the
+		// accumulators are summed in chunk order so the result doesn't depend
+		// on the scheduling of the threads
+		final double[][] acc = new double[nchunks][];
+
+		if (nchunks == 1) {
+			acc[0] = accumulate(X, 0, nFeatures);
+		} else {
+			Parallel.forRange(0, nchunks, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int c = range.start; c < range.stop; c++) {
+						final int start = (int) ((long) nFeatures * c / nchunks);
+						final int stop = (int) ((long) nFeatures * (c + 1) / nchunks);
+
+						acc[c] = accumulate(X, start, stop);
+					}
+				}
+			}, pool);
+		}
+
+		final double[] sum = acc[0];
+		for (int c = 1; c < nchunks; c++) {
+			for (int i = 0; i < sum.length; i++)
+				sum[i] += acc[c][i];
+		}
+
+		final float[] vector = new float[2 * K * D];
+		for (int k = 0; k < K; k++) {
+			final double w1 = wt1[k] / nFeatures;
+			final double w2 = wt2[k] / nFeatures;
+
+			for (int j = 0; j < D; j++) {
+				vector[k * 2 * D + j] = (float) (sum[k * 2 * D + j] * w1);
+				vector[k * 2 * D + j + D] = (float) (sum[k * 2 * D + j + D] * w2);
+			}
+		}
+
+		final FloatFV out = new FloatFV(vector);
+
+		if (hellinger) {
+			for (int i = 0; i < out.values.length; i++) {
+				out.values[i] = (float) (out.values[i] > 0 ? Math.sqrt(out.values[i]) :
+					-1 * Math.sqrt(-1 * out.values[i]));
+			}
+		}
+
+		if (l2normalise) {
+			// l2 norm
+			double sumsq = 0;
+			for (int i = 0; i < out.values.length; i++) {
+				sumsq += (out.values[i] * out.values[i]);
+			}
+			final float norm = (float) (1.0 / Math.sqrt(sumsq));
+			for (int i = 0; i < out.values.length; i++) {
+				out.values[i] *= norm;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Accumulate the unnormalised first and second order statistics of the
+	 * descriptors in the given range.
+	 */
+	private double[] accumulate(ArrayFeatureVector<?>[] X, int start, int stop) {
+		final double[] acc = new double[2 * K * D];
+		final float[] block = new float[blockSize * D];
+		final float[] z = new float[K * D];
+		final double[] lp = new double[K];
+
+		for (int b = start; b < stop; b += blockSize) {
+			final int n = Math.min(blockSize, stop - b);
+
+			for (int i = 0; i < n; i++)
+				copy(X[b + i], block, i * D);
+
+			for (int i = 0; i < n; i++) {
+				final int xo = i * D;
+
+				// normalised residuals and log-probabilities for every
+				// component
+				double max = Double.NEGATIVE_INFINITY;
+				for (int k = 0, kd = 0; k < K; k++, kd += D) {
+					double dist = 0;
+					for (int j = 0; j < D; j++) {
+						final float zj = (block[xo + j] - means[kd + j]) * invStd[kd + j];
+						z[kd + j] = zj;
+						dist += zj * zj;
+					}
+
+					lp[k] = logNorm[k] - 0.5 * dist;
+					if (lp[k] > max)
+						max = lp[k];
+				}
+
+				double lse = 0;
+				for (int k = 0; k < K; k++)
+					lse += Math.exp(lp[k] - max);
+				lse = max + Math.log(lse);
+
+				for (int k = 0, kd = 0; k < K; k++, kd += D) {
+					final double apk = Math.exp(lp[k] - lse);
+
+					if (apk < 1e-6)
+						continue; // speed-up: ignore really small terms...
+
+					final int o = 2 * kd;
+					for (int j = 0; j < D; j++) {
+						final double zj = z[kd + j];
+
+						acc[o + j] += apk * zj;
+						acc[o + j + D] += apk * ((zj * zj) - 1);
+					}
+				}
+			}
+		}
+
+		return acc;
+	}
+
+	/**
+	 * Copy the values of the given vector into the block, avoiding the
+	 * allocation of an intermediate <code>double[]</code> for the common
+	 * primitive types.
+	 */
+	private static void copy(ArrayFeatureVector<?> fv, float[] block, int offset) {
+		final Object values = fv.values;
+
+		if (values instanceof byte[]) {
+			final byte[] v = (byte[]) values;
+			for (int j = 0; j < v.length; j++)
+				block[offset + j] = v[j];
+		} else if (values instanceof float[]) {
+			final float[] v = (float[]) values;
+			System.arraycopy(v, 0, block, offset, v.length);
+		} else if (values instanceof double[]) {
+			final double[] v = (double[]) values;
+			for (int j = 0; j < v.length; j++)
+				block[offset + j] = (float) v[j];
+		} else if (values instanceof int[]) {
+			final int[] v = (int[]) values;
+			for (int j = 0; j < v.length; j++)
+				block[offset + j] = v[j];
+		} else {
+			final int len = fv.length();
+			for (int j = 0; j < len; j++)
+				block[offset + j] = (float) fv.getAsDouble(j);
+		}
+	}
+}
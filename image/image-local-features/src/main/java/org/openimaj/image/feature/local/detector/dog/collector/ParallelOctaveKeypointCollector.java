@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.detector.dog.collector;
+
+import gnu.trove.list.array.TFloatArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openimaj.feature.OrientedFeatureVector;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
+import org.openimaj.image.feature.local.detector.dog.extractor.GradientFeatureExtractor;
+import org.openimaj.image.feature.local.detector.pyramid.OctaveInterestPointFinder;
+import org.openimaj.image.feature.local.extraction.GradientScaleSpaceImageExtractorProperties;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.image.processing.convolution.FImageGradients;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * An {@link AbstractOctaveLocalFeatureCollector} that collects {@link Keypoint}
+ * s like the {@link OctaveKeypointCollector}, but computes the descriptors
+ * concurrently using a thread pool.
+ * <p>
+ * Interest points are buffered as they are found. When the points of an octave
+ * are complete (i.e. a point from the next octave arrives, or
+ * {@link #getFeatures()} is called), the gradient images of each scale of the
+ * octave are computed in parallel, and then the descriptors are computed by
+ * workers that repeatedly claim small blocks of the buffered points until none
+ * remain. This dynamic scheduling keeps all threads busy even though the cost
+ * of a descriptor grows with its scale. The resultant {@link Keypoint}s are
+ * added to the list in the order in which the points were found, so the output
+ * is identical to that of an {@link OctaveKeypointCollector} with the same
+ * extractor.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ParallelOctaveKeypointCollector
+		extends
+		AbstractOctaveLocalFeatureCollector<GaussianOctave<FImage>, GradientFeatureExtractor, Keypoint, FImage>
+{
+	/**
+	 * The default number of interest points claimed by a worker at a time
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 16;
+
+	protected ThreadPoolExecutor pool;
+	protected int blockSize = DEFAULT_BLOCK_SIZE;
+
+	private GaussianOctave<FImage> currentOctave;
+	private final List<FImage> pendingImages = new ArrayList<FImage>();
+	private final TIntArrayList pendingImageIndices = new TIntArrayList();
+	private final TFloatArrayList pendingX = new TFloatArrayList();
+	private final TFloatArrayList pendingY = new TFloatArrayList();
+	private final TFloatArrayList pendingScales = new TFloatArrayList();
+
+	/**
+	 * Construct with the given feature extractor and thread pool.
+	 * 
+	 * @param featureExtractor
+	 *            the feature extractor
+	 * @param pool
+	 *            the thread pool
+	 */
+	public ParallelOctaveKeypointCollector(GradientFeatureExtractor featureExtractor, ThreadPoolExecutor pool) {
+		super(featureExtractor);
+		this.pool = pool;
+	}
+
+	@Override
+	public void foundInterestPoint(OctaveInterestPointFinder<GaussianOctave<FImage>, FImage> finder, float x,
+			float y, float octaveScale)
+	{
+		final GaussianOctave<FImage> octave = finder.getOctave();
+
+		if (octave != currentOctave) {
+			flush();
+			currentOctave = octave;
+		}
+
+		final FImage image = octave.images[finder.getCurrentScaleIndex()];
+
+		// points arrive scale by scale, so the image is almost always the last
+		// one seen
+		int imageIndex = pendingImages.size() - 1;
+		while (imageIndex >= 0 && pendingImages.get(imageIndex) != image)
+			imageIndex--;
+
+		if (imageIndex < 0) {
+			imageIndex = pendingImages.size();
+			pendingImages.add(image);
+		}
+
+		pendingImageIndices.add(imageIndex);
+		pendingX.add(x);
+		pendingY.add(y);
+		pendingScales.add(octaveScale);
+	}
+
+	/**
+	 * Get the list of features collected. Any buffered interest points are
+	 * processed first.
+	 * 
+	 * @return the features
+	 */
+	@Override
+	public LocalFeatureList<Keypoint> getFeatures() {
+		flush();
+		return features;
+	}
+
+	/**
+	 * Compute the descriptors of all buffered interest points and add them to
+	 * the list of features.
+	 */
+	protected void flush() {
+		final int npoints = pendingX.size();
+
+		if (npoints > 0) {
+			final float octSize = currentOctave.octaveSize;
+			final FImage[] images = pendingImages.toArray(new FImage[pendingImages.size()]);
+			final FImage[] magnitudes = new FImage[images.length];
+			final FImage[] orientations = new FImage[images.length];
+
+			Parallel.forRange(0, images.length, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int i = range.start; i < range.stop; i++) {
+						magnitudes[i] = new FImage(images[i].width, images[i].height);
+						orientations[i] = new FImage(images[i].width, images[i].height);
+						FImageGradients.gradientMagnitudesAndOrientations(images[i], magnitudes[i], orientations[i]);
+					}
+				}
+			}, pool);
+
+			final OrientedFeatureVector[][] fvs = new OrientedFeatureVector[npoints][];
+			final AtomicInteger next = new AtomicInteger();
+			final int nworkers = Math.min(pool.getMaximumPoolSize(), (npoints + blockSize - 1) / blockSize);
+
+			Parallel.forRange(0, nworkers, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange workers) {
+					final GradientScaleSpaceImageExtractorProperties<FImage> gprops =
+							new GradientScaleSpaceImageExtractorProperties<FImage>();
+
+					int start;
+					while ((start = next.getAndAdd(blockSize)) < npoints) {
+						final int stop = Math.min(start + blockSize, npoints);
+
+						for (int i = start; i < stop; i++) {
+							final int im = pendingImageIndices.getQuick(i);
+
+							gprops.image = images[im];
+							gprops.magnitude = magnitudes[im];
+							gprops.orientation = orientations[im];
+							gprops.x = pendingX.getQuick(i);
+							gprops.y = pendingY.getQuick(i);
+							gprops.scale = pendingScales.getQuick(i);
+
+							fvs[i] = featureExtractor.extractFeatureFromGradients(gprops);
+						}
+					}
+				}
+			}, pool);
+
+			for (int i = 0; i < npoints; i++) {
+				final float imx = octSize * pendingX.getQuick(i);
+				final float imy = octSize * pendingY.getQuick(i);
+				final float imscale = octSize * pendingScales.getQuick(i);
+
+				for (final OrientedFeatureVector fv : fvs[i]) {
+					features.add(new Keypoint(imx, imy, fv.orientation, imscale, fv.values));
+				}
+			}
+		}
+
+		pendingImages.clear();
+		pendingImageIndices.resetQuick();
+		pendingX.resetQuick();
+		pendingY.resetQuick();
+		pendingScales.resetQuick();
+	}
+
+	/**
+	 * @return the number of interest points claimed by a worker at a time
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Set the number of interest points claimed by a worker at a time.
+	 * Smaller blocks balance the load better at the expense of more
+	 * contention.
+	 * 
+	 * @param blockSize
+	 *            the block size
+	 */
+	public void setBlockSize(int blockSize) {
+		if (blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive");
+
+		this.blockSize = blockSize;
+	}
+}
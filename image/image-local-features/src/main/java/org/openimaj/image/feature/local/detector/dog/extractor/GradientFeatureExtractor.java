@@ -128,6 +128,33 @@ public class GradientFeatureExtractor implements ScaleSpaceFeatureExtractor<Orie
 		return ret;
 	}
 
+	/**
+	 * Extract features from gradient magnitude and orientation images that
+	 * have already been computed (for example with
+	 * {@link FImageGradients#gradientMagnitudesAndOrientations(FImage, FImage, FImage)}
+	 * ). The result is the same as
+	 * {@link #extractFeature(ScaleSpaceImageExtractorProperties)} would give for
+	 * the underlying image, but the internal state of the extractor is neither
+	 * used nor modified, so this method can safely be called concurrently from
+	 * multiple threads with different properties objects.
+	 *
+	 * @param gprops
+	 *            the properties, including the gradient images
+	 * @return the features
+	 */
+	public OrientedFeatureVector[] extractFeatureFromGradients(GradientScaleSpaceImageExtractorProperties<FImage> gprops)
+	{
+		final float[] dominantOrientations = dominantOrientationExtractor.extractFeatureRaw(gprops);
+
+		final OrientedFeatureVector[] ret = new OrientedFeatureVector[dominantOrientations.length];
+
+		for (int i = 0; i < dominantOrientations.length; i++) {
+			ret[i] = createFeature(gprops, dominantOrientations[i]);
+		}
+
+		return ret;
+	}
+
 	/**
 	 * Get the GradientScaleSpaceImageExtractorProperties for the given
 	 * properties. The returned properties are the same as the input properties,
@@ -177,9 +204,18 @@ public class GradientFeatureExtractor implements ScaleSpaceFeatureExtractor<Orie
 	 * extract the relevant feature vector.
 	 */
 	protected OrientedFeatureVector createFeature(final float orientation) {
-		final float fx = currentGradientProperties.x;
-		final float fy = currentGradientProperties.y;
-		final float scale = currentGradientProperties.scale;
+		return createFeature(currentGradientProperties, orientation);
+	}
+
+	/*
+	 * As createFeature(float), but sampling from the given gradient properties
+	 */
+	protected OrientedFeatureVector createFeature(final GradientScaleSpaceImageExtractorProperties<FImage> gprops,
+			final float orientation)
+	{
+		final float fx = gprops.x;
+		final float fy = gprops.y;
+		final float scale = gprops.scale;
 
 		// create a new feature provider and initialise it with the dominant
 		// orientation
@@ -217,8 +253,8 @@ public class GradientFeatureExtractor implements ScaleSpaceFeatureExtractor<Orie
 		final int orientedSamplingBoxHalfSize = Math.round(orientedSamplingBoxSize / 2.0f);
 
 		// get the images and their size
-		final FImage mag = currentGradientProperties.magnitude;
-		final FImage ori = currentGradientProperties.orientation;
+		final FImage mag = gprops.magnitude;
+		final FImage ori = gprops.orientation;
 		final int width = mag.width;
 		final int height = mag.height;
 
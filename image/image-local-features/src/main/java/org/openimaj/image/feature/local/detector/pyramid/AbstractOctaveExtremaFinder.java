@@ -29,9 +29,16 @@
  */
 package org.openimaj.image.feature.local.detector.pyramid;
 
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.pyramid.Octave;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * <p>
@@ -51,6 +58,16 @@ import org.openimaj.image.analysis.pyramid.gaussian.GaussianOctave;
  * The AbstractOctaveExtremaFinder uses an event listener paradigm. Once
  * interest points are found, the internal listener will be informed.
  * </p>
+ * <p>
+ * If a thread pool is set, each scale is searched in horizontal bands
+ * concurrently. The candidate extrema from the bands are then passed to
+ * {@link #processExtrema(FImage[], int, int, int, float)} on the calling
+ * thread in exactly the same order as a single-threaded search, so the
+ * listener sees an identical sequence of events. This requires that the
+ * {@link #firstCheck(float, int, int, int, FImage[])},
+ * {@link #isLocalExtremum(float, FImage, int, int)} and
+ * {@link #isNotEdge(FImage, int, int)} tests have no side effects.
+ * </p>
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -67,6 +84,8 @@ public abstract class AbstractOctaveExtremaFinder<OCTAVE extends GaussianOctave<
 	// IJCV, p.12)
 	protected float eigenvalueRatio = DEFAULT_EIGENVALUE_RATIO;
 
+	protected ThreadPoolExecutor pool;
+
 	/**
 	 * Construct an AbstractOctaveExtremaFinder with the default Eigenvalue
 	 * ratio threshold.
@@ -85,6 +104,25 @@ public abstract class AbstractOctaveExtremaFinder<OCTAVE extends GaussianOctave<
 		this.eigenvalueRatio = eigenvalueRatio;
 	}
 
+	/**
+	 * Set the thread pool used to search bands of each scale concurrently. If
+	 * the pool is null (the default), the search is single-threaded.
+	 * 
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the thread pool used to search bands of each scale concurrently,
+	 *         or null if the search is single-threaded
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return pool;
+	}
+
 	@Override
 	public OCTAVE getOctave() {
 		return octave;
@@ -106,6 +144,11 @@ public abstract class AbstractOctaveExtremaFinder<OCTAVE extends GaussianOctave<
 		final int width = images[0].width;
 		final int borderDist = octave.options.getBorderPixels();
 
+		if (pool != null) {
+			processBanded(images, width, height, borderDist);
+			return;
+		}
+
 		// search through the scale-space images, leaving a border
 		for (currentScaleIndex = 1; currentScaleIndex < images.length - 1; currentScaleIndex++) {
 			for (int y = borderDist; y < height - borderDist; y++) {
@@ -125,6 +168,61 @@ public abstract class AbstractOctaveExtremaFinder<OCTAVE extends GaussianOctave<
 		}
 	}
 
+	/*
+	 * Search each scale in horizontal bands using the thread pool, collecting
+	 * candidate coordinates per band and then reporting them in raster order
+	 */
+	private void processBanded(final FImage[] images, final int width, final int height, final int borderDist) {
+		final int y0 = borderDist;
+		final int y1 = height - borderDist;
+		if (y1 <= y0)
+			return;
+
+		final int nbands = Math.min(pool.getMaximumPoolSize(), y1 - y0);
+		final TIntArrayList[] found = new TIntArrayList[nbands];
+
+		for (currentScaleIndex = 1; currentScaleIndex < images.length - 1; currentScaleIndex++) {
+			final int s = currentScaleIndex;
+
+			Parallel.forRange(0, nbands, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int band = range.start; band < range.stop; band++) {
+						final int start = y0 + (int) ((long) (y1 - y0) * band / nbands);
+						final int stop = y0 + (int) ((long) (y1 - y0) * (band + 1) / nbands);
+						final TIntArrayList coords = new TIntArrayList();
+
+						for (int y = start; y < stop; y++) {
+							for (int x = borderDist; x < width - borderDist; x++) {
+								final float val = images[s].pixels[y][x];
+
+								if (firstCheck(val, x, y, s, images) &&
+										isLocalExtremum(val, images[s - 1], x, y) &&
+										isLocalExtremum(val, images[s], x, y) &&
+										isLocalExtremum(val, images[s + 1], x, y) &&
+										isNotEdge(images[s], x, y))
+								{
+									coords.add(x);
+									coords.add(y);
+								}
+							}
+						}
+
+						found[band] = coords;
+					}
+				}
+			}, pool);
+
+			// report in band (and thus raster) order
+			for (int b = 0; b < nbands; b++) {
+				final TIntArrayList coords = found[b];
+
+				for (int i = 0; i < coords.size(); i += 2)
+					processExtrema(images, s, coords.getQuick(i), coords.getQuick(i + 1), octave.octaveSize);
+			}
+		}
+	}
+
 	/**
 	 * Perform the first of the checks that determine whether a point is a valid
 	 * interest point. This can be overridden to allow for cheaper tests to
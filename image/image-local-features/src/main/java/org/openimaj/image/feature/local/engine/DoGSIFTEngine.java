@@ -39,6 +39,7 @@ import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramid;
 import org.openimaj.image.feature.local.descriptor.gradient.SIFTFeatureProvider;
 import org.openimaj.image.feature.local.detector.dog.collector.Collector;
 import org.openimaj.image.feature.local.detector.dog.collector.OctaveKeypointCollector;
+import org.openimaj.image.feature.local.detector.dog.collector.ParallelOctaveKeypointCollector;
 import org.openimaj.image.feature.local.detector.dog.extractor.DominantOrientationExtractor;
 import org.openimaj.image.feature.local.detector.dog.extractor.GradientFeatureExtractor;
 import org.openimaj.image.feature.local.detector.dog.extractor.OrientationHistogramExtractor;
@@ -103,30 +104,37 @@ public class DoGSIFTEngine implements Engine<Keypoint, FImage> {
 
 	@Override
 	public LocalFeatureList<Keypoint> findFeatures(FImage image) {
+		final BasicOctaveExtremaFinder innerFinder = new BasicOctaveExtremaFinder(options.magnitudeThreshold,
+				options.eigenvalueRatio);
+		innerFinder.setThreadPool(options.getThreadPool());
+
 		final OctaveInterestPointFinder<GaussianOctave<FImage>, FImage> finder =
-				new DoGOctaveExtremaFinder(new BasicOctaveExtremaFinder(options.magnitudeThreshold,
-						options.eigenvalueRatio));
+				new DoGOctaveExtremaFinder(innerFinder);
+
+		final GradientFeatureExtractor extractor = new GradientFeatureExtractor(
+				new DominantOrientationExtractor(
+						options.peakThreshold,
+						new OrientationHistogramExtractor(
+								options.numOriHistBins,
+								options.scaling,
+								options.smoothingIterations,
+								options.samplingSize
+						)
+				),
+				new SIFTFeatureProvider(
+						options.numOriBins,
+						options.numSpatialBins,
+						options.valueThreshold,
+						options.gaussianSigma
+				),
+				options.magnificationFactor * options.numSpatialBins
+		);
 
-		final Collector<GaussianOctave<FImage>, Keypoint, FImage> collector = new OctaveKeypointCollector<FImage>(
-				new GradientFeatureExtractor(
-						new DominantOrientationExtractor(
-								options.peakThreshold,
-								new OrientationHistogramExtractor(
-										options.numOriHistBins,
-										options.scaling,
-										options.smoothingIterations,
-										options.samplingSize
-								)
-						),
-						new SIFTFeatureProvider(
-								options.numOriBins,
-								options.numSpatialBins,
-								options.valueThreshold,
-								options.gaussianSigma
-						),
-						options.magnificationFactor * options.numSpatialBins
-				)
-				);
+		final Collector<GaussianOctave<FImage>, Keypoint, FImage> collector;
+		if (options.getThreadPool() != null)
+			collector = new ParallelOctaveKeypointCollector(extractor, options.getThreadPool());
+		else
+			collector = new OctaveKeypointCollector<FImage>(extractor);
 
 		finder.setOctaveInterestPointListener(collector);
 
@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.feature.local.engine;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.analysis.pyramid.gaussian.GaussianPyramidOptions;
@@ -39,6 +41,13 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
 /**
  * Options for controlling SIFT feature localisation and extraction. Default
  * values are based on Lowe's papers.
+ * <p>
+ * If a thread pool is set with {@link #setThreadPool(ThreadPoolExecutor)}, the
+ * {@link DoGSIFTEngine} runs in parallel mode: the Gaussian blurs are split
+ * into bands, extrema are searched for in bands of each difference-of-Gaussian
+ * image, and the descriptors are computed concurrently. The extracted features
+ * are identical to, and in the same order as, those of the single-threaded
+ * engine.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -0,0 +1,724 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.keypoints;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import org.openimaj.data.AbstractDataSource;
+import org.openimaj.data.DataSource;
+import org.openimaj.data.RandomData;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.io.IOUtils;
+
+/**
+ * A compact, struct-of-arrays, list of {@link Keypoint}s. Rather than holding
+ * a {@link Keypoint} object (and its descriptor array) per feature, the
+ * locations are stored in parallel <code>float[]</code>s and all the
+ * descriptors are stored contiguously in a single <code>byte[]</code>. This
+ * massively reduces the number of objects on the heap when working with large
+ * numbers of features.
+ * <p>
+ * {@link #get(int)} materialises a new, detached, {@link Keypoint}; changes to
+ * it are not reflected in the list unless it is passed back to
+ * {@link #set(int, Keypoint)}. Loops that only need to look at each feature in
+ * turn can avoid the allocation by using {@link #get(int, Keypoint)} or
+ * {@link #flyweights()}, which fill a single reused {@link Keypoint}. Bulk
+ * consumers of the descriptors, such as clustering or assignment, can use
+ * {@link #getDescriptors(int, int, byte[][])} or {@link #asDataSource()}, or
+ * access the backing arrays directly.
+ * <p>
+ * The binary and ASCII formats are the same as those of
+ * {@link MemoryLocalFeatureList}.
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class CompactKeypointList extends AbstractList<Keypoint> implements LocalFeatureList<Keypoint>, RandomAccess {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int veclen;
+	private int size;
+
+	private float[] x;
+	private float[] y;
+	private float[] scale;
+	private float[] ori;
+	private byte[] ivecs;
+
+	/**
+	 * Construct an empty list for features of the given length
+	 *
+	 * @param veclen
+	 *            the length of the feature vectors
+	 */
+	public CompactKeypointList(int veclen) {
+		this(veclen, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an empty list for features of the given length, with space
+	 * pre-allocated for the given number of features. The list will
+	 * automatically grow once the capacity is reached.
+	 *
+	 * @param veclen
+	 *            the length of the feature vectors
+	 * @param initialCapacity
+	 *            the initial capacity of the list
+	 */
+	public CompactKeypointList(int veclen, int initialCapacity) {
+		if (veclen < 0)
+			throw new IllegalArgumentException("Feature vector length must not be negative");
+
+		this.veclen = veclen;
+		this.x = new float[initialCapacity];
+		this.y = new float[initialCapacity];
+		this.scale = new float[initialCapacity];
+		this.ori = new float[initialCapacity];
+		this.ivecs = new byte[initialCapacity * veclen];
+	}
+
+	/**
+	 * Construct a list containing copies of the given keypoints. All the
+	 * keypoints must have feature vectors of the same length.
+	 *
+	 * @param keypoints
+	 *            the keypoints
+	 */
+	public CompactKeypointList(List<? extends Keypoint> keypoints) {
+		this(keypoints.size() > 0 ? keypoints.get(0).ivec.length : 0, keypoints.size());
+
+		for (final Keypoint k : keypoints)
+			add(k);
+	}
+
+	/**
+	 * Create a {@link CompactKeypointList} by reading all the keypoints from
+	 * the specified file.
+	 *
+	 * @param keypointFile
+	 *            the file from which to read the keypoints
+	 * @return a new list populated with keypoints from the file
+	 * @throws IOException
+	 *             if an error occurs reading the file
+	 */
+	public static CompactKeypointList read(File keypointFile) throws IOException {
+		BufferedInputStream bis = null;
+
+		try {
+			bis = new BufferedInputStream(new FileInputStream(keypointFile));
+			return read(bis);
+		} finally {
+			if (bis != null)
+				try {
+					bis.close();
+				} catch (final IOException e) {
+				}
+		}
+	}
+
+	/**
+	 * Create a {@link CompactKeypointList} by reading all the keypoints from
+	 * the specified stream.
+	 *
+	 * @param stream
+	 *            the input stream from which to read the keypoints
+	 * @return a new list populated with keypoints from the stream
+	 * @throws IOException
+	 *             if an error occurs reading the stream
+	 */
+	public static CompactKeypointList read(InputStream stream) throws IOException {
+		return read(new BufferedInputStream(stream));
+	}
+
+	/**
+	 * Create a {@link CompactKeypointList} by reading all the keypoints from
+	 * the specified stream.
+	 *
+	 * @param stream
+	 *            the input stream from which to read the keypoints
+	 * @return a new list populated with keypoints from the stream
+	 * @throws IOException
+	 *             if an error occurs reading the stream
+	 */
+	public static CompactKeypointList read(BufferedInputStream stream) throws IOException {
+		if (IOUtils.isBinary(stream, LocalFeatureList.BINARY_HEADER)) {
+			final DataInputStream dis = new DataInputStream(stream);
+			dis.readFully(new byte[LocalFeatureList.BINARY_HEADER.length]);
+
+			return readNoHeader(dis);
+		}
+
+		// the ASCII format is slow to parse anyway, so just convert
+		return new CompactKeypointList(MemoryLocalFeatureList.read(stream, Keypoint.class));
+	}
+
+	/**
+	 * Create a {@link CompactKeypointList} by reading all the keypoints from
+	 * the specified {@link DataInput}. Reading of the header is skipped, and
+	 * it is assumed that the data is in binary format.
+	 *
+	 * @param in
+	 *            the data input from which to read the keypoints
+	 * @return a new list populated with keypoints from the input
+	 * @throws IOException
+	 *             if an error occurs reading the input
+	 */
+	public static CompactKeypointList readNoHeader(DataInput in) throws IOException {
+		final int nItems = in.readInt();
+		final int veclen = in.readInt();
+
+		final CompactKeypointList list = new CompactKeypointList(veclen, nItems);
+		for (int i = 0; i < nItems; i++) {
+			list.x[i] = in.readFloat();
+			list.y[i] = in.readFloat();
+			list.scale[i] = in.readFloat();
+			list.ori[i] = in.readFloat();
+			in.readFully(list.ivecs, i * veclen, veclen);
+		}
+		list.size = nItems;
+
+		return list;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= x.length)
+			return;
+
+		final int newCapacity = Math.max(capacity, x.length + (x.length >> 1) + 1);
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		scale = Arrays.copyOf(scale, newCapacity);
+		ori = Arrays.copyOf(ori, newCapacity);
+		ivecs = Arrays.copyOf(ivecs, newCapacity * veclen);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	private void checkLength(Keypoint k) {
+		if (k.ivec.length != veclen)
+			throw new IllegalArgumentException("Feature vector length " + k.ivec.length + " does not match list ("
+					+ veclen + ")");
+	}
+
+	private void store(int index, Keypoint k) {
+		x[index] = k.x;
+		y[index] = k.y;
+		scale[index] = k.scale;
+		ori[index] = k.ori;
+		System.arraycopy(k.ivec, 0, ivecs, index * veclen, veclen);
+	}
+
+	@Override
+	public Keypoint get(int index) {
+		checkIndex(index);
+
+		final byte[] ivec = new byte[veclen];
+		System.arraycopy(ivecs, index * veclen, ivec, 0, veclen);
+
+		return new Keypoint(x[index], y[index], ori[index], scale[index], ivec);
+	}
+
+	/**
+	 * Fill the given {@link Keypoint} with the data of the keypoint at the
+	 * given index. The descriptor array of the target is reused if it has the
+	 * correct length. Changes to the target are not reflected in the list.
+	 *
+	 * @param index
+	 *            the index
+	 * @param target
+	 *            the keypoint to fill
+	 * @return the target
+	 */
+	public Keypoint get(int index, Keypoint target) {
+		checkIndex(index);
+
+		if (target.ivec == null || target.ivec.length != veclen)
+			target.ivec = new byte[veclen];
+
+		target.x = x[index];
+		target.y = y[index];
+		target.scale = scale[index];
+		target.ori = ori[index];
+		System.arraycopy(ivecs, index * veclen, target.ivec, 0, veclen);
+
+		return target;
+	}
+
+	/**
+	 * Get an {@link Iterable} over the keypoints in the list that reuses a
+	 * single {@link Keypoint} object for every element. The returned
+	 * keypoints must not be retained beyond the next call to
+	 * {@link Iterator#next()}.
+	 *
+	 * @return the flyweight iterable
+	 */
+	public Iterable<Keypoint> flyweights() {
+		return new Iterable<Keypoint>() {
+			@Override
+			public Iterator<Keypoint> iterator() {
+				return new Iterator<Keypoint>() {
+					final Keypoint flyweight = new Keypoint(veclen);
+					int index = 0;
+
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+
+					@Override
+					public Keypoint next() {
+						if (index >= size)
+							throw new NoSuchElementException();
+
+						return get(index++, flyweight);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Keypoint set(int index, Keypoint element) {
+		checkIndex(index);
+		checkLength(element);
+
+		final Keypoint old = get(index);
+		store(index, element);
+
+		return old;
+	}
+
+	@Override
+	public boolean add(Keypoint element) {
+		checkLength(element);
+		ensureCapacity(size + 1);
+		store(size++, element);
+		modCount++;
+
+		return true;
+	}
+
+	@Override
+	public void add(int index, Keypoint element) {
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+		checkLength(element);
+		ensureCapacity(size + 1);
+
+		final int n = size - index;
+		System.arraycopy(x, index, x, index + 1, n);
+		System.arraycopy(y, index, y, index + 1, n);
+		System.arraycopy(scale, index, scale, index + 1, n);
+		System.arraycopy(ori, index, ori, index + 1, n);
+		System.arraycopy(ivecs, index * veclen, ivecs, (index + 1) * veclen, n * veclen);
+
+		store(index, element);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public Keypoint remove(int index) {
+		final Keypoint old = get(index);
+
+		final int n = size - index - 1;
+		System.arraycopy(x, index + 1, x, index, n);
+		System.arraycopy(y, index + 1, y, index, n);
+		System.arraycopy(scale, index + 1, scale, index, n);
+		System.arraycopy(ori, index + 1, ori, index, n);
+		System.arraycopy(ivecs, (index + 1) * veclen, ivecs, index * veclen, n * veclen);
+
+		size--;
+		modCount++;
+
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the x-ordinate of the keypoint at the given index
+	 *
+	 * @param index
+	 *            the index
+	 * @return the x-ordinate
+	 */
+	public float getX(int index) {
+		checkIndex(index);
+		return x[index];
+	}
+
+	/**
+	 * Get the y-ordinate of the keypoint at the given index
+	 *
+	 * @param index
+	 *            the index
+	 * @return the y-ordinate
+	 */
+	public float getY(int index) {
+		checkIndex(index);
+		return y[index];
+	}
+
+	/**
+	 * Get the scale of the keypoint at the given index
+	 *
+	 * @param index
+	 *            the index
+	 * @return the scale
+	 */
+	public float getScale(int index) {
+		checkIndex(index);
+		return scale[index];
+	}
+
+	/**
+	 * Get the orientation of the keypoint at the given index
+	 *
+	 * @param index
+	 *            the index
+	 * @return the orientation
+	 */
+	public float getOrientation(int index) {
+		checkIndex(index);
+		return ori[index];
+	}
+
+	/**
+	 * Get the backing array of x-ordinates. Only the first {@link #size()}
+	 * elements are valid, and the array is replaced if the list grows.
+	 *
+	 * @return the x-ordinates
+	 */
+	public float[] getXData() {
+		return x;
+	}
+
+	/**
+	 * Get the backing array of y-ordinates. Only the first {@link #size()}
+	 * elements are valid, and the array is replaced if the list grows.
+	 *
+	 * @return the y-ordinates
+	 */
+	public float[] getYData() {
+		return y;
+	}
+
+	/**
+	 * Get the backing array of scales. Only the first {@link #size()} elements
+	 * are valid, and the array is replaced if the list grows.
+	 *
+	 * @return the scales
+	 */
+	public float[] getScaleData() {
+		return scale;
+	}
+
+	/**
+	 * Get the backing array of orientations. Only the first {@link #size()}
+	 * elements are valid, and the array is replaced if the list grows.
+	 *
+	 * @return the orientations
+	 */
+	public float[] getOrientationData() {
+		return ori;
+	}
+
+	/**
+	 * Get the backing array of descriptors. The descriptor of the keypoint at
+	 * index <code>i</code> occupies the {@link #vecLength()} elements starting
+	 * at <code>i * vecLength()</code>. Only the first
+	 * <code>size() * vecLength()</code> elements are valid, and the array is
+	 * replaced if the list grows.
+	 *
+	 * @return the descriptors
+	 */
+	public byte[] getDescriptorData() {
+		return ivecs;
+	}
+
+	/**
+	 * Copy the descriptor of the keypoint at the given index into the given
+	 * array. If the array is <code>null</code> or has the wrong length, a new
+	 * one is allocated.
+	 *
+	 * @param index
+	 *            the index
+	 * @param out
+	 *            the array to fill
+	 * @return the filled array
+	 */
+	public byte[] getDescriptor(int index, byte[] out) {
+		checkIndex(index);
+
+		if (out == null || out.length != veclen)
+			out = new byte[veclen];
+
+		System.arraycopy(ivecs, index * veclen, out, 0, veclen);
+
+		return out;
+	}
+
+	/**
+	 * Copy the descriptors of the keypoints in the range
+	 * <code>[start, stop)</code> into the given rows. Rows that are
+	 * <code>null</code> or of the wrong length are allocated.
+	 *
+	 * @param start
+	 *            the first index
+	 * @param stop
+	 *            the index after the last
+	 * @param out
+	 *            the rows to fill
+	 * @return the filled rows
+	 */
+	public byte[][] getDescriptors(int start, int stop, byte[][] out) {
+		if (start < 0 || stop > size || start > stop)
+			throw new IndexOutOfBoundsException("Range: [" + start + ", " + stop + "), Size: " + size);
+
+		for (int i = start, j = 0; i < stop; i++, j++) {
+			if (out[j] == null || out[j].length != veclen)
+				out[j] = new byte[veclen];
+
+			System.arraycopy(ivecs, i * veclen, out[j], 0, veclen);
+		}
+
+		return out;
+	}
+
+	/**
+	 * Get copies of the descriptors of all the keypoints in the list.
+	 *
+	 * @return the descriptors
+	 */
+	public byte[][] getDescriptors() {
+		return getDescriptors(0, size, new byte[size][veclen]);
+	}
+
+	/**
+	 * Get a {@link DataSource} over the descriptors of the keypoints in the
+	 * list. Rows are copied straight out of the backing array without
+	 * creating any {@link Keypoint}s, and the rows of the arrays passed to
+	 * {@link DataSource#getData(int, int, Object[])} are reused where
+	 * possible.
+	 *
+	 * @return the data source
+	 */
+	public DataSource<byte[]> asDataSource() {
+		return new AbstractDataSource<byte[]>() {
+			@Override
+			public void getData(int startRow, int stopRow, byte[][] data) {
+				getDescriptors(startRow, stopRow, data);
+			}
+
+			@Override
+			public byte[] getData(int row) {
+				return getDescriptor(row, null);
+			}
+
+			@Override
+			public void getRandomRows(byte[][] data) {
+				final int[] rndIndexes = RandomData.getUniqueRandomInts(data.length, 0, size);
+
+				for (int i = 0; i < rndIndexes.length; i++)
+					data[i] = getDescriptor(rndIndexes[i], data[i]);
+			}
+
+			@Override
+			public int numDimensions() {
+				return veclen;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public byte[][] createTemporaryArray(int size) {
+				return new byte[size][veclen];
+			}
+
+			@Override
+			public Iterator<byte[]> iterator() {
+				return new Iterator<byte[]>() {
+					int index = 0;
+
+					@Override
+					public boolean hasNext() {
+						return index < size;
+					}
+
+					@Override
+					public byte[] next() {
+						if (index >= size)
+							throw new NoSuchElementException();
+
+						return getDescriptor(index++, null);
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <Q> Q[] asDataArray(Q[] a) {
+		if (a.length < size)
+			a = (Q[]) Array.newInstance(a.getClass().getComponentType(), size);
+
+		for (int i = 0; i < size; i++)
+			a[i] = (Q) getDescriptor(i, null);
+
+		return a;
+	}
+
+	@Override
+	public int vecLength() {
+		return veclen;
+	}
+
+	@Override
+	public CompactKeypointList subList(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+			throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "), Size: " + size);
+
+		final int n = toIndex - fromIndex;
+		final CompactKeypointList list = new CompactKeypointList(veclen, n);
+		System.arraycopy(x, fromIndex, list.x, 0, n);
+		System.arraycopy(y, fromIndex, list.y, 0, n);
+		System.arraycopy(scale, fromIndex, list.scale, 0, n);
+		System.arraycopy(ori, fromIndex, list.ori, 0, n);
+		System.arraycopy(ivecs, fromIndex * veclen, list.ivecs, 0, n * veclen);
+		list.size = n;
+
+		return list;
+	}
+
+	@Override
+	public CompactKeypointList randomSubList(int nelem) {
+		final int[] rnds;
+
+		if (nelem > size) {
+			rnds = RandomData.getUniqueRandomInts(size, 0, size);
+		} else {
+			rnds = RandomData.getUniqueRandomInts(nelem, 0, size);
+		}
+
+		final CompactKeypointList list = new CompactKeypointList(veclen, rnds.length);
+		for (int i = 0; i < rnds.length; i++) {
+			final int idx = rnds[i];
+
+			list.x[i] = x[idx];
+			list.y[i] = y[idx];
+			list.scale[i] = scale[idx];
+			list.ori[i] = ori[idx];
+			System.arraycopy(ivecs, idx * veclen, list.ivecs, i * veclen, veclen);
+		}
+		list.size = rnds.length;
+
+		return list;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(veclen);
+
+		for (int i = 0; i < size; i++) {
+			out.writeFloat(x[i]);
+			out.writeFloat(y[i]);
+			out.writeFloat(scale[i]);
+			out.writeFloat(ori[i]);
+			out.write(ivecs, i * veclen, veclen);
+		}
+	}
+
+	@Override
+	public void writeASCII(PrintWriter out) throws IOException {
+		final Locale def = Locale.getDefault();
+		Locale.setDefault(Locale.ENGLISH);
+
+		out.println(size + " " + veclen);
+		for (final Keypoint k : flyweights())
+			k.writeASCII(out);
+
+		Locale.setDefault(def);
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return LocalFeatureList.BINARY_HEADER;
+	}
+
+	@Override
+	public String asciiHeader() {
+		return "";
+	}
+}
@@ -45,6 +45,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.openimaj.feature.local.list.FileLocalFeatureList;
 import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.feature.local.list.MappedLocalFeatureList;
 import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.feature.local.list.StreamLocalFeatureList;
 import org.openimaj.image.FImage;
@@ -141,6 +142,35 @@ public class KeypointListTest {
 		binary.delete();
 	}
 
+	/**
+	 * Test the memory-mapped list gives the same keypoints, sublists and data
+	 * arrays as the in-memory list
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void mappedTest() throws IOException {
+		final File binary = folder.newFile("kpt-mappedTest.bin");
+		IOUtils.writeBinary(binary, keys);
+
+		final MappedLocalFeatureList<Keypoint> mkl = MappedLocalFeatureList.read(binary, Keypoint.class);
+
+		assertEquals(keys.size(), mkl.size());
+		assertEquals(keys.vecLength(), mkl.vecLength());
+		assertEquals(keys, mkl);
+		assertEquals(keys.subList(10, 20), mkl.subList(10, 20));
+		assertEquals(keys.subList(10, 20).subList(2, 5), mkl.subList(10, 20).subList(2, 5));
+
+		final byte[][] expected = keys.asDataArray(new byte[keys.size()][]);
+		final byte[][] actual = mkl.asDataArray(new byte[mkl.size()][]);
+		assertArrayEquals(expected, actual);
+
+		assertEquals(keys, MappedLocalFeatureList.read(binary, Keypoint.class));
+		assertEquals(3, mkl.randomSubList(3).size());
+
+		binary.delete();
+	}
+
 	/**
 	 * See if sublists work (as well as saving sublists)
 	 * 
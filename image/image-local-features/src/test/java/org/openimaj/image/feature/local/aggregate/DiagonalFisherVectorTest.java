@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link DiagonalFisherVector}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class DiagonalFisherVectorTest {
+	private static final int K = 16;
+	private static final int D = 32;
+	private static final int N = 1000;
+
+	private MixtureOfGaussians gmm;
+	private List<FloatFV> features;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Setup for the tests - create a random mixture and random features drawn
+	 * from it.
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[K];
+		final double[] weights = new double[K];
+		double wsum = 0;
+		for (int k = 0; k < K; k++) {
+			final double[] mean = new double[D];
+			final double[] variance = new double[D];
+			for (int j = 0; j < D; j++) {
+				mean[j] = 10 * rng.nextDouble();
+				variance[j] = 0.5 + 2 * rng.nextDouble();
+			}
+			gaussians[k] = new DiagonalMultivariateGaussian(new Matrix(new double[][] { mean }), variance);
+			weights[k] = 0.1 + rng.nextDouble();
+			wsum += weights[k];
+		}
+		for (int k = 0; k < K; k++)
+			weights[k] /= wsum;
+
+		gmm = new MixtureOfGaussians(gaussians, weights);
+
+		features = new ArrayList<FloatFV>();
+		for (final double[] sample : gmm.sample(N, rng)) {
+			final FloatFV fv = new FloatFV(D);
+			for (int j = 0; j < D; j++)
+				fv.values[j] = (float) sample[j];
+			features.add(fv);
+		}
+
+		pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the pool
+	 */
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	private static void assertClose(FloatFV expected, FloatFV actual) {
+		assertEquals(expected.length(), actual.length());
+
+		double scale = 0;
+		for (final float v : expected.values)
+			scale = Math.max(scale, Math.abs(v));
+
+		for (int i = 0; i < expected.length(); i++)
+			assertEquals(expected.values[i], actual.values[i], 1e-4 * scale);
+	}
+
+	/**
+	 * Test the standard encoding matches {@link FisherVector}
+	 */
+	@Test
+	public void testStandard() {
+		final FloatFV expected = new FisherVector<float[]>(gmm).aggregateVectors(features);
+		final FloatFV actual = new DiagonalFisherVector<float[]>(gmm).aggregateVectors(features);
+
+		assertClose(expected, actual);
+	}
+
+	/**
+	 * Test the improved encoding matches {@link FisherVector}
+	 */
+	@Test
+	public void testImproved() {
+		final FloatFV expected = new FisherVector<float[]>(gmm, true).aggregateVectors(features);
+		final FloatFV actual = new DiagonalFisherVector<float[]>(gmm, true).aggregateVectors(features);
+
+		assertClose(expected, actual);
+	}
+
+	/**
+	 * Test the parallel encoding matches the serial one, and is repeatable
+	 */
+	@Test
+	public void testParallel() {
+		final DiagonalFisherVector<float[]> serial = new DiagonalFisherVector<float[]>(gmm, true);
+		final DiagonalFisherVector<float[]> parallel = new DiagonalFisherVector<float[]>(gmm, true, true, pool);
+		parallel.setBlockSize(17);
+
+		final FloatFV expected = serial.aggregateVectors(features);
+		final FloatFV actual = parallel.aggregateVectors(features);
+
+		assertClose(expected, actual);
+		assertEquals(actual, parallel.aggregateVectors(features));
+	}
+}
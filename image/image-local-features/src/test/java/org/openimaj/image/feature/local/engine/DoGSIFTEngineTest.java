@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.math.geometry.shape.Circle;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link DoGSIFTEngine}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class DoGSIFTEngineTest {
+	FImage image;
+	ThreadPoolExecutor pool;
+
+	/**
+	 * Create a test image with plenty of blobs and corners
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		image = new FImage(320, 240);
+		for (int i = 0; i < 40; i++) {
+			final float x = rng.nextFloat() * image.width;
+			final float y = rng.nextFloat() * image.height;
+
+			if (i % 2 == 0)
+				image.drawShapeFilled(new Circle(x, y, 3 + rng.nextFloat() * 15), rng.nextFloat());
+			else
+				image.drawShapeFilled(new Rectangle(x, y, 5 + rng.nextFloat() * 30, 5 + rng.nextFloat() * 30),
+						rng.nextFloat());
+		}
+
+		pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the pool
+	 */
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Test that the parallel mode gives exactly the same features, in the same
+	 * order, as the single-threaded engine.
+	 */
+	@Test
+	public void testParallelMatchesSerial() {
+		final LocalFeatureList<Keypoint> serial = new DoGSIFTEngine().findFeatures(image);
+
+		final DoGSIFTEngineOptions<FImage> opts = new DoGSIFTEngineOptions<FImage>();
+		opts.setThreadPool(pool);
+		final LocalFeatureList<Keypoint> parallel = new DoGSIFTEngine(opts).findFeatures(image);
+
+		assertTrue(serial.size() > 0);
+		assertEquals(serial.size(), parallel.size());
+
+		for (int i = 0; i < serial.size(); i++) {
+			final Keypoint s = serial.get(i);
+			final Keypoint p = parallel.get(i);
+
+			assertEquals(s.x, p.x, 0);
+			assertEquals(s.y, p.y, 0);
+			assertEquals(s.scale, p.scale, 0);
+			assertEquals(s.ori, p.ori, 0);
+			assertArrayEquals(s.ivec, p.ivec);
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.keypoints;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.data.DataSource;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.io.IOUtils;
+
+/**
+ * Tests for {@link CompactKeypointList}
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class CompactKeypointListTest {
+	private MemoryLocalFeatureList<Keypoint> keypoints;
+
+	/**
+	 * Create some random keypoints
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		keypoints = new MemoryLocalFeatureList<Keypoint>();
+		for (int i = 0; i < 100; i++) {
+			final byte[] ivec = new byte[128];
+			rng.nextBytes(ivec);
+			keypoints.add(new Keypoint(rng.nextFloat() * 100, rng.nextFloat() * 100, rng.nextFloat(),
+					rng.nextFloat() * 10, ivec));
+		}
+	}
+
+	private static void assertKeypointEquals(Keypoint expected, Keypoint actual) {
+		assertEquals(expected.x, actual.x, 0);
+		assertEquals(expected.y, actual.y, 0);
+		assertEquals(expected.scale, actual.scale, 0);
+		assertEquals(expected.ori, actual.ori, 0);
+		assertArrayEquals(expected.ivec, actual.ivec);
+	}
+
+	/**
+	 * Test that the elements are the same as those the list was built from
+	 */
+	@Test
+	public void testGet() {
+		final CompactKeypointList list = new CompactKeypointList(keypoints);
+
+		assertEquals(keypoints.size(), list.size());
+		for (int i = 0; i < keypoints.size(); i++)
+			assertKeypointEquals(keypoints.get(i), list.get(i));
+
+		int i = 0;
+		Keypoint last = null;
+		for (final Keypoint k : list.flyweights()) {
+			assertKeypointEquals(keypoints.get(i++), k);
+			if (last != null)
+				assertSame(last, k);
+			last = k;
+		}
+		assertEquals(keypoints.size(), i);
+	}
+
+	/**
+	 * Test modification of the list
+	 */
+	@Test
+	public void testModification() {
+		final CompactKeypointList list = new CompactKeypointList(128, 1);
+		for (final Keypoint k : keypoints)
+			list.add(k);
+
+		list.remove(10);
+		keypoints.remove(10);
+		list.add(5, keypoints.get(50));
+		keypoints.add(5, keypoints.get(50));
+		list.set(0, keypoints.get(99));
+		keypoints.set(0, keypoints.get(99));
+
+		assertEquals(keypoints.size(), list.size());
+		for (int i = 0; i < keypoints.size(); i++)
+			assertKeypointEquals(keypoints.get(i), list.get(i));
+
+		final Keypoint k = list.get(3);
+		assertNotSame(k.ivec, list.get(3).ivec);
+	}
+
+	/**
+	 * Test the bulk descriptor accessors
+	 */
+	@Test
+	public void testDescriptors() {
+		final CompactKeypointList list = new CompactKeypointList(keypoints);
+		final DataSource<byte[]> ds = list.asDataSource();
+
+		assertEquals(128, ds.numDimensions());
+		assertEquals(keypoints.size(), ds.size());
+
+		final byte[][] rows = ds.createTemporaryArray(10);
+		ds.getData(20, 30, rows);
+		for (int i = 0; i < 10; i++)
+			assertArrayEquals(keypoints.get(20 + i).ivec, rows[i]);
+
+		final byte[][] all = list.asDataArray(new byte[0][]);
+		for (int i = 0; i < keypoints.size(); i++)
+			assertArrayEquals(keypoints.get(i).ivec, all[i]);
+	}
+
+	/**
+	 * Test that the binary format is compatible with
+	 * {@link MemoryLocalFeatureList}
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testBinaryIO() throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.writeBinary(baos, keypoints);
+
+		final CompactKeypointList list = CompactKeypointList.read(new ByteArrayInputStream(baos.toByteArray()));
+		assertEquals(keypoints.size(), list.size());
+		for (int i = 0; i < keypoints.size(); i++)
+			assertKeypointEquals(keypoints.get(i), list.get(i));
+
+		final ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+		IOUtils.writeBinary(baos2, list);
+		assertArrayEquals(baos.toByteArray(), baos2.toByteArray());
+
+		final MemoryLocalFeatureList<Keypoint> read = MemoryLocalFeatureList.read(
+				new ByteArrayInputStream(baos2.toByteArray()), Keypoint.class);
+		for (int i = 0; i < keypoints.size(); i++)
+			assertKeypointEquals(keypoints.get(i), read.get(i));
+	}
+
+	/**
+	 * Test that the ASCII format is compatible with
+	 * {@link MemoryLocalFeatureList}
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testASCIIIO() throws IOException {
+		final CompactKeypointList list = new CompactKeypointList(keypoints);
+
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		IOUtils.writeASCII(expected, keypoints);
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		IOUtils.writeASCII(actual, list);
+
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+}
@@ -29,7 +29,9 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import org.openimaj.image.ByteImage;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.math.geometry.shape.Rectangle;
 
@@ -67,16 +69,49 @@ public class SummedAreaTable implements ImageAnalyser<FImage> {
 		computeTable(image);
 	}
 
+	/**
+	 * Construct a SAT from the provided 8-bit image. The table is identical to
+	 * the one constructed from {@link ByteImage#toFImage()}, and is computed in
+	 * floating point in the same way; the only saving is memory, as the image
+	 * is converted a row at a time rather than being copied to an
+	 * {@link FImage} in its entirety.
+	 * 
+	 * @param image
+	 *            the image
+	 */
+	public SummedAreaTable(ByteImage image) {
+		computeTable(image);
+	}
+
 	protected void computeTable(FImage image) {
 		data = new FImage(image.width + 1, image.height + 1);
 
 		for (int y = 0; y < image.height; y++) {
-			for (int x = 0; x < image.width; x++) {
-				data.pixels[y + 1][x + 1] = image.pixels[y][x] +
-						data.pixels[y + 1][x] +
-						data.pixels[y][x + 1] -
-						data.pixels[y][x];
-			}
+			computeRow(y, image.pixels[y]);
+		}
+	}
+
+	protected void computeTable(ByteImage image) {
+		data = new FImage(image.width + 1, image.height + 1);
+
+		final float[] row = new float[image.width];
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0, i = y * image.width; x < image.width; x++, i++)
+				row[x] = ImageUtilities.BYTE_TO_FLOAT_LUT[image.pixels[i] & 0xff];
+
+			computeRow(y, row);
+		}
+	}
+
+	private void computeRow(int y, float[] row) {
+		final float[] prev = data.pixels[y];
+		final float[] curr = data.pixels[y + 1];
+
+		for (int x = 0; x < row.length; x++) {
+			curr[x + 1] = row[x] +
+					curr[x] +
+					prev[x + 1] -
+					prev[x];
 		}
 	}
 
@@ -127,4 +162,14 @@ public class SummedAreaTable implements ImageAnalyser<FImage> {
 	public void analyseImage(FImage image) {
 		computeTable(image);
 	}
+
+	/**
+	 * Compute the SAT of the given 8-bit image.
+	 * 
+	 * @param image
+	 *            the image
+	 */
+	public void analyseImage(ByteImage image) {
+		computeTable(image);
+	}
 }
@@ -29,7 +29,9 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import org.openimaj.image.ByteImage;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.math.geometry.shape.Rectangle;
 
@@ -73,24 +75,55 @@ public class SummedSqAreaTable implements ImageAnalyser<FImage> {
 		computeTable(image);
 	}
 
+	/**
+	 * Construct a SAT from the provided 8-bit image. The tables are identical
+	 * to those constructed from {@link ByteImage#toFImage()}, and are computed
+	 * in floating point in the same way; the only saving is memory, as the
+	 * image is converted a row at a time rather than being copied to an
+	 * {@link FImage} in its entirety.
+	 * 
+	 * @param image
+	 *            the image
+	 */
+	public SummedSqAreaTable(ByteImage image) {
+		computeTable(image);
+	}
+
 	protected void computeTable(FImage image) {
 		sum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
 		sqSum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
 
 		for (int y = 0; y < image.height; y++) {
-			for (int x = 0; x < image.width; x++) {
-				final float p = image.pixels[y][x];
-
-				sum.pixels[y + 1][x + 1] = p +
-											sum.pixels[y + 1][x] +
-											sum.pixels[y][x + 1] -
-											sum.pixels[y][x];
-
-				sqSum.pixels[y + 1][x + 1] = p * p +
-										sqSum.pixels[y + 1][x] +
-										sqSum.pixels[y][x + 1] -
-										sqSum.pixels[y][x];
-			}
+			computeRow(y, image.pixels[y]);
+		}
+	}
+
+	protected void computeTable(ByteImage image) {
+		sum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
+		sqSum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
+
+		final float[] row = new float[image.width];
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0, i = y * image.width; x < image.width; x++, i++)
+				row[x] = ImageUtilities.BYTE_TO_FLOAT_LUT[image.pixels[i] & 0xff];
+
+			computeRow(y, row);
+		}
+	}
+
+	private void computeRow(int y, float[] row) {
+		for (int x = 0; x < row.length; x++) {
+			final float p = row[x];
+
+			sum.pixels[y + 1][x + 1] = p +
+										sum.pixels[y + 1][x] +
+										sum.pixels[y][x + 1] -
+										sum.pixels[y][x];
+
+			sqSum.pixels[y + 1][x + 1] = p * p +
+									sqSum.pixels[y + 1][x] +
+									sqSum.pixels[y][x + 1] -
+									sqSum.pixels[y][x];
 		}
 	}
 
@@ -177,4 +210,14 @@ public class SummedSqAreaTable implements ImageAnalyser<FImage> {
 	public void analyseImage(FImage image) {
 		computeTable(image);
 	}
+
+	/**
+	 * Compute the SATs of the given 8-bit image.
+	 * 
+	 * @param image
+	 *            the image
+	 */
+	public void analyseImage(ByteImage image) {
+		computeTable(image);
+	}
 }
@@ -29,7 +29,9 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import org.openimaj.image.ByteImage;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
 import org.openimaj.math.geometry.shape.Rectangle;
 
 /**
@@ -47,6 +49,23 @@ import org.openimaj.math.geometry.shape.Rectangle;
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class SummedSqTiltAreaTable extends SummedSqAreaTable {
+	/**
+	 * Sequential access to the rows of the source image as floats, so that the
+	 * tables can be built from 8-bit images without converting them in their
+	 * entirety.
+	 */
+	private static abstract class Rows {
+		final int width;
+		final int height;
+
+		Rows(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		abstract float[] get(int y);
+	}
+
 	/**
 	 * The tilted sum data
 	 */
@@ -82,6 +101,34 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		computeTable(image, computeTilted);
 	}
 
+	/**
+	 * Construct a SAT for normal sum, squared sum and tilted sum from the
+	 * provided 8-bit image.
+	 * 
+	 * @param image
+	 *            the image.
+	 */
+	public SummedSqTiltAreaTable(ByteImage image) {
+		this(image, true);
+	}
+
+	/**
+	 * Construct a SAT for normal sum, squared sum and (optionally) tilted sum
+	 * from the provided 8-bit image. The tables are identical to those
+	 * constructed from {@link ByteImage#toFImage()}, and are computed in
+	 * floating point in the same way; the only saving is memory, as the image
+	 * is converted a row at a time rather than being copied to an
+	 * {@link FImage} in its entirety.
+	 * 
+	 * @param image
+	 *            the image.
+	 * @param computeTilted
+	 *            if true compute the tilted features.
+	 */
+	public SummedSqTiltAreaTable(ByteImage image, boolean computeTilted) {
+		computeTable(image, computeTilted);
+	}
+
 	private void computeTable(FImage image, boolean computeTilted) {
 		if (computeTilted) {
 			computeRotSqSumIntegralImages(image);
@@ -90,7 +137,46 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		}
 	}
 
+	private void computeTable(ByteImage image, boolean computeTilted) {
+		if (computeTilted) {
+			computeRotSqSumIntegralImages(image);
+		} else {
+			computeSqSumIntegralImages(image);
+		}
+	}
+
+	private static Rows rows(final FImage image) {
+		return new Rows(image.width, image.height) {
+			@Override
+			float[] get(int y) {
+				return image.pixels[y];
+			}
+		};
+	}
+
+	private static Rows rows(final ByteImage image) {
+		return new Rows(image.width, image.height) {
+			final float[] row = new float[width];
+
+			@Override
+			float[] get(int y) {
+				for (int x = 0, i = y * width; x < width; x++, i++)
+					row[x] = ImageUtilities.BYTE_TO_FLOAT_LUT[image.pixels[i] & 0xff];
+
+				return row;
+			}
+		};
+	}
+
 	protected void computeSqSumIntegralImages(FImage img) {
+		computeSqSumIntegralImages(rows(img));
+	}
+
+	protected void computeSqSumIntegralImages(ByteImage img) {
+		computeSqSumIntegralImages(rows(img));
+	}
+
+	private void computeSqSumIntegralImages(Rows img) {
 		final int width = img.width;
 		final int height = img.height;
 
@@ -104,7 +190,7 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 			float rowSum = 0;
 			float rowSumSQ = 0;
 
-			final float[] row = img.pixels[y - 1];
+			final float[] row = img.get(y - 1);
 			for (int x = 1; x <= width; x++) {
 				final float pix = row[x - 1];
 
@@ -118,6 +204,14 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 	}
 
 	protected final void computeRotSqSumIntegralImages(FImage image) {
+		computeRotSqSumIntegralImages(rows(image));
+	}
+
+	protected final void computeRotSqSumIntegralImages(ByteImage image) {
+		computeRotSqSumIntegralImages(rows(image));
+	}
+
+	private void computeRotSqSumIntegralImages(Rows image) {
 		final int width = image.width;
 		final int height = image.height;
 
@@ -130,7 +224,7 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		// first two rows are special
 		// y == 1
 		if (height > 0) {
-			final float[] row = image.pixels[0];
+			final float[] row = image.get(0);
 
 			float rowSum = 0;
 			float sqRowSum = 0;
@@ -149,7 +243,7 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 
 		// y == 2
 		if (height > 1) {
-			final float[] row = image.pixels[1];
+			final float[] row = image.get(1);
 
 			float rowSum = 0;
 			float sqRowSum = 0;
@@ -181,7 +275,7 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		}
 
 		for (int y = 3; y <= height; y++) {
-			final float[] row = image.pixels[y - 1];
+			final float[] row = image.get(y - 1);
 
 			float rowSum = 0;
 			float sqRowSum = 0;
@@ -266,4 +360,9 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 	public void analyseImage(FImage image) {
 		computeTable(image, true);
 	}
+
+	@Override
+	public void analyseImage(ByteImage image) {
+		computeTable(image, true);
+	}
 }
@@ -29,7 +29,9 @@
  */
 package org.openimaj.image.analysis.algorithm.histogram;
 
+import org.openimaj.image.ByteImage;
 import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.image.processor.ImageProcessor;
 import org.openimaj.math.statistics.distribution.Histogram;
@@ -93,6 +95,34 @@ public class HistogramAnalyser implements ImageAnalyser<FImage>
 		}
 	}
 
+	/**
+	 * Computes the Histogram for an 8-bit image. The pixels are first counted
+	 * by grey-level, and the counts are then distributed into the bins that
+	 * the corresponding normalised values would fall into, so the result is
+	 * identical to that of analysing {@link ByteImage#toFImage()}.
+	 *
+	 * @param image
+	 *            The image from which to extract histogram
+	 */
+	public void analyseImage(ByteImage image) {
+		final int[] counts = new int[ByteImage.MAX_VALUE + 1];
+		final byte[] pixels = image.pixels;
+		for (int i = 0; i < pixels.length; i++)
+			counts[pixels[i] & 0xff]++;
+
+		this.histogram = new Histogram(nbins);
+		for (int v = 0; v < counts.length; v++)
+		{
+			if (counts[v] == 0)
+				continue;
+
+			int bin = (int) (ImageUtilities.BYTE_TO_FLOAT_LUT[v] * nbins);
+			if (bin > (nbins - 1))
+				bin = nbins - 1;
+			histogram.values[bin] += counts[v];
+		}
+	}
+
 	/**
 	 * Returns the histogram that was built having run the processing function.
 	 * This will return null if the processing has not yet been run.
@@ -118,4 +148,19 @@ public class HistogramAnalyser implements ImageAnalyser<FImage>
 		image.analyseWith(p);
 		return p.getHistogram();
 	}
+
+	/**
+	 * Quickly create a histogram from an 8-bit image.
+	 *
+	 * @param image
+	 *            the image
+	 * @param nbins
+	 *            the number of bins
+	 * @return a histogram
+	 */
+	public static Histogram getHistogram(ByteImage image, int nbins) {
+		final HistogramAnalyser p = new HistogramAnalyser(nbins);
+		p.analyseImage(image);
+		return p.getHistogram();
+	}
 }
@@ -29,10 +29,13 @@
  */
 package org.openimaj.image.analysis.pyramid.gaussian;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.analysis.pyramid.PyramidOptions;
 import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.image.processing.convolution.SeparableConvolutionEngine;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 
 /**
@@ -77,6 +80,14 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 	 */
 	protected int scales = 3;
 
+	/**
+	 * The thread pool used to split each Gaussian blur across multiple
+	 * threads. If null, blurring is single-threaded.
+	 */
+	protected ThreadPoolExecutor threadPool;
+
+	private SeparableConvolutionEngine convolutionEngine;
+
 	/**
 	 * Default constructor.
 	 */
@@ -98,6 +109,7 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 		this.initialSigma = options.initialSigma;
 		this.keepOctaves = options.keepOctaves;
 		this.scales = options.scales;
+		setThreadPool(options.threadPool);
 	}
 
 	/**
@@ -210,6 +222,31 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 		this.scales = scales;
 	}
 
+	/**
+	 * Get the thread pool used to split each Gaussian blur across multiple
+	 * threads.
+	 * 
+	 * @return the thread pool, or null if blurring is single-threaded
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return threadPool;
+	}
+
+	/**
+	 * Set the thread pool used to split each Gaussian blur across multiple
+	 * threads. The levels of an octave depend on each other, so they are still
+	 * computed in turn, but each blur is processed in concurrent bands by a
+	 * {@link SeparableConvolutionEngine}. The resultant images are identical
+	 * to single-threaded blurring.
+	 * 
+	 * @param threadPool
+	 *            the thread pool; if null blurring is single-threaded
+	 */
+	public void setThreadPool(ThreadPoolExecutor threadPool) {
+		this.threadPool = threadPool;
+		this.convolutionEngine = threadPool == null ? null : new SeparableConvolutionEngine(threadPool);
+	}
+
 	/**
 	 * Create a {@link SinglebandImageProcessor} that performs a Gaussian
 	 * blurring with a standard deviation given by sigma. This method is used by
@@ -222,6 +259,9 @@ public class GaussianPyramidOptions<IMAGE extends Image<?, IMAGE> & SinglebandIm
 	 * @return the image processor to apply the blur
 	 */
 	public SinglebandImageProcessor<Float, FImage> createGaussianBlur(float sigma) {
+		if (convolutionEngine != null)
+			return new FGaussianConvolve(sigma, FGaussianConvolve.DEFAULT_GAUSS_TRUNCATE, convolutionEngine);
+
 		return new FGaussianConvolve(sigma);
 	}
 }
@@ -45,6 +45,7 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 	public static final float DEFAULT_GAUSS_TRUNCATE = 4.0f;
 
 	protected float[] kernel;
+	protected SeparableConvolutionEngine engine;
 
 	/**
 	 * Construct an {@link FGaussianConvolve} with a Gaussian of standard
@@ -66,7 +67,22 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 	 * @param truncate
 	 */
 	public FGaussianConvolve(float sigma, float truncate) {
+		this(sigma, truncate, SeparableConvolutionEngine.getDefault());
+	}
+
+	/**
+	 * Construct an {@link FGaussianConvolve} with a Gaussian of standard
+	 * deviation sigma. The truncate parameter defines how many sigmas wide the
+	 * kernel is. The convolution is performed by the given engine.
+	 * 
+	 * @param sigma
+	 * @param truncate
+	 * @param engine
+	 *            the convolution engine
+	 */
+	public FGaussianConvolve(float sigma, float truncate, SeparableConvolutionEngine engine) {
 		kernel = makeKernel(sigma, truncate);
+		this.engine = engine;
 	}
 
 	/**
@@ -126,7 +142,6 @@ public class FGaussianConvolve implements SinglebandImageProcessor<Float, FImage
 	 */
 	@Override
 	public void processImage(FImage image) {
-		FImageConvolveSeparable.convolveHorizontal(image, kernel);
-		FImageConvolveSeparable.convolveVertical(image, kernel);
+		engine.convolve(image, kernel, kernel);
 	}
 }
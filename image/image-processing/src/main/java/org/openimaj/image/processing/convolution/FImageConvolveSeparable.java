@@ -41,6 +41,7 @@ import org.openimaj.image.processor.SinglebandImageProcessor;
 public class FImageConvolveSeparable implements SinglebandImageProcessor<Float, FImage> {
 	float[] hkernel;
 	float[] vkernel;
+	SeparableConvolutionEngine engine;
 
 	/**
 	 * Specify the horizontal kernel and vertical kernel separately.
@@ -51,8 +52,24 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            vertical kernel
 	 */
 	public FImageConvolveSeparable(float[] hkernel, float[] vkernel) {
+		this(hkernel, vkernel, SeparableConvolutionEngine.getDefault());
+	}
+
+	/**
+	 * Specify the horizontal kernel and vertical kernel separately, together
+	 * with the engine that performs the convolution.
+	 * 
+	 * @param hkernel
+	 *            horizontal kernel
+	 * @param vkernel
+	 *            vertical kernel
+	 * @param engine
+	 *            the convolution engine
+	 */
+	public FImageConvolveSeparable(float[] hkernel, float[] vkernel, SeparableConvolutionEngine engine) {
 		this.hkernel = hkernel;
 		this.vkernel = vkernel;
+		this.engine = engine;
 	}
 
 	/**
@@ -62,8 +79,7 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            both kernels
 	 */
 	public FImageConvolveSeparable(float[] kernel) {
-		this.hkernel = kernel;
-		this.vkernel = kernel;
+		this(kernel, kernel);
 	}
 
 	/*
@@ -75,10 +91,7 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 */
 	@Override
 	public void processImage(FImage image) {
-		if (hkernel != null)
-			convolveHorizontal(image, hkernel);
-		if (vkernel != null)
-			convolveVertical(image, vkernel);
+		engine.convolve(image, hkernel, vkernel);
 	}
 
 	/*
@@ -110,33 +123,7 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            the convolution kernel.
 	 */
 	public static void convolveHorizontal(FImage image, float[] kernel) {
-		final int halfsize = kernel.length / 2;
-
-		final float buffer[] = new float[image.width + kernel.length];
-
-		for (int r = 0; r < image.height; r++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[r][0];
-			for (int i = 0; i < image.width; i++)
-				buffer[halfsize + i] = image.pixels[r][i];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
-
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
-				float sum = 0.0f;
-
-				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
-
-				buffer[i] = sum;
-			}
-			// end convolveBuffer(buffer, kernel);
-
-			for (int c = 0; c < image.width; c++)
-				image.pixels[r][c] = buffer[c];
-		}
+		SeparableConvolutionEngine.getDefault().convolveHorizontal(image, kernel);
 	}
 
 	/**
@@ -149,33 +136,7 @@ public class FImageConvolveSeparable implements SinglebandImageProcessor<Float,
 	 *            the convolution kernel.
 	 */
 	public static void convolveVertical(FImage image, float[] kernel) {
-		final int halfsize = kernel.length / 2;
-
-		final float buffer[] = new float[image.height + kernel.length];
-
-		for (int c = 0; c < image.width; c++) {
-			for (int i = 0; i < halfsize; i++)
-				buffer[i] = image.pixels[0][c];
-			for (int i = 0; i < image.height; i++)
-				buffer[halfsize + i] = image.pixels[i][c];
-			for (int i = 0; i < halfsize; i++)
-				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
-
-			// convolveBuffer(buffer, kernel);
-			final int l = buffer.length - kernel.length;
-			for (int i = 0; i < l; i++) {
-				float sum = 0.0f;
-
-				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
-					sum += buffer[i + j] * kernel[jj];
-
-				buffer[i] = sum;
-			}
-			// end convolveBuffer(buffer, kernel);
-
-			for (int r = 0; r < image.height; r++)
-				image.pixels[r][c] = buffer[r];
-		}
+		SeparableConvolutionEngine.getDefault().convolveVertical(image, kernel);
 	}
 
 	/**
@@ -0,0 +1,383 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.convolution;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.ByteImage;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Engine for performing in-place separable convolutions of {@link FImage}s.
+ * Edge effects are handled by duplicating the edge pixels, and the results are
+ * bit-for-bit identical to the straightforward row-by-row and
+ * column-by-column implementations (every output pixel is accumulated over
+ * the kernel taps in exactly the same order).
+ * <p>
+ * The horizontal pass works a row at a time through a padded scratch buffer.
+ * Rather than gathering whole columns (which strides across every row of the
+ * image for each pixel), the vertical pass works on tiles of adjacent columns:
+ * each tile is copied into a contiguous, edge-padded scratch buffer with
+ * sequential row reads, and each output row of the tile is then accumulated
+ * one kernel tap at a time across the tile width. This keeps the working set
+ * for each output row within the cache and gives the JIT simple unit-stride
+ * loops that it can vectorise. Scratch buffers are held per-thread and reused
+ * between calls.
+ * <p>
+ * Optionally, an engine can be given a thread pool, in which case the
+ * horizontal pass is split into bands of rows, and the vertical pass into
+ * strips of column tiles, which are processed concurrently. As the bands of the
+ * vertical pass would need to share overlapping rows of input that are
+ * overwritten in-place, vertical work is divided by column instead. Parallel
+ * engines should not be used from tasks that are themselves running in the
+ * same pool.
+ * <p>
+ * {@link ByteImage}s can also be convolved; the conversion to floating-point
+ * values is fused into the horizontal pass, which writes directly into a new
+ * {@link FImage}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SeparableConvolutionEngine {
+	/**
+	 * The default number of columns processed together by the vertical pass
+	 */
+	public static final int DEFAULT_TILE_WIDTH = 64;
+
+	/**
+	 * The default minimum number of pixels an image must have before the
+	 * work is split across threads
+	 */
+	public static final int DEFAULT_MIN_PARALLEL_PIXELS = 128 * 128;
+
+	private static final SeparableConvolutionEngine DEFAULT = new SeparableConvolutionEngine();
+
+	private static final ThreadLocal<float[]> SCRATCH = new ThreadLocal<float[]>();
+
+	private final int tileWidth;
+	private final ThreadPoolExecutor pool;
+	private final int minParallelPixels;
+
+	/**
+	 * Construct a single-threaded engine with the default tile width.
+	 */
+	public SeparableConvolutionEngine() {
+		this(DEFAULT_TILE_WIDTH, null);
+	}
+
+	/**
+	 * Construct an engine with the default tile width that uses the given
+	 * thread pool to process bands of the image concurrently.
+	 * 
+	 * @param pool
+	 *            the thread pool; if null the engine is single-threaded
+	 */
+	public SeparableConvolutionEngine(ThreadPoolExecutor pool) {
+		this(DEFAULT_TILE_WIDTH, pool);
+	}
+
+	/**
+	 * Construct an engine with the given tile width that optionally uses the
+	 * given thread pool to process bands of the image concurrently.
+	 * 
+	 * @param tileWidth
+	 *            the number of columns processed together by the vertical
+	 *            pass
+	 * @param pool
+	 *            the thread pool; if null the engine is single-threaded
+	 */
+	public SeparableConvolutionEngine(int tileWidth, ThreadPoolExecutor pool) {
+		this(tileWidth, pool, DEFAULT_MIN_PARALLEL_PIXELS);
+	}
+
+	/**
+	 * Construct an engine with the given tile width that optionally uses the
+	 * given thread pool to process bands of images with at least the given
+	 * number of pixels concurrently.
+	 * 
+	 * @param tileWidth
+	 *            the number of columns processed together by the vertical
+	 *            pass
+	 * @param pool
+	 *            the thread pool; if null the engine is single-threaded
+	 * @param minParallelPixels
+	 *            the minimum number of pixels an image must have for the work
+	 *            to be split across threads
+	 */
+	public SeparableConvolutionEngine(int tileWidth, ThreadPoolExecutor pool, int minParallelPixels) {
+		if (tileWidth < 1)
+			throw new IllegalArgumentException("Tile width must be positive");
+
+		this.tileWidth = tileWidth;
+		this.pool = pool;
+		this.minParallelPixels = minParallelPixels;
+	}
+
+	/**
+	 * Get the shared single-threaded engine. This is the engine used by
+	 * {@link FImageConvolveSeparable} and {@link FGaussianConvolve} unless
+	 * another is specified.
+	 * 
+	 * @return the default engine
+	 */
+	public static SeparableConvolutionEngine getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return the number of columns processed together by the vertical pass
+	 */
+	public int getTileWidth() {
+		return tileWidth;
+	}
+
+	/**
+	 * @return the thread pool, or null if the engine is single-threaded
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return pool;
+	}
+
+	/**
+	 * Get a scratch buffer for the current thread with at least the given
+	 * length. The contents are undefined.
+	 */
+	private static float[] scratch(int length) {
+		float[] buffer = SCRATCH.get();
+
+		if (buffer == null || buffer.length < length) {
+			buffer = new float[length];
+			SCRATCH.set(buffer);
+		}
+
+		return buffer;
+	}
+
+	private boolean isParallel(FImage image, int nunits) {
+		return pool != null && nunits > 1 && image.width * image.height >= minParallelPixels;
+	}
+
+	/**
+	 * Convolve the image in-place in the horizontal direction with the
+	 * horizontal kernel and then in the vertical direction with the vertical
+	 * kernel. Either kernel may be null, in which case that pass is skipped.
+	 * 
+	 * @param image
+	 *            the image to convolve
+	 * @param hkernel
+	 *            the horizontal kernel
+	 * @param vkernel
+	 *            the vertical kernel
+	 */
+	public void convolve(FImage image, float[] hkernel, float[] vkernel) {
+		if (hkernel != null)
+			convolveHorizontal(image, hkernel);
+		if (vkernel != null)
+			convolveVertical(image, vkernel);
+	}
+
+	/**
+	 * Convolve an 8-bit image in the horizontal direction with the horizontal
+	 * kernel and then in the vertical direction with the vertical kernel,
+	 * returning the result as a new {@link FImage}. Either kernel may be null,
+	 * in which case that pass is skipped. The result is identical to
+	 * convolving {@link ByteImage#toFImage()}, but the intermediate
+	 * floating-point copy of the input is never made.
+	 * 
+	 * @param image
+	 *            the image to convolve
+	 * @param hkernel
+	 *            the horizontal kernel
+	 * @param vkernel
+	 *            the vertical kernel
+	 * @return the convolved image
+	 */
+	public FImage convolve(final ByteImage image, final float[] hkernel, float[] vkernel) {
+		final FImage result;
+
+		if (hkernel != null) {
+			final FImage output = result = new FImage(image.width, image.height);
+
+			if (isParallel(output, image.height)) {
+				Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						convolveRows(image, output, hkernel, range.start, range.stop);
+					}
+				}, pool);
+			} else {
+				convolveRows(image, output, hkernel, 0, image.height);
+			}
+		} else {
+			result = image.toFImage();
+		}
+
+		if (vkernel != null)
+			convolveVertical(result, vkernel);
+
+		return result;
+	}
+
+	/**
+	 * Convolve the image in-place in the horizontal direction with the kernel.
+	 * Edge effects are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 */
+	public void convolveHorizontal(final FImage image, final float[] kernel) {
+		if (isParallel(image, image.height)) {
+			Parallel.forRange(0, image.height, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					convolveRows(image, kernel, range.start, range.stop);
+				}
+			}, pool);
+		} else {
+			convolveRows(image, kernel, 0, image.height);
+		}
+	}
+
+	/**
+	 * Convolve the image in-place in the vertical direction with the kernel.
+	 * Edge effects are handled by duplicating the edge pixels.
+	 * 
+	 * @param image
+	 *            the image to convolve.
+	 * @param kernel
+	 *            the convolution kernel.
+	 */
+	public void convolveVertical(final FImage image, final float[] kernel) {
+		final int ntiles = (image.width + tileWidth - 1) / tileWidth;
+
+		if (isParallel(image, ntiles)) {
+			Parallel.forRange(0, ntiles, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int t = range.start; t < range.stop; t++)
+						convolveColumns(image, kernel, t * tileWidth);
+				}
+			}, pool);
+		} else {
+			for (int t = 0; t < ntiles; t++)
+				convolveColumns(image, kernel, t * tileWidth);
+		}
+	}
+
+	/**
+	 * Horizontally convolve rows [r0, r1) of the image.
+	 */
+	private static void convolveRows(FImage image, float[] kernel, int r0, int r1) {
+		convolveRows(null, image, kernel, r0, r1);
+	}
+
+	/**
+	 * Horizontally convolve rows [r0, r1) of the source image into the output
+	 * image. If the source is null the output image is convolved in-place.
+	 */
+	private static void convolveRows(ByteImage source, FImage output, float[] kernel, int r0, int r1) {
+		final int width = output.width;
+		final int klen = kernel.length;
+		final int halfsize = klen / 2;
+		final float[] buffer = scratch(width + klen);
+
+		for (int r = r0; r < r1; r++) {
+			final float[] row = output.pixels[r];
+
+			if (source == null) {
+				System.arraycopy(row, 0, buffer, halfsize, width);
+			} else {
+				final byte[] src = source.pixels;
+				for (int i = 0, si = r * width; i < width; i++, si++)
+					buffer[halfsize + i] = ImageUtilities.BYTE_TO_FLOAT_LUT[src[si] & 0xff];
+			}
+
+			final float first = buffer[halfsize];
+			for (int i = 0; i < halfsize; i++)
+				buffer[i] = first;
+			final float last = buffer[halfsize + width - 1];
+			for (int i = 0; i < halfsize; i++)
+				buffer[halfsize + width + i] = last;
+
+			for (int i = 0; i < width; i++) {
+				float sum = 0.0f;
+
+				for (int j = 0, jj = klen - 1; j < klen; j++, jj--)
+					sum += buffer[i + j] * kernel[jj];
+
+				row[i] = sum;
+			}
+		}
+	}
+
+	/**
+	 * Vertically convolve the tile of columns starting at c0.
+	 */
+	private void convolveColumns(FImage image, float[] kernel, int c0) {
+		final int height = image.height;
+		final int klen = kernel.length;
+		final int halfsize = klen / 2;
+		final int tw = Math.min(tileWidth, image.width - c0);
+		final float[][] pixels = image.pixels;
+
+		// the tile is stored row-major with a stride of tw, padded at the top
+		// and bottom by halfsize copies of the edge rows
+		final float[] tile = scratch((height + klen) * tw);
+
+		for (int i = 0; i < halfsize; i++)
+			System.arraycopy(pixels[0], c0, tile, i * tw, tw);
+		for (int r = 0; r < height; r++)
+			System.arraycopy(pixels[r], c0, tile, (halfsize + r) * tw, tw);
+		for (int i = 0; i < halfsize; i++)
+			System.arraycopy(pixels[height - 1], c0, tile, (halfsize + height + i) * tw, tw);
+
+		for (int r = 0; r < height; r++) {
+			final float[] out = pixels[r];
+			final int c1 = c0 + tw;
+
+			for (int c = c0; c < c1; c++)
+				out[c] = 0.0f;
+
+			for (int j = 0, jj = klen - 1; j < klen; j++, jj--) {
+				final float k = kernel[jj];
+				final int offset = (r + j) * tw - c0;
+
+				for (int c = c0; c < c1; c++)
+					out[c] += tile[offset + c] * k;
+			}
+		}
+	}
+}
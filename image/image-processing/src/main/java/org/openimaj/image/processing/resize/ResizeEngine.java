@@ -0,0 +1,738 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.image.ByteImage;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBByteImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Engine for resampling images with a {@link ResizeFilterFunction}. The
+ * results are bit-for-bit identical to
+ * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}.
+ * <p>
+ * The filter contributions for each axis are compiled into flat arrays of
+ * source pixel indices and weights, which are cached (keyed on the source
+ * size, destination size and filter) so that resampling many images to the
+ * same sizes doesn't repeatedly rebuild them. The horizontal pass filters each
+ * source row into an intermediate image with the destination width, and the
+ * vertical pass then filters the rows of the intermediate image into the
+ * destination; both passes work along rows so that memory is accessed
+ * sequentially. All the bands of an {@link MBFImage} are processed together.
+ * <p>
+ * {@link ByteImage}s and {@link MBByteImage}s are resampled directly on their
+ * grey-levels, using an 8-bit intermediate image. The floating-point path
+ * rounds intermediate and output values to multiples of 1/255, so the results
+ * are the same as resampling the floating-point equivalent images other than
+ * (rarely) by one grey-level where the sums differ in their rounding.
+ * <p>
+ * Optionally, an engine can be given a thread pool, in which case each pass
+ * is split into bands of rows which are processed concurrently. Parallel
+ * engines should not be used from tasks that are themselves running in the
+ * same pool.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ResizeEngine {
+	/**
+	 * The default maximum number of cached weight tables
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	/**
+	 * The default minimum number of pixels an image must have before the
+	 * work is split across threads
+	 */
+	public static final int DEFAULT_MIN_PARALLEL_PIXELS = 128 * 128;
+
+	private static final ResizeEngine DEFAULT = new ResizeEngine();
+
+	/**
+	 * The compiled filter contributions for resampling one axis. The
+	 * contributions to output pixel <code>i</code> are at indices
+	 * <code>[offsets[i], offsets[i+1])</code> of the pixel and weight arrays.
+	 */
+	static final class WeightTable {
+		final int[] offsets;
+		final int[] pixels;
+		final double[] weights;
+
+		WeightTable(int[] offsets, int[] pixels, double[] weights) {
+			this.offsets = offsets;
+			this.pixels = pixels;
+			this.weights = weights;
+		}
+	}
+
+	private static final class Key {
+		final int srcSize;
+		final int dstSize;
+		final ResizeFilterFunction filter;
+		final boolean vertical;
+
+		Key(int srcSize, int dstSize, ResizeFilterFunction filter, boolean vertical) {
+			this.srcSize = srcSize;
+			this.dstSize = dstSize;
+			this.filter = filter;
+			this.vertical = vertical;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = 31 * srcSize + dstSize;
+			result = 31 * result + filter.hashCode();
+			return 2 * result + (vertical ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			final Key that = (Key) obj;
+			return srcSize == that.srcSize && dstSize == that.dstSize && vertical == that.vertical
+					&& filter.equals(that.filter);
+		}
+	}
+
+	private final ThreadPoolExecutor pool;
+	private final int minParallelPixels;
+	private final Map<Key, WeightTable> cache;
+
+	/**
+	 * Construct a single-threaded engine with the default cache size.
+	 */
+	public ResizeEngine() {
+		this(null);
+	}
+
+	/**
+	 * Construct an engine with the default cache size that uses the given
+	 * thread pool to process bands of the image concurrently.
+	 * 
+	 * @param pool
+	 *            the thread pool; if null the engine is single-threaded
+	 */
+	public ResizeEngine(ThreadPoolExecutor pool) {
+		this(pool, DEFAULT_CACHE_SIZE, DEFAULT_MIN_PARALLEL_PIXELS);
+	}
+
+	/**
+	 * Construct an engine that optionally uses the given thread pool to
+	 * process bands of images with at least the given number of pixels
+	 * concurrently.
+	 * 
+	 * @param pool
+	 *            the thread pool; if null the engine is single-threaded
+	 * @param cacheSize
+	 *            the maximum number of weight tables to cache; the least
+	 *            recently used are discarded first
+	 * @param minParallelPixels
+	 *            the minimum number of pixels an image must have for the work
+	 *            to be split across threads
+	 */
+	public ResizeEngine(ThreadPoolExecutor pool, final int cacheSize, int minParallelPixels) {
+		this.pool = pool;
+		this.minParallelPixels = minParallelPixels;
+		this.cache = new LinkedHashMap<Key, WeightTable>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, WeightTable> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Get the shared single-threaded engine. This is the engine used by
+	 * {@link ResizeProcessor}.
+	 * 
+	 * @return the default engine
+	 */
+	public static ResizeEngine getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return the thread pool, or null if the engine is single-threaded
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return pool;
+	}
+
+	/**
+	 * Resample the image to the given size.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param width
+	 *            the width of the resampled image
+	 * @param height
+	 *            the height of the resampled image
+	 * @param filterf
+	 *            the filter function
+	 * @return a new image
+	 */
+	public FImage resize(FImage in, int width, int height, ResizeFilterFunction filterf) {
+		return zoom(in, new FImage(width, height), filterf);
+	}
+
+	/**
+	 * Resample all the bands of the image to the given size.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param width
+	 *            the width of the resampled image
+	 * @param height
+	 *            the height of the resampled image
+	 * @param filterf
+	 *            the filter function
+	 * @return a new image
+	 */
+	public MBFImage resize(MBFImage in, int width, int height, ResizeFilterFunction filterf) {
+		return zoom(in, new MBFImage(width, height, in.colourSpace), filterf);
+	}
+
+	/**
+	 * Resample the source image to fill the destination image.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter function
+	 * @return the destination image
+	 */
+	public FImage zoom(FImage in, FImage dst, ResizeFilterFunction filterf) {
+		zoom(new FImage[] { in }, new FImage[] { dst }, filterf);
+		return dst;
+	}
+
+	/**
+	 * Resample every band of the source image to fill the corresponding band
+	 * of the destination image. The images must have the same number of
+	 * bands.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter function
+	 * @return the destination image
+	 */
+	public MBFImage zoom(MBFImage in, MBFImage dst, ResizeFilterFunction filterf) {
+		final int nbands = in.numBands();
+		if (dst.numBands() != nbands)
+			throw new IllegalArgumentException("The images must have the same number of bands");
+
+		final FImage[] src = new FImage[nbands];
+		final FImage[] out = new FImage[nbands];
+		for (int b = 0; b < nbands; b++) {
+			src[b] = in.getBand(b);
+			out[b] = dst.getBand(b);
+		}
+
+		zoom(src, out, filterf);
+		return dst;
+	}
+
+	/**
+	 * Resample the 8-bit image to the given size.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param width
+	 *            the width of the resampled image
+	 * @param height
+	 *            the height of the resampled image
+	 * @param filterf
+	 *            the filter function
+	 * @return a new image
+	 */
+	public ByteImage resize(ByteImage in, int width, int height, ResizeFilterFunction filterf) {
+		return zoom(in, new ByteImage(width, height), filterf);
+	}
+
+	/**
+	 * Resample all the bands of the 8-bit image to the given size.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param width
+	 *            the width of the resampled image
+	 * @param height
+	 *            the height of the resampled image
+	 * @param filterf
+	 *            the filter function
+	 * @return a new image
+	 */
+	public MBByteImage resize(MBByteImage in, int width, int height, ResizeFilterFunction filterf) {
+		return zoom(in, new MBByteImage(width, height, in.colourSpace), filterf);
+	}
+
+	/**
+	 * Resample the 8-bit source image to fill the destination image.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter function
+	 * @return the destination image
+	 */
+	public ByteImage zoom(ByteImage in, ByteImage dst, ResizeFilterFunction filterf) {
+		zoom(new ByteImage[] { in }, new ByteImage[] { dst }, filterf);
+		return dst;
+	}
+
+	/**
+	 * Resample every band of the 8-bit source image to fill the corresponding
+	 * band of the destination image. The images must have the same number of
+	 * bands.
+	 * 
+	 * @param in
+	 *            the source image
+	 * @param dst
+	 *            the destination image
+	 * @param filterf
+	 *            the filter function
+	 * @return the destination image
+	 */
+	public MBByteImage zoom(MBByteImage in, MBByteImage dst, ResizeFilterFunction filterf) {
+		final int nbands = in.numBands();
+		if (dst.numBands() != nbands)
+			throw new IllegalArgumentException("The images must have the same number of bands");
+
+		final ByteImage[] src = new ByteImage[nbands];
+		final ByteImage[] out = new ByteImage[nbands];
+		for (int b = 0; b < nbands; b++) {
+			src[b] = in.getBand(b);
+			out[b] = dst.getBand(b);
+		}
+
+		zoom(src, out, filterf);
+		return dst;
+	}
+
+	private void zoom(final FImage[] in, final FImage[] dst, ResizeFilterFunction filterf) {
+		final int nbands = in.length;
+		final int srcWidth = in[0].width;
+		final int srcHeight = in[0].height;
+		final int dstWidth = dst[0].width;
+		final int dstHeight = dst[0].height;
+
+		final WeightTable xtab = getWeights(srcWidth, dstWidth, filterf, false);
+		final WeightTable ytab = getWeights(srcHeight, dstHeight, filterf, true);
+
+		final float[] maxValues = new float[nbands];
+		final float[][][] work = new float[nbands][][];
+		for (int b = 0; b < nbands; b++) {
+			maxValues[b] = in[b].max();
+			work[b] = new float[srcHeight][dstWidth];
+		}
+
+		final boolean parallel = pool != null && nbands * srcHeight * dstWidth >= minParallelPixels;
+
+		// horizontal pass: each source row into the intermediate images
+		if (parallel) {
+			Parallel.forRange(0, nbands * srcHeight, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int r = range.start; r < range.stop; r++) {
+						final int b = r / srcHeight;
+						final int y = r % srcHeight;
+						filter(in[b].pixels[y], work[b][y], xtab, maxValues[b]);
+					}
+				}
+			}, pool);
+		} else {
+			for (int b = 0; b < nbands; b++)
+				for (int y = 0; y < srcHeight; y++)
+					filter(in[b].pixels[y], work[b][y], xtab, maxValues[b]);
+		}
+
+		// vertical pass: combine rows of the intermediate images into each
+		// destination row
+		if (parallel) {
+			Parallel.forRange(0, nbands * dstHeight, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					final double[] sum = new double[dstWidth];
+					final boolean[] delta = new boolean[dstWidth];
+
+					for (int r = range.start; r < range.stop; r++) {
+						final int b = r / dstHeight;
+						final int y = r % dstHeight;
+						combine(work[b], dst[b].pixels[y], y, ytab, maxValues[b], sum, delta);
+					}
+				}
+			}, pool);
+		} else {
+			final double[] sum = new double[dstWidth];
+			final boolean[] delta = new boolean[dstWidth];
+
+			for (int b = 0; b < nbands; b++)
+				for (int y = 0; y < dstHeight; y++)
+					combine(work[b], dst[b].pixels[y], y, ytab, maxValues[b], sum, delta);
+		}
+	}
+
+	private void zoom(final ByteImage[] in, final ByteImage[] dst, ResizeFilterFunction filterf) {
+		final int nbands = in.length;
+		final int srcWidth = in[0].width;
+		final int srcHeight = in[0].height;
+		final int dstWidth = dst[0].width;
+		final int dstHeight = dst[0].height;
+
+		final WeightTable xtab = getWeights(srcWidth, dstWidth, filterf, false);
+		final WeightTable ytab = getWeights(srcHeight, dstHeight, filterf, true);
+
+		final int[] maxValues = new int[nbands];
+		final byte[][] work = new byte[nbands][];
+		for (int b = 0; b < nbands; b++) {
+			maxValues[b] = in[b].max();
+			work[b] = new byte[srcHeight * dstWidth];
+		}
+
+		final boolean parallel = pool != null && nbands * srcHeight * dstWidth >= minParallelPixels;
+
+		// horizontal pass: each source row into the intermediate images
+		if (parallel) {
+			Parallel.forRange(0, nbands * srcHeight, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					for (int r = range.start; r < range.stop; r++) {
+						final int b = r / srcHeight;
+						final int y = r % srcHeight;
+						filter(in[b].pixels, y * srcWidth, work[b], y * dstWidth, dstWidth, xtab, maxValues[b]);
+					}
+				}
+			}, pool);
+		} else {
+			for (int b = 0; b < nbands; b++)
+				for (int y = 0; y < srcHeight; y++)
+					filter(in[b].pixels, y * srcWidth, work[b], y * dstWidth, dstWidth, xtab, maxValues[b]);
+		}
+
+		// vertical pass: combine rows of the intermediate images into each
+		// destination row
+		if (parallel) {
+			Parallel.forRange(0, nbands * dstHeight, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					final double[] sum = new double[dstWidth];
+					final boolean[] delta = new boolean[dstWidth];
+
+					for (int r = range.start; r < range.stop; r++) {
+						final int b = r / dstHeight;
+						final int y = r % dstHeight;
+						combine(work[b], dst[b].pixels, dstWidth, y, ytab, maxValues[b], sum, delta);
+					}
+				}
+			}, pool);
+		} else {
+			final double[] sum = new double[dstWidth];
+			final boolean[] delta = new boolean[dstWidth];
+
+			for (int b = 0; b < nbands; b++)
+				for (int y = 0; y < dstHeight; y++)
+					combine(work[b], dst[b].pixels, dstWidth, y, ytab, maxValues[b], sum, delta);
+		}
+	}
+
+	/**
+	 * Filter a row of pixels into the output row
+	 */
+	private static void filter(float[] in, float[] out, WeightTable tab, float maxValue) {
+		final int[] offsets = tab.offsets;
+		final int[] pixels = tab.pixels;
+		final double[] weights = tab.weights;
+
+		for (int x = 0; x < out.length; x++) {
+			final int start = offsets[x];
+			final int end = offsets[x + 1];
+
+			final double pel = in[pixels[start]];
+			double weight = 0.0;
+			boolean bPelDelta = false;
+
+			for (int j = start; j < end; j++) {
+				final double pel2 = in[pixels[j]];
+				if (pel2 != pel)
+					bPelDelta = true;
+				weight += pel2 * weights[j];
+			}
+
+			out[x] = clamp(bPelDelta ? Math.round(weight * 255) / 255f : pel, maxValue);
+		}
+	}
+
+	/**
+	 * Combine the rows of the intermediate image contributing to row y of the
+	 * output. The contributions are accumulated a row at a time, but in the
+	 * same order for each pixel as {@link #filter}.
+	 */
+	private static void combine(float[][] work, float[] out, int y, WeightTable tab, float maxValue,
+			double[] sum, boolean[] delta)
+	{
+		final int width = out.length;
+		final int start = tab.offsets[y];
+		final int end = tab.offsets[y + 1];
+		final float[] first = work[tab.pixels[start]];
+
+		for (int x = 0; x < width; x++) {
+			sum[x] = 0.0;
+			delta[x] = false;
+		}
+
+		for (int j = start; j < end; j++) {
+			final float[] row = work[tab.pixels[j]];
+			final double w = tab.weights[j];
+
+			for (int x = 0; x < width; x++) {
+				if (row[x] != first[x])
+					delta[x] = true;
+			}
+
+			for (int x = 0; x < width; x++)
+				sum[x] += row[x] * w;
+		}
+
+		for (int x = 0; x < width; x++) {
+			final double pel = first[x];
+			out[x] = clamp(delta[x] ? Math.round(sum[x] * 255) / 255f : pel, maxValue);
+		}
+	}
+
+	/**
+	 * Filter a row of 8-bit pixels starting at inOffset into the output row
+	 * starting at outOffset
+	 */
+	private static void filter(byte[] in, int inOffset, byte[] out, int outOffset, int width, WeightTable tab,
+			int maxValue)
+	{
+		final int[] offsets = tab.offsets;
+		final int[] pixels = tab.pixels;
+		final double[] weights = tab.weights;
+
+		for (int x = 0; x < width; x++) {
+			final int start = offsets[x];
+			final int end = offsets[x + 1];
+
+			final int pel = in[inOffset + pixels[start]] & 0xff;
+			double weight = 0.0;
+			boolean bPelDelta = false;
+
+			for (int j = start; j < end; j++) {
+				final int pel2 = in[inOffset + pixels[j]] & 0xff;
+				if (pel2 != pel)
+					bPelDelta = true;
+				weight += pel2 * weights[j];
+			}
+
+			out[outOffset + x] = (byte) clamp(bPelDelta ? Math.round(weight) : pel, maxValue);
+		}
+	}
+
+	/**
+	 * Combine the rows of the 8-bit intermediate image contributing to row y
+	 * of the output.
+	 */
+	private static void combine(byte[] work, byte[] out, int width, int y, WeightTable tab, int maxValue,
+			double[] sum, boolean[] delta)
+	{
+		final int start = tab.offsets[y];
+		final int end = tab.offsets[y + 1];
+		final int first = tab.pixels[start] * width;
+
+		for (int x = 0; x < width; x++) {
+			sum[x] = 0.0;
+			delta[x] = false;
+		}
+
+		for (int j = start; j < end; j++) {
+			final int row = tab.pixels[j] * width;
+			final double w = tab.weights[j];
+
+			for (int x = 0; x < width; x++) {
+				if (work[row + x] != work[first + x])
+					delta[x] = true;
+			}
+
+			for (int x = 0; x < width; x++)
+				sum[x] += (work[row + x] & 0xff) * w;
+		}
+
+		for (int x = 0, o = y * width; x < width; x++, o++) {
+			final int pel = work[first + x] & 0xff;
+			out[o] = (byte) clamp(delta[x] ? Math.round(sum[x]) : pel, maxValue);
+		}
+	}
+
+	private static int clamp(long value, int maxValue) {
+		if (value < 0)
+			return 0;
+		else if (value > maxValue)
+			return maxValue;
+
+		return (int) value;
+	}
+
+	private static float clamp(double weight, float maxValue) {
+		if (weight < 0)
+			weight = 0;
+		else if (weight > maxValue)
+			weight = maxValue;
+
+		return (float) weight;
+	}
+
+	/**
+	 * Get the (possibly cached) weight table for resampling an axis.
+	 */
+	WeightTable getWeights(int srcSize, int dstSize, ResizeFilterFunction filterf, boolean vertical) {
+		final Key key = new Key(srcSize, dstSize, filterf, vertical);
+
+		synchronized (cache) {
+			final WeightTable tab = cache.get(key);
+			if (tab != null)
+				return tab;
+		}
+
+		// computed outside the lock; concurrent misses for the same key just
+		// compute identical tables
+		final WeightTable tab = computeWeights(srcSize, dstSize, filterf, vertical);
+
+		synchronized (cache) {
+			cache.put(key, tab);
+		}
+
+		return tab;
+	}
+
+	/**
+	 * Compute the weight table for resampling an axis. The horizontal and
+	 * vertical tables differ in the number of contributions considered for
+	 * each output pixel; this matches the original implementation in
+	 * {@link ResizeProcessor}.
+	 */
+	static WeightTable computeWeights(int srcSize, int dstSize, ResizeFilterFunction filterf, boolean vertical) {
+		final double scale = (double) dstSize / (double) srcSize;
+		final double fwidth = filterf.getSupport();
+
+		double width = fwidth;
+		double fscale = 1.0;
+		final boolean shrinking = scale < 1.0;
+		if (shrinking) {
+			width = fwidth / scale;
+			fscale = 1.0 / scale;
+
+			if (width <= .5) {
+				// Reduce to point sampling.
+				width = .5 + 1.0e-6;
+				fscale = 1.0;
+			}
+		}
+
+		final int maxContributors = (int) (width * 2.0 + 1.0);
+		final int[] offsets = new int[dstSize + 1];
+		final int[] pixels = new int[dstSize * maxContributors];
+		final double[] weights = new double[dstSize * maxContributors];
+
+		int k = 0;
+		for (int i = 0; i < dstSize; i++) {
+			offsets[i] = k;
+
+			final double center = i / scale;
+			final int left = (int) Math.ceil(center - width);
+			final int right = vertical ? left + maxContributors - 1 : (int) Math.floor(center + width);
+
+			double density = 0.0;
+			for (int j = left; j <= right; j++) {
+				double weight = center - j;
+				weight = shrinking ? filterf.filter(weight / fscale) / fscale : filterf.filter(weight);
+
+				int n;
+				if (j < 0) {
+					n = -j;
+				}
+				else if (j >= srcSize) {
+					n = (srcSize - j) + srcSize - 1;
+				}
+				else {
+					n = j;
+				}
+
+				if (n >= srcSize) {
+					n = n % srcSize;
+				}
+				else if (n < 0) {
+					n = srcSize - 1;
+				}
+
+				pixels[k] = n;
+				weights[k] = weight;
+				k++;
+
+				density += weight;
+			}
+
+			if (shrinking && (density != 0.0) && (density != 1.0)) {
+				// Normalize.
+				density = 1.0 / density;
+				for (int m = offsets[i]; m < k; m++)
+					weights[m] *= density;
+			}
+		}
+		offsets[dstSize] = k;
+
+		if (k == pixels.length)
+			return new WeightTable(offsets, pixels, weights);
+
+		final int[] p = new int[k];
+		final double[] w = new double[k];
+		System.arraycopy(pixels, 0, p, 0, k);
+		System.arraycopy(weights, 0, w, 0, k);
+		return new WeightTable(offsets, p, w);
+	}
+}
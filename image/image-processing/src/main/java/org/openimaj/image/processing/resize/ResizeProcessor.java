@@ -818,189 +818,7 @@ public class ResizeProcessor implements SinglebandImageProcessor<Float, FImage>
 	 * @return the destination image
 	 */
 	public static FImage zoom(FImage in, FImage dst, ResizeFilterFunction filterf) {
-		final int dstWidth = dst.getWidth();
-		final int dstHeight = dst.getHeight();
-
-		final int srcWidth = in.getWidth();
-		final int srcHeight = in.getHeight();
-
-		final double xscale = (double) dstWidth / (double) srcWidth;
-		final double yscale = (double) dstHeight / (double) srcHeight;
-
-		/* create intermediate column to hold horizontal dst column zoom */
-		final float[] work = new float[in.height];
-
-		final PixelContributions[] contribY = new PixelContributions[dstHeight];
-		for (int i = 0; i < contribY.length; i++) {
-			contribY[i] = new PixelContributions();
-		}
-
-		final float maxValue = in.max();
-
-		// TODO: What to do when fwidth > srcHeight or dstHeight
-		final double fwidth = filterf.getSupport();
-		if (yscale < 1.0) {
-			double width = fwidth / yscale;
-			double fscale = 1.0 / yscale;
-
-			if (width <= .5) {
-				// Reduce to point sampling.
-				width = .5 + 1.0e-6;
-				fscale = 1.0;
-			}
-
-			for (int i = 0; i < dstHeight; i++) {
-				contribY[i].contributions = new PixelContribution[(int) (width * 2.0 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final int left = (int) Math.ceil(center - width);
-				// final int right = (int) Math.floor(center + width);
-				final int right = left + contribY[i].contributions.length - 1;
-
-				double density = 0.0;
-				for (int j = left; j <= right; j++) {
-					double weight = center - j;
-					weight = filterf.filter(weight / fscale) / fscale;
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
-
-					density += weight;
-				}
-
-				if ((density != 0.0) && (density != 1.0)) {
-					// Normalize.
-					density = 1.0 / density;
-					for (int k = 0; k < contribY[i].numberOfContributors; k++) {
-						contribY[i].contributions[k].weight *= density;
-					}
-				}
-			}
-		}
-		else {
-			for (int i = 0; i < dstHeight; ++i) {
-				contribY[i].contributions = new PixelContribution[(int) (fwidth * 2 + 1)];
-				contribY[i].numberOfContributors = 0;
-
-				final double center = i / yscale;
-				final double left = Math.ceil(center - fwidth);
-				// final double right = Math.floor(center + fwidth);
-				final double right = left + contribY[i].contributions.length - 1;
-				for (int j = (int) left; j <= right; ++j) {
-					double weight = center - j;
-					weight = filterf.filter(weight);
-					int n;
-					if (j < 0) {
-						n = -j;
-					}
-					else if (j >= srcHeight) {
-						n = (srcHeight - j) + srcHeight - 1;
-					}
-					else {
-						n = j;
-					}
-
-					/**/
-					if (n >= srcHeight) {
-						n = n % srcHeight;
-					}
-					else if (n < 0) {
-						n = srcHeight - 1;
-					}
-					/**/
-
-					final int k = contribY[i].numberOfContributors++;
-					contribY[i].contributions[k] = new PixelContribution();
-					contribY[i].contributions[k].pixel = n;
-					contribY[i].contributions[k].weight = weight;
-				}
-			}
-		}
-
-		for (int xx = 0; xx < dstWidth; xx++) {
-			final PixelContributions contribX = new PixelContributions();
-			calc_x_contrib(contribX, xscale, fwidth, dst.width, in.width, filterf, xx);
-
-			/* Apply horiz filter to make dst column in tmp. */
-			for (int k = 0; k < srcHeight; k++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				// TODO: This line throws index out of bounds, if the image
-				// is smaller than filter.support()
-				final double pel = in.pixels[k][contribX.contributions[0].pixel];
-				for (int j = 0; j < contribX.numberOfContributors; j++) {
-					final double pel2 = j == 0 ? pel : in.pixels[k][contribX.contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * contribX.contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
-
-				work[k] = (float) weight;
-			}/* next row in temp column */
-
-			/*
-			 * The temp column has been built. Now stretch it vertically into
-			 * dst column.
-			 */
-			for (int i = 0; i < dstHeight; i++) {
-				double weight = 0.0;
-				boolean bPelDelta = false;
-				final double pel = work[contribY[i].contributions[0].pixel];
-
-				for (int j = 0; j < contribY[i].numberOfContributors; j++) {
-					// TODO: This line throws index out of bounds, if the
-					// image is smaller than filter.support()
-					final double pel2 = j == 0 ? pel : work[contribY[i].contributions[j].pixel];
-					if (pel2 != pel) {
-						bPelDelta = true;
-					}
-					weight += pel2 * contribY[i].contributions[j].weight;
-				}
-				weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
-
-				if (weight < 0) {
-					weight = 0;
-				}
-				else if (weight > maxValue) {
-					weight = maxValue;
-				}
-
-				dst.pixels[i][xx] = (float) weight;
-			} /* next dst row */
-		} /* next dst column */
-
-		return dst;
+		return ResizeEngine.getDefault().zoom(in, dst, filterf);
 	}
 
 	/**
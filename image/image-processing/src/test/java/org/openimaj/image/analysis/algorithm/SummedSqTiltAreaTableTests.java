@@ -29,10 +29,14 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
+
 import org.junit.Test;
 import org.openimaj.data.RandomData;
+import org.openimaj.image.ByteImage;
 import org.openimaj.image.FImage;
 
 /**
@@ -86,4 +90,39 @@ public class SummedSqTiltAreaTableTests {
 			}
 		}
 	}
+
+	private static void assertIdentical(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test that SATs built from 8-bit images are identical to those built from
+	 * the equivalent floating-point images.
+	 */
+	@Test
+	public void testByteImage() {
+		final ByteImage image = new ByteImage(73, 41);
+		new Random(1).nextBytes(image.pixels);
+		final FImage fimage = image.toFImage();
+
+		assertIdentical(new SummedAreaTable(fimage).data, new SummedAreaTable(image).data);
+
+		final SummedSqAreaTable sqsat = new SummedSqAreaTable(image);
+		assertIdentical(new SummedSqAreaTable(fimage).sum, sqsat.sum);
+		assertIdentical(new SummedSqAreaTable(fimage).sqSum, sqsat.sqSum);
+
+		for (final boolean tilted : new boolean[] { false, true }) {
+			final SummedSqTiltAreaTable expected = new SummedSqTiltAreaTable(fimage, tilted);
+			final SummedSqTiltAreaTable actual = new SummedSqTiltAreaTable(image, tilted);
+
+			assertIdentical(expected.sum, actual.sum);
+			assertIdentical(expected.sqSum, actual.sqSum);
+			if (tilted)
+				assertIdentical(expected.tiltSum, actual.tiltSum);
+		}
+	}
 }
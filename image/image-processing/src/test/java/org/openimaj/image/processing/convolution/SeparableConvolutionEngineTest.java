@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.convolution;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.ByteImage;
+import org.openimaj.image.FImage;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link SeparableConvolutionEngine}; results must be identical to
+ * those of a straightforward row and column implementation.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class SeparableConvolutionEngineTest {
+	private static FImage randomImage(Random rng, int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat() * 2 - 0.5f;
+		return image;
+	}
+
+	private static float[] randomKernel(Random rng, int length) {
+		final float[] kernel = new float[length];
+		for (int i = 0; i < length; i++)
+			kernel[i] = rng.nextFloat();
+		return kernel;
+	}
+
+	private static void referenceHorizontal(FImage image, float[] kernel) {
+		final int halfsize = kernel.length / 2;
+		final float buffer[] = new float[image.width + kernel.length];
+
+		for (int r = 0; r < image.height; r++) {
+			for (int i = 0; i < halfsize; i++)
+				buffer[i] = image.pixels[r][0];
+			for (int i = 0; i < image.width; i++)
+				buffer[halfsize + i] = image.pixels[r][i];
+			for (int i = 0; i < halfsize; i++)
+				buffer[halfsize + image.width + i] = image.pixels[r][image.width - 1];
+
+			final int l = buffer.length - kernel.length;
+			for (int i = 0; i < l; i++) {
+				float sum = 0.0f;
+				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
+					sum += buffer[i + j] * kernel[jj];
+				buffer[i] = sum;
+			}
+
+			for (int c = 0; c < image.width; c++)
+				image.pixels[r][c] = buffer[c];
+		}
+	}
+
+	private static void referenceVertical(FImage image, float[] kernel) {
+		final int halfsize = kernel.length / 2;
+		final float buffer[] = new float[image.height + kernel.length];
+
+		for (int c = 0; c < image.width; c++) {
+			for (int i = 0; i < halfsize; i++)
+				buffer[i] = image.pixels[0][c];
+			for (int i = 0; i < image.height; i++)
+				buffer[halfsize + i] = image.pixels[i][c];
+			for (int i = 0; i < halfsize; i++)
+				buffer[halfsize + image.height + i] = image.pixels[image.height - 1][c];
+
+			final int l = buffer.length - kernel.length;
+			for (int i = 0; i < l; i++) {
+				float sum = 0.0f;
+				for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
+					sum += buffer[i + j] * kernel[jj];
+				buffer[i] = sum;
+			}
+
+			for (int r = 0; r < image.height; r++)
+				image.pixels[r][c] = buffer[r];
+		}
+	}
+
+	private static boolean identical(FImage a, FImage b) {
+		if (a.width != b.width || a.height != b.height)
+			return false;
+		for (int y = 0; y < a.height; y++)
+			if (!Arrays.equals(a.pixels[y], b.pixels[y]))
+				return false;
+		return true;
+	}
+
+	private static void check(SeparableConvolutionEngine engine, Random rng, int width, int height, int klen) {
+		final FImage image = randomImage(rng, width, height);
+		final float[] hkernel = randomKernel(rng, klen);
+		final float[] vkernel = randomKernel(rng, klen);
+
+		final FImage expected = image.clone();
+		referenceHorizontal(expected, hkernel);
+		referenceVertical(expected, vkernel);
+
+		final FImage actual = image.clone();
+		engine.convolve(actual, hkernel, vkernel);
+
+		assertTrue("size " + width + "x" + height + ", kernel " + klen + ", tile " + engine.getTileWidth(),
+				identical(expected, actual));
+	}
+
+	/**
+	 * Test the single-threaded engine against the reference for a range of
+	 * image, kernel and tile sizes (including odd and even kernels, kernels
+	 * larger than the image and widths that are not multiples of the tile)
+	 */
+	@Test
+	public void testSerial() {
+		final Random rng = new Random(1);
+
+		for (final int tile : new int[] { 1, 3, 16, 64 }) {
+			final SeparableConvolutionEngine engine = new SeparableConvolutionEngine(tile, null);
+
+			for (final int[] size : new int[][] { { 1, 1 }, { 7, 3 }, { 50, 33 }, { 129, 70 } }) {
+				for (final int klen : new int[] { 1, 2, 5, 9, 25, 151 }) {
+					check(engine, rng, size[0], size[1], klen);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test the multi-threaded engine against the reference
+	 */
+	@Test
+	public void testParallel() {
+		final Random rng = new Random(2);
+
+		for (final int tile : new int[] { 8, 64 }) {
+			final SeparableConvolutionEngine engine = new SeparableConvolutionEngine(tile, GlobalExecutorPool.getPool(), 0);
+
+			for (final int[] size : new int[][] { { 3, 200 }, { 200, 3 }, { 301, 257 } }) {
+				for (final int klen : new int[] { 3, 19 }) {
+					check(engine, rng, size[0], size[1], klen);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that convolving an 8-bit image gives the same result as convolving
+	 * its floating-point equivalent
+	 */
+	@Test
+	public void testByteImage() {
+		final Random rng = new Random(4);
+
+		for (final SeparableConvolutionEngine engine : new SeparableConvolutionEngine[] {
+				new SeparableConvolutionEngine(), new SeparableConvolutionEngine(8, GlobalExecutorPool.getPool(), 0) })
+		{
+			for (final int[] size : new int[][] { { 1, 1 }, { 50, 33 }, { 301, 257 } }) {
+				for (final int klen : new int[] { 1, 4, 19 }) {
+					final ByteImage image = new ByteImage(size[0], size[1]);
+					rng.nextBytes(image.pixels);
+					final float[] hkernel = randomKernel(rng, klen);
+					final float[] vkernel = randomKernel(rng, klen);
+
+					final FImage expected = image.toFImage();
+					engine.convolve(expected, hkernel, vkernel);
+
+					assertTrue(identical(expected, engine.convolve(image, hkernel, vkernel)));
+					assertTrue(identical(image.toFImage(), engine.convolve(image, null, null)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that {@link FGaussianConvolve} and {@link FImageConvolveSeparable}
+	 * produce the same result as the reference
+	 */
+	@Test
+	public void testProcessors() {
+		final Random rng = new Random(3);
+		final FImage image = randomImage(rng, 97, 61);
+
+		final float[] kernel = FGaussianConvolve.makeKernel(2.5f);
+		final FImage expected = image.clone();
+		referenceHorizontal(expected, kernel);
+		referenceVertical(expected, kernel);
+
+		assertTrue(identical(expected, image.process(new FGaussianConvolve(2.5f))));
+		assertTrue(identical(expected, image.process(new FImageConvolveSeparable(kernel))));
+		assertTrue(identical(expected, image.process(new FGaussianConvolve(2.5f,
+				FGaussianConvolve.DEFAULT_GAUSS_TRUNCATE, new SeparableConvolutionEngine(GlobalExecutorPool.getPool())))));
+	}
+}
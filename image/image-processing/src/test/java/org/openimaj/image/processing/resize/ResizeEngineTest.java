@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.resize;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.ByteImage;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBByteImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.processing.resize.filters.BSplineFilter;
+import org.openimaj.image.processing.resize.filters.CatmullRomFilter;
+import org.openimaj.image.processing.resize.filters.Lanczos3Filter;
+import org.openimaj.image.processing.resize.filters.MitchellFilter;
+import org.openimaj.image.processing.resize.filters.TriangleFilter;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link ResizeEngine}; results must be identical to those of the
+ * original column-by-column implementation of
+ * {@link ResizeProcessor#zoom(FImage, FImage, ResizeFilterFunction)}.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class ResizeEngineTest {
+	private static final ResizeFilterFunction[] FILTERS = {
+			TriangleFilter.INSTANCE, new BSplineFilter(), new CatmullRomFilter(), new Lanczos3Filter(),
+			new MitchellFilter() };
+
+	private static FImage randomImage(Random rng, int width, int height) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+		return image;
+	}
+
+	private static int reflect(int j, int size) {
+		int n = j < 0 ? -j : j >= size ? (size - j) + size - 1 : j;
+
+		if (n >= size)
+			n = n % size;
+		else if (n < 0)
+			n = size - 1;
+
+		return n;
+	}
+
+	/**
+	 * Compute the contributions to output pixel i in the way of the original
+	 * implementation, returning the number of contributors
+	 */
+	private static int contributions(int i, int srcSize, int dstSize, ResizeFilterFunction filterf,
+			boolean fixedCount, int[] pixels, double[] weights)
+	{
+		final double scale = (double) dstSize / (double) srcSize;
+		final double fwidth = filterf.getSupport();
+		double width = fwidth;
+		double fscale = 1.0;
+
+		if (scale < 1.0) {
+			width = fwidth / scale;
+			fscale = 1.0 / scale;
+			if (width <= .5) {
+				width = .5 + 1.0e-6;
+				fscale = 1.0;
+			}
+		}
+
+		final double center = i / scale;
+		final int left = (int) Math.ceil(center - width);
+		final int right = fixedCount ? left + (int) (width * 2.0 + 1) - 1 : (int) Math.floor(center + width);
+
+		int count = 0;
+		double density = 0.0;
+		for (int j = left; j <= right; j++) {
+			final double weight = scale < 1.0 ? filterf.filter((center - j) / fscale) / fscale : filterf
+					.filter(center - j);
+			pixels[count] = reflect(j, srcSize);
+			weights[count++] = weight;
+			density += weight;
+		}
+
+		if (scale < 1.0 && density != 0.0 && density != 1.0) {
+			density = 1.0 / density;
+			for (int k = 0; k < count; k++)
+				weights[k] *= density;
+		}
+
+		return count;
+	}
+
+	private static float apply(double weight, boolean bPelDelta, double pel, float maxValue) {
+		weight = bPelDelta ? Math.round(weight * 255) / 255f : pel;
+
+		if (weight < 0)
+			weight = 0;
+		else if (weight > maxValue)
+			weight = maxValue;
+
+		return (float) weight;
+	}
+
+	private static FImage reference(FImage in, FImage dst, ResizeFilterFunction filterf) {
+		final float maxValue = in.max();
+		final float[] work = new float[in.height];
+		final int[] pixels = new int[1024];
+		final double[] weights = new double[1024];
+
+		for (int xx = 0; xx < dst.width; xx++) {
+			final int nx = contributions(xx, in.width, dst.width, filterf, false, pixels, weights);
+			for (int k = 0; k < in.height; k++) {
+				double weight = 0.0;
+				boolean bPelDelta = false;
+				final double pel = in.pixels[k][pixels[0]];
+				for (int j = 0; j < nx; j++) {
+					final double pel2 = in.pixels[k][pixels[j]];
+					if (pel2 != pel)
+						bPelDelta = true;
+					weight += pel2 * weights[j];
+				}
+				work[k] = apply(weight, bPelDelta, pel, maxValue);
+			}
+
+			for (int i = 0; i < dst.height; i++) {
+				final int ny = contributions(i, in.height, dst.height, filterf, true, pixels, weights);
+				double weight = 0.0;
+				boolean bPelDelta = false;
+				final double pel = work[pixels[0]];
+				for (int j = 0; j < ny; j++) {
+					final double pel2 = work[pixels[j]];
+					if (pel2 != pel)
+						bPelDelta = true;
+					weight += pel2 * weights[j];
+				}
+				dst.pixels[i][xx] = apply(weight, bPelDelta, pel, maxValue);
+			}
+		}
+
+		return dst;
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
+
+	/**
+	 * Test that shrinking and enlarging with a variety of filters matches the
+	 * original implementation, with both serial and parallel engines
+	 */
+	@Test
+	public void testMatchesReference() {
+		final Random rng = new Random(42);
+		final ResizeEngine parallel = new ResizeEngine(GlobalExecutorPool.getPool(), 4, 1);
+
+		for (int t = 0; t < 50; t++) {
+			final ResizeFilterFunction filter = FILTERS[t % FILTERS.length];
+			final FImage in = randomImage(rng, 8 + rng.nextInt(100), 8 + rng.nextInt(100));
+			final int w = 1 + rng.nextInt(150);
+			final int h = 1 + rng.nextInt(150);
+
+			final FImage expected = reference(in, new FImage(w, h), filter);
+
+			assertImageEquals(expected, ResizeEngine.getDefault().resize(in, w, h, filter));
+			assertImageEquals(expected, parallel.resize(in, w, h, filter));
+			assertImageEquals(expected, ResizeProcessor.zoom(in, new FImage(w, h), filter));
+		}
+	}
+
+	/**
+	 * Test that all bands of an {@link MBFImage} are resized as they would be
+	 * individually
+	 */
+	@Test
+	public void testMBFImage() {
+		final Random rng = new Random(1);
+		final MBFImage in = new MBFImage(ColourSpace.RGB, randomImage(rng, 64, 48), randomImage(rng, 64, 48),
+				randomImage(rng, 64, 48));
+
+		final ResizeEngine parallel = new ResizeEngine(GlobalExecutorPool.getPool(), 4, 1);
+		final MBFImage out = parallel.resize(in, 23, 71, TriangleFilter.INSTANCE);
+
+		for (int b = 0; b < 3; b++)
+			assertImageEquals(reference(in.getBand(b), new FImage(23, 71), TriangleFilter.INSTANCE), out.getBand(b));
+	}
+
+	private static ByteImage randomByteImage(Random rng, int width, int height) {
+		final ByteImage image = new ByteImage(width, height);
+		rng.nextBytes(image.pixels);
+		return image;
+	}
+
+	private static void assertLevelsClose(FImage expected, ByteImage actual) {
+		for (int y = 0; y < expected.height; y++) {
+			for (int x = 0; x < expected.width; x++) {
+				final int level = Math.round(expected.pixels[y][x] * 255);
+				assertTrue(Math.abs(level - actual.getPixelNative(x, y)) <= 1);
+			}
+		}
+	}
+
+	/**
+	 * Test that 8-bit images are resized to within one grey-level of the
+	 * equivalent floating-point images, with both serial and parallel engines
+	 */
+	@Test
+	public void testByteImage() {
+		final Random rng = new Random(7);
+		final ResizeEngine parallel = new ResizeEngine(GlobalExecutorPool.getPool(), 4, 1);
+
+		for (int t = 0; t < 20; t++) {
+			final ResizeFilterFunction filter = FILTERS[t % FILTERS.length];
+			final ByteImage in = randomByteImage(rng, 8 + rng.nextInt(100), 8 + rng.nextInt(100));
+			final int w = 1 + rng.nextInt(150);
+			final int h = 1 + rng.nextInt(150);
+
+			final FImage expected = ResizeEngine.getDefault().resize(in.toFImage(), w, h, filter);
+			final ByteImage actual = ResizeEngine.getDefault().resize(in, w, h, filter);
+
+			assertLevelsClose(expected, actual);
+			assertArrayEquals(actual.pixels, parallel.resize(in, w, h, filter).pixels);
+		}
+
+		final MBByteImage mbin = new MBByteImage(ColourSpace.RGB, randomByteImage(rng, 64, 48),
+				randomByteImage(rng, 64, 48), randomByteImage(rng, 64, 48));
+		final MBByteImage mbout = parallel.resize(mbin, 23, 71, TriangleFilter.INSTANCE);
+
+		for (int b = 0; b < 3; b++)
+			assertArrayEquals(ResizeEngine.getDefault().resize(mbin.getBand(b), 23, 71, TriangleFilter.INSTANCE).pixels,
+					mbout.getBand(b).pixels);
+	}
+
+	/**
+	 * Test that weight tables are cached
+	 */
+	@Test
+	public void testCache() {
+		final ResizeEngine engine = new ResizeEngine();
+		final ResizeFilterFunction filter = new BSplineFilter();
+
+		assertSame(engine.getWeights(100, 30, filter, false), engine.getWeights(100, 30, filter, false));
+	}
+}
@@ -0,0 +1,601 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.haar;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openimaj.image.analysis.algorithm.SummedSqTiltAreaTable;
+
+/**
+ * An immutable, compiled form of a {@link StageTreeClassifier}. The stages,
+ * weak classifier trees and Haar features are flattened into arrays of
+ * thresholds, tree links, rectangle coordinates and weights, and the
+ * scale-dependent rectangles and weights are computed into separate
+ * {@link Scale} tables (which are cached) rather than being written back into
+ * the classifier. Unlike a {@link StageTreeClassifier}, a compiled cascade can
+ * therefore be shared by any number of threads classifying windows of
+ * different images at different scales at the same time.
+ * <p>
+ * Classification gives exactly the same results as the
+ * {@link StageTreeClassifier} it was compiled from.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public final class CompiledCascade {
+	private static final int MAX_CACHED_SCALES = 1024;
+
+	/**
+	 * The scale-dependent values of a {@link CompiledCascade} at a single
+	 * scale. Instances are immutable.
+	 */
+	public static final class Scale {
+		final float scale;
+		final int shift;
+		final int windowWidth;
+		final int windowHeight;
+		final float invArea;
+
+		final int[] x;
+		final int[] y;
+		final int[] width;
+		final int[] height;
+		final float[] weight;
+
+		Scale(CompiledCascade cascade, float scale) {
+			this.scale = scale;
+			this.shift = Math.round(scale);
+
+			// following the OCV code... -2 to make a slightly smaller box
+			// within window
+			this.windowWidth = Math.round(scale * (cascade.width - 2));
+			this.windowHeight = Math.round(scale * (cascade.height - 2));
+			this.invArea = 1.0f / (windowWidth * windowHeight);
+
+			final int nrects = cascade.rectX.length;
+			this.x = new int[nrects];
+			this.y = new int[nrects];
+			this.width = new int[nrects];
+			this.height = new int[nrects];
+			this.weight = new float[nrects];
+
+			for (int f = 0; f < cascade.featureCorrection.length; f++)
+				scaleFeature(cascade, f);
+		}
+
+		/**
+		 * Compute the scaled rectangles of a feature in the same way as
+		 * {@link HaarFeature#setScale(float, float)}
+		 */
+		private void scaleFeature(CompiledCascade c, int f) {
+			final int start = c.featureRects[f];
+			final int end = c.featureRects[f + 1];
+
+			double sum0 = 0;
+			double area0 = 0;
+
+			int base_w = Integer.MAX_VALUE;
+			int base_h = Integer.MAX_VALUE;
+			int new_base_w = 0;
+			int new_base_h = 0;
+			boolean flagx = false;
+			boolean flagy = false;
+			int x0 = 0;
+			int y0 = 0;
+
+			for (int r = start; r < end; r++) {
+				if ((c.rectW[r] - 1) >= 0)
+					base_w = Math.min(base_w, (c.rectW[r] - 1));
+				if ((c.rectX[r] - c.rectX[start] - 1) >= 0)
+					base_w = Math.min(base_w, (c.rectX[r] - c.rectX[start] - 1));
+				if ((c.rectH[r] - 1) >= 0)
+					base_h = Math.min(base_h, (c.rectH[r] - 1));
+				if ((c.rectY[r] - c.rectY[start] - 1) >= 0)
+					base_h = Math.min(base_h, (c.rectY[r] - c.rectY[start] - 1));
+			}
+
+			base_w += 1;
+			base_h += 1;
+			final int kx = c.rectW[start] / base_w;
+			final int ky = c.rectH[start] / base_h;
+
+			if (kx <= 0) {
+				flagx = true;
+				new_base_w = Math.round(c.rectW[start] * scale) / kx;
+				x0 = Math.round(c.rectX[start] * scale);
+			}
+
+			if (ky <= 0) {
+				flagy = true;
+				new_base_h = Math.round(c.rectH[start] * scale) / ky;
+				y0 = Math.round(c.rectY[start] * scale);
+			}
+
+			final float correction_ratio = c.featureCorrection[f] * invArea;
+
+			for (int r = start; r < end; r++) {
+				if (flagx) {
+					x[r] = (c.rectX[r] - c.rectX[start]) * new_base_w / base_w + x0;
+					width[r] = c.rectW[r] * new_base_w / base_w;
+				} else {
+					x[r] = Math.round(c.rectX[r] * scale);
+					width[r] = Math.round(c.rectW[r] * scale);
+				}
+
+				if (flagy) {
+					y[r] = (c.rectY[r] - c.rectY[start]) * new_base_h / base_h + y0;
+					height[r] = c.rectH[r] * new_base_h / base_h;
+				} else {
+					y[r] = Math.round(c.rectY[r] * scale);
+					height[r] = Math.round(c.rectH[r] * scale);
+				}
+
+				weight[r] = (c.rectWeight[r] * correction_ratio);
+
+				if (r == start) {
+					area0 = width[r] * height[r];
+				} else {
+					sum0 += weight[r] * width[r] * height[r];
+				}
+			}
+
+			weight[start] = (float) (-sum0 / area0);
+		}
+
+		/**
+		 * @return the scale factor
+		 */
+		public float getScale() {
+			return scale;
+		}
+	}
+
+	private final StageTreeClassifier classifier;
+	private final int width;
+	private final int height;
+	private final String name;
+	private final boolean hasTiltedFeatures;
+
+	// stages; links are indices into the stage arrays, or -1 for none
+	private final int root;
+	private final float[] stageThreshold;
+	private final int[] stageTrees; // trees of stage i are [stageTrees[i], stageTrees[i+1])
+	private final int[] stageSuccess;
+	private final int[] stageFailure;
+	private final boolean[] stageHasNegativeValues;
+
+	// weak classifier trees; a link >= 0 is a node index, and a link < 0 is
+	// the complement of a leaf index
+	private final int[] treeRoot;
+	private final int[] nodeFeature;
+	private final float[] nodeThreshold;
+	private final int[] nodeLeft;
+	private final int[] nodeRight;
+	private final float[] leafValue;
+
+	// features; the rectangles of feature i are [featureRects[i],
+	// featureRects[i+1])
+	private final int[] featureRects;
+	private final boolean[] featureTilted;
+	private final float[] featureCorrection;
+	private final int[] rectX;
+	private final int[] rectY;
+	private final int[] rectW;
+	private final int[] rectH;
+	private final float[] rectWeight;
+
+	private transient volatile ConcurrentHashMap<Integer, Scale> scales;
+
+	/**
+	 * Compile the given {@link StageTreeClassifier}. The classifier is not
+	 * modified, and subsequent changes to it will not affect the compiled
+	 * cascade. A reference to it is kept, and can be retrieved with
+	 * {@link #getClassifier()}.
+	 * 
+	 * @param classifier
+	 *            the classifier to compile
+	 */
+	public CompiledCascade(StageTreeClassifier classifier) {
+		this.classifier = classifier;
+		this.width = classifier.width;
+		this.height = classifier.height;
+		this.name = classifier.name;
+		this.hasTiltedFeatures = classifier.hasTiltedFeatures;
+
+		final Compiler c = new Compiler();
+		this.root = c.addStage(classifier.root);
+
+		final int nstages = c.stages.size();
+		this.stageThreshold = new float[nstages];
+		this.stageTrees = new int[nstages + 1];
+		this.stageSuccess = new int[nstages];
+		this.stageFailure = new int[nstages];
+		this.stageHasNegativeValues = new boolean[nstages];
+
+		final List<Classifier> trees = new ArrayList<Classifier>();
+		for (int i = 0; i < nstages; i++) {
+			final Stage s = c.stages.get(i);
+
+			stageThreshold[i] = s.threshold;
+			stageTrees[i] = trees.size();
+			stageSuccess[i] = s.successStage == null ? -1 : c.stageIndex.get(s.successStage);
+			stageFailure[i] = s.failureStage == null ? -1 : c.stageIndex.get(s.failureStage);
+
+			for (final Classifier tree : s.ensemble) {
+				trees.add(tree);
+				if (hasNegativeValues(tree))
+					stageHasNegativeValues[i] = true;
+			}
+		}
+		stageTrees[nstages] = trees.size();
+
+		this.treeRoot = new int[trees.size()];
+		for (int i = 0; i < treeRoot.length; i++)
+			treeRoot[i] = c.addClassifier(trees.get(i));
+
+		// index all the nodes below the roots before sizing the node tables
+		for (int i = 0; i < c.nodes.size(); i++) {
+			final HaarFeatureClassifier n = c.nodes.get(i);
+
+			c.addFeature(n.feature);
+			c.addClassifier(n.left);
+			c.addClassifier(n.right);
+		}
+
+		final int nnodes = c.nodes.size();
+		this.nodeFeature = new int[nnodes];
+		this.nodeThreshold = new float[nnodes];
+		this.nodeLeft = new int[nnodes];
+		this.nodeRight = new int[nnodes];
+		for (int i = 0; i < nnodes; i++) {
+			final HaarFeatureClassifier n = c.nodes.get(i);
+
+			nodeFeature[i] = c.addFeature(n.feature);
+			nodeThreshold[i] = n.threshold;
+			nodeLeft[i] = c.addClassifier(n.left);
+			nodeRight[i] = c.addClassifier(n.right);
+		}
+
+		this.leafValue = new float[c.leaves.size()];
+		for (int i = 0; i < leafValue.length; i++)
+			leafValue[i] = c.leaves.get(i);
+
+		final int nfeatures = c.features.size();
+		int nrects = 0;
+		for (final HaarFeature f : c.features)
+			nrects += f.rects.length;
+
+		this.featureRects = new int[nfeatures + 1];
+		this.featureTilted = new boolean[nfeatures];
+		this.featureCorrection = new float[nfeatures];
+		this.rectX = new int[nrects];
+		this.rectY = new int[nrects];
+		this.rectW = new int[nrects];
+		this.rectH = new int[nrects];
+		this.rectWeight = new float[nrects];
+
+		int r = 0;
+		for (int i = 0; i < nfeatures; i++) {
+			final HaarFeature f = c.features.get(i);
+
+			featureRects[i] = r;
+			featureTilted[i] = f instanceof HaarFeature.TiltedFeature;
+			featureCorrection[i] = featureTilted[i] ? 2f : 1f;
+
+			for (final WeightedRectangle wr : f.rects) {
+				rectX[r] = wr.x;
+				rectY[r] = wr.y;
+				rectW[r] = wr.width;
+				rectH[r] = wr.height;
+				rectWeight[r] = wr.weight;
+				r++;
+			}
+		}
+		featureRects[nfeatures] = r;
+	}
+
+	/**
+	 * Assigns indices to the stages, tree nodes, leaves and features, in the
+	 * order they are first encountered
+	 */
+	private static class Compiler {
+		final List<Stage> stages = new ArrayList<Stage>();
+		final Map<Stage, Integer> stageIndex = new IdentityHashMap<Stage, Integer>();
+		final List<HaarFeatureClassifier> nodes = new ArrayList<HaarFeatureClassifier>();
+		final Map<Classifier, Integer> classifierIndex = new IdentityHashMap<Classifier, Integer>();
+		final List<Float> leaves = new ArrayList<Float>();
+		final List<HaarFeature> features = new ArrayList<HaarFeature>();
+		final Map<HaarFeature, Integer> featureIndex = new IdentityHashMap<HaarFeature, Integer>();
+
+		int addStage(Stage s) {
+			Integer idx = stageIndex.get(s);
+			if (idx == null) {
+				idx = stages.size();
+				stages.add(s);
+				stageIndex.put(s, idx);
+
+				if (s.successStage != null)
+					addStage(s.successStage);
+				if (s.failureStage != null)
+					addStage(s.failureStage);
+			}
+			return idx;
+		}
+
+		int addClassifier(Classifier c) {
+			Integer idx = classifierIndex.get(c);
+			if (idx == null) {
+				if (c instanceof ValueClassifier) {
+					idx = ~leaves.size();
+					leaves.add(((ValueClassifier) c).value);
+				} else if (c instanceof HaarFeatureClassifier) {
+					idx = nodes.size();
+					nodes.add((HaarFeatureClassifier) c);
+				} else {
+					throw new IllegalArgumentException("Unsupported classifier type: " + c.getClass().getName());
+				}
+				classifierIndex.put(c, idx);
+			}
+			return idx;
+		}
+
+		int addFeature(HaarFeature f) {
+			Integer idx = featureIndex.get(f);
+			if (idx == null) {
+				idx = features.size();
+				features.add(f);
+				featureIndex.put(f, idx);
+			}
+			return idx;
+		}
+	}
+
+	private static boolean hasNegativeValues(Classifier classifier) {
+		if (classifier instanceof ValueClassifier)
+			return ((ValueClassifier) classifier).value < 0;
+
+		final HaarFeatureClassifier hfc = (HaarFeatureClassifier) classifier;
+		return hasNegativeValues(hfc.left) || hasNegativeValues(hfc.right);
+	}
+
+	/**
+	 * Get the scale-dependent tables for the given scale. Tables are cached, so
+	 * repeated calls with the same scale are cheap.
+	 * 
+	 * @param scale
+	 *            the scale factor
+	 * @return the tables for the scale
+	 */
+	public Scale getScale(float scale) {
+		ConcurrentHashMap<Integer, Scale> cache = scales;
+		if (cache == null)
+			scales = cache = new ConcurrentHashMap<Integer, Scale>();
+
+		final Integer key = Float.floatToIntBits(scale);
+		Scale s = cache.get(key);
+
+		if (s == null) {
+			s = new Scale(this, scale);
+
+			if (cache.size() < MAX_CACHED_SCALES) {
+				final Scale existing = cache.putIfAbsent(key, s);
+				if (existing != null)
+					s = existing;
+			}
+		}
+
+		return s;
+	}
+
+	/**
+	 * Classify the window with the given top-left corner at the given scale,
+	 * in the same way as {@link StageTreeClassifier#classify}.
+	 * 
+	 * @param sat
+	 *            the summed area tables of the image
+	 * @param scale
+	 *            the scale tables from {@link #getScale(float)}
+	 * @param x
+	 *            the x-ordinate of the top-left of the window
+	 * @param y
+	 *            the y-ordinate of the top-left of the window
+	 * @return the number of stages that passed if the cascade passed, or minus
+	 *         the number of stages that passed if it failed
+	 */
+	public int classify(SummedSqTiltAreaTable sat, Scale scale, int x, int y) {
+		final float wvNorm = computeWindowVarianceNorm(sat, scale, x, y);
+
+		int matches = 0;
+		int stage = root;
+		while (true) {
+			if (pass(stage, sat, scale, wvNorm, x, y)) {
+				matches++;
+				stage = stageSuccess[stage];
+				if (stage < 0)
+					return matches;
+			} else {
+				stage = stageFailure[stage];
+				if (stage < 0)
+					return -matches;
+			}
+		}
+	}
+
+	private static float computeWindowVarianceNorm(SummedSqTiltAreaTable sat, Scale scale, int x, int y) {
+		x += scale.shift; // shift by 1 scaled px to centre box
+		y += scale.shift;
+
+		final int w = scale.windowWidth;
+		final int h = scale.windowHeight;
+		final float[][] sum = sat.sum.pixels;
+		final float[][] sqSum = sat.sqSum.pixels;
+
+		final float s = sum[y + h][x + w] + sum[y][x] - sum[y + h][x] - sum[y][x + w];
+		final float sq = sqSum[y + h][x + w] + sqSum[y][x] - sqSum[y + h][x] - sqSum[y][x + w];
+
+		final float mean = s * scale.invArea;
+		float wvNorm = sq * scale.invArea - mean * mean;
+		wvNorm = (float) ((wvNorm > 0) ? Math.sqrt(wvNorm) : 1);
+
+		return wvNorm;
+	}
+
+	private boolean pass(int stage, SummedSqTiltAreaTable sat, Scale scale, float wvNorm, int x, int y) {
+		final int start = stageTrees[stage];
+		final int end = stageTrees[stage + 1];
+		final float threshold = stageThreshold[stage];
+
+		float total = 0;
+
+		// if there are no negative valued features in the ensemble, then the
+		// sum can only increase & it is cheaper to perform the threshold check
+		// on each iteration
+		if (stageHasNegativeValues[stage]) {
+			for (int t = start; t < end; t++)
+				total += evaluateTree(t, sat, scale, wvNorm, x, y);
+
+			return total >= threshold;
+		} else {
+			for (int t = start; t < end; t++) {
+				total += evaluateTree(t, sat, scale, wvNorm, x, y);
+				if (total >= threshold)
+					return true;
+			}
+
+			return false;
+		}
+	}
+
+	private float evaluateTree(int tree, SummedSqTiltAreaTable sat, Scale scale, float wvNorm, int x, int y) {
+		int node = treeRoot[tree];
+
+		while (node >= 0) {
+			final float response = featureTilted[nodeFeature[node]] ?
+					tiltedResponse(nodeFeature[node], sat, scale, x, y) :
+					normalResponse(nodeFeature[node], sat, scale, x, y);
+
+			node = (response < nodeThreshold[node] * wvNorm) ? nodeLeft[node] : nodeRight[node];
+		}
+
+		return leafValue[~node];
+	}
+
+	private float normalResponse(int feature, SummedSqTiltAreaTable sat, Scale scale, int rx, int ry) {
+		final float[][] sum = sat.sum.pixels;
+		final int end = featureRects[feature + 1];
+
+		float total = 0;
+		for (int r = featureRects[feature]; r < end; r++) {
+			final int x = rx + scale.x[r];
+			final int y = ry + scale.y[r];
+			final int yh = y + scale.height[r];
+			final int xw = x + scale.width[r];
+
+			final float regionSum = sum[yh][xw] - sum[yh][x] - sum[y][xw] + sum[y][x];
+
+			total += regionSum * scale.weight[r];
+		}
+
+		return total;
+	}
+
+	private float tiltedResponse(int feature, SummedSqTiltAreaTable sat, Scale scale, int rx, int ry) {
+		final float[][] tiltSum = sat.tiltSum.pixels;
+		final int end = featureRects[feature + 1];
+
+		float total = 0;
+		for (int r = featureRects[feature]; r < end; r++) {
+			final int x = rx + scale.x[r];
+			final int y = ry + scale.y[r];
+			final int width = scale.width[r];
+			final int height = scale.height[r];
+
+			final float p0 = tiltSum[y][x];
+			final float p1 = tiltSum[y + height][x - height];
+			final float p2 = tiltSum[y + width][x + width];
+			final float p3 = tiltSum[y + width + height][x + width - height];
+
+			final float regionSum = p0 - p1 - p2 + p3;
+
+			total += regionSum * scale.weight[r];
+		}
+
+		return total;
+	}
+
+	/**
+	 * Get the {@link StageTreeClassifier} that this cascade was compiled from.
+	 * Note that the classifier is not thread-safe, and that changes made to it
+	 * will not be reflected in this cascade.
+	 * 
+	 * @return the source classifier
+	 */
+	public StageTreeClassifier getClassifier() {
+		return classifier;
+	}
+
+	/**
+	 * @return the width of the detection window
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the detection window
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the name of the cascade
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return true if the cascade has tilted features; false otherwise
+	 */
+	public boolean hasTiltedFeatures() {
+		return hasTiltedFeatures;
+	}
+
+	/**
+	 * @return the number of stages
+	 */
+	public int numStages() {
+		return stageThreshold.length;
+	}
+}
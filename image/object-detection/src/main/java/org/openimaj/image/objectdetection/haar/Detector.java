@@ -50,9 +50,11 @@ import org.openimaj.math.geometry.shape.Rectangle;
  * incremented by {@link #bigStep()}, otherwise it is incremented by
  * {@link #smallStep()}.
  * <p>
- * <strong>Important note:</strong> This detector is NOT thread-safe due to the
- * fact that {@link StageTreeClassifier}s are not themselves thread-safe. Do not
- * attempt to use it in a multi-threaded environment!
+ * The {@link StageTreeClassifier} is compiled into an immutable
+ * {@link CompiledCascade} for detection, so a single detector (or a single
+ * {@link CompiledCascade} shared between detectors) can be used to detect
+ * objects in multiple images concurrently, provided that the detector's
+ * parameters are not changed at the same time.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -86,7 +88,15 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	 */
 	public static final float DEFAULT_SCALE_FACTOR = 1.1f;
 
+	/**
+	 * The cascade tables of the scale currently being searched by
+	 * {@link #detect(FImage)} on each thread, for the deprecated
+	 * {@link #detectAtScale(SummedSqTiltAreaTable, int, int, int, int, float, int, int, List)}
+	 */
+	private static final ThreadLocal<CompiledCascade.Scale> CURRENT_SCALE = new ThreadLocal<CompiledCascade.Scale>();
+
 	protected StageTreeClassifier cascade;
+	protected CompiledCascade compiled;
 	protected float scaleFactor = 1.1f;
 	protected int smallStep = 1;
 	protected int bigStep = 2;
@@ -104,9 +114,27 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	 *            the amount to step when there is definitely no detection
 	 */
 	public Detector(StageTreeClassifier cascade, float scaleFactor, int smallStep, int bigStep) {
-		super(Math.max(cascade.width, cascade.height), 0);
+		this(new CompiledCascade(cascade), scaleFactor, smallStep, bigStep);
+	}
+
+	/**
+	 * Construct the {@link Detector} with the given parameters. The compiled
+	 * cascade can be shared with other detectors.
+	 * 
+	 * @param compiled
+	 *            the compiled cascade or tree of stages.
+	 * @param scaleFactor
+	 *            the amount to change between scales (multiplicative)
+	 * @param smallStep
+	 *            the amount to step when there is a hint of detection
+	 * @param bigStep
+	 *            the amount to step when there is definitely no detection
+	 */
+	public Detector(CompiledCascade compiled, float scaleFactor, int smallStep, int bigStep) {
+		super(Math.max(compiled.getWidth(), compiled.getHeight()), 0);
 
-		this.cascade = cascade;
+		this.cascade = compiled.getClassifier();
+		this.compiled = compiled;
 		this.scaleFactor = scaleFactor;
 		this.smallStep = smallStep;
 		this.bigStep = bigStep;
@@ -137,9 +165,36 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	}
 
 	/**
-	 * Perform detection at a single scale. Subclasses may override this to
-	 * customise the spatial search. The given starting and stopping coordinates
-	 * take into account any region of interest set on this detector.
+	 * Construct the {@link Detector} with the given compiled cascade, and the
+	 * default parameters for step sizes and scale factor.
+	 * 
+	 * @param compiled
+	 *            the compiled cascade or tree of stages.
+	 */
+	public Detector(CompiledCascade compiled) {
+		this(compiled, DEFAULT_SCALE_FACTOR, DEFAULT_SMALL_STEP, DEFAULT_BIG_STEP);
+	}
+
+	/**
+	 * Ensure that the compiled cascade is available after deserialisation of a
+	 * detector that was stored before compilation was introduced.
+	 * 
+	 * @return this detector
+	 */
+	protected Object readResolve() {
+		if (compiled == null && cascade != null)
+			compiled = new CompiledCascade(cascade);
+
+		return this;
+	}
+
+	/**
+	 * Perform detection at the scale currently being searched by
+	 * {@link #detect(FImage)}. This is called by {@link #detect(FImage)} for
+	 * each scale, and calls
+	 * {@link #detectAtScale(SummedSqTiltAreaTable, CompiledCascade.Scale, int, int, int, int, float, int, int, List)}
+	 * with the cascade tables for that scale. It is only retained so that
+	 * subclasses that override it continue to work.
 	 * 
 	 * @param sat
 	 *            the summed area table(s)
@@ -159,10 +214,47 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	 *            the window height at the current scale
 	 * @param results
 	 *            the list to store detection results in
+	 * @deprecated override
+	 *             {@link #detectAtScale(SummedSqTiltAreaTable, CompiledCascade.Scale, int, int, int, int, float, int, int, List)}
+	 *             instead
 	 */
+	@Deprecated
 	protected void detectAtScale(final SummedSqTiltAreaTable sat, final int startX, final int stopX, final int startY,
 			final int stopY, final float ystep, final int windowWidth, final int windowHeight,
 			final List<Rectangle> results)
+	{
+		detectAtScale(sat, CURRENT_SCALE.get(), startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+	}
+
+	/**
+	 * Perform detection at a single scale. Subclasses may override this to
+	 * customise the spatial search. The given starting and stopping coordinates
+	 * take into account any region of interest set on this detector.
+	 * 
+	 * @param sat
+	 *            the summed area table(s)
+	 * @param scale
+	 *            the cascade tables for the current scale
+	 * @param startX
+	 *            the starting x-ordinate
+	 * @param stopX
+	 *            the stopping x-ordinate
+	 * @param startY
+	 *            the starting y-ordinate
+	 * @param stopY
+	 *            the stopping y-ordinate
+	 * @param ystep
+	 *            the amount to step
+	 * @param windowWidth
+	 *            the window width at the current scale
+	 * @param windowHeight
+	 *            the window height at the current scale
+	 * @param results
+	 *            the list to store detection results in
+	 */
+	protected void detectAtScale(final SummedSqTiltAreaTable sat, final CompiledCascade.Scale scale,
+			final int startX, final int stopX, final int startY, final int stopY, final float ystep,
+			final int windowWidth, final int windowHeight, final List<Rectangle> results)
 	{
 		for (int iy = startY; iy < stopY; iy++) {
 			final int y = Math.round(iy * ystep);
@@ -170,7 +262,7 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 			for (int ix = startX, xstep = 0; ix < stopX; ix += xstep) {
 				final int x = Math.round(ix * ystep);
 
-				final int result = cascade.classify(sat, x, y);
+				final int result = compiled.classify(sat, scale, x, y);
 
 				if (result > 0) {
 					results.add(new Rectangle(x, y, windowWidth, windowHeight));
@@ -193,16 +285,18 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 		final int imageWidth = image.getWidth();
 		final int imageHeight = image.getHeight();
 
-		final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, cascade.hasTiltedFeatures);
+		final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, compiled.hasTiltedFeatures());
 
 		// compute the number of scales to test and the starting factor
 		int nFactors = 0;
 		int startFactor = 0;
-		for (float factor = 1; factor * cascade.width < imageWidth - 10 &&
-				factor * cascade.height < imageHeight - 10; factor *= scaleFactor)
+		final int cascadeWidth = compiled.getWidth();
+		final int cascadeHeight = compiled.getHeight();
+		for (float factor = 1; factor * cascadeWidth < imageWidth - 10 &&
+				factor * cascadeHeight < imageHeight - 10; factor *= scaleFactor)
 		{
-			final float width = factor * cascade.width;
-			final float height = factor * cascade.height;
+			final float width = factor * cascadeWidth;
+			final float height = factor * cascadeHeight;
 
 			if (width < minSize || height < minSize) {
 				startFactor++;
@@ -220,8 +314,8 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 		for (int scaleStep = startFactor; scaleStep < nFactors; factor *= scaleFactor, scaleStep++) {
 			final float ystep = Math.max(2, factor);
 
-			final int windowWidth = (int) (factor * cascade.width);
-			final int windowHeight = (int) (factor * cascade.height);
+			final int windowWidth = (int) (factor * cascadeWidth);
+			final int windowHeight = (int) (factor * cascadeHeight);
 
 			// determine the spatial range, taking into account any ROI.
 			final int startX = (int) (roi == null ? 0 : Math.max(0, roi.x));
@@ -231,10 +325,18 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 			final int stopY = Math.round(
 					(((roi == null ? imageHeight : Math.min(imageHeight, roi.y + roi.height)) - windowHeight)) / ystep);
 
-			// prepare the cascade for this scale
-			cascade.setScale(factor);
-
-			detectAtScale(sat, startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+			// get the cascade tables for this scale
+			final CompiledCascade.Scale scale = compiled.getScale(factor);
+
+			// search through the deprecated method, so that subclasses which
+			// override it are still used
+			final CompiledCascade.Scale previous = CURRENT_SCALE.get();
+			CURRENT_SCALE.set(scale);
+			try {
+				detectAtScale(sat, startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+			} finally {
+				CURRENT_SCALE.set(previous);
+			}
 		}
 
 		return results;
@@ -311,4 +413,13 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	public StageTreeClassifier getClassifier() {
 		return cascade;
 	}
+
+	/**
+	 * Get the compiled classifier tree or cascade used by this detector.
+	 * 
+	 * @return the compiled classifier tree or cascade.
+	 */
+	public CompiledCascade getCompiledCascade() {
+		return compiled;
+	}
 }
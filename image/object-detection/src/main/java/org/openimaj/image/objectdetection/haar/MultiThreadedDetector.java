@@ -44,9 +44,8 @@ import org.openimaj.util.parallel.Parallel.IntRange;
  * identical, but the image is separated into multiple vertical stripes for each
  * thread to process independently.
  * <p>
- * <strong>Important note:</strong> This detector is NOT thread-safe due to the
- * fact that {@link StageTreeClassifier}s are not themselves thread-safe. Do not
- * attempt to use it in a multi-threaded environment!
+ * As with the {@link Detector}, detection uses an immutable
+ * {@link CompiledCascade}, so multiple images can be processed concurrently.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -103,10 +102,47 @@ public class MultiThreadedDetector extends Detector {
 		this(cascade, DEFAULT_SCALE_FACTOR, DEFAULT_SMALL_STEP, DEFAULT_BIG_STEP, null);
 	}
 
+	/**
+	 * Construct the {@link MultiThreadedDetector} with the given parameters.
+	 * The compiled cascade can be shared with other detectors.
+	 * 
+	 * @param compiled
+	 *            the compiled cascade or tree of stages.
+	 * @param scaleFactor
+	 *            the amount to change between scales (multiplicative)
+	 * @param smallStep
+	 *            the amount to step when there is a hint of detection
+	 * @param bigStep
+	 *            the amount to step when there is definitely no detection
+	 * @param threadPool
+	 *            the thread pool. If <code>null</code> the global pool is used.
+	 */
+	public MultiThreadedDetector(CompiledCascade compiled, float scaleFactor, int smallStep, int bigStep,
+			ThreadPoolExecutor threadPool)
+	{
+		super(compiled, scaleFactor, smallStep, bigStep);
+
+		if (threadPool == null)
+			threadPool = GlobalExecutorPool.getPool();
+
+		this.threadPool = threadPool;
+	}
+
+	/**
+	 * Construct the {@link MultiThreadedDetector} with the given compiled
+	 * cascade, and the default parameters for step sizes and scale factor.
+	 * 
+	 * @param compiled
+	 *            the compiled cascade or tree of stages.
+	 */
+	public MultiThreadedDetector(CompiledCascade compiled) {
+		this(compiled, DEFAULT_SCALE_FACTOR, DEFAULT_SMALL_STEP, DEFAULT_BIG_STEP, null);
+	}
+
 	@Override
-	protected void detectAtScale(final SummedSqTiltAreaTable sat, final int startX, final int stopX, final int startY,
-			final int stopY, final float ystep, final int windowWidth, final int windowHeight,
-			final List<Rectangle> results)
+	protected void detectAtScale(final SummedSqTiltAreaTable sat, final CompiledCascade.Scale scale,
+			final int startX, final int stopX, final int startY, final int stopY, final float ystep,
+			final int windowWidth, final int windowHeight, final List<Rectangle> results)
 	{
 		Parallel.forRange(startY, stopY, 1, new Operation<IntRange>() {
 			@Override
@@ -117,7 +153,7 @@ public class MultiThreadedDetector extends Detector {
 					for (int ix = startX, xstep = 0; ix < stopX; ix += xstep) {
 						final int x = Math.round(ix * ystep);
 
-						final int result = cascade.classify(sat, x, y);
+						final int result = compiled.classify(sat, scale, x, y);
 
 						if (result > 0) {
 							synchronized (results) {
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.objectdetection.haar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.analysis.algorithm.SummedSqTiltAreaTable;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for the {@link CompiledCascade}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ * 
+ */
+public class CompiledCascadeTest {
+	String[] cascades = {
+			"haarcascade_frontalface_default.xml",
+			"haarcascade_frontalface_alt_tree.xml",
+			"haarcascade_eye_tree_eyeglasses.xml",
+			"haarcascade_mcs_mouth.xml"
+	};
+
+	private FImage createImage(int width, int height, long seed) {
+		final Random rng = new Random(seed);
+		final FImage image = new FImage(width, height);
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final float gradient = (float) (0.5 + 0.5 * Math.sin(x * 0.2) * Math.cos(y * 0.15));
+				image.pixels[y][x] = 0.8f * gradient + 0.2f * rng.nextFloat();
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * Test that the compiled cascade gives exactly the same result as the
+	 * original classifier for every window over a range of scales
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testClassify() throws IOException {
+		final FImage image = createImage(96, 80, 42);
+
+		for (final String c : cascades) {
+			final StageTreeClassifier tree = OCVHaarLoader.read(OCVHaarLoader.class.getResourceAsStream(c));
+			final CompiledCascade compiled = new CompiledCascade(tree);
+			final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, tree.hasTiltedFeatures());
+
+			assertEquals(tree.getWidth(), compiled.getWidth());
+			assertEquals(tree.getHeight(), compiled.getHeight());
+			assertEquals(tree.getName(), compiled.getName());
+
+			for (float factor = 1; factor * tree.getWidth() < image.width - 10 &&
+					factor * tree.getHeight() < image.height - 10; factor *= 1.2f)
+			{
+				tree.setScale(factor);
+				final CompiledCascade.Scale scale = compiled.getScale(factor);
+
+				final int stopX = Math.round(image.width - factor * tree.getWidth()) - 2;
+				final int stopY = Math.round(image.height - factor * tree.getHeight()) - 2;
+				for (int y = 0; y < stopY; y++) {
+					for (int x = 0; x < stopX; x++) {
+						assertEquals(tree.classify(sat, x, y), compiled.classify(sat, scale, x, y));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that the scale tables are cached
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testScaleCache() throws IOException {
+		final CompiledCascade compiled = new CompiledCascade(OCVHaarLoader.read(OCVHaarLoader.class
+				.getResourceAsStream(cascades[0])));
+
+		assertSame(compiled.getScale(1.5f), compiled.getScale(1.5f));
+		assertEquals(1.5f, compiled.getScale(1.5f).getScale(), 0);
+	}
+
+	/**
+	 * Test that detectors built from the same classifier and from a shared
+	 * compiled cascade give the same detections
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testDetector() throws IOException {
+		final StageTreeClassifier tree = OCVHaarLoader.read(OCVHaarLoader.class.getResourceAsStream(cascades[0]));
+		final CompiledCascade compiled = new CompiledCascade(tree);
+		final FImage image = createImage(160, 120, 7);
+
+		final List<Rectangle> expected = new Detector(tree).detect(image);
+		assertEquals(expected, new Detector(compiled).detect(image));
+
+		// the multi-threaded detector doesn't guarantee the order of the results
+		final List<Rectangle> mt = new MultiThreadedDetector(compiled).detect(image);
+		assertEquals(expected.size(), mt.size());
+		assertEquals(new HashSet<Rectangle>(expected), new HashSet<Rectangle>(mt));
+
+		// the source classifier is always available
+		assertSame(tree, compiled.getClassifier());
+		assertSame(tree, new Detector(compiled).getClassifier());
+	}
+
+	/**
+	 * Test that subclasses overriding the old single-scale detection method are
+	 * still used
+	 * 
+	 * @throws IOException
+	 */
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testDeprecatedDetectAtScale() throws IOException {
+		final StageTreeClassifier tree = OCVHaarLoader.read(OCVHaarLoader.class.getResourceAsStream(cascades[0]));
+		final FImage image = createImage(160, 120, 7);
+		final int[] calls = { 0 };
+
+		final Detector detector = new Detector(tree) {
+			@Override
+			protected void detectAtScale(SummedSqTiltAreaTable sat, int startX, int stopX, int startY, int stopY,
+					float ystep, int windowWidth, int windowHeight, List<Rectangle> results)
+			{
+				calls[0]++;
+				super.detectAtScale(sat, startX, stopX, startY, stopY, ystep, windowWidth, windowHeight, results);
+			}
+		};
+
+		assertEquals(new Detector(tree).detect(image), detector.detect(image));
+		assertTrue(calls[0] > 0);
+	}
+}
@@ -56,6 +56,14 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	public static final int DEFAULT_NUMBER_ITERATIONS = 30;
 
+	/**
+	 * The maximum total size in bytes of the private centroid accumulators
+	 * used when {@link #isPerThreadAccumulation() per-thread accumulation} is
+	 * enabled. The number of accumulators is limited so that they fit in this
+	 * budget, and a single shared accumulator is used if fewer than two fit.
+	 */
+	public static final long MAX_ACCUMULATOR_MEMORY = 256L * 1024L * 1024L;
+
 	/**
 	 * The number of clusters
 	 */
@@ -82,6 +90,16 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 	 */
 	protected ExecutorService threadpool;
 
+	/**
+	 * Should each worker have its own centroid accumulator?
+	 */
+	protected boolean perThreadAccumulation = false;
+
+	/**
+	 * Should exact assignment be accelerated using distance bounds?
+	 */
+	protected boolean accelerated = false;
+
 	/**
 	 * Create configuration for data that will create <code>K</code> clusters.
 	 * The algorithm will run for a maximum of
@@ -288,6 +306,78 @@ public class KMeansConfiguration<NN extends NearestNeighbours<DATA, ?, ?>, DATA>
 		this.niters = niters;
 	}
 
+	/**
+	 * Is each worker thread given its own private accumulator for the new
+	 * centroids? If true, the workers never contend on a shared accumulator,
+	 * and the private accumulators are summed at the end of each iteration;
+	 * this is much faster on machines with many cores, but requires one
+	 * <code>K</code> by <code>D</code> accumulator per thread. The accumulator
+	 * holds 4-byte floats for byte, short, int and float data, and 8-byte
+	 * doubles for long and double data (for example, a 1M cluster vocabulary
+	 * of 128 dimensional byte features needs 512MB per thread). The number of
+	 * accumulators is therefore capped at {@link #MAX_ACCUMULATOR_MEMORY}
+	 * bytes in total. If false (the default), a single accumulator is shared
+	 * by all the workers and updates are synchronised.
+	 * 
+	 * @return true if each worker has its own accumulator; false if a single
+	 *         shared accumulator is used.
+	 */
+	public boolean isPerThreadAccumulation() {
+		return perThreadAccumulation;
+	}
+
+	/**
+	 * Set whether each worker thread is given its own private accumulator
+	 * for the new centroids (see {@link #isPerThreadAccumulation()}).
+	 * Enabling this removes lock contention, but costs an extra
+	 * <code>K * D * 4</code> bytes per worker thread (<code>K * D * 8</code>
+	 * for long and double data), up to a total of
+	 * {@link #MAX_ACCUMULATOR_MEMORY} bytes; above that the shared
+	 * accumulator is used.
+	 * 
+	 * @param perThreadAccumulation
+	 *            true if each worker should have its own accumulator; false
+	 *            if a single shared accumulator should be used.
+	 */
+	public void setPerThreadAccumulation(boolean perThreadAccumulation) {
+		this.perThreadAccumulation = perThreadAccumulation;
+	}
+
+	/**
+	 * Is the exact assignment step accelerated using the triangle inequality?
+	 * In accelerated mode, upper and lower bounds on the distance from each
+	 * point to its closest and second closest centroids are maintained
+	 * between iterations, together with the distances between the
+	 * centroids, and the distance computations for a point are skipped when
+	 * the bounds show that its assignment cannot have changed. The bounds
+	 * carry a small relative slack to absorb rounding in the distance
+	 * computations, so the assignments (and hence the centroids) are the same
+	 * as those computed without acceleration within that tolerance.
+	 * <p>
+	 * Acceleration requires the nearest-neighbours factory to produce exact
+	 * nearest-neighbours with Euclidean distance. It needs a few bytes of
+	 * extra memory per data point, and computes all the centroid-centroid
+	 * distances on each iteration, so is best suited to large amounts of data
+	 * and moderate numbers of clusters.
+	 * 
+	 * @return true if the assignment is accelerated; false otherwise
+	 */
+	public boolean isAccelerated() {
+		return accelerated;
+	}
+
+	/**
+	 * Set whether the exact assignment step is accelerated using the
+	 * triangle inequality (see {@link #isAccelerated()}).
+	 * 
+	 * @param accelerated
+	 *            true if the assignment should be accelerated; false
+	 *            otherwise
+	 */
+	public void setAccelerated(boolean accelerated) {
+		this.accelerated = accelerated;
+	}
+
 	/**
 	 * Get the factory that produces the {@link NearestNeighbours} during
 	 * clustering.
@@ -29,15 +29,22 @@
  */
 package org.openimaj.ml.annotation.linear;
 
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.data.dataset.GroupedDataset;
 import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.DiskCachingFeatureExtractor;
 import org.openimaj.feature.FeatureExtractor;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.ml.annotation.Annotated;
@@ -46,6 +53,9 @@ import org.openimaj.ml.annotation.BatchAnnotator;
 import org.openimaj.ml.annotation.ScoredAnnotation;
 import org.openimaj.ml.annotation.utils.AnnotatedListHelper;
 import org.openimaj.ml.annotation.utils.LiblinearHelper;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 import de.bwaldvogel.liblinear.DenseLinear;
 import de.bwaldvogel.liblinear.DenseProblem;
@@ -62,6 +72,15 @@ import de.bwaldvogel.liblinear.SolverType;
  * features. Two modes of operation are available depending on whether the
  * problem is multiclass or multilabel. Binary classification can be achieved
  * with either mode, although multiclass mode is more efficient in this case.
+ * <p>
+ * If a thread pool is set with {@link #setThreadPool(ThreadPoolExecutor)}, the
+ * features of the training objects are extracted concurrently, directly into a
+ * pre-sized liblinear problem. In multilabel mode the features of each object
+ * are only extracted once, and are shared by all the one-versus-all problems,
+ * which are themselves trained concurrently if the solver is deterministic
+ * (see {@link #isDeterministic(SolverType)}). Training features can also be
+ * cached on disk with {@link #setFeatureCache(File)}. The trained models are
+ * the same irrespective of whether a thread pool is used.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -117,6 +136,9 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 		boolean dense;
 		double bias = -1;
 		boolean estimateProbabilities = true;
+		ThreadPoolExecutor pool;
+		File cacheDir;
+		DiskCachingFeatureExtractor<FeatureVector, Identifiable> cachingExtractor;
 
 		public abstract void train(List<? extends Annotated<OBJECT, ANNOTATION>> data);
 
@@ -136,6 +158,98 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 			return LiblinearHelper.convertDense(feature, bias);
 		}
 
+		/**
+		 * Extract the feature of a training object, using the on-disk cache
+		 * if it is enabled and the object is {@link Identifiable}.
+		 */
+		FeatureVector extractTrainingFeature(OBJECT object) {
+			if (cachingExtractor == null || !(object instanceof Identifiable))
+				return extractor.extractFeature(object);
+
+			return cachingExtractor.extractFeature((Identifiable) object);
+		}
+
+		void setFeatureCache(File cacheDir) {
+			this.cacheDir = cacheDir;
+
+			if (cacheDir == null) {
+				cachingExtractor = null;
+			} else {
+				// only Identifiable training objects are ever passed to the
+				// cache, and they are always instances of OBJECT
+				cachingExtractor = new DiskCachingFeatureExtractor<FeatureVector, Identifiable>(cacheDir,
+						new FeatureExtractor<FeatureVector, Identifiable>() {
+							@SuppressWarnings("unchecked")
+							@Override
+							public FeatureVector extractFeature(Identifiable object) {
+								return extractor.extractFeature((OBJECT) object);
+							}
+						});
+			}
+		}
+
+		/**
+		 * Extract and convert the features of all the given training objects
+		 * into the given pre-sized array (either <code>sparse</code> or
+		 * <code>dense</code> should be null, depending on the mode). The
+		 * extraction is performed concurrently if a thread pool is set; each
+		 * feature is written to its own slot, so the result is independent of
+		 * the scheduling.
+		 *
+		 * @return the length of the feature vector of the first object
+		 */
+		int computeTrainingFeatures(final List<? extends OBJECT> objects, final Feature[][] sparse,
+				final double[][] dense)
+		{
+			final int[] featureLength = new int[1];
+
+			if (pool == null) {
+				for (int i = 0; i < objects.size(); i++)
+					computeTrainingFeature(objects.get(i), i, sparse, dense, featureLength);
+			} else {
+				Parallel.forRange(0, objects.size(), 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						for (int i = range.start; i < range.stop; i++)
+							computeTrainingFeature(objects.get(i), i, sparse, dense, featureLength);
+					}
+				}, pool);
+			}
+
+			return featureLength[0];
+		}
+
+		private void computeTrainingFeature(OBJECT object, int i, Feature[][] sparse, double[][] dense,
+				int[] featureLength)
+		{
+			final FeatureVector feature = extractTrainingFeature(object);
+
+			if (i == 0)
+				featureLength[0] = feature.length();
+
+			if (dense != null)
+				dense[i] = LiblinearHelper.convertDense(feature, bias);
+			else
+				sparse[i] = LiblinearHelper.convert(feature, bias);
+		}
+
+		/**
+		 * Get a view of the objects in a list of annotated objects
+		 */
+		static <O> List<O> objects(final List<? extends Annotated<O, ?>> data) {
+			return new AbstractList<O>() {
+				@Override
+				public O get(int index) {
+					return data.get(index).getObject();
+				}
+
+				@Override
+				public int size() {
+					return data.size();
+				}
+			};
+		}
+
 		void computeProbabilities(double[] prob_estimates) {
 			if (!estimateProbabilities)
 				return;
@@ -177,46 +291,40 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 		public void train(GroupedDataset<ANNOTATION, ? extends ListDataset<OBJECT>, OBJECT> dataset) {
 			annotationsList = new ArrayList<ANNOTATION>(dataset.getGroups());
 
-			final int nItems = dataset.numInstances();
-			final int featureLength = extractor.extractFeature(dataset.getRandomInstance()).length();
+			final List<ListDataset<OBJECT>> groups = new ArrayList<ListDataset<OBJECT>>();
+			final int[] offsets = new int[annotationsList.size() + 1];
 
-			if (dense) {
-				final DenseProblem problem = new DenseProblem();
-				problem.l = nItems;
-				problem.n = featureLength + (bias >= 0 ? 1 : 0);
-				problem.bias = bias;
-				problem.x = new double[nItems][];
-				problem.y = new double[nItems];
-
-				int i = 0;
-				for (final ANNOTATION annotation : dataset.getGroups()) {
-					for (final OBJECT object : dataset.get(annotation)) {
-						problem.y[i] = annotationsList.indexOf(annotation) + 1;
-						problem.x[i] = computeFeatureDense(object);
-						i++;
-					}
+			for (int g = 0; g < annotationsList.size(); g++) {
+				final ListDataset<OBJECT> group = dataset.get(annotationsList.get(g));
+
+				groups.add(group);
+				offsets[g + 1] = offsets[g] + group.size();
+			}
+
+			final double[] y = new double[offsets[offsets.length - 1]];
+			for (int g = 0; g < annotationsList.size(); g++) {
+				for (int i = offsets[g]; i < offsets[g + 1]; i++)
+					y[i] = g + 1;
+			}
+
+			// view of the objects of all the groups, in group order
+			final List<OBJECT> objects = new AbstractList<OBJECT>() {
+				@Override
+				public OBJECT get(int index) {
+					int g = 0;
+					while (index >= offsets[g + 1])
+						g++;
+
+					return groups.get(g).getInstance(index - offsets[g]);
 				}
 
-				model = DenseLinear.train(problem, parameter);
-			} else {
-				final Problem problem = new Problem();
-				problem.l = nItems;
-				problem.n = featureLength + (bias >= 0 ? 1 : 0);
-				problem.bias = bias;
-				problem.x = new Feature[nItems][];
-				problem.y = new double[nItems];
-
-				int i = 0;
-				for (final ANNOTATION annotation : dataset.getGroups()) {
-					for (final OBJECT object : dataset.get(annotation)) {
-						problem.y[i] = annotationsList.indexOf(annotation) + 1;
-						problem.x[i] = computeFeature(object);
-						i++;
-					}
+				@Override
+				public int size() {
+					return offsets[offsets.length - 1];
 				}
+			};
 
-				model = Linear.train(problem, parameter);
-			}
+			train(objects, y);
 		}
 
 		@Override
@@ -226,50 +334,53 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 			annotationsList = new ArrayList<ANNOTATION>(annotations);
 
 			final int nItems = data.size();
-			final int featureLength = extractor.extractFeature(data.get(0).getObject()).length();
+			final double[] y = new double[nItems];
 
-			if (dense) {
-				final DenseProblem problem = new DenseProblem();
-				problem.l = nItems;
-				problem.n = featureLength + (bias >= 0 ? 1 : 0);
-				problem.bias = bias;
-				problem.x = new double[nItems][];
-				problem.y = new double[nItems];
+			for (int i = 0; i < annotationsList.size(); i++) {
+				final TIntArrayList indices = helper.getIndices(annotationsList.get(i));
 
-				for (int i = 0; i < nItems; i++) {
-					final Annotated<OBJECT, ANNOTATION> object = data.get(i);
+				for (int j = 0; j < indices.size(); j++) {
+					final int idx = indices.get(j);
 
-					if (object.getAnnotations().size() != 1)
+					if (y[idx] != 0)
 						throw new IllegalArgumentException(
 								"A multiclass problem cannot have more than one class per instance");
 
-					final ANNOTATION annotation = object.getAnnotations().iterator().next();
-
-					problem.y[i] = annotationsList.indexOf(annotation) + 1;
-					problem.x[i] = computeFeatureDense(object.getObject());
+					y[idx] = i + 1;
 				}
+			}
+
+			for (int i = 0; i < nItems; i++) {
+				if (y[i] == 0)
+					throw new IllegalArgumentException("Every instance of a multiclass problem must have a class");
+			}
+
+			train(objects(data), y);
+		}
+
+		private void train(List<OBJECT> objects, double[] y) {
+			final int nItems = objects.size();
+
+			if (dense) {
+				final DenseProblem problem = new DenseProblem();
+				problem.l = nItems;
+				problem.bias = bias;
+				problem.x = new double[nItems][];
+				problem.y = y;
+
+				final int featureLength = computeTrainingFeatures(objects, null, problem.x);
+				problem.n = featureLength + (bias >= 0 ? 1 : 0);
 
 				model = DenseLinear.train(problem, parameter);
 			} else {
 				final Problem problem = new Problem();
 				problem.l = nItems;
-				problem.n = featureLength + (bias >= 0 ? 1 : 0);
 				problem.bias = bias;
 				problem.x = new Feature[nItems][];
-				problem.y = new double[nItems];
-
-				for (int i = 0; i < nItems; i++) {
-					final Annotated<OBJECT, ANNOTATION> object = data.get(i);
-
-					if (object.getAnnotations().size() != 1)
-						throw new IllegalArgumentException(
-								"A multiclass problem cannot have more than one class per instance");
-
-					final ANNOTATION annotation = object.getAnnotations().iterator().next();
+				problem.y = y;
 
-					problem.y[i] = annotationsList.indexOf(annotation) + 1;
-					problem.x[i] = computeFeature(object.getObject());
-				}
+				final int featureLength = computeTrainingFeatures(objects, problem.x, null);
+				problem.n = featureLength + (bias >= 0 ? 1 : 0);
 
 				model = Linear.train(problem, parameter);
 			}
@@ -341,54 +452,75 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 			final Set<ANNOTATION> annotations = helper.getAnnotations();
 			annotationsList = new ArrayList<ANNOTATION>(annotations);
 
-			final int featureLength = extractor.extractFeature(data.get(0).getObject()).length();
+			// extract the features of every object once; the rows are shared
+			// by all the one-versus-all problems
+			final int nItems = data.size();
+			final Feature[][] sparse = dense ? null : new Feature[nItems][];
+			final double[][] denseX = dense ? new double[nItems][] : null;
+			final int featureLength = computeTrainingFeatures(objects(data), sparse, denseX);
 
 			models = new Model[annotationsList.size()];
 
-			for (int i = 0; i < annotationsList.size(); i++) {
-				final ANNOTATION annotation = annotationsList.get(i);
-				final List<? extends FeatureVector> positive = helper.extractFeatures(annotation, extractor);
-				final List<? extends FeatureVector> negative = helper.extractFeaturesExclude(annotation, extractor);
-
-				if (dense) {
-					final DenseProblem problem = new DenseProblem();
-					problem.l = positive.size() + negative.size();
-					problem.n = featureLength + (bias >= 0 ? 1 : 0);
-					problem.bias = bias;
-					problem.x = new double[problem.l][];
-					problem.y = new double[problem.l];
-
-					for (int j = 0; j < negative.size(); j++) {
-						problem.x[j] = LiblinearHelper.convertDense(negative.get(j), bias);
-						problem.y[j] = NEGATIVE_CLASS;
-					}
-
-					for (int j = negative.size(), k = 0; k < positive.size(); j++, k++) {
-						problem.x[j] = LiblinearHelper.convertDense(positive.get(k), bias);
-						problem.y[j] = POSTIVE_CLASS;
+			if (pool != null && isDeterministic(parameter.getSolverType())) {
+				Parallel.forRange(0, annotationsList.size(), 1, new Operation<IntRange>() {
+					@Override
+					public void perform(IntRange range) {
+						for (int i = range.start; i < range.stop; i++)
+							models[i] = train(helper.getIndices(annotationsList.get(i)), nItems, featureLength, sparse,
+									denseX);
 					}
+				}, pool);
+			} else {
+				for (int i = 0; i < annotationsList.size(); i++)
+					models[i] = train(helper.getIndices(annotationsList.get(i)), nItems, featureLength, sparse, denseX);
+			}
+		}
 
-					models[i] = DenseLinear.train(problem, parameter);
+		/**
+		 * Train the binary classifier for a single annotation. The negative
+		 * items come first followed by the positive ones, each in list order.
+		 */
+		private Model train(TIntArrayList positive, int nItems, int featureLength, Feature[][] sparse,
+				double[][] denseX)
+		{
+			final double[] y = new double[nItems];
+			final int[] order = new int[nItems];
+
+			for (int i = 0, p = 0, j = 0, k = nItems - positive.size(); i < nItems; i++) {
+				if (p < positive.size() && positive.get(p) == i) {
+					order[k] = i;
+					y[k++] = POSTIVE_CLASS;
+					p++;
 				} else {
-					final Problem problem = new Problem();
-					problem.l = positive.size() + negative.size();
-					problem.n = featureLength + (bias >= 0 ? 1 : 0);
-					problem.bias = bias;
-					problem.x = new Feature[problem.l][];
-					problem.y = new double[problem.l];
-
-					for (int j = 0; j < negative.size(); j++) {
-						problem.x[j] = LiblinearHelper.convert(negative.get(j), bias);
-						problem.y[j] = NEGATIVE_CLASS;
-					}
+					order[j] = i;
+					y[j++] = NEGATIVE_CLASS;
+				}
+			}
 
-					for (int j = negative.size(), k = 0; k < positive.size(); j++, k++) {
-						problem.x[j] = LiblinearHelper.convert(positive.get(k), bias);
-						problem.y[j] = POSTIVE_CLASS;
-					}
+			if (dense) {
+				final DenseProblem problem = new DenseProblem();
+				problem.l = nItems;
+				problem.n = featureLength + (bias >= 0 ? 1 : 0);
+				problem.bias = bias;
+				problem.x = new double[nItems][];
+				problem.y = y;
 
-					models[i] = Linear.train(problem, parameter);
-				}
+				for (int i = 0; i < nItems; i++)
+					problem.x[i] = denseX[order[i]];
+
+				return DenseLinear.train(problem, parameter);
+			} else {
+				final Problem problem = new Problem();
+				problem.l = nItems;
+				problem.n = featureLength + (bias >= 0 ? 1 : 0);
+				problem.bias = bias;
+				problem.x = new Feature[nItems][];
+				problem.y = y;
+
+				for (int i = 0; i < nItems; i++)
+					problem.x[i] = sparse[order[i]];
+
+				return Linear.train(problem, parameter);
 			}
 		}
 
@@ -507,6 +639,68 @@ public class LiblinearAnnotator<OBJECT, ANNOTATION>
 		this.internal.extractor = extractor;
 	}
 
+	/**
+	 * Determine whether the given solver always produces the same model for
+	 * the same problem. Liblinear's coordinate descent solvers draw from a
+	 * single static random number generator, so their results depend on the
+	 * order in which problems are trained; only the trust region Newton
+	 * solvers are free of this.
+	 *
+	 * @param solver
+	 *            the solver
+	 * @return true if the solver is deterministic
+	 */
+	public static boolean isDeterministic(SolverType solver) {
+		return solver == SolverType.L2R_LR || solver == SolverType.L2R_L2LOSS_SVC;
+	}
+
+	/**
+	 * Get the thread pool used for training.
+	 *
+	 * @return the thread pool; <code>null</code> if training is performed in
+	 *         the calling thread
+	 */
+	public ThreadPoolExecutor getThreadPool() {
+		return internal.pool;
+	}
+
+	/**
+	 * Set the thread pool used for training. If set, the features of the
+	 * training objects are extracted concurrently, and in multilabel mode the
+	 * one-versus-all classifiers are trained concurrently if the solver is
+	 * deterministic (see {@link #isDeterministic(SolverType)}).
+	 *
+	 * @param pool
+	 *            the thread pool; <code>null</code> to train in the calling
+	 *            thread
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		internal.pool = pool;
+	}
+
+	/**
+	 * Get the location of the on-disk cache of training features.
+	 *
+	 * @return the cache directory; <code>null</code> if caching is disabled
+	 */
+	public File getFeatureCache() {
+		return internal.cacheDir;
+	}
+
+	/**
+	 * Set the location of the on-disk cache of training features. There will
+	 * be one file created per training object, named by its identifier. Only
+	 * objects that are {@link Identifiable} are cached. If a feature has
+	 * already been cached it will be read from disk rather than being
+	 * re-extracted.
+	 *
+	 * @param cacheDir
+	 *            the cache directory; <code>null</code> to disable caching
+	 */
+	public void setFeatureCache(File cacheDir) {
+		internal.setFeatureCache(cacheDir);
+	}
+
 	@Override
 	public void train(List<? extends Annotated<OBJECT, ANNOTATION>> data) {
 		internal.train(data);
@@ -114,6 +114,18 @@ public class AnnotatedListHelper<OBJECT, ANNOTATION> {
 		};
 	}
 	
+	/**
+	 * Get the indices in the list of the items that have a specific
+	 * annotation. The indices are in ascending order. The returned
+	 * list is the internal index, and should not be modified.
+	 *
+	 * @param annotation the annotation to search for.
+	 * @return the indices of the items with the given annotation.
+	 */
+	public TIntArrayList getIndices(ANNOTATION annotation) {
+		return index.get(annotation);
+	}
+
 	/**
 	 * Get the set of all known annotations
 	 * @return the set of known annotations
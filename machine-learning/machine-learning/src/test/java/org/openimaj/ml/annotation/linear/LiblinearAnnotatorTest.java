@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.annotation.linear;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.data.identity.Identifiable;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.ml.annotation.AnnotatedObject;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+import org.openimaj.ml.annotation.linear.LiblinearAnnotator.Mode;
+
+import de.bwaldvogel.liblinear.SolverType;
+
+/**
+ * Tests for training the {@link LiblinearAnnotator} with a thread pool
+ *
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ *
+ */
+public class LiblinearAnnotatorTest {
+	private static final FeatureExtractor<DoubleFV, double[]> EXTRACTOR = new FeatureExtractor<DoubleFV, double[]>() {
+		@Override
+		public DoubleFV extractFeature(double[] object) {
+			return new DoubleFV(object);
+		}
+	};
+
+	private static class Vector implements Identifiable {
+		final String id;
+		final double[] data;
+
+		Vector(String id, double[] data) {
+			this.id = id;
+			this.data = data;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+	}
+
+	/**
+	 * Temporary folder for the feature cache
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<AnnotatedObject<double[], String>> multiclass;
+	private List<AnnotatedObject<double[], String>> multilabel;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Create some random data
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(0);
+
+		multiclass = new ArrayList<AnnotatedObject<double[], String>>();
+		multilabel = new ArrayList<AnnotatedObject<double[], String>>();
+		for (int i = 0; i < 500; i++) {
+			final double[] x = { rng.nextGaussian(), rng.nextGaussian(), rng.nextGaussian() };
+
+			multiclass.add(new AnnotatedObject<double[], String>(x, x[0] > x[1] ? "a" : "b"));
+
+			final List<String> labels = new ArrayList<String>();
+			if (x[0] > 0)
+				labels.add("a");
+			if (x[1] > 0)
+				labels.add("b");
+			if (x[2] > 0.5)
+				labels.add("c");
+			multilabel.add(new AnnotatedObject<double[], String>(x, labels));
+		}
+
+		pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
+	}
+
+	/**
+	 * Shutdown the pool
+	 */
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	private void assertSameAnnotations(LiblinearAnnotator<double[], String> expected,
+			LiblinearAnnotator<double[], String> actual, List<AnnotatedObject<double[], String>> data)
+	{
+		assertEquals(expected.getAnnotations(), actual.getAnnotations());
+
+		for (final AnnotatedObject<double[], String> item : data) {
+			final List<ScoredAnnotation<String>> e = expected.annotate(item.object);
+			final List<ScoredAnnotation<String>> a = actual.annotate(item.object);
+
+			assertEquals(e.size(), a.size());
+			for (int i = 0; i < e.size(); i++) {
+				assertEquals(e.get(i).annotation, a.get(i).annotation);
+				assertEquals(e.get(i).confidence, a.get(i).confidence, 0);
+			}
+		}
+	}
+
+	private void testMode(Mode mode, boolean dense, List<AnnotatedObject<double[], String>> data) {
+		final LiblinearAnnotator<double[], String> serial = new LiblinearAnnotator<double[], String>(
+				EXTRACTOR, mode, SolverType.L2R_L2LOSS_SVC, 1, 0.0001, 1, dense);
+		serial.train(data);
+
+		final LiblinearAnnotator<double[], String> parallel = new LiblinearAnnotator<double[], String>(
+				EXTRACTOR, mode, SolverType.L2R_L2LOSS_SVC, 1, 0.0001, 1, dense);
+		parallel.setThreadPool(pool);
+		parallel.train(data);
+
+		assertSameAnnotations(serial, parallel, data);
+	}
+
+	/**
+	 * Test that parallel multiclass training gives the same model
+	 */
+	@Test
+	public void testMulticlass() {
+		testMode(Mode.MULTICLASS, false, multiclass);
+		testMode(Mode.MULTICLASS, true, multiclass);
+	}
+
+	/**
+	 * Test that parallel multilabel training gives the same models
+	 */
+	@Test
+	public void testMultilabel() {
+		testMode(Mode.MULTILABEL, false, multilabel);
+		testMode(Mode.MULTILABEL, true, multilabel);
+	}
+
+	/**
+	 * Test that the training features are cached on disk and re-used
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFeatureCache() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		final FeatureExtractor<DoubleFV, Vector> extractor = new FeatureExtractor<DoubleFV, Vector>() {
+			@Override
+			public DoubleFV extractFeature(Vector object) {
+				count.incrementAndGet();
+				return new DoubleFV(object.data);
+			}
+		};
+
+		final List<AnnotatedObject<Vector, String>> data = new ArrayList<AnnotatedObject<Vector, String>>();
+		for (int i = 0; i < multiclass.size(); i++) {
+			final AnnotatedObject<double[], String> item = multiclass.get(i);
+			data.add(new AnnotatedObject<Vector, String>(new Vector("v" + i, item.object), item.annotations));
+		}
+
+		final File cacheDir = folder.newFolder("cache");
+
+		final LiblinearAnnotator<Vector, String> first = new LiblinearAnnotator<Vector, String>(
+				extractor, Mode.MULTICLASS, SolverType.L2R_L2LOSS_SVC, 1, 0.0001, 1, false);
+		first.setFeatureCache(cacheDir);
+		first.setThreadPool(pool);
+		first.train(data);
+
+		assertEquals(data.size(), count.get());
+		assertEquals(data.size(), cacheDir.list().length);
+
+		final LiblinearAnnotator<Vector, String> second = new LiblinearAnnotator<Vector, String>(
+				extractor, Mode.MULTICLASS, SolverType.L2R_L2LOSS_SVC, 1, 0.0001, 1, false);
+		second.setFeatureCache(cacheDir);
+		second.train(data);
+
+		assertEquals(data.size(), count.get());
+		assertEquals(first.getAnnotations(), second.getAnnotations());
+		for (final AnnotatedObject<Vector, String> item : data) {
+			assertEquals(first.annotate(item.object).get(0).annotation,
+					second.annotate(item.object).get(0).annotation);
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+ 
+package org.openimaj.knn.pq;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A store of fixed-length product quantiser codes held contiguously in a
+ * memory-mapped file. The codes are stored back-to-back with a stride equal
+ * to the number of sub-quantisers, so no per-code objects are created, and
+ * the mapped region can be scanned directly during search. New codes can be
+ * appended; the file is grown (and the tail of the mapping re-mapped) as
+ * required.
+ * <p>
+ * The file has a small header containing the stride and the number of codes,
+ * which is kept up to date as codes are appended, so an existing store can be
+ * re-opened instantly. Because a single {@link MappedByteBuffer} is limited to
+ * 2GB, the data region is mapped as a sequence of segments, each of which
+ * holds a whole number of codes.
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MappedPQCodeStore implements Closeable {
+	private static final int MAGIC = 0x50514353; // "PQCS"
+	private static final int HEADER_LENGTH = 16;
+	private static final int MIN_GROWTH = 1024;
+
+	private final File file;
+	private final int stride;
+	private final int codesPerSegment;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private long capacity;
+	private int count;
+
+	/**
+	 * Open the store in the given file, creating it if it doesn't exist.
+	 * 
+	 * @param file
+	 *            the backing file
+	 * @param stride
+	 *            the length of each code (the number of sub-quantisers)
+	 * @throws IOException
+	 *             if an error occurs opening the file, or if an existing file
+	 *             has a different stride
+	 */
+	public MappedPQCodeStore(File file, int stride) throws IOException {
+		this(file, stride, Integer.MAX_VALUE / stride);
+	}
+
+	/**
+	 * Open the store in the given file, creating it if it doesn't exist.
+	 * 
+	 * @param file
+	 *            the backing file
+	 * @param stride
+	 *            the length of each code (the number of sub-quantisers)
+	 * @param codesPerSegment
+	 *            the number of codes held by each mapped segment
+	 * @throws IOException
+	 *             if an error occurs opening the file, or if an existing file
+	 *             has a different stride
+	 */
+	public MappedPQCodeStore(File file, int stride, int codesPerSegment) throws IOException {
+		if (stride <= 0)
+			throw new IllegalArgumentException("stride must be positive");
+		if (codesPerSegment <= 0 || (long) codesPerSegment * stride > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("invalid number of codes per segment");
+
+		this.file = file;
+		this.stride = stride;
+		this.codesPerSegment = codesPerSegment;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+
+		final boolean exists = raf.length() >= HEADER_LENGTH;
+		if (!exists)
+			raf.setLength(HEADER_LENGTH);
+
+		this.header = channel.map(MapMode.READ_WRITE, 0, HEADER_LENGTH);
+
+		if (exists) {
+			if (header.getInt(0) != MAGIC) {
+				close();
+				throw new IOException(file + " is not a PQ code store");
+			}
+			if (header.getInt(4) != stride) {
+				close();
+				throw new IOException("Stride of " + file + " is " + header.getInt(4) + "; expected " + stride);
+			}
+
+			this.count = (int) header.getLong(8);
+			this.capacity = (raf.length() - HEADER_LENGTH) / stride;
+		} else {
+			header.putInt(0, MAGIC);
+			header.putInt(4, stride);
+			header.putLong(8, 0);
+			this.count = 0;
+			this.capacity = 0;
+		}
+
+		remap(0);
+	}
+
+	private void remap(int fromSegment) throws IOException {
+		while (segments.size() > fromSegment)
+			segments.remove(segments.size() - 1);
+
+		for (long start = (long) fromSegment * codesPerSegment; start < capacity; start += codesPerSegment) {
+			final long len = Math.min(codesPerSegment, capacity - start);
+
+			segments.add(channel.map(MapMode.READ_WRITE, HEADER_LENGTH + start * stride, len * stride));
+		}
+	}
+
+	private void ensureCapacity(long required) throws IOException {
+		if (required <= capacity)
+			return;
+
+		final long newCapacity = Math.max(required, capacity + Math.max(capacity / 2, MIN_GROWTH));
+		final int lastSegment = segments.size() == 0 ? 0 : segments.size() - 1;
+
+		raf.setLength(HEADER_LENGTH + newCapacity * stride);
+		capacity = newCapacity;
+
+		// only the final (partial) segment and any new segments need remapping
+		remap(lastSegment);
+	}
+
+	/**
+	 * Append a code to the store
+	 * 
+	 * @param code
+	 *            the code; must have length equal to the stride
+	 * @return the index of the appended code
+	 * @throws IOException
+	 *             if an error occurs growing the file
+	 */
+	public int append(byte[] code) throws IOException {
+		if (code.length != stride)
+			throw new IllegalArgumentException("Code length must be " + stride);
+		if (count == Integer.MAX_VALUE)
+			throw new IllegalStateException("Store is full");
+
+		ensureCapacity(count + 1L);
+
+		final ByteBuffer segment = segments.get(count / codesPerSegment);
+		final int offset = (count % codesPerSegment) * stride;
+		for (int j = 0; j < stride; j++)
+			segment.put(offset + j, code[j]);
+
+		final int index = count++;
+		header.putLong(8, count);
+
+		return index;
+	}
+
+	/**
+	 * Get the code at the given index
+	 * 
+	 * @param index
+	 *            the index
+	 * @param code
+	 *            the array to write into; must have length equal to the
+	 *            stride
+	 * @return the code array
+	 */
+	public byte[] get(int index, byte[] code) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+
+		final ByteBuffer segment = segments.get(index / codesPerSegment);
+		final int offset = (index % codesPerSegment) * stride;
+		for (int j = 0; j < stride; j++)
+			code[j] = segment.get(offset + j);
+
+		return code;
+	}
+
+	/**
+	 * Get the code at the given index
+	 * 
+	 * @param index
+	 *            the index
+	 * @return the code
+	 */
+	public byte[] get(int index) {
+		return get(index, new byte[stride]);
+	}
+
+	/**
+	 * Get the number of mapped segments that contain codes.
+	 * 
+	 * @return the number of segments with codes
+	 */
+	public int numSegments() {
+		return (count + codesPerSegment - 1) / codesPerSegment;
+	}
+
+	/**
+	 * Get the mapped buffer for the given segment. Codes within the segment
+	 * are stored contiguously starting at offset 0; use absolute get
+	 * operations to read them. The buffer must not be modified.
+	 * 
+	 * @param segment
+	 *            the segment index
+	 * @return the mapped segment
+	 */
+	public ByteBuffer getSegment(int segment) {
+		return segments.get(segment);
+	}
+
+	/**
+	 * Get the number of codes in the given segment
+	 * 
+	 * @param segment
+	 *            the segment index
+	 * @return the number of codes
+	 */
+	public int segmentSize(int segment) {
+		return Math.min(codesPerSegment, count - segment * codesPerSegment);
+	}
+
+	/**
+	 * Get the global index of the first code in the given segment
+	 * 
+	 * @param segment
+	 *            the segment index
+	 * @return the index of the first code in the segment
+	 */
+	public int segmentOffset(int segment) {
+		return segment * codesPerSegment;
+	}
+
+	/**
+	 * @return the number of codes in the store
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the length of each code
+	 */
+	public int stride() {
+		return stride;
+	}
+
+	/**
+	 * @return the backing file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Force any changes to be written to the backing file
+	 */
+	public void flush() {
+		header.force();
+		for (final MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		segments.clear();
+		channel.close();
+		raf.close();
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+ 
+package org.openimaj.knn.pq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.data.RandomData;
+import org.openimaj.knn.FloatNearestNeighbours;
+import org.openimaj.knn.FloatNearestNeighboursExact;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for {@link MappedPQCodeStore} and {@link MappedFloatADCNearestNeighbours}
+ * 
+ * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+ */
+public class MappedPQCodeStoreTest {
+	/**
+	 * Temporary folder for the stores
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test appending codes across several segments and re-opening
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testAppendAndReopen() throws IOException {
+		final File file = new File(folder.getRoot(), "codes.pqc");
+		final byte[][] codes = new byte[5000][8];
+		for (int i = 0; i < codes.length; i++)
+			for (int j = 0; j < 8; j++)
+				codes[i][j] = (byte) (i * 31 + j);
+
+		MappedPQCodeStore store = new MappedPQCodeStore(file, 8, 1000);
+		for (int i = 0; i < 2500; i++)
+			assertEquals(i, store.append(codes[i]));
+		store.close();
+
+		store = new MappedPQCodeStore(file, 8, 1000);
+		assertEquals(2500, store.size());
+		for (int i = 2500; i < codes.length; i++)
+			assertEquals(i, store.append(codes[i]));
+
+		assertEquals(5, store.numSegments());
+		for (int i = 0; i < codes.length; i++)
+			assertArrayEquals(codes[i], store.get(i));
+		store.close();
+	}
+
+	/**
+	 * Test that an index with a mapped store gives the same results as the
+	 * in-memory version, and that it can be re-opened.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testMappedADC() throws IOException {
+		final float[][] data = RandomData.getRandomFloatArray(2000, 16, -1, 1, 42);
+		final FloatNearestNeighbours[] assigners = new FloatNearestNeighbours[4];
+		for (int i = 0; i < assigners.length; i++)
+			assigners[i] = new FloatNearestNeighboursExact(RandomData.getRandomFloatArray(256, 4, -1, 1, i));
+		final FloatProductQuantiser pq = new FloatProductQuantiser(assigners);
+
+		final File file = new File(folder.getRoot(), "index.pqc");
+		final IncrementalFloatADCNearestNeighbours memory = new IncrementalFloatADCNearestNeighbours(pq, 16);
+		MappedFloatADCNearestNeighbours mapped = new MappedFloatADCNearestNeighbours(pq, 16, file);
+		for (final float[] d : data) {
+			memory.add(d);
+			mapped.add(d);
+		}
+		mapped.close();
+
+		mapped = new MappedFloatADCNearestNeighbours(pq, 16, file);
+		assertEquals(data.length, mapped.size());
+
+		for (int i = 0; i < 20; i++) {
+			final List<IntFloatPair> r1 = memory.searchKNN(data[i], 10);
+			final List<IntFloatPair> r2 = mapped.searchKNN(data[i], 10);
+
+			for (int j = 0; j < 10; j++) {
+				assertEquals(r1.get(j).first, r2.get(j).first);
+				assertEquals(r1.get(j).second, r2.get(j).second, 0);
+			}
+		}
+		mapped.close();
+	}
+}